@@ -11,8 +11,8 @@ doc="$DIR"/doc
 #to run tests: path to local junit jar
 junit_jar=/usr/share/java/junit4-4.11.jar
 
-jsource=1.6
-jtarget=1.6
+jsource=1.7
+jtarget=1.7
 
 #linux / osx different mktemp call
 TMPFILE=`mktemp 2>/dev/null || mktemp -t /tmp`
@@ -0,0 +1,129 @@
+#!/bin/bash
+
+#build and run the JMH benchmarks in src/jmh
+#any arguments are handed to JMH, e.g.:
+#  ./make_jmh.sh DecodeBenchmark -p mix=blob
+#  ./make_jmh.sh -l
+#without arguments, all benchmarks are run, with the GC profiler
+#(allocation rate per operation: gc.alloc.rate.norm)
+
+FULLPATH="`pwd`/$0"
+DIR=`dirname "$FULLPATH"`
+
+src="$DIR"/src
+build="$DIR"/_build_jmh
+archive="$DIR"/archive
+
+#to run benchmarks: paths to local JMH jars and their dependencies
+#(all part of the JMH distribution, e.g. from maven central)
+jmh_dir=/usr/share/java
+jmh_core_jar="$jmh_dir"/jmh-core-1.21.jar
+jmh_annprocess_jar="$jmh_dir"/jmh-generator-annprocess-1.21.jar
+jopt_simple_jar="$jmh_dir"/jopt-simple-4.6.jar
+commons_math_jar="$jmh_dir"/commons-math3-3.2.jar
+
+jmh_cp="$jmh_core_jar":"$jopt_simple_jar":"$commons_math_jar"
+
+jsource=1.7
+jtarget=1.7
+
+#linux / osx different mktemp call
+TMPFILE=`mktemp 2>/dev/null || mktemp -t /tmp`
+
+JAVAC="javac -source $jsource -target $jtarget -nowarn"
+
+#========================================================================
+checkAvail()
+{
+	which "$1" >/dev/null 2>&1
+	ret=$?
+	if [ $ret -ne 0 ]
+	then
+		echo "tool \"$1\" not found. please install"
+		exit 1
+	fi
+}
+
+#========================================================================
+checkJar()
+{
+	if [ ! -f "$1" ]
+	then
+		echo "jar \"$1\" not found. please install or adjust the path in $0"
+		exit 1
+	fi
+}
+
+#========================================================================
+compile_msgpack()
+{
+	echo "building msgpack library (org.msgpack.*)"
+	echo "========================================"
+
+	cp "$archive"/msgpack-java_0.8.9.tar.gz "$build"
+	cd "$build"
+	tar xf msgpack-java_0.8.9.tar.gz
+	rm msgpack-java_0.8.9.tar.gz
+	cd msgpack-java-0.8.9
+
+	find "msgpack-core/src/main/" -name *.java > "$TMPFILE"
+
+	$JAVAC -classpath "$build" -d "$build" @"$TMPFILE" 2>/dev/null
+	cd "$DIR"
+}
+
+#========================================================================
+compile_java_osc()
+{
+	echo "building JavaOSC library (com.illposed.osc)"
+	echo "==========================================="
+
+	find "$src/main/com" -name *.java > "$TMPFILE"
+
+	$JAVAC -classpath "$build" -d "$build" @"$TMPFILE"
+}
+
+#========================================================================
+compile_benchmarks()
+{
+	echo "building JMH benchmarks"
+	echo "======================="
+
+	find "$src/jmh/" -name *.java > "$TMPFILE"
+
+	#the annotation processor generates the benchmark harness code
+	mkdir -p "$build"/jmh
+	$JAVAC -classpath "$build":"$jmh_cp":"$jmh_annprocess_jar" \
+		-processor org.openjdk.jmh.generators.BenchmarkProcessor \
+		-d "$build"/jmh @"$TMPFILE"
+}
+
+#========================================================================
+run_benchmarks()
+{
+	echo "running JMH benchmarks"
+	echo "======================"
+
+	if [ $# -eq 0 ]
+	then
+		set -- -prof gc
+	fi
+	java -cp "$build":"$build"/jmh:"$jmh_cp" org.openjdk.jmh.Main "$@"
+}
+
+for tool in java javac; \
+	do checkAvail "$tool"; done
+
+for jar in "$jmh_core_jar" "$jmh_annprocess_jar" "$jopt_simple_jar" "$commons_math_jar"; \
+	do checkJar "$jar"; done
+
+mkdir -p "$build"
+rm -rf "$build"/*
+
+compile_msgpack
+compile_java_osc
+compile_benchmarks
+run_benchmarks "$@"
+
+echo ""
+echo "done."
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc;
+
+import com.illposed.osc.utility.OSCJavaToByteBufferConverter;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures encoding packets into bytes,
+ * with {@link OSCMessage#getByteArray()} (plain OSC and OSCPack),
+ * and into a re-used buffer, like {@link OSCPortOut} does on a channel,
+ * as well as computing the size without encoding.
+ * The cached byte array is dropped before each operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncodeBenchmark {
+
+	@Param({MessageMix.CONTROL, MessageMix.BLOB, MessageMix.BUNDLE})
+	public String mix;
+
+	private AbstractOSCPacket[] packets;
+	private AbstractOSCPacket[] packPackets;
+	private OSCJavaToByteBufferConverter encoder;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		packets = MessageMix.create(mix, false);
+		packPackets = MessageMix.create(mix, true);
+		encoder = new OSCJavaToByteBufferConverter();
+	}
+
+	@Benchmark
+	public void getByteArray(Blackhole blackhole) {
+		for (final AbstractOSCPacket packet : packets) {
+			MessageMix.contentChanged(packet);
+			blackhole.consume(packet.getByteArray());
+		}
+	}
+
+	@Benchmark
+	public void getByteArrayPack(Blackhole blackhole) {
+		for (final AbstractOSCPacket packet : packPackets) {
+			MessageMix.contentChanged(packet);
+			blackhole.consume(packet.getByteArray());
+		}
+	}
+
+	@Benchmark
+	public void writeToBuffer(Blackhole blackhole) {
+		for (final AbstractOSCPacket packet : packets) {
+			MessageMix.contentChanged(packet);
+			encoder.clear();
+			packet.writeTo(encoder);
+			blackhole.consume(encoder.toByteBuffer());
+		}
+	}
+
+	@Benchmark
+	public void computeSize(Blackhole blackhole) {
+		for (final AbstractOSCPacket packet : packets) {
+			MessageMix.contentChanged(packet);
+			blackhole.consume(packet.computeSize());
+		}
+	}
+}//end class EncodeBenchmark
+//EOF
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The packets the benchmarks work on, as plain OSC or OSCPack:
+ * <ul>
+ * <li><code>control</code>: small control messages, like a mixer sends them</li>
+ * <li><code>blob</code>: a message carrying a large blob and a typed blob</li>
+ * <li><code>bundle</code>: a time-tagged bundle of control messages,
+ *   containing a nested bundle</li>
+ * </ul>
+ */
+public final class MessageMix {
+
+	/** Names of the mixes, for use in <code>@Param</code>. */
+	public static final String CONTROL = "control";
+	public static final String BLOB = "blob";
+	public static final String BUNDLE = "bundle";
+
+	public static final int BLOB_SIZE = 8192;
+	public static final int TYPED_BLOB_COUNT = 1024;
+
+	private MessageMix() {
+	}
+
+	private static OSCMessage message(boolean pack, String address) {
+		return pack ? new OSCPackMessage(address) : new OSCMessage(address);
+	}
+
+	/**
+	 * Creates the packets of a mix.
+	 * @param mix one of {@link #CONTROL}, {@link #BLOB}, {@link #BUNDLE}
+	 * @param pack true for OSCPack, false for plain OSC
+	 * @return the packets, to be used one after another
+	 */
+	public static AbstractOSCPacket[] create(String mix, boolean pack) {
+		if (CONTROL.equals(mix)) {
+			return createControl(pack);
+		} else if (BLOB.equals(mix)) {
+			return new AbstractOSCPacket[] {createBlob(pack)};
+		} else if (BUNDLE.equals(mix)) {
+			return new AbstractOSCPacket[] {createBundle(pack)};
+		}
+		throw new IllegalArgumentException("unknown message mix: " + mix);
+	}
+
+	private static AbstractOSCPacket[] createControl(boolean pack) {
+		final List<AbstractOSCPacket> messages = new ArrayList<AbstractOSCPacket>();
+		for (int ci = 0; ci < 8; ci++) {
+			messages.add(message(pack, "/mixer/ch/" + ci + "/gain").add(0.1f * ci));
+			messages.add(message(pack, "/mixer/ch/" + ci + "/mute").add(Boolean.FALSE));
+		}
+		messages.add(message(pack, "/synth/12/note").add(60).add(100).add(0.5f));
+		messages.add(message(pack, "/transport/play"));
+		return messages.toArray(new AbstractOSCPacket[messages.size()]);
+	}
+
+	private static AbstractOSCPacket createBlob(boolean pack) {
+		final byte[] blob = new byte[BLOB_SIZE];
+		for (int bi = 0; bi < blob.length; bi++) {
+			blob[bi] = (byte) bi;
+		}
+		return message(pack, "/sampler/1/buffer")
+				.add(1)
+				.add(blob)
+				.add(createTypedBlob('f', TYPED_BLOB_COUNT));
+	}
+
+	private static AbstractOSCPacket createBundle(boolean pack) {
+		final Date timestamp = new Date(System.currentTimeMillis() + 60000);
+		final OSCBundle nested = pack ? new OSCPackBundle(timestamp) : new OSCBundle(timestamp);
+		nested.add(message(pack, "/lights/1/rgb").add(255).add(128).add(0));
+		nested.add(message(pack, "/lights/2/rgb").add(0).add(128).add(255));
+
+		final OSCBundle bundle = pack ? new OSCPackBundle(timestamp) : new OSCBundle(timestamp);
+		for (int ci = 0; ci < 4; ci++) {
+			bundle.add(message(pack, "/mixer/ch/" + ci + "/gain").add(0.25f * ci));
+		}
+		bundle.add(nested);
+		bundle.add(message(pack, "/transport/position").add(12345L).add(1.5d));
+		return bundle;
+	}
+
+	/**
+	 * Creates a typed blob, ready to be written.
+	 * @param type one of 'i', 'h', 'f', 'd', 'q'
+	 * @param count number of items
+	 * @return the typed blob
+	 */
+	public static OSCTypedBlob createTypedBlob(char type, int count) {
+		final List<Object> items = new ArrayList<Object>(count);
+		for (int ii = 0; ii < count; ii++) {
+			switch (type) {
+				case 'i':
+					items.add(ii);
+					break;
+				case 'h':
+					items.add((long) ii);
+					break;
+				case 'f':
+				case 'q':
+					items.add(ii * 0.5f);
+					break;
+				case 'd':
+					items.add(ii * 0.5d);
+					break;
+				default:
+					throw new IllegalArgumentException("unknown type for typed blob: " + type);
+			}
+		}
+		return new OSCTypedBlob(type, items);
+	}
+
+	/**
+	 * Creates a typed blob from a primitive array, ready to be written.
+	 * Holds the same items as {@link #createTypedBlob(char, int)}.
+	 * @param type one of 'i', 'h', 'f', 'd', 'q'
+	 * @param count number of items
+	 * @return the typed blob
+	 */
+	public static OSCTypedBlob createTypedBlobFromArray(char type, int count) {
+		switch (type) {
+			case 'i':
+				final int[] ints = new int[count];
+				for (int ii = 0; ii < count; ii++) {
+					ints[ii] = ii;
+				}
+				return new OSCTypedBlob(ints);
+			case 'h':
+				final long[] longs = new long[count];
+				for (int ii = 0; ii < count; ii++) {
+					longs[ii] = ii;
+				}
+				return new OSCTypedBlob(longs);
+			case 'f':
+				final float[] floats = new float[count];
+				for (int ii = 0; ii < count; ii++) {
+					floats[ii] = ii * 0.5f;
+				}
+				return new OSCTypedBlob(floats);
+			case 'q':
+				final float[] quantized = new float[count];
+				for (int ii = 0; ii < count; ii++) {
+					quantized[ii] = ii * 0.5f;
+				}
+				return new OSCTypedBlob(quantized, 0.0f, count * 0.5f);
+			case 'd':
+				final double[] doubles = new double[count];
+				for (int ii = 0; ii < count; ii++) {
+					doubles[ii] = ii * 0.5d;
+				}
+				return new OSCTypedBlob(doubles);
+			default:
+				throw new IllegalArgumentException("unknown type for typed blob: " + type);
+		}
+	}
+
+	/**
+	 * Forgets the cached byte array of a packet and all packets within,
+	 * so the next {@link AbstractOSCPacket#getByteArray()} encodes everything again.
+	 * @param packet to be encoded again
+	 */
+	public static void contentChanged(AbstractOSCPacket packet) {
+		packet.contentChanged();
+		if (packet instanceof OSCBundle) {
+			for (final OSCPacket child : ((OSCBundle) packet).getPackets()) {
+				contentChanged((AbstractOSCPacket) child);
+			}
+		}
+	}
+
+	/**
+	 * Encodes the packets of a mix.
+	 * @param packets as created by {@link #create(String, boolean)}
+	 * @return the byte array of each packet
+	 */
+	public static byte[][] encode(AbstractOSCPacket[] packets) {
+		final byte[][] encoded = new byte[packets.length][];
+		for (int pi = 0; pi < packets.length; pi++) {
+			encoded[pi] = packets[pi].getByteArray();
+		}
+		return encoded;
+	}
+}//end class MessageMix
+//EOF
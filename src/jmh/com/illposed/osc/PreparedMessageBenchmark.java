@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc;
+
+import com.illposed.osc.utility.OSCJavaToByteBufferConverter;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures sending the same control message with new numbers,
+ * by changing the arguments of an {@link OSCMessage} and encoding it again,
+ * and by patching an {@link OSCPreparedMessage}.
+ * Both are written into a re-used buffer, like {@link OSCPortOut} does on a channel.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PreparedMessageBenchmark {
+
+	private OSCMessage message;
+	private OSCPreparedMessage prepared;
+	private OSCJavaToByteBufferConverter encoder;
+	private int note;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		message = new OSCMessage("/synth/12/note");
+		prepared = new OSCPreparedMessage("/synth/12/note", Arrays.<Object>asList(60, 100, 0.5f));
+		encoder = new OSCJavaToByteBufferConverter();
+	}
+
+	@Benchmark
+	public void encodeMessage(Blackhole blackhole) {
+		note = (note + 1) & 127;
+		message.clearArguments();
+		message.addInt(note).addInt(100).addFloat(0.5f);
+		encoder.clear();
+		message.writeTo(encoder);
+		blackhole.consume(encoder.toByteBuffer());
+	}
+
+	@Benchmark
+	public void patchPrepared(Blackhole blackhole) {
+		note = (note + 1) & 127;
+		prepared.setInt(0, note).setInt(1, 100).setFloat(2, 0.5f);
+		encoder.clear();
+		prepared.writeTo(encoder);
+		blackhole.consume(encoder.toByteBuffer());
+	}
+}//end class PreparedMessageBenchmark
+//EOF
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures encoding ({@link OSCTypedBlob#write()})
+ * and parsing of typed blobs,
+ * boxed through lists ({@link OSCTypedBlob#parseItems()})
+ * and in bulk through primitive arrays.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TypedBlobBenchmark {
+
+	@Param({"i", "h", "f", "d", "q"})
+	public char type;
+
+	@Param({"16", "1024"})
+	public int count;
+
+	private OSCTypedBlob toWrite;
+	private OSCTypedBlob arrayToWrite;
+	private byte[] written;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		toWrite = MessageMix.createTypedBlob(type, count);
+		arrayToWrite = MessageMix.createTypedBlobFromArray(type, count);
+		written = MessageMix.createTypedBlob(type, count).write();
+	}
+
+	@Benchmark
+	public byte[] write() {
+		return toWrite.write();
+	}
+
+	@Benchmark
+	public List<Object> parse() {
+		return new OSCTypedBlob(type, count, written).parseItems();
+	}
+
+	@Benchmark
+	public byte[] writeArray() {
+		return arrayToWrite.write();
+	}
+
+	@Benchmark
+	public Object parseArray() {
+		final OSCTypedBlob typedBlob = new OSCTypedBlob(type, count, written);
+		switch (type) {
+			case 'i':
+				return typedBlob.toIntArray();
+			case 'h':
+				return typedBlob.toLongArray();
+			case 'f':
+			case 'q':
+				return typedBlob.toFloatArray();
+			default:
+				return typedBlob.toDoubleArray();
+		}
+	}
+}//end class TypedBlobBenchmark
+//EOF
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc.utility;
+
+import com.illposed.osc.MessageMix;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures decoding received bytes into packets,
+ * with {@link OSCByteArrayToJavaConverter}, {@link OSCByteBufferToJavaConverter}
+ * (eager and lazy) and {@link OSCPackByteArrayToJavaConverter}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecodeBenchmark {
+
+	@Param({MessageMix.CONTROL, MessageMix.BLOB, MessageMix.BUNDLE})
+	public String mix;
+
+	private byte[][] encoded;
+	private ByteBuffer[] buffers;
+	private byte[][] packEncoded;
+	private OSCByteArrayToJavaConverter arrayConverter;
+	private OSCByteBufferToJavaConverter bufferConverter;
+	private OSCByteBufferToJavaConverter lazyConverter;
+	private OSCPackByteArrayToJavaConverter packConverter;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		encoded = MessageMix.encode(MessageMix.create(mix, false));
+		packEncoded = MessageMix.encode(MessageMix.create(mix, true));
+		buffers = new ByteBuffer[encoded.length];
+		for (int pi = 0; pi < encoded.length; pi++) {
+			buffers[pi] = ByteBuffer.wrap(encoded[pi]);
+		}
+		arrayConverter = new OSCByteArrayToJavaConverter();
+		bufferConverter = new OSCByteBufferToJavaConverter();
+		lazyConverter = new OSCByteBufferToJavaConverter();
+		lazyConverter.setLazy(true);
+		packConverter = new OSCPackByteArrayToJavaConverter();
+	}
+
+	@Benchmark
+	public void byteArray(Blackhole blackhole) {
+		for (final byte[] bytes : encoded) {
+			blackhole.consume(arrayConverter.convert(bytes, bytes.length));
+		}
+	}
+
+	@Benchmark
+	public void byteBuffer(Blackhole blackhole) {
+		for (final ByteBuffer buffer : buffers) {
+			buffer.clear();
+			blackhole.consume(bufferConverter.convert(buffer));
+		}
+	}
+
+	/** Like a listener that filters by address, and never looks at the arguments. */
+	@Benchmark
+	public void byteBufferLazy(Blackhole blackhole) {
+		for (final ByteBuffer buffer : buffers) {
+			buffer.clear();
+			blackhole.consume(lazyConverter.convert(buffer));
+		}
+	}
+
+	@Benchmark
+	public void pack(Blackhole blackhole) {
+		for (final byte[] bytes : packEncoded) {
+			blackhole.consume(packConverter.convert(bytes, bytes.length));
+		}
+	}
+}//end class DecodeBenchmark
+//EOF
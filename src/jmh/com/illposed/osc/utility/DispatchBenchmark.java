@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc.utility;
+
+import com.illposed.osc.MessageMix;
+import com.illposed.osc.OSCListener;
+import com.illposed.osc.OSCMessage;
+import com.illposed.osc.OSCPacket;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures {@link OSCPacketDispatcher#dispatchPacket(OSCPacket)},
+ * with the linear, shortcut and trie dispatchers,
+ * and a few hundred registered listeners, fixed addresses and patterns.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+
+	@Param({"linear", "shortcut", "trie"})
+	public String dispatcherType;
+
+	@Param({MessageMix.CONTROL, MessageMix.BUNDLE})
+	public String mix;
+
+	@Param({"256"})
+	public int numChannels;
+
+	private OSCPacketDispatcher dispatcher;
+	private OSCPacket[] packets;
+
+	private static OSCPacketDispatcher createDispatcher(String type) {
+		if ("linear".equals(type)) {
+			return new OSCPacketDispatcher();
+		} else if ("shortcut".equals(type)) {
+			return new OSCShortcutPacketDispatcher();
+		} else if ("trie".equals(type)) {
+			return new OSCTriePacketDispatcher();
+		}
+		throw new IllegalArgumentException("unknown dispatcher: " + type);
+	}
+
+	@Setup(Level.Trial)
+	public void setUp(final Blackhole blackhole) {
+		dispatcher = createDispatcher(dispatcherType);
+		final OSCListener listener = new OSCListener() {
+			@Override
+			public void acceptMessage(Date time, OSCMessage message) {
+				blackhole.consume(message);
+			}
+		};
+		for (int ci = 0; ci < numChannels; ci++) {
+			dispatcher.addListener(new OSCPatternAddressSelector("/mixer/ch/" + ci + "/gain"), listener);
+			dispatcher.addListener(new OSCPatternAddressSelector("/mixer/ch/" + ci + "/pan"), listener);
+		}
+		dispatcher.addListener(new OSCPatternAddressSelector("/mixer/ch/*/mute"), listener);
+		dispatcher.addListener(new OSCPatternAddressSelector("/synth/*/note"), listener);
+		dispatcher.addListener(new OSCPatternAddressSelector("/lights/[0-9]/rgb"), listener);
+		dispatcher.addListener(new OSCPatternAddressSelector("/transport/{play,stop,position}"), listener);
+		dispatcher.addListener(new OSCPatternAddressSelector("//meter"), listener);
+
+		packets = MessageMix.create(mix, false);
+	}
+
+	@Benchmark
+	public void dispatchPacket() {
+		for (final OSCPacket packet : packets) {
+			dispatcher.dispatchPacket(packet);
+		}
+	}
+}//end class DispatchBenchmark
+//EOF
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc.utility;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link OSCPatternAddressSelector#matches(String)},
+ * for each kind of pattern, against an address that matches
+ * and one that does not.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatchBenchmark {
+
+	@Param({
+		"/mixer/ch/12/gain",
+		"/mixer/ch/*/gain",
+		"/mixer/ch/?2/gain",
+		"/mixer/ch/[0-9][0-9]/gain",
+		"/mixer/ch/{11,12,13}/gain",
+		"//gain"
+	})
+	public String pattern;
+
+	public String matching = "/mixer/ch/12/gain";
+	public String notMatching = "/mixer/ch/12/pan";
+
+	private OSCPatternAddressSelector selector;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		selector = new OSCPatternAddressSelector(pattern);
+		if (!selector.matches(matching) || selector.matches(notMatching)) {
+			throw new IllegalStateException("pattern does not work as expected: " + pattern);
+		}
+	}
+
+	@Benchmark
+	public boolean match() {
+		return selector.matches(matching);
+	}
+
+	@Benchmark
+	public boolean noMatch() {
+		return selector.matches(notMatching);
+	}
+}//end class MatchBenchmark
+//EOF
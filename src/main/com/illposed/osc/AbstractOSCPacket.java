@@ -11,6 +11,7 @@ package com.illposed.osc;
 
 import com.illposed.osc.utility.JavaToByteArrayConverter;
 import com.illposed.osc.utility.OSCJavaToByteArrayConverter;
+import com.illposed.osc.utility.OSCJavaToByteBufferConverter;
 import java.nio.charset.Charset;
 
 /**
@@ -66,6 +67,30 @@ public abstract class AbstractOSCPacket implements OSCPacket {
 		return byteArray;
 	}
 
+	/**
+	 * Returns the size of the byte stream of this packet,
+	 * as {@link #getByteArray()} would return it.
+	 * Plain OSC messages and bundles compute it without encoding,
+	 * other packets may need to encode themselves to find out.
+	 * @return the encoded size in bytes
+	 */
+	public int computeSize() {
+		return getByteArray().length;
+	}
+
+	/**
+	 * Returns the encoded size of any packet,
+	 * computing it where possible, encoding it otherwise.
+	 * @param packet of this library, or an other implementation
+	 * @return the encoded size in bytes
+	 */
+	static int computeSize(OSCPacket packet) {
+		if (packet instanceof AbstractOSCPacket) {
+			return ((AbstractOSCPacket) packet).computeSize();
+		}
+		return packet.getByteArray().length;
+	}
+
 	protected void contentChanged() {
 		byteArray = null;
 	}
@@ -112,10 +137,68 @@ public abstract class AbstractOSCPacket implements OSCPacket {
 
 	/**
 	 * Produces a byte array representation of this packet.
-	 * The exending class must define this method.
 	 * @param stream where to write the arguments to
 	 * @return the OSC or OSCPack specification conform byte array representation of this packet
 	 */
-	protected abstract byte[] computeByteArray(JavaToByteArrayConverter stream);
+	protected byte[] computeByteArray(JavaToByteArrayConverter stream) {
+		writeContent(stream);
+		return stream.toByteArray();
+	}
+
+	/**
+	 * Writes the byte stream representation of this packet to the given converter.
+	 * The exending class must define this method.
+	 * @param stream where to write the packet to
+	 */
+	protected abstract void writeContent(JavaToByteArrayConverter stream);
+
+	/**
+	 * Whether {@link #writeContent} writes the OSCPack byte stream format
+	 * instead of plain OSC.
+	 * @return false for plain OSC packets
+	 */
+	protected boolean isPacked() {
+		return false;
+	}
+
+	/**
+	 * Writes this packet as an element of a bundle, prefixed by its size.
+	 * If the byte array of this packet was not computed yet,
+	 * and the bundle uses the same byte stream format,
+	 * the packet is written right into the stream of the bundle,
+	 * and its size is filled in afterwards.
+	 * Otherwise, the result of {@link #getByteArray()} is copied.
+	 * @param stream where the bundle is written to
+	 * @param packed whether the bundle is written as OSCPack
+	 */
+	protected void writeElement(JavaToByteArrayConverter stream, boolean packed) {
+		if (byteArray == null && packed == isPacked()) {
+			final Charset bundleCharset = stream.getCharset();
+			stream.setCharset(charset);
+			final int mark = stream.beginBundleElement();
+			writeContent(stream);
+			stream.endBundleElement(mark);
+			stream.setCharset(bundleCharset);
+		} else {
+			stream.write(getByteArray());
+		}
+	}
+
+	/**
+	 * Writes the OSC byte stream of this packet into a buffer converter,
+	 * without creating an intermediate byte array.
+	 * If the byte array of this packet was already computed, it is copied as it is.
+	 * Packets using a different byte stream format (OSCPack) override this
+	 * to copy the result of {@link #getByteArray()}.
+	 * @param stream where to write the packet to
+	 */
+	public void writeTo(OSCJavaToByteBufferConverter stream) {
+		if (byteArray != null) {
+			stream.writeRaw(byteArray);
+		} else {
+			stream.setCharset(charset);
+			writeContent(stream);
+		}
+	}
 }//end class AbstractOSCPacket
 //EOF
@@ -0,0 +1,379 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc;
+
+import com.illposed.osc.utility.JavaToByteArrayConverter;
+import com.illposed.osc.utility.TypeRegistry;
+import com.illposed.osc.utility.TypeSignature;
+
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * The arguments of an {@link OSCMessage}, stored without boxing.
+ *
+ * Each argument has a type tag byte.
+ * Numbers ('i', 'h', 'f', 'd') are kept in a <code>long</code> slot,
+ * booleans and nil ('T', 'F', 'N') only by their type tag.
+ * All other arguments (strings, blobs, arrays, ...) are references,
+ * kept in a side table that is only allocated once the first one is added.
+ * The {@link TypeSignature} is remembered until the arguments change.
+ *
+ * The typed accessors ({@link #addInt(int)}, {@link #getFloat(int)}, ...)
+ * never box. The {@link java.util.List} view boxes numbers on each
+ * {@link #get(int)}, and unboxes them again on {@link #add(Object)}.
+ *
+ * @author Thomas Brand
+ */
+public class OSCArguments extends AbstractList<Object> implements RandomAccess {
+
+	/** type tag of arguments kept in the reference side table */
+	public static final byte REFERENCE = 0;
+
+	private static final int DEFAULT_CAPACITY = 4;
+
+	private byte[] types;
+	private long[] slots;
+	private Object[] references;
+	private int size;
+	/** remembered until the arguments change, <code>null</code> if unknown */
+	private TypeSignature signature;
+
+	//
+	public OSCArguments() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity number of arguments to make room for
+	 */
+	public OSCArguments(int capacity) {
+		this.types = new byte[capacity];
+		this.slots = new long[capacity];
+		this.references = null;
+		this.size = 0;
+	}
+
+	/**
+	 * @param arguments to be copied, unboxing numbers
+	 */
+	public OSCArguments(Collection<Object> arguments) {
+		this(Math.max(DEFAULT_CAPACITY, arguments.size()));
+		addAll(arguments);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * The type tag an argument is stored as.
+	 * @param index of the argument
+	 * @return one of 'i', 'h', 'f', 'd', 'T', 'F', 'N',
+	 *   or {@link #REFERENCE} if the argument is kept as an object
+	 */
+	public byte getTypeTag(int index) {
+		checkIndex(index);
+		return types[index];
+	}
+
+	/**
+	 * The type tags of all arguments, encoded.
+	 * @return the shared signature of these arguments
+	 */
+	public TypeSignature getTypeSignature() {
+		TypeSignature known = signature;
+		if (known == null) {
+			known = TypeSignature.lookup(this);
+			// arrays may change without us knowing
+			if (!known.isNested()) {
+				signature = known;
+			}
+		}
+		return known;
+	}
+
+	/**
+	 * Returns an argument, boxing numbers.
+	 * @param index of the argument
+	 * @return the argument, as it was added
+	 */
+	@Override
+	public Object get(int index) {
+		checkIndex(index);
+		switch (types[index]) {
+			case 'i':
+				return Integer.valueOf((int) slots[index]);
+			case 'h':
+				return Long.valueOf(slots[index]);
+			case 'f':
+				return Float.valueOf(Float.intBitsToFloat((int) slots[index]));
+			case 'd':
+				return Double.valueOf(Double.longBitsToDouble(slots[index]));
+			case 'T':
+				return Boolean.TRUE;
+			case 'F':
+				return Boolean.FALSE;
+			case 'N':
+				return null;
+			default:
+				return references[index];
+		}
+	}
+
+	//
+	public int getInt(int index) {
+		return (int) getSlot(index, 'i');
+	}
+
+	//
+	public long getLong(int index) {
+		return getSlot(index, 'h');
+	}
+
+	//
+	public float getFloat(int index) {
+		return Float.intBitsToFloat((int) getSlot(index, 'f'));
+	}
+
+	//
+	public double getDouble(int index) {
+		return Double.longBitsToDouble(getSlot(index, 'd'));
+	}
+
+	private long getSlot(int index, char type) {
+		checkIndex(index);
+		if (types[index] != type) {
+			throw new ClassCastException("argument " + index + " is not of type '" + type
+					+ "' but " + describe(types[index]));
+		}
+		return slots[index];
+	}
+
+	private static String describe(byte type) {
+		return (type == REFERENCE) ? "an object" : ("of type '" + (char) type + "'");
+	}
+
+	//
+	public void addInt(int value) {
+		insert(size, (byte) 'i', value, null);
+	}
+
+	//
+	public void addLong(long value) {
+		insert(size, (byte) 'h', value, null);
+	}
+
+	//
+	public void addFloat(float value) {
+		insert(size, (byte) 'f', Float.floatToRawIntBits(value), null);
+	}
+
+	//
+	public void addDouble(double value) {
+		insert(size, (byte) 'd', Double.doubleToRawLongBits(value), null);
+	}
+
+	@Override
+	public boolean add(Object argument) {
+		add(size, argument);
+		return true;
+	}
+
+	@Override
+	public void add(int index, Object argument) {
+		if (index < 0 || index > size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		final byte type = typeOf(argument);
+		insert(index, type, slotOf(type, argument), (type == REFERENCE) ? argument : null);
+	}
+
+	@Override
+	public Object set(int index, Object argument) {
+		final Object previous = get(index);
+		final byte type = typeOf(argument);
+		types[index] = type;
+		slots[index] = slotOf(type, argument);
+		if (type == REFERENCE) {
+			ensureReferences();
+			references[index] = argument;
+		} else if (references != null) {
+			references[index] = null;
+		}
+		signature = null;
+		return previous;
+	}
+
+	@Override
+	public Object remove(int index) {
+		final Object previous = get(index);
+		final int moved = size - index - 1;
+		System.arraycopy(types, index + 1, types, index, moved);
+		System.arraycopy(slots, index + 1, slots, index, moved);
+		if (references != null) {
+			System.arraycopy(references, index + 1, references, index, moved);
+			references[size - 1] = null;
+		}
+		size--;
+		modCount++;
+		signature = null;
+		return previous;
+	}
+
+	@Override
+	public void clear() {
+		if (references != null) {
+			Arrays.fill(references, 0, size, null);
+		}
+		size = 0;
+		modCount++;
+		signature = null;
+	}
+
+	/**
+	 * The number of bytes {@link #writeTo} writes in plain OSC, without encoding.
+	 * @param charset used to encode strings
+	 * @return the encoded size of all argument values
+	 */
+	public int computeSize(Charset charset) {
+		int bytes = 0;
+		for (int ai = 0; ai < size; ai++) {
+			switch (types[ai]) {
+				case 'i':
+				case 'f':
+					bytes += 4;
+					break;
+				case 'h':
+				case 'd':
+					bytes += 8;
+					break;
+				case 'T':
+				case 'F':
+				case 'N':
+					// no data
+					break;
+				default:
+					bytes += TypeRegistry.getSize(references[ai], charset);
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * Writes the values of all arguments, without boxing numbers.
+	 * @param stream where to write the arguments to
+	 */
+	public void writeTo(JavaToByteArrayConverter stream) {
+		for (int ai = 0; ai < size; ai++) {
+			switch (types[ai]) {
+				case 'i':
+					stream.write((int) slots[ai]);
+					break;
+				case 'h':
+					stream.write(slots[ai]);
+					break;
+				case 'f':
+					stream.write(Float.intBitsToFloat((int) slots[ai]));
+					break;
+				case 'd':
+					stream.write(Double.longBitsToDouble(slots[ai]));
+					break;
+				case 'T':
+				case 'F':
+				case 'N':
+					// no data
+					break;
+				default:
+					stream.write(references[ai]);
+			}
+		}
+	}
+
+	private static byte typeOf(Object argument) {
+		if (argument == null) {
+			return 'N';
+		} else if (argument instanceof Integer) {
+			return 'i';
+		} else if (argument instanceof Float) {
+			return 'f';
+		} else if (argument instanceof Long) {
+			return 'h';
+		} else if (argument instanceof Double) {
+			return 'd';
+		} else if (Boolean.TRUE.equals(argument)) {
+			return 'T';
+		} else if (Boolean.FALSE.equals(argument)) {
+			return 'F';
+		}
+		return REFERENCE;
+	}
+
+	private static long slotOf(byte type, Object argument) {
+		switch (type) {
+			case 'i':
+				return ((Integer) argument).intValue();
+			case 'h':
+				return ((Long) argument).longValue();
+			case 'f':
+				return Float.floatToRawIntBits(((Float) argument).floatValue());
+			case 'd':
+				return Double.doubleToRawLongBits(((Double) argument).doubleValue());
+			default:
+				return 0L;
+		}
+	}
+
+	private void insert(int index, byte type, long slot, Object reference) {
+		if (size == types.length) {
+			final int capacity = Math.max(DEFAULT_CAPACITY, size * 2);
+			types = Arrays.copyOf(types, capacity);
+			slots = Arrays.copyOf(slots, capacity);
+			if (references != null) {
+				references = Arrays.copyOf(references, capacity);
+			}
+		}
+		final int moved = size - index;
+		if (moved > 0) {
+			System.arraycopy(types, index, types, index + 1, moved);
+			System.arraycopy(slots, index, slots, index + 1, moved);
+			if (references != null) {
+				System.arraycopy(references, index, references, index + 1, moved);
+			}
+		}
+		types[index] = type;
+		slots[index] = slot;
+		if (reference != null) {
+			ensureReferences();
+		}
+		if (references != null) {
+			references[index] = reference;
+		}
+		size++;
+		modCount++;
+		signature = null;
+	}
+
+	private void ensureReferences() {
+		if (references == null) {
+			references = new Object[types.length];
+		}
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+}//end class OSCArguments
+//EOF
@@ -0,0 +1,465 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc;
+
+import com.illposed.osc.utility.OSCMetrics;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An OSCPortOut that encodes and sends packets on its own I/O thread,
+ * so the threads calling {@link #send(OSCPacket)} never wait for the socket.
+ *
+ * Packets are put into a bounded queue, a ring buffer
+ * where each slot carries a sequence number telling whether it is free,
+ * so queuing a packet never takes a lock.
+ * What happens when the queue is full is decided by the {@link OverflowPolicy}.
+ * {@link #sendAsync(OSCPacket)} returns a future that completes
+ * when the packet was sent; it is cancelled if the packet is dropped,
+ * and fails with the <code>IOException</code> if sending failed.
+ *
+ * The metrics of this port report the number of queued packets as queue depth,
+ * dropped and failed packets as dropped,
+ * and the time from queuing until sent as send latency.
+ *
+ * Usage:
+ * <blockquote><pre>{@code
+ * OSCAsyncPortOut sender = new OSCAsyncPortOut(address, port, 1024, OverflowPolicy.DROP_OLDEST);
+ * sender.send(message); // returns at once
+ * }</pre></blockquote>
+ *
+ * Packets are encoded on the I/O thread,
+ * so they must not be changed after handing them to {@link #send(OSCPacket)}.
+ * {@link #close()} sends the packets still in the queue before closing the socket.
+ *
+ * @author Thomas Brand
+ */
+public class OSCAsyncPortOut extends OSCPortOut {
+
+	/**
+	 * What to do with a packet when the queue is full.
+	 */
+	public enum OverflowPolicy {
+		/** Wait until there is room in the queue. */
+		BLOCK,
+		/** Drop the packet that is to be queued. */
+		DROP_NEWEST,
+		/** Drop the packet that has been waiting longest, to make room. */
+		DROP_OLDEST,
+		/**
+		 * A message replaces a message to the same address that is still waiting,
+		 * in its place in the queue, whether the queue is full or not.
+		 * If there is none and the queue is full, the message is dropped.
+		 */
+		REPLACE
+	}
+
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	/** How long the I/O thread sleeps at most, when there is nothing to send. */
+	private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+	/** How long a blocked sender sleeps, before it checks again for room in the queue. */
+	private static final long BLOCKED_NANOS = TimeUnit.MICROSECONDS.toNanos(20);
+	/** How long {@link #close()} waits for the queued packets to be sent. */
+	private static final long CLOSE_TIMEOUT_MILLIS = 1000;
+
+	/** A packet that waits to be sent, and the future telling when it was. */
+	private final class Task extends FutureTask<Void> {
+
+		private final long queuedNanos;
+
+		Task(final OSCPacket packet) {
+			super(new Callable<Void>() {
+				@Override
+				public Void call() throws IOException {
+					sendNow(packet);
+					return null;
+				}
+			});
+			this.queuedNanos = System.nanoTime();
+		}
+	}
+
+	/**
+	 * A place in the queue, holding the task that is to be sent there.
+	 * With {@link OverflowPolicy#REPLACE}, the task may be replaced while waiting.
+	 */
+	private final class Entry extends AtomicReference<Task> {
+
+		private static final long serialVersionUID = 1L;
+
+		/** the address of a message, if it may be replaced */
+		private final String address;
+
+		Entry(Task task, String address) {
+			super(task);
+			this.address = address;
+		}
+
+		/**
+		 * Takes the task out, so it can no longer be replaced.
+		 * @return the task, or <code>null</code> if it was taken already
+		 */
+		Task take() {
+			final Task task = getAndSet(null);
+			if (address != null) {
+				replaceable.remove(address, this);
+			}
+			return task;
+		}
+	}
+
+	private final OverflowPolicy overflowPolicy;
+	private final int mask;
+	private final AtomicReferenceArray<Entry> entries;
+	private final AtomicLongArray sequences;
+	/** next slot to be filled */
+	private final AtomicLong tail;
+	/** next slot to be taken */
+	private final AtomicLong head;
+	/** messages waiting in the queue by address, with {@link OverflowPolicy#REPLACE} */
+	private final ConcurrentMap<String, Entry> replaceable;
+	private final Thread sender;
+	private volatile boolean running;
+	/** set when the queue was emptied after sending stopped */
+	private volatile boolean closed;
+	/** whether the I/O thread is about to sleep, and needs to be woken up */
+	private volatile boolean idle;
+
+	/**
+	 * Create a port that sends asynchronously to address:port using a specified socket.
+	 * @param address the UDP address to send to
+	 * @param port the UDP port to send to
+	 * @param socket the DatagramSocket to send from
+	 * @param capacity how many packets may be waiting, rounded up to a power of two
+	 * @param overflowPolicy what to do with packets when the queue is full
+	 */
+	public OSCAsyncPortOut(InetAddress address, int port, DatagramSocket socket,
+			int capacity, OverflowPolicy overflowPolicy)
+	{
+		super(address, port, socket);
+
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be at least 1");
+		}
+		int size = 1;
+		while (size < capacity) {
+			size <<= 1;
+		}
+		this.overflowPolicy = overflowPolicy;
+		this.mask = size - 1;
+		this.entries = new AtomicReferenceArray<Entry>(size);
+		this.sequences = new AtomicLongArray(size);
+		for (int si = 0; si < size; si++) {
+			sequences.set(si, si);
+		}
+		this.tail = new AtomicLong();
+		this.head = new AtomicLong();
+		this.replaceable = new ConcurrentHashMap<String, Entry>();
+		metrics.setQueueDepth(new OSCMetrics.Gauge() {
+			@Override
+			public long getValue() {
+				return getQueueDepth();
+			}
+		});
+
+		this.running = true;
+		this.sender = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				sendQueued();
+			}
+		}, "OSCAsyncPortOut");
+		// The JVM exits when the only threads running are all daemon threads.
+		sender.setDaemon(true);
+		sender.start();
+	}
+
+	/**
+	 * Create a port that sends asynchronously to address:port using a specified channel.
+	 * @param address the UDP address to send to
+	 * @param port the UDP port to send to
+	 * @param channel the DatagramChannel to send from
+	 * @param capacity how many packets may be waiting, rounded up to a power of two
+	 * @param overflowPolicy what to do with packets when the queue is full
+	 */
+	public OSCAsyncPortOut(InetAddress address, int port, DatagramChannel channel,
+			int capacity, OverflowPolicy overflowPolicy)
+	{
+		this(address, port, channel.socket(), capacity, overflowPolicy);
+	}
+
+	/**
+	 * Create a port that sends asynchronously to address:port,
+	 * with a queue of {@link #DEFAULT_CAPACITY} packets that drops the newest when full.
+	 * @param address the UDP address to send to
+	 * @param port the UDP port to send to
+	 * @throws SocketException when failing to create a (UDP) out socket
+	 */
+	public OSCAsyncPortOut(InetAddress address, int port) throws SocketException {
+		this(address, port, new DatagramSocket(), DEFAULT_CAPACITY, OverflowPolicy.DROP_NEWEST);
+	}
+
+	/**
+	 * Queues a packet to be sent, see {@link #sendAsync(OSCPacket)}.
+	 * @param aPacket the bundle or message to send
+	 */
+	@Override
+	public void send(OSCPacket aPacket) {
+		sendAsync(aPacket);
+	}
+
+	/**
+	 * Queues a packet to be sent by the I/O thread.
+	 * With {@link OverflowPolicy#BLOCK}, this waits while the queue is full;
+	 * if the calling thread is interrupted meanwhile, the packet is dropped.
+	 * @param aPacket the bundle or message to send
+	 * @return completes when the packet was sent,
+	 *   is cancelled when it was dropped or replaced,
+	 *   and fails if it could not be sent
+	 * @throws IllegalStateException if this port was closed
+	 */
+	public Future<Void> sendAsync(OSCPacket aPacket) {
+		if (!running) {
+			throw new IllegalStateException("port is closed");
+		}
+		final Task task = new Task(aPacket);
+		String address = null;
+		if (overflowPolicy == OverflowPolicy.REPLACE && aPacket instanceof OSCMessage) {
+			address = ((OSCMessage) aPacket).getAddress();
+			if (replace(address, task)) {
+				return task;
+			}
+		}
+
+		final Entry entry = new Entry(task, address);
+		if (address != null) {
+			// published before queuing, as the I/O thread may take it right away
+			replaceable.put(address, entry);
+		}
+		while (!offer(entry)) {
+			if (!makeRoom()) {
+				if (address != null) {
+					replaceable.remove(address, entry);
+				}
+				// another sender may have replaced the task meanwhile
+				final Task dropped = entry.getAndSet(null);
+				if (dropped != null) {
+					drop(dropped);
+				}
+				return task;
+			}
+		}
+		if (closed) {
+			// queued after close() emptied the queue for the last time
+			dropQueued();
+		} else if (idle) {
+			LockSupport.unpark(sender);
+		}
+		return task;
+	}
+
+	/**
+	 * Puts a task in the place of a waiting message to the same address.
+	 * @return whether there was a message to replace
+	 */
+	private boolean replace(String address, Task task) {
+		final Entry waiting = replaceable.get(address);
+		if (waiting == null) {
+			return false;
+		}
+		Task replaced = waiting.get();
+		while (replaced != null) {
+			if (waiting.compareAndSet(replaced, task)) {
+				drop(replaced);
+				return true;
+			}
+			replaced = waiting.get();
+		}
+		// taken by the I/O thread meanwhile
+		return false;
+	}
+
+	/**
+	 * Called when the queue is full.
+	 * @return whether to try again to queue the packet
+	 */
+	private boolean makeRoom() {
+		switch (overflowPolicy) {
+			case BLOCK:
+				if (!running || Thread.currentThread().isInterrupted()) {
+					return false;
+				}
+				LockSupport.parkNanos(BLOCKED_NANOS);
+				return true;
+			case DROP_OLDEST:
+				final Entry oldest = poll();
+				if (oldest != null) {
+					final Task task = oldest.take();
+					if (task != null) {
+						drop(task);
+					}
+				}
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	private void drop(Task task) {
+		task.cancel(false);
+		metrics.packetDropped();
+	}
+
+	private boolean offer(Entry entry) {
+		long position = tail.get();
+		while (true) {
+			final int index = (int) position & mask;
+			final long difference = sequences.get(index) - position;
+			if (difference == 0) {
+				if (tail.compareAndSet(position, position + 1)) {
+					entries.set(index, entry);
+					sequences.set(index, position + 1);
+					return true;
+				}
+			} else if (difference < 0) {
+				// the slot was not taken yet, the queue is full
+				return false;
+			}
+			position = tail.get();
+		}
+	}
+
+	/**
+	 * Takes the oldest entry out of the queue,
+	 * by the I/O thread, or by a sender dropping it.
+	 * @return the entry, or <code>null</code> if the queue is empty
+	 */
+	private Entry poll() {
+		long position = head.get();
+		while (true) {
+			final int index = (int) position & mask;
+			final long difference = sequences.get(index) - (position + 1);
+			if (difference == 0) {
+				if (head.compareAndSet(position, position + 1)) {
+					final Entry entry = entries.get(index);
+					entries.set(index, null);
+					sequences.set(index, position + mask + 1);
+					return entry;
+				}
+			} else if (difference < 0) {
+				// the slot was not filled yet, the queue is empty
+				return null;
+			}
+			position = head.get();
+		}
+	}
+
+	//encode and send one packet, on the I/O thread
+	private void sendNow(OSCPacket packet) throws IOException {
+		try {
+			super.send(packet);
+		} catch (IOException ex) {
+			metrics.packetDropped();
+			throw ex;
+		} catch (RuntimeException ex) {
+			metrics.packetDropped();
+			throw ex;
+		}
+	}
+
+	private void sendQueued() {
+		while (true) {
+			final Entry entry = poll();
+			if (entry == null) {
+				if (!running) {
+					return;
+				}
+				idle = true;
+				if (getQueueDepth() == 0 && running) {
+					LockSupport.parkNanos(IDLE_NANOS);
+				}
+				idle = false;
+				continue;
+			}
+			final Task task = entry.take();
+			if (task != null) {
+				task.run();
+				metrics.queuedPacketSent(System.nanoTime() - task.queuedNanos);
+			}
+		}
+	}
+
+	/**
+	 * Number of packets waiting to be sent.
+	 * @return the number of queued packets
+	 */
+	public int getQueueDepth() {
+		return (int) Math.max(0, tail.get() - head.get());
+	}
+
+	/**
+	 * Returns how many packets the queue can hold.
+	 * @return the capacity, a power of two
+	 */
+	public int getCapacity() {
+		return mask + 1;
+	}
+
+	//
+	public OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+
+	/**
+	 * Stops accepting packets, waits a while for the queued ones to be sent,
+	 * and closes the socket.
+	 * Packets that could not be sent in time are dropped.
+	 */
+	@Override
+	public void close() {
+		running = false;
+		LockSupport.unpark(sender);
+		try {
+			sender.join(CLOSE_TIMEOUT_MILLIS);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		super.close();
+		// senders that passed the check of running before, drop their packets themselves
+		closed = true;
+		dropQueued();
+	}
+
+	private void dropQueued() {
+		Entry entry;
+		while ((entry = poll()) != null) {
+			final Task task = entry.take();
+			if (task != null) {
+				drop(task);
+			}
+		}
+	}
+}//end class OSCAsyncPortOut
+//EOF
@@ -0,0 +1,299 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc;
+
+import com.illposed.osc.utility.Flusher;
+import com.illposed.osc.utility.OSCPatternAddressSelector;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An OSCPortOut that sends packets in batches, as one bundle per datagram,
+ * instead of one datagram per packet.
+ *
+ * A batch is started by the first packet that is sent, and collects
+ * all packets sent after it, until either the batch window has passed
+ * since it was started, or the next packet would make it bigger
+ * than the maximum batch size.
+ * Then it is sent as a bundle with the time-tag "immediately",
+ * or as the packet itself if it contains only one.
+ * So during bursts, many small messages share one datagram,
+ * while a single message is delayed by at most the batch window.
+ *
+ * Messages to urgent addresses bypass the batch and are sent right away,
+ * see {@link #addUrgentAddress(AddressSelector)}.
+ * The number of packets per batch is recorded in the metrics of this port,
+ * see {@link com.illposed.osc.utility.OSCMetrics#getBatchSize()}.
+ *
+ * Usage:
+ * <blockquote><pre>{@code
+ * OSCBatchingPortOut sender = new OSCBatchingPortOut(address, port);
+ * sender.setBatchWindow(2, TimeUnit.MILLISECONDS);
+ * sender.addUrgentAddress("/transport/*");
+ * sender.send(message); // returns at once, sent within 2 ms
+ * }</pre></blockquote>
+ *
+ * Batches are sent from a shared daemon thread when their window ends,
+ * and from the sending thread when they are full,
+ * so sending a packet may block for the time it takes to send a batch.
+ * If sending fails on the daemon thread, the batch is counted as dropped.
+ * Call {@link #flush()} to send the current batch right away,
+ * {@link #close()} does so as well.
+ * Packets are encoded when their batch is sent,
+ * so they must not be changed after handing them to {@link #send(OSCPacket)}.
+ *
+ * @author Thomas Brand
+ */
+public class OSCBatchingPortOut extends OSCPortOut {
+
+	/** The default batch window, in micro-seconds. */
+	public static final long DEFAULT_BATCH_WINDOW_MICROS = 1000;
+
+	/** Bytes of an empty bundle: "#bundle" and the time-tag. */
+	private static final int BUNDLE_HEADER_SIZE = 16;
+	/** Bytes in front of each packet of a bundle: its size. */
+	private static final int ELEMENT_OVERHEAD = 4;
+
+	private final Object lock = new Object();
+	private final List<AddressSelector> urgentAddresses;
+	private long batchWindowNanos;
+	private int maxBatchSize;
+	/** packets of the current batch */
+	private List<OSCPacket> batch;
+	/** the size of the current batch as bundle */
+	private int batchBytes;
+	/** tells batches apart, so a window does not end a later batch */
+	private long batchNumber;
+
+	/**
+	 * Create a port that sends batches to address:port using a specified socket.
+	 * @param address the UDP address to send to
+	 * @param port the UDP port to send to
+	 * @param socket the DatagramSocket to send from
+	 */
+	public OSCBatchingPortOut(InetAddress address, int port, DatagramSocket socket) {
+		super(address, port, socket);
+
+		this.urgentAddresses = new CopyOnWriteArrayList<AddressSelector>();
+		this.batchWindowNanos = TimeUnit.MICROSECONDS.toNanos(DEFAULT_BATCH_WINDOW_MICROS);
+		this.maxBatchSize = ETHERNET_MAX_PACKET_SIZE;
+		this.batch = new ArrayList<OSCPacket>();
+		this.batchBytes = BUNDLE_HEADER_SIZE;
+		this.batchNumber = 0;
+	}
+
+	/**
+	 * Create a port that sends batches to address:port using a specified channel.
+	 * @param address the UDP address to send to
+	 * @param port the UDP port to send to
+	 * @param channel the DatagramChannel to send from
+	 */
+	public OSCBatchingPortOut(InetAddress address, int port, DatagramChannel channel) {
+		this(address, port, channel.socket());
+	}
+
+	/**
+	 * Create a port that sends batches to address:port.
+	 * @param address the UDP address to send to
+	 * @param port the UDP port to send to
+	 * @throws SocketException when failing to create a (UDP) out socket
+	 */
+	public OSCBatchingPortOut(InetAddress address, int port) throws SocketException {
+		this(address, port, new DatagramSocket());
+	}
+
+	/**
+	 * Sets how long a batch collects packets, at most.
+	 * Applies to batches started afterwards.
+	 * @param window the longest time a packet waits in a batch
+	 * @param unit the unit of the window
+	 */
+	public void setBatchWindow(long window, TimeUnit unit) {
+		if (window < 0) {
+			throw new IllegalArgumentException("batch window may not be negative: " + window);
+		}
+		synchronized (lock) {
+			this.batchWindowNanos = unit.toNanos(window);
+		}
+	}
+
+	//
+	public long getBatchWindow(TimeUnit unit) {
+		synchronized (lock) {
+			return unit.convert(batchWindowNanos, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	/**
+	 * Sets the biggest size of a batch, as bundle.
+	 * Packets that are bigger on their own are sent as they are.
+	 * @param maxBatchSize in bytes, by default {@link #ETHERNET_MAX_PACKET_SIZE}
+	 */
+	public void setMaxBatchSize(int maxBatchSize) {
+		if (maxBatchSize <= BUNDLE_HEADER_SIZE) {
+			throw new IllegalArgumentException("maximum batch size is too small: " + maxBatchSize);
+		}
+		synchronized (lock) {
+			this.maxBatchSize = maxBatchSize;
+		}
+	}
+
+	//
+	public int getMaxBatchSize() {
+		synchronized (lock) {
+			return maxBatchSize;
+		}
+	}
+
+	/**
+	 * Makes messages to matching addresses bypass the batch.
+	 * They are sent right away, ahead of the packets waiting in the batch.
+	 * @param addressSelector selects the urgent message addresses
+	 */
+	public void addUrgentAddress(AddressSelector addressSelector) {
+		urgentAddresses.add(addressSelector);
+	}
+
+	/**
+	 * Makes messages to matching addresses bypass the batch.
+	 * @param addressPattern an OSC address pattern, like "/transport/*"
+	 */
+	public void addUrgentAddress(String addressPattern) {
+		addUrgentAddress(new OSCPatternAddressSelector(addressPattern));
+	}
+
+	//
+	public void removeUrgentAddress(AddressSelector addressSelector) {
+		urgentAddresses.remove(addressSelector);
+	}
+
+	/**
+	 * Adds a packet to the current batch,
+	 * or sends it right away, if it is an urgent message.
+	 * If the batch is full, it is sent first.
+	 * @param aPacket the bundle or message to send
+	 * @throws IOException if a (UDP) socket I/O error occurs
+	 *   while sending an urgent message or a full batch
+	 */
+	@Override
+	public void send(OSCPacket aPacket) throws IOException {
+		if (isUrgent(aPacket)) {
+			super.send(aPacket);
+			return;
+		}
+
+		final int elementSize = ELEMENT_OVERHEAD + AbstractOSCPacket.computeSize(aPacket);
+		// batches are sent with the lock held, so they leave in order
+		synchronized (lock) {
+			if (batchBytes + elementSize > maxBatchSize) {
+				sendBatch(takeBatch());
+			}
+			if (BUNDLE_HEADER_SIZE + elementSize > maxBatchSize) {
+				super.send(aPacket);
+				return;
+			}
+			if (batch.isEmpty()) {
+				scheduleFlush(batchNumber, batchWindowNanos);
+			}
+			batch.add(aPacket);
+			batchBytes += elementSize;
+		}
+	}
+
+	/**
+	 * Sends the current batch right away, if there is one.
+	 * @throws IOException if a (UDP) socket I/O error occurs
+	 */
+	public void flush() throws IOException {
+		synchronized (lock) {
+			sendBatch(takeBatch());
+		}
+	}
+
+	/**
+	 * Sends the current batch, and closes the socket.
+	 */
+	@Override
+	public void close() {
+		try {
+			flush();
+		} catch (IOException ex) {
+			// the batch was counted as dropped
+		}
+		super.close();
+	}
+
+	private boolean isUrgent(OSCPacket aPacket) {
+		if (urgentAddresses.isEmpty() || !(aPacket instanceof OSCMessage)) {
+			return false;
+		}
+		final String address = ((OSCMessage) aPacket).getAddress();
+		for (final AddressSelector urgent : urgentAddresses) {
+			if (urgent.matches(address)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	//call with the lock held
+	private List<OSCPacket> takeBatch() {
+		final List<OSCPacket> packets = batch;
+		batch = new ArrayList<OSCPacket>();
+		batchBytes = BUNDLE_HEADER_SIZE;
+		batchNumber++;
+		return packets;
+	}
+
+	//call with the lock held; if it fails, all packets of the batch are counted as dropped
+	private void sendBatch(List<OSCPacket> packets) throws IOException {
+		if (packets.isEmpty()) {
+			return;
+		}
+		try {
+			if (packets.size() == 1) {
+				super.send(packets.get(0));
+			} else {
+				super.send(new OSCBundle(packets));
+			}
+		} catch (IOException ex) {
+			metrics.packetsDropped(packets.size());
+			throw ex;
+		}
+		metrics.batchSent(packets.size());
+	}
+
+	//ends the window of a batch, unless it was sent already
+	private void scheduleFlush(final long number, long delayNanos) {
+		Flusher.get().schedule(new Runnable() {
+			@Override
+			public void run() {
+				synchronized (lock) {
+					if (batchNumber != number) {
+						return;
+					}
+					try {
+						sendBatch(takeBatch());
+					} catch (IOException ex) {
+						// the batch was counted as dropped
+					}
+				}
+			}
+		}, delayNanos, TimeUnit.NANOSECONDS);
+	}
+}//end class OSCBatchingPortOut
+//EOF
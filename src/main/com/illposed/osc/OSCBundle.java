@@ -145,6 +145,93 @@ public class OSCBundle extends AbstractOSCPacket {
 		return Collections.unmodifiableList(packets);
 	}
 
+	/**
+	 * Computes the size of the byte stream of this bundle,
+	 * from the sizes of the contained packets.
+	 * @return the encoded size in bytes
+	 */
+	@Override
+	public int computeSize() {
+		if (byteArray != null) {
+			return byteArray.length;
+		}
+		int size = getHeaderSize();
+		for (final OSCPacket pkg : packets) {
+			size += getElementOverhead() + computeSize(pkg);
+		}
+		return size;
+	}
+
+	/**
+	 * The size of this bundle without any packets.
+	 * @return the bytes of "#bundle" and the time-tag
+	 */
+	protected int getHeaderSize() {
+		return 8 + 8;
+	}
+
+	/**
+	 * The bytes in front of each contained packet.
+	 * @return the bytes of the size of a packet
+	 */
+	protected int getElementOverhead() {
+		return 4;
+	}
+
+	/**
+	 * Splits this bundle into bundles that are no bigger than the given size,
+	 * for example to fit each one into a single UDP datagram.
+	 * All parts have the time-tag of this bundle, and contain the packets in order.
+	 * Contained bundles are split as well, if they do not fit into a part on their own.
+	 * A message that does not fit into a part on its own
+	 * ends up alone in a part that is too big.
+	 * Note that the receiver executes the parts one by one,
+	 * so the packets of different parts are not executed atomically together.
+	 * @param maxSize the maximum size of a part in bytes
+	 * @return this bundle if it is small enough, the parts otherwise
+	 */
+	public List<OSCBundle> split(int maxSize) {
+		if (computeSize() <= maxSize) {
+			return Collections.singletonList(this);
+		}
+		final List<OSCBundle> parts = new ArrayList<OSCBundle>();
+		final LinkedList<OSCPacket> pending = new LinkedList<OSCPacket>(packets);
+		final int maxElementSize = maxSize - getHeaderSize();
+		OSCBundle part = createPart();
+		int partSize = getHeaderSize();
+		while (!pending.isEmpty()) {
+			final OSCPacket pkg = pending.removeFirst();
+			final int elementSize = getElementOverhead() + computeSize(pkg);
+			if (elementSize > maxElementSize && pkg instanceof OSCBundle) {
+				final List<OSCBundle> pieces
+						= ((OSCBundle) pkg).split(maxElementSize - getElementOverhead());
+				if (pieces.size() > 1) {
+					pending.addAll(0, pieces);
+					continue;
+				}
+			}
+			if (partSize + elementSize > maxSize && !part.packets.isEmpty()) {
+				parts.add(part);
+				part = createPart();
+				partSize = getHeaderSize();
+			}
+			part.packets.add(pkg);
+			partSize += elementSize;
+		}
+		parts.add(part);
+		return parts;
+	}
+
+	/**
+	 * Creates an empty bundle like this one, to be filled by {@link #split(int)}.
+	 * @return a bundle with the same time-tag and charset
+	 */
+	protected OSCBundle createPart() {
+		final OSCBundle part = new OSCBundle(timestamp);
+		part.setCharset(charset);
+		return part;
+	}
+
 	/**
 	 * Convert the time-tag (a Java Date) into the OSC byte stream.
 	 * Used Internally.
@@ -162,15 +249,28 @@ public class OSCBundle extends AbstractOSCPacket {
 	}
 
 	//implement abstract method from abstract superclass
-	protected byte[] computeByteArray(JavaToByteArrayConverter stream) {
+	protected void writeContent(JavaToByteArrayConverter stream) {
 		stream.write("#bundle");
 		computeTimeTagByteArray(stream);
-		byte[] packetBytes;
+		computePacketsByteArray(stream);
+	}
+
+	/**
+	 * Write the contained packets, each one prefixed by its size.
+	 * Nested packets are written in the same pass, without encoding them
+	 * into a byte array of their own first.
+	 * Used Internally.
+	 * @param stream where to write the packets to
+	 */
+	protected void computePacketsByteArray(JavaToByteArrayConverter stream) {
+		final boolean packed = isPacked();
 		for (final OSCPacket pkg : packets) {
-			packetBytes = pkg.getByteArray();
-			stream.write(packetBytes);
+			if (pkg instanceof AbstractOSCPacket) {
+				((AbstractOSCPacket) pkg).writeElement(stream, packed);
+			} else {
+				stream.write(pkg.getByteArray());
+			}
 		}
-		return stream.toByteArray();
 	}
 
 	//implement abstract method from abstract superclass
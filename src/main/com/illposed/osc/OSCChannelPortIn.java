@@ -0,0 +1,475 @@
+/*
+ * Copyright (C) 2004-2014, C. Ramakrishnan / Illposed Software.
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc;
+
+import com.illposed.osc.utility.OSCByteBufferToJavaConverter;
+import com.illposed.osc.utility.OSCLazyMessage;
+import com.illposed.osc.utility.OSCMetrics;
+import com.illposed.osc.utility.OSCPackByteArrayToJavaConverter;
+import com.illposed.osc.utility.OSCPatternAddressSelector;
+import com.illposed.osc.utility.OSCTriePacketDispatcher;
+import com.illposed.osc.utility.Trace;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.Charset;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * OSCChannelPortIn listens for OSC packets on a {@link DatagramChannel},
+ * and decodes and dispatches them on a pool of worker threads.
+ *
+ * One thread does nothing but draining the channel into a pool of
+ * direct buffers, so a slow {@link OSCListener} does not keep it from
+ * reading the socket.
+ * Each received packet is handed to one of the workers,
+ * chosen by the packets source address,
+ * so packets from the same source are dispatched in the order they arrived.
+ * Listeners are called from the worker threads,
+ * possibly concurrently for packets from different sources.
+ *
+ * If all buffers are in use, incoming packets are read and dropped,
+ * see {@link #getOverflowCount()}.
+ *
+ * Usage is the same as with {@link OSCPortIn}:
+ * <blockquote><pre>{@code
+ * receiver = new OSCChannelPortIn(OSCPort.DEFAULT_SC_OSC_PORT, 4, 256);
+ * receiver.addListener("/message/receiving", listener);
+ * receiver.startListening();
+ * }</pre></blockquote>
+ *
+ * @author Thomas Brand
+ */
+public class OSCChannelPortIn extends OSCPort {
+
+	public static final int DEFAULT_WORKERS = 2;
+	public static final int DEFAULT_POOL_SIZE = 64;
+
+	/** A pooled receive buffer, and where its content came from. */
+	private static class Datagram {
+
+		private final ByteBuffer buffer;
+		private SocketAddress source;
+
+		Datagram(final int size) {
+			this.buffer = ByteBuffer.allocateDirect(size);
+		}
+	}
+
+	/** Decodes and dispatches the packets of the sources assigned to it. */
+	private class Worker implements Runnable {
+
+		private final BlockingQueue<Datagram> queue;
+		private final OSCByteBufferToJavaConverter converter;
+		private final OSCPackByteArrayToJavaConverter pack_converter;
+		private final byte[] pack_bytes;
+		/** whether a thread runs this worker; there must never be two */
+		private final AtomicBoolean running;
+		private volatile Thread thread;
+
+		Worker(final int capacity) {
+			this.queue = new ArrayBlockingQueue<Datagram>(capacity);
+			this.converter = new OSCByteBufferToJavaConverter();
+			this.pack_converter = new OSCPackByteArrayToJavaConverter();
+			this.pack_bytes = new byte[OSCPortIn.BUFFER_SIZE];
+			this.converter.setMetrics(metrics);
+			this.pack_converter.setMetrics(metrics);
+			this.running = new AtomicBoolean(false);
+		}
+
+		@Override
+		public void run() {
+			while (keepRunning(running)) {
+				final Datagram datagram;
+				try {
+					datagram = queue.poll(100, TimeUnit.MILLISECONDS);
+				} catch (InterruptedException ex) {
+					// stopped, or restarted meanwhile
+					continue;
+				}
+				if (datagram == null) {
+					continue;
+				}
+				try {
+					process(datagram);
+				} catch (Exception ex) {
+					ex.printStackTrace();
+				} finally {
+					datagram.buffer.clear();
+					pool.offer(datagram);
+				}
+			}
+		}
+
+		private void process(final Datagram datagram) {
+			final ByteBuffer buffer = datagram.buffer;
+			final int length = buffer.remaining();
+			final InetSocketAddress source = (InetSocketAddress) datagram.source;
+
+			if(debug && Trace.isEnabled(Trace.PACKET_IN))
+			{
+				buffer.duplicate().get(pack_bytes, 0, length);
+				Trace.trace(Trace.PACKET_IN, "OSCChannelPortIn",
+					"datagram received ("+length+" bytes)", pack_bytes, length);
+			}
+
+			final OSCPacket oscPacket;
+			try
+			{
+				if(buffer.get(buffer.position())=='!') //OSCPack
+				{
+					buffer.get(pack_bytes, 0, length);
+					oscPacket = pack_converter.convert(pack_bytes, length,
+							source.getAddress().getHostAddress(), source.getPort());
+				}
+				else
+				{
+					oscPacket = converter.convert(buffer,
+							source.getAddress().getHostAddress(), source.getPort());
+				}
+			}
+			catch (RuntimeException ex)
+			{
+				metrics.decodeFailed();
+				throw ex;
+			}
+			if(oscPacket==null) //OSCPack reports failures this way
+			{
+				metrics.decodeFailed();
+				return;
+			}
+
+			//update stats, considering success here, prior to dispatching
+			metrics.packetReceived(length);
+
+			dispatcher.dispatchPacket(oscPacket);
+		}
+	}
+
+	/** state for listening */
+	private volatile boolean listening;
+	private final DatagramChannel channel;
+	private final OSCTriePacketDispatcher dispatcher;
+	private final BlockingQueue<Datagram> pool;
+	private final Worker[] workers;
+	/** used to drop packets if the pool is empty */
+	private final ByteBuffer overflow;
+	/** whether a thread runs {@link #receive()}; there must never be two */
+	private final AtomicBoolean receiving;
+
+	/**
+	 * Create a port that listens using a specified (bound) channel.
+	 * @param channel DatagramChannel to listen on, in blocking mode
+	 * @param numWorkers how many threads decode and dispatch packets
+	 * @param poolSize how many received packets may be waiting for a worker
+	 */
+	public OSCChannelPortIn(DatagramChannel channel, int numWorkers, int poolSize) {
+		super(channel.socket(), channel.socket().getLocalPort());
+
+		if (numWorkers < 1 || poolSize < 1) {
+			throw new IllegalArgumentException("Need at least one worker and one buffer");
+		}
+
+		this.channel = channel;
+		this.dispatcher = new OSCTriePacketDispatcher();
+		this.dispatcher.setMetrics(metrics);
+		this.pool = new ArrayBlockingQueue<Datagram>(poolSize);
+		for (int pi = 0; pi < poolSize; pi++) {
+			pool.offer(new Datagram(OSCPortIn.BUFFER_SIZE));
+		}
+		this.workers = new Worker[numWorkers];
+		for (int wi = 0; wi < numWorkers; wi++) {
+			workers[wi] = new Worker(poolSize);
+		}
+		this.overflow = ByteBuffer.allocateDirect(OSCPortIn.BUFFER_SIZE);
+		this.receiving = new AtomicBoolean(false);
+
+		metrics.setQueueDepth(new OSCMetrics.Gauge() {
+			@Override
+			public long getValue() {
+				return getQueueDepth();
+			}
+		});
+	}
+
+	/**
+	 * Create a port that listens on the specified port.
+	 * @param port UDP port to listen on.
+	 * @param numWorkers how many threads decode and dispatch packets
+	 * @param poolSize how many received packets may be waiting for a worker
+	 * @throws IOException if the channel can not be opened or bound
+	 */
+	public OSCChannelPortIn(int port, int numWorkers, int poolSize) throws IOException {
+		this(openChannel(port), numWorkers, poolSize);
+	}
+
+	/**
+	 * Create a port that listens on the specified port,
+	 * with the default number of workers and buffers.
+	 * @param port UDP port to listen on.
+	 * @throws IOException if the channel can not be opened or bound
+	 */
+	public OSCChannelPortIn(int port) throws IOException {
+		this(port, DEFAULT_WORKERS, DEFAULT_POOL_SIZE);
+	}
+
+	/**
+	 * Create a port that listens on the specified port,
+	 * and decodes strings with a specific character set.
+	 * @param port UDP port to listen on.
+	 * @param charset how to decode strings read from incoming packages.
+	 * @throws IOException if the channel can not be opened or bound
+	 */
+	public OSCChannelPortIn(int port, Charset charset) throws IOException {
+		this(port);
+
+		for (final Worker worker : workers) {
+			worker.converter.setCharset(charset);
+			worker.pack_converter.setCharset(charset);
+		}
+	}
+
+	private static DatagramChannel openChannel(int port) throws IOException {
+		final DatagramChannel channel = DatagramChannel.open();
+		try {
+			channel.socket().bind(new InetSocketAddress(port));
+		} catch (SocketException ex) {
+			channel.close();
+			throw ex;
+		}
+		return channel;
+	}
+
+	/**
+	 * Drain the channel until {@link #isListening()} becomes false.
+	 */
+	private void receive() {
+		while (keepRunning(receiving)) {
+			Datagram datagram = pool.poll();
+			try {
+				if (datagram == null) {
+					// all buffers are waiting for a worker, drop the packet
+					overflow.clear();
+					if (channel.receive(overflow) != null) {
+						metrics.bufferOverflow();
+					}
+					continue;
+				}
+
+				datagram.source = channel.receive(datagram.buffer);
+				datagram.buffer.flip();
+
+				// never full, as it can hold all the datagrams of the pool
+				final Worker worker = workers[(datagram.source.hashCode() & 0x7fffffff) % workers.length];
+				worker.queue.offer(datagram);
+				datagram = null;
+			} catch (ClosedChannelException ex) {
+				// if we closed the channel while receiving data,
+				// the exception is expected/normal, so we hide it
+				if (listening) {
+					ex.printStackTrace();
+				}
+				break;
+			} catch (Exception ex) {
+				ex.printStackTrace();
+			} finally {
+				if (datagram != null) {
+					datagram.buffer.clear();
+					pool.offer(datagram);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Called by a thread before each round of its loop.
+	 * When not listening, the thread gives up its place, and ends,
+	 * unless listening was started again meanwhile,
+	 * and no other thread took its place.
+	 * @param running the place of the thread
+	 * @return whether to go on
+	 */
+	private boolean keepRunning(AtomicBoolean running) {
+		if (listening) {
+			return true;
+		}
+		running.set(false);
+		return listening && running.compareAndSet(false, true);
+	}
+
+	/**
+	 * Start listening for incoming OSCPackets.
+	 * Threads that are still running from before are re-used,
+	 * so there is only ever one receiver thread, and one thread per worker.
+	 */
+	public synchronized void startListening() {
+		listening = true;
+		if (receiving.compareAndSet(false, true)) {
+			final Thread receiver = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					receive();
+				}
+			}, "OSCChannelPortIn-receiver");
+			// The JVM exits when the only threads running are all daemon threads.
+			receiver.setDaemon(true);
+			receiver.start();
+		}
+
+		for (int wi = 0; wi < workers.length; wi++) {
+			final Worker worker = workers[wi];
+			if (worker.running.compareAndSet(false, true)) {
+				final Thread thread = new Thread(worker, "OSCChannelPortIn-worker-" + wi);
+				thread.setDaemon(true);
+				worker.thread = thread;
+				thread.start();
+			}
+		}
+	}
+
+	/**
+	 * Stop listening for incoming OSCPackets.
+	 * Waits for the workers to finish the packet they are dispatching,
+	 * unless it is called from a worker, by a listener.
+	 * The receiver thread ends with the next packet it receives,
+	 * or when the channel is closed.
+	 */
+	public synchronized void stopListening() {
+		listening = false;
+		for (final Worker worker : workers) {
+			final Thread thread = worker.thread;
+			if (thread == null || thread == Thread.currentThread()) {
+				continue;
+			}
+			// not interrupted, as that would close channels used by listeners;
+			// workers poll their queue with a timeout, and notice by themselves
+			try {
+				thread.join();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Am I listening for packets?
+	 * @return true if this port is in listening mode
+	 */
+	public boolean isListening() {
+		return listening;
+	}
+
+	/**
+	 * Sets the size of the sockets receive buffer (SO_RCVBUF).
+	 * A larger buffer lets the system hold more packets,
+	 * while the receiver thread is busy.
+	 * @param size the requested size in bytes
+	 * @throws SocketException if the size could not be set
+	 */
+	public void setReceiveBufferSize(int size) throws SocketException {
+		getSocket().setReceiveBufferSize(size);
+	}
+
+	//
+	public int getReceiveBufferSize() throws SocketException {
+		return getSocket().getReceiveBufferSize();
+	}
+
+	/**
+	 * Number of packets dropped, because all buffers were waiting for a worker.
+	 * @return the number of dropped packets since this port was created
+	 */
+	public long getOverflowCount() {
+		return metrics.getBufferOverflows();
+	}
+
+	/**
+	 * Number of received packets, waiting to be decoded and dispatched.
+	 * @return the sum of all worker queue sizes
+	 */
+	public int getQueueDepth() {
+		int depth = 0;
+		for (final Worker worker : workers) {
+			depth += worker.queue.size();
+		}
+		return depth;
+	}
+
+	/**
+	 * Sets whether received messages decode their arguments right away,
+	 * or only when a listener accesses them (see {@link OSCLazyMessage}).
+	 * Lazy decoding pays off if most messages are filtered by address,
+	 * or if listeners only look at some of the arguments.
+	 * Received messages are then read-only.
+	 * Should be set before calling {@link #startListening()}.
+	 * @param lazy true to decode arguments on access
+	 */
+	public void setLazyDecoding(boolean lazy) {
+		for (final Worker worker : workers) {
+			worker.converter.setLazy(lazy);
+		}
+	}
+
+	//
+	public boolean isLazyDecoding() {
+		return workers[0].converter.isLazy();
+	}
+
+	/**
+	 * Registers a listener that will be notified of incoming messages,
+	 * if their address matches the given pattern.
+	 *
+	 * @param addressSelector either a fixed address like "/sc/mixer/volume",
+	 *   or a selector pattern (a mix between wildcards and regex)
+	 *   like "/??/mixer/*", see {@link OSCPatternAddressSelector} for details
+	 * @param listener will be notified of incoming packets, if they match
+	 */
+	public void addListener(String addressSelector, OSCListener listener) {
+		this.addListener(new OSCPatternAddressSelector(addressSelector), listener);
+	}
+
+	/**
+	 * Registers a listener that will be notified of incoming messages,
+	 * if their address matches the given selector.
+	 * Listeners should be added before calling {@link #startListening()}.
+	 * @param addressSelector a custom address selector
+	 * @param listener will be notified of incoming packets, if they match
+	 */
+	public void addListener(AddressSelector addressSelector, OSCListener listener) {
+		dispatcher.addListener(addressSelector, listener);
+	}
+
+	/**
+	 * Removes a listener, so it will no longer be notified of incoming messages.
+	 * @param addressSelector the selector the listener was added with
+	 */
+	public void removeListener(AddressSelector addressSelector) {
+		dispatcher.removeListener(addressSelector);
+	}
+
+	/**
+	 * Removes the listeners that were added with
+	 * {@link #addListener(String, OSCListener)} for the given selector.
+	 * @param addressSelector the selector string the listeners were added with
+	 */
+	public void removeListener(String addressSelector) {
+		dispatcher.removeListener(addressSelector);
+	}
+}//end class OSCChannelPortIn
+//EOF
@@ -0,0 +1,309 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc;
+
+import com.illposed.osc.utility.Flusher;
+import com.illposed.osc.utility.TypeSignature;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An OSCPortOut that sends only the newest value of fast changing controls,
+ * like faders or sensors.
+ *
+ * Messages are sent at most at the maximum rate per address and type tags.
+ * A message that comes too early waits until its turn,
+ * and is replaced by the next message with the same address and type tags
+ * that comes meanwhile, so the receiver gets the newest value
+ * without the ones in between.
+ * With a dead-band set, a message is skipped when its numeric arguments
+ * differ less than the dead-band from the last message that was sent
+ * with the same address and type tags, and its other arguments are equal.
+ * Bundles and other packets are sent right away, as they are.
+ *
+ * Usage:
+ * <blockquote><pre>{@code
+ * OSCCoalescingPortOut sender = new OSCCoalescingPortOut(address, port);
+ * sender.setMaxRate(50); // messages per second and address
+ * sender.setDeadBand(0.001);
+ * sender.send(new OSCMessage("/fader/1").addFloat(value));
+ * }</pre></blockquote>
+ *
+ * Waiting messages are sent from a shared daemon thread;
+ * if that fails, they are counted as dropped.
+ * Call {@link #flush()} to send them right away,
+ * {@link #close()} does so as well.
+ * Messages are kept until sent,
+ * so they must not be changed after handing them to {@link #send(OSCPacket)}.
+ * The last arguments sent are remembered for each address and type tags,
+ * so this suits a limited set of addresses.
+ *
+ * @author Thomas Brand
+ */
+public class OSCCoalescingPortOut extends OSCPortOut {
+
+	/** What is known about the messages with one address and type tags. */
+	private final class Slot {
+
+		/** when the last message was sent, in nano-seconds */
+		private long sentNanos;
+		/** arguments of the last message that was sent, or <code>null</code> */
+		private List<Object> sentArguments;
+		/** the newest message not sent yet, or <code>null</code> */
+		private OSCMessage pending;
+		/** whether sending the pending message is scheduled */
+		private boolean scheduled;
+
+		//call with the slot locked
+		private void sendPending() throws IOException {
+			final OSCMessage message = pending;
+			pending = null;
+			sendNow(message);
+		}
+
+		//call with the slot locked
+		private void sendNow(OSCMessage message) throws IOException {
+			sentNanos = System.nanoTime();
+			sentArguments = new ArrayList<Object>(message.getArguments());
+			OSCCoalescingPortOut.super.send(message);
+		}
+	}
+
+	private final ConcurrentMap<String, Slot> slots;
+	private final AtomicLong coalesced;
+	private volatile long minIntervalNanos;
+	private volatile double deadBand;
+
+	/**
+	 * Create a port that coalesces messages to address:port using a specified socket.
+	 * @param address the UDP address to send to
+	 * @param port the UDP port to send to
+	 * @param socket the DatagramSocket to send from
+	 */
+	public OSCCoalescingPortOut(InetAddress address, int port, DatagramSocket socket) {
+		super(address, port, socket);
+
+		this.slots = new ConcurrentHashMap<String, Slot>();
+		this.coalesced = new AtomicLong();
+		this.minIntervalNanos = 0;
+		this.deadBand = 0.0;
+	}
+
+	/**
+	 * Create a port that coalesces messages to address:port using a specified channel.
+	 * @param address the UDP address to send to
+	 * @param port the UDP port to send to
+	 * @param channel the DatagramChannel to send from
+	 */
+	public OSCCoalescingPortOut(InetAddress address, int port, DatagramChannel channel) {
+		this(address, port, channel.socket());
+	}
+
+	/**
+	 * Create a port that coalesces messages to address:port.
+	 * @param address the UDP address to send to
+	 * @param port the UDP port to send to
+	 * @throws SocketException when failing to create a (UDP) out socket
+	 */
+	public OSCCoalescingPortOut(InetAddress address, int port) throws SocketException {
+		this(address, port, new DatagramSocket());
+	}
+
+	/**
+	 * Sets how many messages per second are sent at most,
+	 * for each address and type tags.
+	 * @param messagesPerSecond the maximum rate, or 0 for no limit, the default
+	 */
+	public void setMaxRate(double messagesPerSecond) {
+		if (messagesPerSecond < 0) {
+			throw new IllegalArgumentException("maximum rate may not be negative: " + messagesPerSecond);
+		}
+		this.minIntervalNanos = (messagesPerSecond == 0)
+				? 0
+				: (long) (TimeUnit.SECONDS.toNanos(1) / messagesPerSecond);
+	}
+
+	/**
+	 * Returns the maximum rate.
+	 * @return messages per second and address, or 0 for no limit
+	 */
+	public double getMaxRate() {
+		final long interval = minIntervalNanos;
+		return (interval == 0) ? 0 : ((double) TimeUnit.SECONDS.toNanos(1) / interval);
+	}
+
+	/**
+	 * Sets how much numeric arguments have to change, for a message to be sent.
+	 * @param deadBand the smallest change that is sent, or 0 to send all changes, the default
+	 */
+	public void setDeadBand(double deadBand) {
+		if (deadBand < 0) {
+			throw new IllegalArgumentException("dead-band may not be negative: " + deadBand);
+		}
+		this.deadBand = deadBand;
+	}
+
+	//
+	public double getDeadBand() {
+		return deadBand;
+	}
+
+	/**
+	 * Number of messages that were not sent,
+	 * because they were replaced by a newer one, or were inside the dead-band.
+	 * @return the number of skipped messages
+	 */
+	public long getCoalescedCount() {
+		return coalesced.get();
+	}
+
+	/**
+	 * Sends a message right away if its rate allows,
+	 * otherwise keeps it to be sent in its turn, unless a newer one comes first.
+	 * Other packets are sent right away.
+	 * @param aPacket the bundle or message to send
+	 * @throws IOException if a (UDP) socket I/O error occurs
+	 *   while sending right away
+	 */
+	@Override
+	public void send(OSCPacket aPacket) throws IOException {
+		if (!(aPacket instanceof OSCMessage)) {
+			super.send(aPacket);
+			return;
+		}
+
+		final OSCMessage message = (OSCMessage) aPacket;
+		final Slot slot = getSlot(message);
+		synchronized (slot) {
+			if (isInsideDeadBand(slot.sentArguments, message.getArguments())) {
+				// the receiver has about this value already
+				if (slot.pending != null) {
+					slot.pending = null;
+					coalesced.incrementAndGet();
+				}
+				coalesced.incrementAndGet();
+				return;
+			}
+
+			final long interval = minIntervalNanos;
+			final long waitNanos = slot.sentNanos + interval - System.nanoTime();
+			if (slot.pending == null && (slot.sentArguments == null || waitNanos <= 0)) {
+				slot.sendNow(message);
+				return;
+			}
+			if (slot.pending != null) {
+				coalesced.incrementAndGet();
+			}
+			slot.pending = message;
+			if (!slot.scheduled) {
+				slot.scheduled = true;
+				scheduleSend(slot, waitNanos);
+			}
+		}
+	}
+
+	/**
+	 * Sends all waiting messages right away.
+	 * @throws IOException if a (UDP) socket I/O error occurs
+	 */
+	public void flush() throws IOException {
+		for (final Slot slot : slots.values()) {
+			synchronized (slot) {
+				if (slot.pending != null) {
+					slot.sendPending();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sends the waiting messages, and closes the socket.
+	 */
+	@Override
+	public void close() {
+		try {
+			flush();
+		} catch (IOException ex) {
+			metrics.packetDropped();
+		}
+		super.close();
+	}
+
+	private Slot getSlot(OSCMessage message) {
+		final String key = message.getAddress() + ','
+				+ TypeSignature.of(message.getArguments()).getTypeTags();
+		Slot slot = slots.get(key);
+		if (slot == null) {
+			final Slot created = new Slot();
+			slot = slots.putIfAbsent(key, created);
+			if (slot == null) {
+				slot = created;
+			}
+		}
+		return slot;
+	}
+
+	private boolean isInsideDeadBand(List<Object> sent, List<Object> arguments) {
+		final double band = deadBand;
+		if (band == 0.0 || sent == null || sent.size() != arguments.size()) {
+			return false;
+		}
+		for (int ai = 0; ai < arguments.size(); ai++) {
+			final Object sentArgument = sent.get(ai);
+			final Object argument = arguments.get(ai);
+			if (sentArgument instanceof Number && argument instanceof Number) {
+				final double change = ((Number) argument).doubleValue() - ((Number) sentArgument).doubleValue();
+				if (!(Math.abs(change) < band)) {
+					return false;
+				}
+			} else if (sentArgument == null ? argument != null : !sentArgument.equals(argument)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	//sends the pending message of a slot, when its turn has come
+	private void scheduleSend(final Slot slot, long delayNanos) {
+		Flusher.get().schedule(new Runnable() {
+			@Override
+			public void run() {
+				synchronized (slot) {
+					if (slot.pending == null) {
+						slot.scheduled = false;
+						return;
+					}
+					// sent meanwhile by flush(), so wait for the next turn
+					final long waitNanos = slot.sentNanos + minIntervalNanos - System.nanoTime();
+					if (waitNanos > 0) {
+						scheduleSend(slot, waitNanos);
+						return;
+					}
+					slot.scheduled = false;
+					try {
+						slot.sendPending();
+					} catch (IOException ex) {
+						metrics.packetDropped();
+					}
+				}
+			}
+		}, Math.max(0, delayNanos), TimeUnit.NANOSECONDS);
+	}
+}//end class OSCCoalescingPortOut
+//EOF
@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc;
+
+import com.illposed.osc.utility.OSCJavaToByteBufferConverter;
+import com.illposed.osc.utility.Trace;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Sends OSC packets to many receivers at once.
+ *
+ * Each packet is encoded only once, into a reusable, per thread direct buffer,
+ * which is then sent to every target through one shared {@link DatagramChannel}.
+ * Targets are plain socket addresses, and may be UDP multicast groups;
+ * {@link #setMulticastTimeToLive(int)} and {@link #setMulticastInterface(NetworkInterface)}
+ * control how far and where multicast packets go, see {@link OSCPort}.
+ *
+ * Targets can be added and removed at any time, also while sending.
+ * The set of targets is replaced as a whole on each change,
+ * so sending never waits for a lock, and each packet is sent
+ * to the targets as they were when sending it started.
+ *
+ * Usage:
+ * <blockquote><pre>{@code
+ * OSCFanOutPortOut sender = new OSCFanOutPortOut();
+ * sender.addTarget(new InetSocketAddress("monitor1", 57110));
+ * sender.addTarget(new InetSocketAddress("239.0.0.1", 57110));
+ * sender.send(message);
+ * }</pre></blockquote>
+ *
+ * The metrics of this port count one packet per target it was sent to.
+ *
+ * @author Thomas Brand
+ */
+public class OSCFanOutPortOut extends OSCPort {
+
+	private static final InetSocketAddress[] NO_TARGETS = new InetSocketAddress[0];
+
+	private final DatagramChannel channel;
+	/** never changed, only replaced */
+	private final AtomicReference<InetSocketAddress[]> targets;
+
+	/**
+	 * Create a port that sends through a specified channel.
+	 * The channel is expected to be in blocking mode (the default).
+	 * @param channel the DatagramChannel to send from
+	 */
+	public OSCFanOutPortOut(DatagramChannel channel) {
+		super(channel.socket(), 0);
+		this.channel = channel;
+		this.targets = new AtomicReference<InetSocketAddress[]>(NO_TARGETS);
+	}
+
+	/**
+	 * Create a port that sends through a new channel.
+	 * @throws IOException when failing to open a (UDP) channel
+	 */
+	public OSCFanOutPortOut() throws IOException {
+		this(DatagramChannel.open());
+	}
+
+	/**
+	 * Adds a receiver, if it is not a target already.
+	 * @param target the address and port to send to, may be a multicast group
+	 * @return <code>true</code> if it was added
+	 */
+	public boolean addTarget(InetSocketAddress target) {
+		if (target.isUnresolved()) {
+			throw new IllegalArgumentException("unresolved target: " + target);
+		}
+		while (true) {
+			final InetSocketAddress[] current = targets.get();
+			if (indexOf(current, target) >= 0) {
+				return false;
+			}
+			final InetSocketAddress[] changed = Arrays.copyOf(current, current.length + 1);
+			changed[current.length] = target;
+			if (targets.compareAndSet(current, changed)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Adds a receiver, if it is not a target already.
+	 * @param address the UDP address to send to, may be a multicast group
+	 * @param port the UDP port to send to
+	 * @return <code>true</code> if it was added
+	 */
+	public boolean addTarget(InetAddress address, int port) {
+		return addTarget(new InetSocketAddress(address, port));
+	}
+
+	/**
+	 * Removes a receiver.
+	 * @param target the address and port not to send to anymore
+	 * @return <code>true</code> if it was a target
+	 */
+	public boolean removeTarget(InetSocketAddress target) {
+		while (true) {
+			final InetSocketAddress[] current = targets.get();
+			final int index = indexOf(current, target);
+			if (index < 0) {
+				return false;
+			}
+			final InetSocketAddress[] changed = new InetSocketAddress[current.length - 1];
+			System.arraycopy(current, 0, changed, 0, index);
+			System.arraycopy(current, index + 1, changed, index, changed.length - index);
+			if (targets.compareAndSet(current, changed)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Returns the receivers packets are currently sent to.
+	 * @return an unmodifiable snapshot of the targets, in the order they were added
+	 */
+	public List<InetSocketAddress> getTargets() {
+		return Collections.unmodifiableList(Arrays.asList(targets.get()));
+	}
+
+	/**
+	 * Encodes a packet once, and sends it to all targets.
+	 * If sending to one target fails, it is still sent to the others,
+	 * and the first failure is thrown afterwards.
+	 * @param aPacket the bundle or message to send
+	 * @throws IOException if a (UDP) socket I/O error occurs
+	 *   while sending to any of the targets
+	 */
+	public void send(OSCPacket aPacket) throws IOException {
+		final InetSocketAddress[] receivers = targets.get();
+		if (receivers.length == 0) {
+			return;
+		}
+
+		final ByteBuffer buffer;
+		if (aPacket instanceof AbstractOSCPacket) {
+			final OSCJavaToByteBufferConverter encoder = OSCPortOut.ENCODERS.get();
+			encoder.clear();
+			((AbstractOSCPacket) aPacket).writeTo(encoder);
+			buffer = encoder.toByteBuffer();
+		} else {
+			buffer = ByteBuffer.wrap(aPacket.getByteArray());
+		}
+		final int length = buffer.remaining();
+		if(debug && Trace.isEnabled(Trace.PACKET_OUT))
+		{
+			final byte[] content = new byte[length];
+			buffer.duplicate().get(content);
+			Trace.trace(Trace.PACKET_OUT, "OSCFanOutPortOut",
+				"sending buffer with content ("+length+" bytes) to "+receivers.length+" targets",
+				content, length);
+		}
+
+		IOException failure = null;
+		for (final InetSocketAddress receiver : receivers) {
+			buffer.position(0);
+			try {
+				channel.send(buffer, receiver);
+				metrics.packetSent(length);
+			} catch (IOException ex) {
+				metrics.packetDropped();
+				if (failure == null) {
+					failure = ex;
+				}
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	private static int indexOf(InetSocketAddress[] addresses, InetSocketAddress address) {
+		for (int ai = 0; ai < addresses.length; ai++) {
+			if (addresses[ai].equals(address)) {
+				return ai;
+			}
+		}
+		return -1;
+	}
+}//end class OSCFanOutPortOut
+//EOF
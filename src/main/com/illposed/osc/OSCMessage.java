@@ -12,14 +12,14 @@ package com.illposed.osc;
 import com.illposed.osc.utility.JavaToByteArrayConverter;
 import com.illposed.osc.utility.OSCJavaToByteArrayConverter;
 import com.illposed.osc.utility.ByteArrayToJavaConverter;
-import com.illposed.osc.utility.OSCByteArrayToJavaConverter;
+import com.illposed.osc.utility.OSCByteBufferToJavaConverter;
 import com.illposed.osc.utility.OSCPackByteArrayToJavaConverter;
 import com.illposed.osc.utility.Tagger;
+import com.illposed.osc.utility.TypeRegistry;
+import com.illposed.osc.utility.TypeSignature;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.regex.Pattern;
 
@@ -44,7 +44,7 @@ public class OSCMessage extends AbstractOSCPacket {
 			= Pattern.compile("[ \\#\\*\\,\\?\\[\\]\\{\\}]");
 
 	protected String address;
-	protected List<Object> arguments;
+	protected OSCArguments arguments;
 
 	/**
 	 * Creates an empty OSC Message.
@@ -75,9 +75,9 @@ public class OSCMessage extends AbstractOSCPacket {
 		checkAddress(address);
 		this.address = address;
 		if (arguments == null) {
-			this.arguments = new LinkedList<Object>();
+			this.arguments = new OSCArguments();
 		} else {
-			this.arguments = new ArrayList<Object>(arguments);
+			this.arguments = new OSCArguments(arguments);
 		}
 	}
 
@@ -94,7 +94,7 @@ public class OSCMessage extends AbstractOSCPacket {
 		}
 		else
 		{
-			conv=new OSCByteArrayToJavaConverter();
+			conv=new OSCByteBufferToJavaConverter();
 		}
 		addArguments(conv.convertArguments(blobBytes, typetags));
 	}
@@ -134,6 +134,46 @@ public class OSCMessage extends AbstractOSCPacket {
 		return this;
 	}
 
+	/**
+	 * Add an integer argument, without boxing it.
+	 * @param value sent as type 'i'
+	 */
+	public OSCMessage addInt(int value) {
+		arguments.addInt(value);
+		contentChanged();
+		return this;
+	}
+
+	/**
+	 * Add a long argument, without boxing it.
+	 * @param value sent as type 'h'
+	 */
+	public OSCMessage addLong(long value) {
+		arguments.addLong(value);
+		contentChanged();
+		return this;
+	}
+
+	/**
+	 * Add a float argument, without boxing it.
+	 * @param value sent as type 'f'
+	 */
+	public OSCMessage addFloat(float value) {
+		arguments.addFloat(value);
+		contentChanged();
+		return this;
+	}
+
+	/**
+	 * Add a double argument, without boxing it.
+	 * @param value sent as type 'd'
+	 */
+	public OSCMessage addDouble(double value) {
+		arguments.addDouble(value);
+		contentChanged();
+		return this;
+	}
+
 	public OSCMessage addArguments(Collection<Object> arguments) {
 		for (Object obj : arguments) {
 			addArgument(obj);
@@ -156,6 +196,74 @@ public class OSCMessage extends AbstractOSCPacket {
 		return Collections.unmodifiableList(arguments);
 	}
 
+	//
+	public int getArgumentCount() {
+		return arguments.size();
+	}
+
+	/**
+	 * One of the arguments of this message, boxed if it is a number.
+	 * @param index of the argument
+	 * @return the argument, as it would be in {@link #getArguments()}
+	 */
+	public Object getArgument(int index) {
+		return arguments.get(index);
+	}
+
+	/**
+	 * An integer argument, without boxing it.
+	 * @param index of the argument
+	 * @return the value of the argument
+	 * @throws ClassCastException if the argument is not of type 'i'
+	 */
+	public int getInt(int index) {
+		return arguments.getInt(index);
+	}
+
+	/**
+	 * A long argument, without boxing it.
+	 * @param index of the argument
+	 * @return the value of the argument
+	 * @throws ClassCastException if the argument is not of type 'h'
+	 */
+	public long getLong(int index) {
+		return arguments.getLong(index);
+	}
+
+	/**
+	 * A float argument, without boxing it.
+	 * @param index of the argument
+	 * @return the value of the argument
+	 * @throws ClassCastException if the argument is not of type 'f'
+	 */
+	public float getFloat(int index) {
+		return arguments.getFloat(index);
+	}
+
+	/**
+	 * A double argument, without boxing it.
+	 * @param index of the argument
+	 * @return the value of the argument
+	 * @throws ClassCastException if the argument is not of type 'd'
+	 */
+	public double getDouble(int index) {
+		return arguments.getDouble(index);
+	}
+
+	/**
+	 * Computes the size of the byte stream of this message, without encoding it.
+	 * @return the encoded size in bytes
+	 */
+	@Override
+	public int computeSize() {
+		if (byteArray != null) {
+			return byteArray.length;
+		}
+		return TypeRegistry.getStringSize(address, charset)
+				+ 1 + TypeSignature.of(arguments).getPaddedBytes().length
+				+ arguments.computeSize(charset);
+	}
+
 	/**
 	 * Throws an exception if the given address is invalid.
 	 * We explicitly allow <code>null</code> here,
@@ -205,16 +313,13 @@ public class OSCMessage extends AbstractOSCPacket {
 
 	//
 	protected void computePlainArgumentsByteArray(JavaToByteArrayConverter stream) {
-		for (final Object argument : arguments) {
-			stream.write(argument);
-		}
+		arguments.writeTo(stream);
 	}
 
 	//implement abstract method from abstract superclass
-	protected byte[] computeByteArray(JavaToByteArrayConverter stream) {
+	protected void writeContent(JavaToByteArrayConverter stream) {
 		computeAddressByteArray(stream);
 		computeArgumentsByteArray(stream);
-		return stream.toByteArray();
 	}
 
 	//implement abstract method from abstract superclass
@@ -9,6 +9,7 @@
 package com.illposed.osc;
 
 import com.illposed.osc.utility.JavaToByteArrayConverter;
+import com.illposed.osc.utility.OSCJavaToByteBufferConverter;
 import com.illposed.osc.utility.OSCJavaToOSCPackByteArrayConverter;
 import java.util.Collection;
 import java.util.Date;
@@ -32,16 +33,49 @@ public class OSCPackBundle extends OSCBundle {
 	}
 
 	@Override
-        protected byte[] computeByteArray(JavaToByteArrayConverter stream) {
-                stream.write("#b");//undle"); ///only difference to superclass method
-                computeTimeTagByteArray(stream);
-                byte[] packetBytes;
-                for (final OSCPacket pkg : packets) {
-                        packetBytes = pkg.getByteArray();
-                        stream.write(packetBytes);
-                }
-                return stream.toByteArray();
-        }
+	protected void writeContent(JavaToByteArrayConverter stream) {
+		stream.write("#b");//undle"); ///only difference to superclass method
+		computeTimeTagByteArray(stream);
+		computePacketsByteArray(stream);
+	}
+
+	//OSCPack: numbers have a variable size, so encode to find out
+	@Override
+	public int computeSize() {
+		return getByteArray().length;
+	}
+
+	//at most: "!", "#b" and the time-tag as MessagePack int 64
+	@Override
+	protected int getHeaderSize() {
+		return 1 + 3 + 9;
+	}
+
+	//at most: the binary header of a packet in bin 32 format
+	@Override
+	protected int getElementOverhead() {
+		return 5;
+	}
+
+	//an empty OSCPack bundle with the same time-tag and charset
+	@Override
+	protected OSCBundle createPart() {
+		final OSCBundle part = new OSCPackBundle(timestamp);
+		part.setCharset(charset);
+		return part;
+	}
+
+	//written with the OSCPack converter
+	@Override
+	protected boolean isPacked() {
+		return true;
+	}
+
+	//OSCPack can't be written by the OSC buffer converter, copy it
+	@Override
+	public void writeTo(OSCJavaToByteBufferConverter stream) {
+		stream.writeRaw(getByteArray());
+	}
 
 	//implement abstract method from abstract superclass
 	public JavaToByteArrayConverter getConverter()
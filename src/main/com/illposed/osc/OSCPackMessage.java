@@ -9,6 +9,7 @@
 package com.illposed.osc;
 
 import com.illposed.osc.utility.JavaToByteArrayConverter;
+import com.illposed.osc.utility.OSCJavaToByteBufferConverter;
 import com.illposed.osc.utility.OSCJavaToOSCPackByteArrayConverter;
 
 import java.util.Collection;
@@ -41,9 +42,19 @@ public class OSCPackMessage extends OSCMessage {
 	@Override
 	protected void computeArgumentsByteArray(JavaToByteArrayConverter stream) {
 		stream.writeTypes(arguments);
-		for (final Object argument : arguments) {
-			stream.write(argument);
-		}
+		arguments.writeTo(stream);
+	}
+
+	//written with the OSCPack converter
+	@Override
+	protected boolean isPacked() {
+		return true;
+	}
+
+	//OSCPack can't be written by the OSC buffer converter, copy it
+	@Override
+	public void writeTo(OSCJavaToByteBufferConverter stream) {
+		stream.writeRaw(getByteArray());
 	}
 
 	//return concrete converter
@@ -53,5 +64,11 @@ public class OSCPackMessage extends OSCMessage {
                 final JavaToByteArrayConverter stream=new OSCJavaToOSCPackByteArrayConverter();
                 return stream;
         }
+
+	//OSCPack: numbers have a variable size, so encode to find out
+	@Override
+	public int computeSize() {
+		return getByteArray().length;
+	}
 }//end class OSCPackMessage
 //EOF
@@ -8,13 +8,43 @@
 
 package com.illposed.osc;
 
+import com.illposed.osc.utility.OSCMetrics;
+import com.illposed.osc.utility.Trace;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.NetworkInterface;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.MembershipKey;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 
 /**
  * OSCPort is an abstract superclass, to send OSC messages,
  * use {@link OSCPortOut}.
  * To listen for OSC messages, use {@link OSCPortIn}.
  *
+ * Ports on a {@link MulticastSocket}, or on a {@link DatagramChannel},
+ * can send and receive UDP multicast:
+ * receivers join one or more groups on their port,
+ * and senders send to a group address, with a time-to-live,
+ * through a chosen network interface.
+ * <blockquote><pre>{@code
+ * OSCPortIn receiver = new OSCPortIn(new MulticastSocket(port));
+ * receiver.joinGroup(InetAddress.getByName("239.0.0.1"));
+ * OSCPortOut sender = new OSCPortOut(InetAddress.getByName("239.0.0.1"), port, new MulticastSocket());
+ * sender.setMulticastTimeToLive(4);
+ * }</pre></blockquote>
+ *
  * @author Chandrasekhar Ramakrishnan
  */
 public class OSCPort {
@@ -25,19 +55,37 @@ public class OSCPort {
 	public static final int DEFAULT_SC_OSC_PORT = 57110;
 	public static final int DEFAULT_SC_LANG_OSC_PORT = 57120;
 
+	/** DatagramSocket.setOption(), or <code>null</code> before Java 9 */
+	private static final Method SOCKET_SET_OPTION = getSocketMethod("setOption", SocketOption.class, Object.class);
+	/** DatagramSocket.getOption(), or <code>null</code> before Java 9 */
+	private static final Method SOCKET_GET_OPTION = getSocketMethod("getOption", SocketOption.class);
+
 	protected boolean debug=false;
 
-	//number of *datagrams* and bytes successfully sent or received.
+	//number of *datagrams* and bytes successfully sent or received, and more.
 	//a datagram can be a bundle, messages therein aren't counted separately.
 	//for receive: considered success if datagram could be received and converted 
 	//to OSCPacket, prior to dispatching.
-	protected long successfully_processed_count=0;
-	protected long successfully_processed_bytes=0;
+	protected final OSCMetrics metrics;
+
+	/** groups joined through the channel, if there is one */
+	private final List<MembershipKey> memberships;
 
 	protected OSCPort(DatagramSocket socket, int port) {
+		this(socket, port, new OSCMetrics());
+	}
+
+	/**
+	 * @param socket to send or receive on
+	 * @param port the port number
+	 * @param metrics where to count packets; may be shared by several ports
+	 */
+	protected OSCPort(DatagramSocket socket, int port, OSCMetrics metrics) {
 		this.socket = socket;
 		this.port = port;
 		this.debug=false;
+		this.metrics = metrics;
+		this.memberships = Collections.synchronizedList(new ArrayList<MembershipKey>());
 	}
 
 	/**
@@ -76,6 +124,202 @@ public class OSCPort {
 		return port;
 	}
 
+	/**
+	 * Joins a multicast group, to receive the packets sent to it on this port.
+	 * A port may join several groups.
+	 * @param group the multicast address
+	 * @param networkInterface to receive the packets on,
+	 *   or <code>null</code> for the multicast interface of this port,
+	 *   or else one chosen by the operating system
+	 * @throws IOException if joining failed
+	 * @throws UnsupportedOperationException if this port is on a plain DatagramSocket
+	 */
+	public void joinGroup(InetAddress group, NetworkInterface networkInterface) throws IOException {
+		if (socket instanceof MulticastSocket) {
+			((MulticastSocket) socket).joinGroup(new InetSocketAddress(group, 0), networkInterface);
+			return;
+		}
+		final DatagramChannel channel = getMulticastChannel();
+		final NetworkInterface joinInterface = (networkInterface == null)
+				? getDefaultMulticastInterface(channel)
+				: networkInterface;
+		memberships.add(channel.join(group, joinInterface));
+	}
+
+	/**
+	 * Joins a multicast group, on the default interface.
+	 * @param group the multicast address
+	 * @throws IOException if joining failed
+	 * @see #joinGroup(InetAddress, NetworkInterface)
+	 */
+	public void joinGroup(InetAddress group) throws IOException {
+		joinGroup(group, null);
+	}
+
+	/**
+	 * Leaves a multicast group.
+	 * @param group the multicast address
+	 * @param networkInterface the interface it was joined on,
+	 *   or <code>null</code> for the default one, or for all with a channel
+	 * @throws IOException if leaving failed
+	 */
+	public void leaveGroup(InetAddress group, NetworkInterface networkInterface) throws IOException {
+		if (socket instanceof MulticastSocket) {
+			((MulticastSocket) socket).leaveGroup(new InetSocketAddress(group, 0), networkInterface);
+			return;
+		}
+		synchronized (memberships) {
+			final Iterator<MembershipKey> keys = memberships.iterator();
+			while (keys.hasNext()) {
+				final MembershipKey key = keys.next();
+				if (key.group().equals(group)
+						&& (networkInterface == null || key.networkInterface().equals(networkInterface)))
+				{
+					key.drop();
+					keys.remove();
+				}
+			}
+		}
+	}
+
+	//
+	public void leaveGroup(InetAddress group) throws IOException {
+		leaveGroup(group, null);
+	}
+
+	/**
+	 * Sets how many hops multicast packets sent from this port may travel.
+	 * @param timeToLive 0 to 255, 1 (the default) keeps them in the local network
+	 * @throws IOException if the option could not be set
+	 */
+	public void setMulticastTimeToLive(int timeToLive) throws IOException {
+		if (timeToLive < 0 || timeToLive > 255) {
+			throw new IllegalArgumentException("time-to-live out of range: " + timeToLive);
+		}
+		if (socket instanceof MulticastSocket) {
+			((MulticastSocket) socket).setTimeToLive(timeToLive);
+		} else {
+			getMulticastChannel().setOption(StandardSocketOptions.IP_MULTICAST_TTL, timeToLive);
+		}
+	}
+
+	//
+	public int getMulticastTimeToLive() throws IOException {
+		if (socket instanceof MulticastSocket) {
+			return ((MulticastSocket) socket).getTimeToLive();
+		}
+		return getMulticastChannel().getOption(StandardSocketOptions.IP_MULTICAST_TTL);
+	}
+
+	/**
+	 * Sets the network interface multicast packets are sent through,
+	 * and groups are joined on by default.
+	 * @param networkInterface by default, the one chosen by the operating system
+	 * @throws IOException if the option could not be set
+	 */
+	public void setMulticastInterface(NetworkInterface networkInterface) throws IOException {
+		if (socket instanceof MulticastSocket) {
+			((MulticastSocket) socket).setNetworkInterface(networkInterface);
+		} else {
+			getMulticastChannel().setOption(StandardSocketOptions.IP_MULTICAST_IF, networkInterface);
+		}
+	}
+
+	/**
+	 * Sets whether multicast packets sent from this port
+	 * are also received on this host.
+	 * @param enabled <code>true</code> (the default) to loop them back
+	 * @throws IOException if the option could not be set
+	 */
+	@SuppressWarnings("deprecation")
+	public void setMulticastLoopback(boolean enabled) throws IOException {
+		if (socket instanceof MulticastSocket) {
+			if (SOCKET_SET_OPTION != null) {
+				invokeSocketOption(SOCKET_SET_OPTION, StandardSocketOptions.IP_MULTICAST_LOOP, enabled);
+			} else {
+				// Java 7 and 8; this is only a hint to the operating system
+				((MulticastSocket) socket).setLoopbackMode(!enabled);
+			}
+		} else {
+			getMulticastChannel().setOption(StandardSocketOptions.IP_MULTICAST_LOOP, enabled);
+		}
+	}
+
+	//
+	@SuppressWarnings("deprecation")
+	public boolean isMulticastLoopback() throws IOException {
+		if (socket instanceof MulticastSocket) {
+			if (SOCKET_GET_OPTION != null) {
+				return (Boolean) invokeSocketOption(SOCKET_GET_OPTION, StandardSocketOptions.IP_MULTICAST_LOOP);
+			}
+			// Java 7 and 8
+			return !((MulticastSocket) socket).getLoopbackMode();
+		}
+		return getMulticastChannel().getOption(StandardSocketOptions.IP_MULTICAST_LOOP);
+	}
+
+	//DatagramSocket.setOption() and getOption() exist since Java 9
+	private static Method getSocketMethod(String name, Class<?>... parameterTypes) {
+		try {
+			return DatagramSocket.class.getMethod(name, parameterTypes);
+		} catch (NoSuchMethodException ex) {
+			return null;
+		}
+	}
+
+	private Object invokeSocketOption(Method method, Object... arguments) throws IOException {
+		try {
+			return method.invoke(socket, arguments);
+		} catch (InvocationTargetException ex) {
+			final Throwable cause = ex.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IOException(cause);
+		} catch (IllegalAccessException ex) {
+			throw new IOException(ex);
+		}
+	}
+
+	private DatagramChannel getMulticastChannel() {
+		final DatagramChannel channel = socket.getChannel();
+		if (channel == null) {
+			throw new UnsupportedOperationException(
+					"multicast needs a MulticastSocket or a DatagramChannel");
+		}
+		return channel;
+	}
+
+	/**
+	 * A channel can only join a group on a given interface:
+	 * the multicast interface of the channel, if it was set,
+	 * otherwise the first one that is up and supports multicast,
+	 * preferring real networks over the loopback interface.
+	 */
+	private static NetworkInterface getDefaultMulticastInterface(DatagramChannel channel)
+			throws IOException
+	{
+		final NetworkInterface configured = channel.getOption(StandardSocketOptions.IP_MULTICAST_IF);
+		if (configured != null) {
+			return configured;
+		}
+		NetworkInterface loopback = null;
+		for (final NetworkInterface candidate : Collections.list(NetworkInterface.getNetworkInterfaces())) {
+			if (candidate.isUp() && candidate.supportsMulticast()) {
+				if (!candidate.isLoopback()) {
+					return candidate;
+				}
+				loopback = candidate;
+			}
+		}
+		if (loopback == null) {
+			throw new IOException("no network interface supports multicast");
+		}
+		return loopback;
+	}
+
 	/**
 	 * Close the socket and free-up resources.
 	 * It is recommended that clients call this when they are done with the
@@ -91,10 +335,20 @@ public class OSCPort {
 		this.port=port;
 	}
 
-	//
+	/**
+	 * Enables tracing of the packets sent or received through this port,
+	 * see {@link Trace}.
+	 * If no trace sink was set up yet, packets are written
+	 * to <code>System.err</code>, from a background thread.
+	 * @param enabled true to trace this ports packets
+	 */
 	public void setDebug(boolean enabled)
 	{
 		debug=enabled;
+		if(enabled)
+		{
+			Trace.enableDefault(Trace.PACKET_IN | Trace.PACKET_OUT);
+		}
 	}
 
 	//
@@ -103,16 +357,26 @@ public class OSCPort {
 		return debug;
 	}
 
-	//
+	/**
+	 * Returns the metrics of this port:
+	 * packets, bytes, failures and latencies.
+	 * @return the metrics, updated while the port is in use
+	 */
+	public OSCMetrics getMetrics()
+	{
+		return metrics;
+	}
+
+	//sent or received, a port only does one of both
 	public long getSuccessfullyProcessedCount()
 	{
-		return successfully_processed_count;
+		return metrics.getPacketsIn() + metrics.getPacketsOut();
 	}
 
 	//
 	public long getSuccessfullyProcessedBytes()
 	{
-		return successfully_processed_bytes;
+		return metrics.getBytesIn() + metrics.getBytesOut();
 	}
 }//end class OSCPort
 //EOF
@@ -9,16 +9,19 @@
 
 package com.illposed.osc;
 
-import com.illposed.osc.utility.ByteArrayToJavaConverter;
-import com.illposed.osc.utility.OSCByteArrayToJavaConverter;
+import com.illposed.osc.utility.OSCByteBufferToJavaConverter;
+import com.illposed.osc.utility.OSCLazyMessage;
+import com.illposed.osc.utility.OSCMetrics;
 import com.illposed.osc.utility.OSCPackByteArrayToJavaConverter;
-import com.illposed.osc.utility.OSCShortcutPacketDispatcher;
+import com.illposed.osc.utility.OSCPacketDispatcher;
+import com.illposed.osc.utility.OSCTriePacketDispatcher;
 import com.illposed.osc.utility.OSCPatternAddressSelector;
-import com.illposed.osc.utility.Debug;
+import com.illposed.osc.utility.Trace;
 
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.SocketException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.net.*;
 
@@ -42,6 +45,9 @@ import java.net.*;
  * to this computer, port {@link #DEFAULT_SC_OSC_PORT},
  * with the address "/message/receiving".
  *
+ * Packets are decoded and dispatched on the listening thread,
+ * to do that on a pool of worker threads, see {@link OSCChannelPortIn}.
+ *
  * @author Chandrasekhar Ramakrishnan
  * @author Thomas Brand
  */
@@ -76,20 +82,51 @@ doesn't like fragments, then the entire packet is lost.
 
 	/** state for listening */
 	private boolean listening;
-	private final OSCByteArrayToJavaConverter converter;
+	private final OSCByteBufferToJavaConverter converter;
 	private final OSCPackByteArrayToJavaConverter pack_converter;
-	private final OSCShortcutPacketDispatcher dispatcher;
+	private final OSCPacketDispatcher dispatcher;
 
 	/**
 	 * Create an OSCPort that listens using a specified socket.
 	 * @param socket DatagramSocket to listen on.
 	 */
 	public OSCPortIn(DatagramSocket socket) {
-		super(socket, socket.getLocalPort());
+		this(socket, new OSCTriePacketDispatcher());
+	}
 
-		this.converter = new OSCByteArrayToJavaConverter();
+	/**
+	 * Create an OSCPort that listens using a specified socket,
+	 * and hands received packets to the given dispatcher.
+	 * The dispatcher may be shared with other ports,
+	 * see {@link OSCPortInGroup}.
+	 * @param socket DatagramSocket to listen on.
+	 * @param dispatcher where to dispatch received packets to
+	 */
+	public OSCPortIn(DatagramSocket socket, OSCPacketDispatcher dispatcher) {
+		this(socket, dispatcher, new OSCMetrics());
+	}
+
+	/**
+	 * Create an OSCPort that listens using a specified socket,
+	 * hands received packets to the given dispatcher,
+	 * and counts them in the given metrics.
+	 * If the dispatcher does not measure its listeners yet,
+	 * it will do so into these metrics.
+	 * @param socket DatagramSocket to listen on.
+	 * @param dispatcher where to dispatch received packets to
+	 * @param metrics where to count packets; may be shared with other ports
+	 */
+	public OSCPortIn(DatagramSocket socket, OSCPacketDispatcher dispatcher, OSCMetrics metrics) {
+		super(socket, socket.getLocalPort(), metrics);
+
+		this.converter = new OSCByteBufferToJavaConverter();
 		this.pack_converter = new OSCPackByteArrayToJavaConverter();
-		this.dispatcher = new OSCShortcutPacketDispatcher();
+		this.converter.setMetrics(metrics);
+		this.pack_converter.setMetrics(metrics);
+		this.dispatcher = dispatcher;
+		if (dispatcher.getMetrics() == null) {
+			dispatcher.setMetrics(metrics);
+		}
 	}
 
 	/**
@@ -128,6 +165,8 @@ doesn't like fragments, then the entire packet is lost.
 	public void run() {
 		final byte[] buffer = new byte[BUFFER_SIZE];
 		final DatagramPacket packet = new DatagramPacket(buffer, BUFFER_SIZE);
+		//view on the receive buffer, numbers are read from it directly
+		final ByteBuffer view = ByteBuffer.wrap(buffer);
 		final DatagramSocket socket = getSocket();
 		while (listening) {
 			try {
@@ -143,31 +182,44 @@ doesn't like fragments, then the entire packet is lost.
 					}
 				}
 
-				if(debug)
+				if(debug && Trace.isEnabled(Trace.PACKET_IN))
 				{
-					System.err.println("OSCPortIn: DatagramPacket received ("+packet.getLength()+" bytes):");
-					Debug.hexdump(buffer,packet.getLength());
+					Trace.trace(Trace.PACKET_IN, "OSCPortIn",
+						"DatagramPacket received ("+packet.getLength()+" bytes)", buffer, packet.getLength());
 				}
 				//decide which bytearray to java converter to use
-				final ByteArrayToJavaConverter conv;
-				if(buffer[0]=='!') //OSCPack
+				//create common datastructure, to be dispatched to listeners
+				final OSCPacket oscPacket;
+				try
 				{
-					conv=pack_converter;
+					if(buffer[0]=='!') //OSCPack
+					{
+						oscPacket = pack_converter.convert(buffer,
+							packet.getLength(),packet.getAddress().getHostAddress(),packet.getPort());
+					}
+					else //it will be checked later on if message starts with '/'
+					{
+						view.clear();
+						view.limit(packet.getLength());
+						oscPacket = converter.convert(view,
+							packet.getAddress().getHostAddress(),packet.getPort());
+					}
 				}
-				else //it will be checked later on if message starts with '/'
+				catch (RuntimeException ex)
 				{
-					conv=converter;
+					metrics.decodeFailed();
+					throw ex;
+				}
+				if(oscPacket==null) //OSCPack reports failures this way
+				{
+					metrics.decodeFailed();
+					continue;
 				}
-
-				//create common datastructure, to be dispatched to listeners
-				final OSCPacket oscPacket = conv.convert(buffer,
-						packet.getLength(),packet.getAddress().getHostAddress(),packet.getPort());
 
 				//update stats, considering success here
 				//dispatcher & friends can still fail
 				//message consumers already have updated stats (including this message)
-				successfully_processed_count++;
-				successfully_processed_bytes+=packet.getLength();
+				metrics.packetReceived(packet.getLength());
 
 				dispatcher.dispatchPacket(oscPacket);
 			} catch (Exception ex) {
@@ -202,6 +254,24 @@ doesn't like fragments, then the entire packet is lost.
 		return listening;
 	}
 
+	/**
+	 * Sets whether received messages decode their arguments right away,
+	 * or only when a listener accesses them (see {@link OSCLazyMessage}).
+	 * Lazy decoding pays off if most messages are filtered by address,
+	 * or if listeners only look at some of the arguments.
+	 * Received messages are then read-only.
+	 * Should be set before calling {@link #startListening()}.
+	 * @param lazy true to decode arguments on access
+	 */
+	public void setLazyDecoding(boolean lazy) {
+		converter.setLazy(lazy);
+	}
+
+	//
+	public boolean isLazyDecoding() {
+		return converter.isLazy();
+	}
+
 	/**
 	 * Registers a listener that will be notified of incoming messages,
 	 * if their address matches the given pattern.
@@ -224,5 +294,22 @@ doesn't like fragments, then the entire packet is lost.
 	public void addListener(AddressSelector addressSelector, OSCListener listener) {
 		dispatcher.addListener(addressSelector, listener);
 	}
+
+	/**
+	 * Removes a listener, so it will no longer be notified of incoming messages.
+	 * @param addressSelector the selector the listener was added with
+	 */
+	public void removeListener(AddressSelector addressSelector) {
+		dispatcher.removeListener(addressSelector);
+	}
+
+	/**
+	 * Removes the listeners that were added with
+	 * {@link #addListener(String, OSCListener)} for the given selector.
+	 * @param addressSelector the selector string the listeners were added with
+	 */
+	public void removeListener(String addressSelector) {
+		dispatcher.removeListener(addressSelector);
+	}
 }//end class OSCPortIn
 //EOF
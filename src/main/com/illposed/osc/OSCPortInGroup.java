@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc;
+
+import com.illposed.osc.utility.OSCMetrics;
+import com.illposed.osc.utility.OSCPacketDispatcher;
+import com.illposed.osc.utility.OSCPatternAddressSelector;
+import com.illposed.osc.utility.OSCTriePacketDispatcher;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * OSCPortInGroup listens on one UDP port with several sockets,
+ * each bound with SO_REUSEPORT, so the operating system spreads incoming
+ * packets over them (by source address and port).
+ *
+ * Every socket is served by its own {@link OSCPortIn},
+ * with its own receive thread and converters,
+ * and all of them dispatch to one shared {@link OSCPacketDispatcher}.
+ * Listeners are therefore called from several threads,
+ * possibly concurrently.
+ * Packets from one source always arrive on the same socket,
+ * which keeps them in order.
+ * All sockets count into one shared {@link OSCMetrics}.
+ *
+ * SO_REUSEPORT needs a Java 9 or newer runtime, and an operating system
+ * that supports it (e.g. Linux 3.9 or newer, BSD, OS X).
+ *
+ * @author Thomas Brand
+ */
+public class OSCPortInGroup {
+
+	private final OSCPacketDispatcher dispatcher;
+	private final OSCMetrics metrics;
+	private final OSCPortIn[] ports;
+	private final int port;
+
+	/**
+	 * Create a group of sockets, all listening on the specified port.
+	 * @param port UDP port to listen on
+	 * @param numSockets how many sockets (and receive threads) to use
+	 * @throws IOException if a socket could not be opened or bound,
+	 *   or if SO_REUSEPORT is not available
+	 */
+	public OSCPortInGroup(int port, int numSockets) throws IOException {
+		this(port, numSockets, new OSCTriePacketDispatcher());
+	}
+
+	/**
+	 * Create a group of sockets, all listening on the specified port,
+	 * and dispatching to the given dispatcher.
+	 * @param port UDP port to listen on
+	 * @param numSockets how many sockets (and receive threads) to use
+	 * @param dispatcher shared by all sockets of the group
+	 * @throws IOException if a socket could not be opened or bound,
+	 *   or if SO_REUSEPORT is not available
+	 */
+	public OSCPortInGroup(int port, int numSockets, OSCPacketDispatcher dispatcher) throws IOException {
+		if (numSockets < 1) {
+			throw new IllegalArgumentException("Need at least one socket");
+		}
+
+		this.dispatcher = dispatcher;
+		this.metrics = new OSCMetrics();
+		this.ports = new OSCPortIn[numSockets];
+
+		final SocketOption<Boolean> reusePort = getReusePortOption();
+		int boundPort = port;
+		try {
+			for (int si = 0; si < numSockets; si++) {
+				final DatagramChannel channel = DatagramChannel.open();
+				try {
+					channel.setOption(reusePort, Boolean.TRUE);
+					channel.bind(new InetSocketAddress(boundPort));
+				} catch (IOException ex) {
+					channel.close();
+					throw ex;
+				} catch (UnsupportedOperationException ex) {
+					channel.close();
+					throw new IOException("SO_REUSEPORT is not supported on this system", ex);
+				}
+				//when binding to port 0, all others join the port that was picked
+				boundPort = channel.socket().getLocalPort();
+				ports[si] = new OSCPortIn(channel.socket(), dispatcher, metrics);
+			}
+		} catch (IOException ex) {
+			close();
+			throw ex;
+		}
+		this.port = boundPort;
+	}
+
+	//StandardSocketOptions.SO_REUSEPORT exists since Java 9
+	@SuppressWarnings("unchecked")
+	private static SocketOption<Boolean> getReusePortOption() throws IOException {
+		try {
+			return (SocketOption<Boolean>) StandardSocketOptions.class
+					.getField("SO_REUSEPORT").get(null);
+		} catch (Exception ex) {
+			throw new IOException("SO_REUSEPORT is not available in this Java runtime", ex);
+		}
+	}
+
+	/**
+	 * Returns the port number all sockets of this group are bound to.
+	 * @return the port number
+	 */
+	public int getPort() {
+		return port;
+	}
+
+	/**
+	 * Returns the number of sockets in this group.
+	 * @return how many sockets listen on the port
+	 */
+	public int size() {
+		return ports.length;
+	}
+
+	/**
+	 * Start listening for incoming OSCPackets, on all sockets
+	 */
+	public void startListening() {
+		for (final OSCPortIn portIn : ports) {
+			portIn.startListening();
+		}
+	}
+
+	/**
+	 * Stop listening for incoming OSCPackets, on all sockets
+	 */
+	public void stopListening() {
+		for (final OSCPortIn portIn : ports) {
+			portIn.stopListening();
+		}
+	}
+
+	/**
+	 * Am I listening for packets?
+	 * @return true if this group is in listening mode
+	 */
+	public boolean isListening() {
+		return ports[0].isListening();
+	}
+
+	/**
+	 * Stop listening, close all sockets and free-up resources.
+	 */
+	public void close() {
+		// stop first, so the receive threads take the closed sockets as the end
+		for (final OSCPortIn portIn : ports) {
+			if (portIn != null) {
+				portIn.stopListening();
+			}
+		}
+		for (final OSCPortIn portIn : ports) {
+			if (portIn != null) {
+				portIn.close();
+			}
+		}
+	}
+
+	//
+	public void setDebug(boolean enabled)
+	{
+		for (final OSCPortIn portIn : ports) {
+			portIn.setDebug(enabled);
+		}
+	}
+
+	/**
+	 * Sets whether received messages decode their arguments
+	 * only when a listener accesses them, on all sockets.
+	 * @param lazy true to decode arguments on access
+	 * @see OSCPortIn#setLazyDecoding(boolean)
+	 */
+	public void setLazyDecoding(boolean lazy)
+	{
+		for (final OSCPortIn portIn : ports) {
+			portIn.setLazyDecoding(lazy);
+		}
+	}
+
+	//shared by all sockets
+	public OSCMetrics getMetrics()
+	{
+		return metrics;
+	}
+
+	//sum of all sockets
+	public long getSuccessfullyProcessedCount()
+	{
+		return metrics.getPacketsIn();
+	}
+
+	//sum of all sockets
+	public long getSuccessfullyProcessedBytes()
+	{
+		return metrics.getBytesIn();
+	}
+
+	/**
+	 * Registers a listener that will be notified of incoming messages,
+	 * if their address matches the given pattern.
+	 *
+	 * @param addressSelector either a fixed address like "/sc/mixer/volume",
+	 *   or a selector pattern (a mix between wildcards and regex)
+	 *   like "/??/mixer/*", see {@link OSCPatternAddressSelector} for details
+	 * @param listener will be notified of incoming packets, if they match
+	 */
+	public void addListener(String addressSelector, OSCListener listener) {
+		this.addListener(new OSCPatternAddressSelector(addressSelector), listener);
+	}
+
+	/**
+	 * Registers a listener that will be notified of incoming messages,
+	 * if their address matches the given selector.
+	 * Listeners should be added before calling {@link #startListening()}.
+	 * @param addressSelector a custom address selector
+	 * @param listener will be notified of incoming packets, if they match
+	 */
+	public void addListener(AddressSelector addressSelector, OSCListener listener) {
+		dispatcher.addListener(addressSelector, listener);
+	}
+
+	/**
+	 * Removes a listener, so it will no longer be notified of incoming messages.
+	 * @param addressSelector the selector the listener was added with
+	 */
+	public void removeListener(AddressSelector addressSelector) {
+		dispatcher.removeListener(addressSelector);
+	}
+
+	/**
+	 * Removes the listeners that were added with
+	 * {@link #addListener(String, OSCListener)} for the given selector.
+	 * @param addressSelector the selector string the listeners were added with
+	 */
+	public void removeListener(String addressSelector) {
+		dispatcher.removeListener(addressSelector);
+	}
+}//end class OSCPortInGroup
+//EOF
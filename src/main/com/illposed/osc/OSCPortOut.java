@@ -8,14 +8,19 @@
 
 package com.illposed.osc;
 
-import com.illposed.osc.utility.Debug;
+import com.illposed.osc.utility.OSCJavaToByteBufferConverter;
+import com.illposed.osc.utility.Trace;
 
 import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.SocketException;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.List;
 
 /**
  * OSCPortOut is the class that sends OSC messages
@@ -38,11 +43,51 @@ import java.net.UnknownHostException;
  * }
  * }</pre></blockquote>
  *
+ * If the port is created with a {@link DatagramChannel},
+ * packets are encoded into a reusable, per thread direct buffer,
+ * which is then handed to the channel as it is.
+ * In this mode, sending a message with plain ASCII strings and an already
+ * sized buffer does not create intermediate byte arrays or DatagramPackets.
+ * <blockquote><pre>{@code
+ * OSCPortOut sender = new OSCPortOut(address, port, DatagramChannel.open());
+ * }</pre></blockquote>
+ *
+ * UDP datagrams bigger than the MTU of the network are fragmented by IP,
+ * and lost as a whole if any fragment is lost.
+ * With {@link #setMaxPacketSize(int)}, bigger bundles are split up
+ * and sent as several bundles with the same time-tag.
+ * <blockquote><pre>{@code
+ * sender.setMaxPacketSize(OSCPortOut.ETHERNET_MAX_PACKET_SIZE);
+ * }</pre></blockquote>
+ *
  * @author Chandrasekhar Ramakrishnan
  */
 public class OSCPortOut extends OSCPort {
 
+	/**
+	 * Encoders for the channel send path, one per sending thread,
+	 * shared by all ports of this package that send through a channel.
+	 */
+	static final ThreadLocal<OSCJavaToByteBufferConverter> ENCODERS
+			= new ThreadLocal<OSCJavaToByteBufferConverter>() {
+		@Override
+		protected OSCJavaToByteBufferConverter initialValue() {
+			return new OSCJavaToByteBufferConverter(
+					OSCJavaToByteBufferConverter.DEFAULT_CAPACITY, true);
+		}
+	};
+
+	/**
+	 * The biggest UDP payload that fits into one Ethernet frame:
+	 * 1500 bytes MTU, minus 20 bytes IPv4 header and 8 bytes UDP header.
+	 */
+	public static final int ETHERNET_MAX_PACKET_SIZE = 1472;
+
 	private InetAddress address;
+	/** address and port as one object, as needed by the channel */
+	private InetSocketAddress target;
+	/** bundles bigger than this are split up, 0 to send all packets as they are */
+	private int maxPacketSize;
 
 	/**
 	 * Create an OSCPort that sends to address:port using a specified socket.
@@ -55,6 +100,17 @@ public class OSCPortOut extends OSCPort {
 		this.address = address;
 	}
 
+	/**
+	 * Create an OSCPort that sends to address:port using a specified channel.
+	 * The channel is expected to be in blocking mode (the default).
+	 * @param address the UDP address to send to
+	 * @param port the UDP port to send to
+	 * @param channel the DatagramChannel to send from
+	 */
+	public OSCPortOut(InetAddress address, int port, DatagramChannel channel) {
+		this(address, port, channel.socket());
+	}
+
 	/**
 	 * Create an OSCPort that sends to address:port.
 	 * @param address the UDP address to send to
@@ -91,19 +147,92 @@ public class OSCPortOut extends OSCPort {
 	 * @throws IOException if a (UDP) socket I/O error occurs
 	 */
 	public void send(OSCPacket aPacket) throws IOException {
+		if (maxPacketSize > 0 && aPacket instanceof OSCBundle) {
+			final List<OSCBundle> parts = ((OSCBundle) aPacket).split(maxPacketSize);
+			if (parts.size() > 1) {
+				for (final OSCBundle part : parts) {
+					sendPacket(part);
+				}
+				return;
+			}
+		}
+		sendPacket(aPacket);
+	}
+
+	//send one packet in one datagram
+	private void sendPacket(OSCPacket aPacket) throws IOException {
+		final DatagramChannel channel = getSocket().getChannel();
+		if (channel != null && aPacket instanceof AbstractOSCPacket) {
+			send((AbstractOSCPacket) aPacket, channel);
+			return;
+		}
+
 		final byte[] byteArray = aPacket.getByteArray();
-		if(debug)
+		if(debug && Trace.isEnabled(Trace.PACKET_OUT))
 		{
-			System.err.println("OSCPortOut: creating DatagramPacket with content ("+byteArray.length+" bytes):");
-			Debug.hexdump(byteArray);
+			Trace.trace(Trace.PACKET_OUT, "OSCPortOut",
+				"creating DatagramPacket with content ("+byteArray.length+" bytes)", byteArray, byteArray.length);
 		}
 		final DatagramPacket packet =
 				new DatagramPacket(byteArray, byteArray.length, address, getPort());
 		getSocket().send(packet);
 
 		//update stats
-		successfully_processed_count++;
-		successfully_processed_bytes+=byteArray.length;
+		metrics.packetSent(byteArray.length);
+	}
+
+	/**
+	 * Encode the packet into the buffer of the calling thread,
+	 * and send that buffer through the channel.
+	 */
+	private void send(AbstractOSCPacket aPacket, DatagramChannel channel) throws IOException {
+		final OSCJavaToByteBufferConverter encoder = ENCODERS.get();
+		encoder.clear();
+		aPacket.writeTo(encoder);
+		if(debug && Trace.isEnabled(Trace.PACKET_OUT))
+		{
+			final byte[] content = encoder.toByteArray();
+			Trace.trace(Trace.PACKET_OUT, "OSCPortOut",
+				"sending buffer with content ("+content.length+" bytes)", content, content.length);
+		}
+		final ByteBuffer buffer = encoder.toByteBuffer();
+		final int length = buffer.remaining();
+		channel.send(buffer, getTarget());
+
+		//update stats
+		metrics.packetSent(length);
+	}
+
+	//cached, only re-created if address or port changed
+	private InetSocketAddress getTarget() {
+		final InetSocketAddress current = target;
+		if (current != null
+				&& current.getPort() == getPort()
+				&& current.getAddress() == address)
+		{
+			return current;
+		}
+		target = new InetSocketAddress(address, getPort());
+		return target;
+	}
+
+	/**
+	 * Sets the size above which bundles are split up
+	 * into several bundles with the same time-tag, see {@link OSCBundle#split(int)}.
+	 * Messages are always sent as they are.
+	 * @param maxPacketSize in bytes, for example {@link #ETHERNET_MAX_PACKET_SIZE},
+	 *   or 0 to send all packets as they are (the default)
+	 */
+	public void setMaxPacketSize(int maxPacketSize) {
+		if (maxPacketSize < 0) {
+			throw new IllegalArgumentException("maximum packet size may not be negative: " + maxPacketSize);
+		}
+		this.maxPacketSize = maxPacketSize;
+	}
+
+	//
+	public int getMaxPacketSize() {
+		return maxPacketSize;
 	}
 
 	//set new target address for this port
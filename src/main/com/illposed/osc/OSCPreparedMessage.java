@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc;
+
+import com.illposed.osc.utility.JavaToByteArrayConverter;
+import com.illposed.osc.utility.OSCJavaToByteArrayConverter;
+import com.illposed.osc.utility.OSCJavaToByteBufferConverter;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+
+/**
+ * An OSC message that is encoded only once,
+ * for messages that are sent again and again
+ * with the same address and type tags, but changing numbers.
+ *
+ * The address, the type tags and all arguments are encoded when preparing.
+ * Arguments of type 'i', 'h', 'f' and 'd' have a fixed size,
+ * so their values can then be replaced right in the encoded bytes,
+ * with {@link #setInt(int, int)} and friends.
+ * Sending the message afterwards only copies the bytes.
+ * <blockquote><pre>{@code
+ * OSCPreparedMessage position = new OSCPreparedMessage("/position",
+ *         Arrays.<Object>asList(0, 0.0f, 0.0f));
+ * position.setInt(0, id).setFloat(1, x).setFloat(2, y);
+ * portOut.send(position);
+ * }</pre></blockquote>
+ *
+ * All other arguments (strings, blobs, arrays, ...) keep the value
+ * they had when preparing.
+ * The message is always encoded as plain OSC.
+ * Like {@link OSCMessage}, instances must not be changed
+ * while they are being sent from an other thread.
+ *
+ * @author Thomas Brand
+ */
+public class OSCPreparedMessage extends AbstractOSCPacket {
+
+	/** Marks an argument whose value can not be replaced. */
+	private static final int FIXED = -1;
+
+	private final String address;
+	/** type tag of each argument, as in {@link OSCArguments#getTypeTag(int)} */
+	private final byte[] types;
+	/** where the value of each argument starts in the encoded bytes, or {@link #FIXED} */
+	private final int[] offsets;
+	/** the encoded bytes, for writing numbers in place (big-endian) */
+	private final ByteBuffer patch;
+
+	/**
+	 * Prepares a message with the given address and arguments.
+	 * @param address the recipient of this OSC message
+	 * @param arguments the data sent to the receiver, with the initial numbers
+	 */
+	public OSCPreparedMessage(String address, Collection<Object> arguments) {
+		this(new OSCMessage(address, arguments));
+	}
+
+	/**
+	 * Prepares a message with the address, arguments and charset of an other message.
+	 * Later changes to the template do not change the prepared message.
+	 * @param template the message to encode
+	 */
+	public OSCPreparedMessage(OSCMessage template) {
+		super();
+
+		if (template.getAddress() == null) {
+			throw new IllegalArgumentException("the template needs an address");
+		}
+		this.address = template.getAddress();
+		this.charset = template.getCharset();
+
+		final OSCArguments arguments = new OSCArguments(template.getArguments());
+		this.types = new byte[arguments.size()];
+		this.offsets = new int[arguments.size()];
+
+		final OSCJavaToByteBufferConverter stream = new OSCJavaToByteBufferConverter();
+		stream.setCharset(charset);
+		stream.write(address);
+		stream.write(',');
+		stream.writeTypes(arguments);
+		for (int ai = 0; ai < types.length; ai++) {
+			types[ai] = arguments.getTypeTag(ai);
+			switch (types[ai]) {
+				case 'i':
+				case 'h':
+				case 'f':
+				case 'd':
+					offsets[ai] = stream.size();
+					break;
+				default:
+					offsets[ai] = FIXED;
+			}
+			stream.write(arguments.get(ai));
+		}
+		this.byteArray = stream.toByteArray();
+		this.patch = ByteBuffer.wrap(byteArray);
+	}
+
+	/**
+	 * The receiver of this message.
+	 * @return the receiver of this OSC Message
+	 */
+	public String getAddress() {
+		return address;
+	}
+
+	//
+	public int getArgumentCount() {
+		return types.length;
+	}
+
+	/**
+	 * Replaces the value of an integer argument in the encoded message.
+	 * @param index of the argument
+	 * @param value the new value
+	 * @return this message
+	 * @throws ClassCastException if the argument is not of type 'i'
+	 */
+	public OSCPreparedMessage setInt(int index, int value) {
+		patch.putInt(offsetOf(index, 'i'), value);
+		return this;
+	}
+
+	/**
+	 * Replaces the value of a long argument in the encoded message.
+	 * @param index of the argument
+	 * @param value the new value
+	 * @return this message
+	 * @throws ClassCastException if the argument is not of type 'h'
+	 */
+	public OSCPreparedMessage setLong(int index, long value) {
+		patch.putLong(offsetOf(index, 'h'), value);
+		return this;
+	}
+
+	/**
+	 * Replaces the value of a float argument in the encoded message.
+	 * @param index of the argument
+	 * @param value the new value
+	 * @return this message
+	 * @throws ClassCastException if the argument is not of type 'f'
+	 */
+	public OSCPreparedMessage setFloat(int index, float value) {
+		patch.putFloat(offsetOf(index, 'f'), value);
+		return this;
+	}
+
+	/**
+	 * Replaces the value of a double argument in the encoded message.
+	 * @param index of the argument
+	 * @param value the new value
+	 * @return this message
+	 * @throws ClassCastException if the argument is not of type 'd'
+	 */
+	public OSCPreparedMessage setDouble(int index, double value) {
+		patch.putDouble(offsetOf(index, 'd'), value);
+		return this;
+	}
+
+	//
+	public int getInt(int index) {
+		return patch.getInt(offsetOf(index, 'i'));
+	}
+
+	//
+	public long getLong(int index) {
+		return patch.getLong(offsetOf(index, 'h'));
+	}
+
+	//
+	public float getFloat(int index) {
+		return patch.getFloat(offsetOf(index, 'f'));
+	}
+
+	//
+	public double getDouble(int index) {
+		return patch.getDouble(offsetOf(index, 'd'));
+	}
+
+	private int offsetOf(int index, char type) {
+		if (index < 0 || index >= types.length) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + types.length);
+		}
+		if (types[index] != type) {
+			throw new ClassCastException("argument " + index + " is not of type '" + type + "'");
+		}
+		return offsets[index];
+	}
+
+	/** The bytes were encoded when preparing, and are only patched afterwards. */
+	@Override
+	protected void contentChanged() {
+	}
+
+	//the prepared bytes, which are never dropped
+	@Override
+	protected byte[] computeByteArray() {
+		return byteArray;
+	}
+
+	//copies the prepared bytes
+	@Override
+	protected void writeContent(JavaToByteArrayConverter stream) {
+		stream.writeRaw(byteArray);
+	}
+
+	//copies the prepared bytes
+	@Override
+	public void writeTo(OSCJavaToByteBufferConverter stream) {
+		stream.writeRaw(byteArray);
+	}
+
+	//implement abstract method from abstract superclass
+	public JavaToByteArrayConverter getConverter() {
+		return new OSCJavaToByteArrayConverter();
+	}
+}//end class OSCPreparedMessage
+//EOF
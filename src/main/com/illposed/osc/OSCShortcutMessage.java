@@ -32,7 +32,7 @@ public class OSCShortcutMessage extends OSCMessage {
 	}
 
 	@Override
-	protected byte[] computeByteArray(JavaToByteArrayConverter stream) {
+	protected void writeContent(JavaToByteArrayConverter stream) {
 
 		///lookup if available as shortcut
 		OSCShortcut sc=osm.get(address+" "+Tagger.getTypesArray(arguments));
@@ -63,8 +63,12 @@ public class OSCShortcutMessage extends OSCMessage {
 
 		computeAddressByteArray(stream);
 		computeArgumentsByteArray(stream);
+	}//end writeContent()
 
-		return stream.toByteArray();
-	}//end computeByteArray()
+	//the shortcut (if any) is only applied when encoding
+	@Override
+	public int computeSize() {
+		return getByteArray().length;
+	}
 }//end class OSCShortcutMessage
 //EOF
@@ -9,6 +9,7 @@
 package com.illposed.osc;
 
 import com.illposed.osc.utility.JavaToByteArrayConverter;
+import com.illposed.osc.utility.OSCJavaToByteBufferConverter;
 import com.illposed.osc.utility.OSCJavaToOSCPackByteArrayConverter;
 
 import java.util.Collection;
@@ -31,9 +32,19 @@ public class OSCShortcutPackMessage extends OSCShortcutMessage {
 	@Override
 	protected void computeArgumentsByteArray(JavaToByteArrayConverter stream) {
 		stream.writeTypes(arguments);
-		for (final Object argument : arguments) {
-			stream.write(argument);
-		}
+		arguments.writeTo(stream);
+	}
+
+	//written with the OSCPack converter
+	@Override
+	protected boolean isPacked() {
+		return true;
+	}
+
+	//OSCPack can't be written by the OSC buffer converter, copy it
+	@Override
+	public void writeTo(OSCJavaToByteBufferConverter stream) {
+		stream.writeRaw(getByteArray());
 	}
 
 	@Override
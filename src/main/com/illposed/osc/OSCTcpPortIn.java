@@ -0,0 +1,587 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc;
+
+import com.illposed.osc.utility.OSCByteBufferToJavaConverter;
+import com.illposed.osc.utility.OSCMetrics;
+import com.illposed.osc.utility.OSCPackByteArrayToJavaConverter;
+import com.illposed.osc.utility.OSCPatternAddressSelector;
+import com.illposed.osc.utility.OSCStreamDecoder;
+import com.illposed.osc.utility.OSCStreamFraming;
+import com.illposed.osc.utility.OSCTriePacketDispatcher;
+import com.illposed.osc.utility.Trace;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * OSCTcpPortIn accepts TCP connections, and listens for OSC packets on them.
+ *
+ * Unlike UDP, TCP delivers packets of any size, reliably and in order.
+ * As a stream has no packet boundaries, both sides have to agree
+ * on the {@link OSCStreamFraming}: SLIP as of OSC 1.1 (the default),
+ * or the size prefix of OSC 1.0.
+ *
+ * The connections are shared among a few selector threads,
+ * which read from all of their connections without blocking,
+ * and decode and dispatch the packets.
+ * So thousands of mostly idle connections need no thread each.
+ * Each selector thread reads into one direct buffer;
+ * only packets that span several reads are collected
+ * in buffers taken from a pool shared by all connections.
+ * Listeners are called from the selector threads,
+ * possibly concurrently for packets from different connections,
+ * but in order for packets from the same connection.
+ * A slow listener delays the other connections of its selector thread.
+ *
+ * A connection is closed, when it is not properly framed,
+ * or sends a packet bigger than {@link #setMaxFrameSize(int)}.
+ *
+ * Usage is the same as with {@link OSCPortIn}:
+ * <blockquote><pre>{@code
+ * receiver = new OSCTcpPortIn(OSCPort.DEFAULT_SC_OSC_PORT);
+ * receiver.addListener("/preset/load", listener);
+ * receiver.startListening();
+ * }</pre></blockquote>
+ *
+ * @see OSCTcpPortOut
+ * @author Thomas Brand
+ */
+public class OSCTcpPortIn {
+
+	public static final int DEFAULT_SELECTORS = 2;
+	public static final int DEFAULT_POOL_SIZE = 64;
+	/** The size of the pooled buffers for partial packets. */
+	public static final int POOL_BUFFER_SIZE = 8192;
+	/** The size of the read buffer of each selector thread. */
+	private static final int READ_BUFFER_SIZE = 65536;
+	/** How long a selector thread waits for I/O, before checking whether to stop. */
+	private static final long SELECT_TIMEOUT_MILLIS = 100;
+
+	/** One client connection, and the state of its stream. */
+	private static class Connection {
+
+		private final SocketChannel channel;
+		private final OSCStreamDecoder decoder;
+		private final String remoteHost;
+		private final int remotePort;
+		/** closed by its selector thread, or by {@link OSCTcpPortIn#close()} */
+		private boolean closed;
+
+		Connection(SocketChannel channel, OSCStreamDecoder decoder) throws IOException {
+			final InetSocketAddress remote = (InetSocketAddress) channel.getRemoteAddress();
+			this.channel = channel;
+			this.decoder = decoder;
+			this.remoteHost = remote.getAddress().getHostAddress();
+			this.remotePort = remote.getPort();
+		}
+	}
+
+	/** Reads, decodes and dispatches the packets of the connections assigned to it. */
+	private class SelectorLoop implements Runnable, OSCStreamDecoder.FrameListener {
+
+		private final Selector selector;
+		/** accepted connections, to be registered by this thread */
+		private final Queue<SocketChannel> accepted;
+		private final ByteBuffer readBuffer;
+		private final OSCByteBufferToJavaConverter converter;
+		private final OSCPackByteArrayToJavaConverter pack_converter;
+		private byte[] pack_bytes;
+		/** the connection whose frames are being decoded */
+		private Connection current;
+
+		SelectorLoop() throws IOException {
+			this.selector = Selector.open();
+			this.accepted = new ConcurrentLinkedQueue<SocketChannel>();
+			this.readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+			this.converter = new OSCByteBufferToJavaConverter();
+			this.pack_converter = new OSCPackByteArrayToJavaConverter();
+			this.pack_bytes = new byte[POOL_BUFFER_SIZE];
+			this.converter.setMetrics(metrics);
+			this.pack_converter.setMetrics(metrics);
+		}
+
+		void add(SocketChannel channel) {
+			accepted.offer(channel);
+			selector.wakeup();
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (listening) {
+					selector.select(SELECT_TIMEOUT_MILLIS);
+					registerAccepted();
+					final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+					while (keys.hasNext()) {
+						final SelectionKey key = keys.next();
+						keys.remove();
+						if (!key.isValid()) {
+							continue;
+						}
+						if (key.isAcceptable()) {
+							accept();
+						} else if (key.isReadable()) {
+							read(key);
+						}
+					}
+				}
+			} catch (ClosedSelectorException ex) {
+				// closed while listening, the exception is expected/normal
+			} catch (IOException ex) {
+				ex.printStackTrace();
+			} finally {
+				closeConnections();
+			}
+		}
+
+		private void registerAccepted() {
+			SocketChannel channel;
+			while ((channel = accepted.poll()) != null) {
+				try {
+					final OSCStreamDecoder decoder = new OSCStreamDecoder(
+							framing, maxFrameSize, pool, POOL_BUFFER_SIZE);
+					channel.register(selector, SelectionKey.OP_READ, new Connection(channel, decoder));
+					connections.incrementAndGet();
+				} catch (IOException ex) {
+					close(channel);
+				}
+			}
+		}
+
+		private void accept() throws IOException {
+			SocketChannel channel;
+			while ((channel = server.accept()) != null) {
+				try {
+					channel.configureBlocking(false);
+					channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+				} catch (IOException ex) {
+					close(channel);
+					continue;
+				}
+				final int next = (nextLoop.getAndIncrement() & 0x7fffffff) % loops.length;
+				loops[next].add(channel);
+			}
+		}
+
+		private void read(SelectionKey key) {
+			final Connection connection = (Connection) key.attachment();
+			try {
+				// keep on reading while the buffer is filled, as during bulk transfers
+				int count = READ_BUFFER_SIZE;
+				while (count == READ_BUFFER_SIZE) {
+					readBuffer.clear();
+					count = connection.channel.read(readBuffer);
+					if (count < 0) {
+						if (connection.decoder.isInFrame()) {
+							metrics.decodeFailed();
+						}
+						closeConnection(key);
+						return;
+					}
+					readBuffer.flip();
+					current = connection;
+					connection.decoder.decode(readBuffer, this);
+				}
+			} catch (IOException ex) {
+				// not properly framed, or reset by the client
+				metrics.decodeFailed();
+				closeConnection(key);
+			} finally {
+				current = null;
+			}
+		}
+
+		@Override
+		public void frameDecoded(ByteBuffer frame) {
+			try {
+				process(frame, current);
+			} catch (Exception ex) {
+				ex.printStackTrace();
+			}
+		}
+
+		private void process(final ByteBuffer frame, final Connection source) {
+			final int length = frame.remaining();
+
+			if(debug && Trace.isEnabled(Trace.PACKET_IN))
+			{
+				final byte[] content = new byte[length];
+				frame.duplicate().get(content);
+				Trace.trace(Trace.PACKET_IN, "OSCTcpPortIn",
+					"frame received ("+length+" bytes)", content, length);
+			}
+
+			final OSCPacket oscPacket;
+			try
+			{
+				if(frame.get(frame.position())=='!') //OSCPack
+				{
+					if (pack_bytes.length < length) {
+						pack_bytes = new byte[length];
+					}
+					frame.get(pack_bytes, 0, length);
+					oscPacket = pack_converter.convert(pack_bytes, length,
+							source.remoteHost, source.remotePort);
+				}
+				else
+				{
+					oscPacket = converter.convert(frame, source.remoteHost, source.remotePort);
+				}
+			}
+			catch (RuntimeException ex)
+			{
+				metrics.decodeFailed();
+				throw ex;
+			}
+			if(oscPacket==null) //OSCPack reports failures this way
+			{
+				metrics.decodeFailed();
+				return;
+			}
+
+			//update stats, considering success here, prior to dispatching
+			metrics.packetReceived(length);
+
+			dispatcher.dispatchPacket(oscPacket);
+		}
+
+		private void closeConnection(SelectionKey key) {
+			final Connection connection = (Connection) key.attachment();
+			synchronized (connection) {
+				if (connection.closed) {
+					return;
+				}
+				connection.closed = true;
+			}
+			key.cancel();
+			connection.decoder.reset();
+			close(connection.channel);
+			connections.decrementAndGet();
+		}
+
+		private void closeConnections() {
+			try {
+				for (final SelectionKey key : selector.keys().toArray(new SelectionKey[0])) {
+					if (key.attachment() instanceof Connection) {
+						closeConnection(key);
+					}
+				}
+			} catch (ClosedSelectorException ex) {
+				// the port was closed, and so were its connections
+			}
+			SocketChannel channel;
+			while ((channel = accepted.poll()) != null) {
+				close(channel);
+			}
+		}
+	}
+
+	/** state for listening */
+	private volatile boolean listening;
+	private boolean debug;
+	private volatile int maxFrameSize;
+	private final ServerSocketChannel server;
+	private final OSCStreamFraming framing;
+	private final OSCMetrics metrics;
+	private final OSCTriePacketDispatcher dispatcher;
+	/** buffers for packets that span several reads, shared by all connections */
+	private final BlockingQueue<ByteBuffer> pool;
+	private final SelectorLoop[] loops;
+	private final Thread[] threads;
+	private final AtomicInteger nextLoop;
+	private final AtomicInteger connections;
+
+	/**
+	 * Create a port that accepts connections on a specified (bound) server channel.
+	 * @param server the ServerSocketChannel to accept connections on
+	 * @param framing how packets are delimited on the connections
+	 * @param numSelectors how many threads read from the connections
+	 * @throws IOException if the selectors can not be opened
+	 */
+	public OSCTcpPortIn(ServerSocketChannel server, OSCStreamFraming framing, int numSelectors)
+			throws IOException
+	{
+		if (numSelectors < 1) {
+			throw new IllegalArgumentException("Need at least one selector");
+		}
+
+		this.server = server;
+		this.framing = framing;
+		this.maxFrameSize = OSCStreamDecoder.DEFAULT_MAX_FRAME_SIZE;
+		this.metrics = new OSCMetrics();
+		this.dispatcher = new OSCTriePacketDispatcher();
+		this.dispatcher.setMetrics(metrics);
+		this.pool = new ArrayBlockingQueue<ByteBuffer>(DEFAULT_POOL_SIZE);
+		this.loops = new SelectorLoop[numSelectors];
+		this.threads = new Thread[numSelectors];
+		this.nextLoop = new AtomicInteger();
+		this.connections = new AtomicInteger();
+
+		server.configureBlocking(false);
+		for (int si = 0; si < numSelectors; si++) {
+			loops[si] = new SelectorLoop();
+		}
+		// the first selector thread accepts the connections, as they are rare
+		server.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+	}
+
+	/**
+	 * Create a port that accepts connections on the specified port.
+	 * @param port TCP port to listen on
+	 * @param framing how packets are delimited on the connections
+	 * @throws IOException if the server channel can not be opened or bound
+	 */
+	public OSCTcpPortIn(int port, OSCStreamFraming framing) throws IOException {
+		this(openServer(port), framing, DEFAULT_SELECTORS);
+	}
+
+	/**
+	 * Create a port that accepts connections on the specified port,
+	 * with OSC 1.1 SLIP framing.
+	 * @param port TCP port to listen on
+	 * @throws IOException if the server channel can not be opened or bound
+	 */
+	public OSCTcpPortIn(int port) throws IOException {
+		this(port, OSCStreamFraming.SLIP);
+	}
+
+	private static ServerSocketChannel openServer(int port) throws IOException {
+		final ServerSocketChannel server = ServerSocketChannel.open();
+		try {
+			server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+			server.bind(new InetSocketAddress(port));
+		} catch (IOException ex) {
+			server.close();
+			throw ex;
+		}
+		return server;
+	}
+
+	private static void close(SocketChannel channel) {
+		try {
+			channel.close();
+		} catch (IOException ex) {
+			// nothing left to do with it
+		}
+	}
+
+	/**
+	 * Start accepting connections and listening for incoming OSCPackets
+	 */
+	public synchronized void startListening() {
+		if (listening) {
+			return;
+		}
+		for (final Thread thread : threads) {
+			if (thread != null && thread.isAlive()) {
+				// stopped from one of its own listeners, and not done yet
+				throw new IllegalStateException("Still stopping to listen");
+			}
+		}
+		listening = true;
+		for (int si = 0; si < loops.length; si++) {
+			threads[si] = new Thread(loops[si], "OSCTcpPortIn-selector-" + si);
+			// The JVM exits when the only threads running are all daemon threads.
+			threads[si].setDaemon(true);
+			threads[si].start();
+		}
+	}
+
+	/**
+	 * Stop listening for incoming OSCPackets,
+	 * and close all connections.
+	 * Waits for the selector threads to finish,
+	 * unless it is called from one of them, by a listener.
+	 */
+	public synchronized void stopListening() {
+		listening = false;
+		for (final SelectorLoop loop : loops) {
+			loop.selector.wakeup();
+		}
+		for (int si = 0; si < threads.length; si++) {
+			final Thread thread = threads[si];
+			if (thread == null || thread == Thread.currentThread()) {
+				continue;
+			}
+			try {
+				thread.join();
+				threads[si] = null;
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Am I listening for packets?
+	 * @return true if this port is in listening mode
+	 */
+	public boolean isListening() {
+		return listening;
+	}
+
+	/**
+	 * Closes all connections and the server channel, and frees up resources.
+	 */
+	public void close() {
+		stopListening();
+		for (final SelectorLoop loop : loops) {
+			// closing a selector does not close the channels registered with it
+			loop.closeConnections();
+			try {
+				loop.selector.close();
+			} catch (IOException ex) {
+				ex.printStackTrace();
+			}
+		}
+		try {
+			server.close();
+		} catch (IOException ex) {
+			ex.printStackTrace();
+		}
+	}
+
+	/**
+	 * Returns the port number connections are accepted on.
+	 * @return the local port of the server channel
+	 */
+	public int getPort() {
+		return server.socket().getLocalPort();
+	}
+
+	/**
+	 * Number of open client connections.
+	 * @return connections accepted and not closed yet
+	 */
+	public int getConnectionCount() {
+		return connections.get();
+	}
+
+	//
+	public OSCStreamFraming getFraming() {
+		return framing;
+	}
+
+	/**
+	 * Sets the biggest packet accepted; bigger ones close their connection.
+	 * Applies to connections accepted afterwards.
+	 * @param maxFrameSize in bytes, by default {@link OSCStreamDecoder#DEFAULT_MAX_FRAME_SIZE}
+	 */
+	public void setMaxFrameSize(int maxFrameSize) {
+		if (maxFrameSize < 1) {
+			throw new IllegalArgumentException("maximum frame size must be positive: " + maxFrameSize);
+		}
+		this.maxFrameSize = maxFrameSize;
+	}
+
+	//
+	public int getMaxFrameSize() {
+		return maxFrameSize;
+	}
+
+	/**
+	 * Returns the metrics of this port:
+	 * packets, bytes, failures and latencies.
+	 * @return the metrics, updated while the port is in use
+	 */
+	public OSCMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Enables tracing of the packets received through this port,
+	 * see {@link Trace}.
+	 * @param enabled true to trace this ports packets
+	 */
+	public void setDebug(boolean enabled) {
+		debug = enabled;
+		if (enabled) {
+			Trace.enableDefault(Trace.PACKET_IN);
+		}
+	}
+
+	//
+	public boolean getDebug() {
+		return debug;
+	}
+
+	/**
+	 * Sets whether received messages decode their arguments right away,
+	 * or only when a listener accesses them (see {@link com.illposed.osc.utility.OSCLazyMessage}).
+	 * Should be set before calling {@link #startListening()}.
+	 * @param lazy true to decode arguments on access
+	 */
+	public void setLazyDecoding(boolean lazy) {
+		for (final SelectorLoop loop : loops) {
+			loop.converter.setLazy(lazy);
+		}
+	}
+
+	//
+	public boolean isLazyDecoding() {
+		return loops[0].converter.isLazy();
+	}
+
+	/**
+	 * Registers a listener that will be notified of incoming messages,
+	 * if their address matches the given pattern.
+	 *
+	 * @param addressSelector either a fixed address like "/sc/mixer/volume",
+	 *   or a selector pattern (a mix between wildcards and regex)
+	 *   like "/??/mixer/*", see {@link OSCPatternAddressSelector} for details
+	 * @param listener will be notified of incoming packets, if they match
+	 */
+	public void addListener(String addressSelector, OSCListener listener) {
+		this.addListener(new OSCPatternAddressSelector(addressSelector), listener);
+	}
+
+	/**
+	 * Registers a listener that will be notified of incoming messages,
+	 * if their address matches the given selector.
+	 * Listeners should be added before calling {@link #startListening()}.
+	 * @param addressSelector a custom address selector
+	 * @param listener will be notified of incoming packets, if they match
+	 */
+	public void addListener(AddressSelector addressSelector, OSCListener listener) {
+		dispatcher.addListener(addressSelector, listener);
+	}
+
+	/**
+	 * Removes a listener, so it will no longer be notified of incoming messages.
+	 * @param addressSelector the selector the listener was added with
+	 */
+	public void removeListener(AddressSelector addressSelector) {
+		dispatcher.removeListener(addressSelector);
+	}
+
+	/**
+	 * Removes the listeners that were added with
+	 * {@link #addListener(String, OSCListener)} for the given selector.
+	 * @param addressSelector the selector string the listeners were added with
+	 */
+	public void removeListener(String addressSelector) {
+		dispatcher.removeListener(addressSelector);
+	}
+}//end class OSCTcpPortIn
+//EOF
@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc;
+
+import com.illposed.osc.utility.OSCJavaToByteBufferConverter;
+import com.illposed.osc.utility.OSCMetrics;
+import com.illposed.osc.utility.OSCStreamFraming;
+import com.illposed.osc.utility.Trace;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * OSCTcpPortOut sends OSC packets over a TCP connection,
+ * to an {@link OSCTcpPortIn} or any other OSC stream receiver.
+ *
+ * Packets may be of any size, and arrive reliably and in order,
+ * so this suits big packets, like presets, that do not fit into a datagram.
+ * Both sides have to agree on the {@link OSCStreamFraming}:
+ * SLIP as of OSC 1.1 (the default), or the size prefix of OSC 1.0.
+ *
+ * Packets are encoded into a reusable direct buffer,
+ * and written to the connection from the sending thread,
+ * so {@link #send(OSCPacket)} returns when the packet was handed to the system.
+ * Several threads may send through the same port,
+ * their packets are written one after the other.
+ * <blockquote><pre>{@code
+ * OSCTcpPortOut sender = new OSCTcpPortOut(address, OSCPort.DEFAULT_SC_OSC_PORT);
+ * sender.send(preset);
+ * sender.close();
+ * }</pre></blockquote>
+ *
+ * @see OSCTcpPortIn
+ * @author Thomas Brand
+ */
+public class OSCTcpPortOut {
+
+	private final SocketChannel channel;
+	private final OSCStreamFraming framing;
+	private final OSCMetrics metrics;
+	private final OSCJavaToByteBufferConverter encoder;
+	/** the size in front of a packet, with {@link OSCStreamFraming#LENGTH_PREFIX} */
+	private final ByteBuffer lengthPrefix;
+	/** the escaped packet, with {@link OSCStreamFraming#SLIP} */
+	private ByteBuffer frame;
+	private boolean debug;
+
+	/**
+	 * Create a port that sends through a specified, connected channel.
+	 * The channel is expected to be in blocking mode (the default).
+	 * @param channel the SocketChannel to send through
+	 * @param framing how packets are delimited on the connection
+	 */
+	public OSCTcpPortOut(SocketChannel channel, OSCStreamFraming framing) {
+		this.channel = channel;
+		this.framing = framing;
+		this.metrics = new OSCMetrics();
+		this.encoder = new OSCJavaToByteBufferConverter(
+				OSCJavaToByteBufferConverter.DEFAULT_CAPACITY, true);
+		this.lengthPrefix = ByteBuffer.allocateDirect(OSCStreamFraming.LENGTH_PREFIX_SIZE);
+		this.frame = ByteBuffer.allocateDirect(OSCJavaToByteBufferConverter.DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Create a port that connects to address:port.
+	 * @param address the address to connect to
+	 * @param port the TCP port to connect to
+	 * @param framing how packets are delimited on the connection
+	 * @throws IOException if the connection can not be established
+	 */
+	public OSCTcpPortOut(InetAddress address, int port, OSCStreamFraming framing) throws IOException {
+		this(connect(address, port), framing);
+	}
+
+	/**
+	 * Create a port that connects to address:port, with OSC 1.1 SLIP framing.
+	 * @param address the address to connect to
+	 * @param port the TCP port to connect to
+	 * @throws IOException if the connection can not be established
+	 */
+	public OSCTcpPortOut(InetAddress address, int port) throws IOException {
+		this(address, port, OSCStreamFraming.SLIP);
+	}
+
+	private static SocketChannel connect(InetAddress address, int port) throws IOException {
+		final SocketChannel channel = SocketChannel.open();
+		try {
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			channel.connect(new InetSocketAddress(address, port));
+		} catch (IOException ex) {
+			channel.close();
+			throw ex;
+		}
+		return channel;
+	}
+
+	/**
+	 * Send an OSC packet (message or bundle) as one frame.
+	 * @param aPacket the bundle or message to send
+	 * @throws IOException if a (TCP) socket I/O error occurs
+	 */
+	public synchronized void send(OSCPacket aPacket) throws IOException {
+		final ByteBuffer packet;
+		if (aPacket instanceof AbstractOSCPacket) {
+			encoder.clear();
+			((AbstractOSCPacket) aPacket).writeTo(encoder);
+			packet = encoder.toByteBuffer();
+		} else {
+			packet = ByteBuffer.wrap(aPacket.getByteArray());
+		}
+		final int length = packet.remaining();
+		if(debug && Trace.isEnabled(Trace.PACKET_OUT))
+		{
+			final byte[] content = new byte[length];
+			packet.duplicate().get(content);
+			Trace.trace(Trace.PACKET_OUT, "OSCTcpPortOut",
+				"sending frame with content ("+length+" bytes)", content, length);
+		}
+
+		switch (framing) {
+			case LENGTH_PREFIX:
+				// the size and the packet in one go, without copying the packet
+				lengthPrefix.clear();
+				lengthPrefix.putInt(length);
+				lengthPrefix.flip();
+				final ByteBuffer[] buffers = {lengthPrefix, packet};
+				while (lengthPrefix.hasRemaining() || packet.hasRemaining()) {
+					channel.write(buffers);
+				}
+				break;
+			case SLIP:
+				frame = framing.frame(packet, frame);
+				while (frame.hasRemaining()) {
+					channel.write(frame);
+				}
+				break;
+			default:
+				throw new IllegalStateException("Unknown framing: " + framing);
+		}
+
+		//update stats
+		metrics.packetSent(length);
+	}
+
+	/**
+	 * Whether the connection is open.
+	 * @return true if packets can be sent through this port
+	 */
+	public boolean isConnected() {
+		return channel.isConnected();
+	}
+
+	//
+	public OSCStreamFraming getFraming() {
+		return framing;
+	}
+
+	/**
+	 * Returns the metrics of this port:
+	 * packets, bytes, failures and latencies.
+	 * @return the metrics, updated while the port is in use
+	 */
+	public OSCMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Enables tracing of the packets sent through this port,
+	 * see {@link Trace}.
+	 * @param enabled true to trace this ports packets
+	 */
+	public void setDebug(boolean enabled) {
+		debug = enabled;
+		if (enabled) {
+			Trace.enableDefault(Trace.PACKET_OUT);
+		}
+	}
+
+	//
+	public boolean getDebug() {
+		return debug;
+	}
+
+	/**
+	 * Closes the connection.
+	 * Packets sent before are still delivered.
+	 */
+	public void close() {
+		try {
+			channel.close();
+		} catch (IOException ex) {
+			ex.printStackTrace();
+		}
+	}
+}//end class OSCTcpPortOut
+//EOF
@@ -4,7 +4,19 @@ import java.util.List;
 import java.util.ArrayList;
 
 import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
 
+//item types:
+//'y' 8 bit integer (Byte), 'n' 16 bit integer (Short),
+//'i' 32 bit integer (Integer), 'h' 64 bit integer (Long),
+//'f' 32 bit float (Float), 'd' 64 bit float (Double),
+//'q' float quantized to 16 bit (Float): the blob starts with
+//    a 32 bit float scale and offset, each item is stored as a 16 bit integer q,
+//    and decoded as offset + scale * q
 public class OSCTypedBlob
 {
 	protected char type='?';
@@ -12,6 +24,19 @@ public class OSCTypedBlob
 	protected byte[] data;
 
 	protected List<Object> list;
+	//writer: byte[], short[], int[], long[], float[] or double[] to be encoded in bulk
+	protected Object array;
+
+	//'q' only: value = offset + scale * stored 16 bit integer
+	protected float scale=1.0f;
+	protected float offset=0.0f;
+	//'q' writer: whether scale and offset are given, or derived from the items
+	private boolean fixedRange=false;
+
+	//largest quantized magnitude, symmetric around the offset
+	private static final int QUANTIZED_MAX=Short.MAX_VALUE;
+	//bytes in front of the items of type 'q'
+	private static final int QUANTIZED_HEADER=8;
 
 	//reader: create java representation of typed blob
 	//parseItmes() will return a List<Object>
@@ -32,6 +57,86 @@ public class OSCTypedBlob
 		this.list=list;
 	}
 
+	//writer: primitive arrays are encoded in bulk, without boxing.
+	//the array is read when write() is called, not copied before.
+	public OSCTypedBlob(byte[] items)
+	{
+		//as Object, not to call the reader constructor
+		this('y',items.length,(Object)items);
+	}
+
+	public OSCTypedBlob(short[] items)
+	{
+		this('n',items.length,items);
+	}
+
+	public OSCTypedBlob(int[] items)
+	{
+		this('i',items.length,items);
+	}
+
+	public OSCTypedBlob(long[] items)
+	{
+		this('h',items.length,items);
+	}
+
+	public OSCTypedBlob(float[] items)
+	{
+		this('f',items.length,items);
+	}
+
+	public OSCTypedBlob(double[] items)
+	{
+		this('d',items.length,items);
+	}
+
+	//writer: floats quantized to 16 bit ('q').
+	//items outside of [min, max] are clamped.
+	public OSCTypedBlob(float[] items,float min,float max)
+	{
+		this('q',items.length,items);
+		if(!(max>=min))
+		{
+			throw new IllegalArgumentException("invalid range for quantized typed blob: ["+min+", "+max+"]");
+		}
+		setRange(min,max);
+		this.fixedRange=true;
+	}
+
+	private OSCTypedBlob(char type,int count,Object array)
+	{
+		this.type=type;
+		this.count=count;
+		this.array=array;
+	}
+
+	//'q' only, known after parsing or writing
+	public float getScale()
+	{
+		return scale;
+	}
+
+	public float getOffset()
+	{
+		return offset;
+	}
+
+	private void setRange(float min,float max)
+	{
+		offset=(min+max)/2.0f;
+		scale=(max-min)/(2.0f*QUANTIZED_MAX);
+	}
+
+	private short quantize(float value)
+	{
+		if(scale==0.0f)
+		{
+			return 0;
+		}
+		final long q=Math.round((value-offset)/scale);
+		return (short)Math.max(-QUANTIZED_MAX,Math.min(QUANTIZED_MAX,q));
+	}
+
 	public char getType()
 	{
 		return type;
@@ -42,8 +147,22 @@ public class OSCTypedBlob
 		return count;
 	}
 
+	//length of the encoded items, as returned by write(), without encoding them
+	public int getDataSize()
+	{
+		if(count<1)
+		{
+			return 0;
+		}
+		return (type=='q' ? QUANTIZED_HEADER : 0)+count*getItemSize(type);
+	}
+
 	public List<Object> parseItems()
 	{
+		if(data==null && array!=null)
+		{
+			createByteArray();
+		}
 		parseByteArray();
 		return list;
 	}
@@ -54,6 +173,138 @@ public class OSCTypedBlob
 		return data;
 	}
 
+	//reader or writer: decode in bulk to a new array.
+	//throws ClassCastException if the blob is not of the requested type.
+	public byte[] toByteArray()
+	{
+		final byte[] items=new byte[count];
+		asByteBuffer().get(items);
+		return items;
+	}
+
+	public short[] toShortArray()
+	{
+		final short[] items=new short[count];
+		asShortBuffer().get(items);
+		return items;
+	}
+
+	public int[] toIntArray()
+	{
+		final int[] items=new int[count];
+		asIntBuffer().get(items);
+		return items;
+	}
+
+	public long[] toLongArray()
+	{
+		final long[] items=new long[count];
+		asLongBuffer().get(items);
+		return items;
+	}
+
+	//'f', or 'q' dequantized
+	public float[] toFloatArray()
+	{
+		final float[] items=new float[count];
+		if(type=='q')
+		{
+			final ShortBuffer quantized=encoded('q').asShortBuffer();
+			for(int i=0;i<count;i++)
+			{
+				items[i]=offset+scale*quantized.get(i);
+			}
+			return items;
+		}
+		asFloatBuffer().get(items);
+		return items;
+	}
+
+	public double[] toDoubleArray()
+	{
+		final double[] items=new double[count];
+		asDoubleBuffer().get(items);
+		return items;
+	}
+
+	//reader or writer: read-only view on the encoded items, nothing is copied
+	public ByteBuffer asByteBuffer()
+	{
+		return encoded('y').asReadOnlyBuffer();
+	}
+
+	//'n', or the quantized items of 'q'
+	public ShortBuffer asShortBuffer()
+	{
+		return encoded(type=='q' ? 'q' : 'n').asShortBuffer().asReadOnlyBuffer();
+	}
+
+	public IntBuffer asIntBuffer()
+	{
+		return encoded('i').asIntBuffer().asReadOnlyBuffer();
+	}
+
+	public LongBuffer asLongBuffer()
+	{
+		return encoded('h').asLongBuffer().asReadOnlyBuffer();
+	}
+
+	public FloatBuffer asFloatBuffer()
+	{
+		return encoded('f').asFloatBuffer().asReadOnlyBuffer();
+	}
+
+	public DoubleBuffer asDoubleBuffer()
+	{
+		return encoded('d').asDoubleBuffer().asReadOnlyBuffer();
+	}
+
+	//big-endian buffer holding count items of the given type
+	private ByteBuffer encoded(char expectedType)
+	{
+		if(type!=expectedType)
+		{
+			throw new ClassCastException("typed blob is of type '"+type+"', not '"+expectedType+"'");
+		}
+		if(data==null)
+		{
+			createByteArray();
+		}
+		if(data==null)
+		{
+			return ByteBuffer.allocate(0);
+		}
+		final ByteBuffer bb=ByteBuffer.wrap(data);
+		if(type=='q')
+		{
+			scale=bb.getFloat();
+			offset=bb.getFloat();
+		}
+		bb.limit(bb.position()+count*getItemSize(type));
+		return bb.slice();
+	}
+
+	//bytes per encoded item
+	public static int getItemSize(char type)
+	{
+		switch (type)
+		{
+			case 'y':
+				return 1;
+			case 'n':
+			case 'q':
+				return 2;
+			case 'i':
+			case 'f':
+				return 4;
+			case 'h':
+			case 'd':
+				return 8;
+			default:
+				throw new IllegalArgumentException("unknown type for typed blob: "+type);
+		}
+	}
+
 	public void parseByteArray()
 	{
 		list=new ArrayList<Object>();
@@ -67,6 +318,26 @@ public class OSCTypedBlob
 
 		switch (type)
 		{
+			case 'y':
+				for(int i=0;i<count;i++)
+				{
+					list.add(bb.get());
+				}
+				break;
+			case 'n':
+				for(int i=0;i<count;i++)
+				{
+					list.add(bb.getShort());
+				}
+				break;
+			case 'q':
+				scale=bb.getFloat();
+				offset=bb.getFloat();
+				for(int i=0;i<count;i++)
+				{
+					list.add(offset+scale*bb.getShort());
+				}
+				break;
 			case 'i':
 				for(int i=0;i<count;i++)
 				{
@@ -100,13 +371,44 @@ public class OSCTypedBlob
 	//implementing class should create data[] from List<Object>
 	public void createByteArray()
 	{
+		if(array!=null)
+		{
+			createByteArrayFromArray();
+			return;
+		}
 		if(list==null || list.size()<1)
 		{
 			data=null; //!!
 			return;
 		}
 
-		if(type=='i')
+		if(type=='y')
+		{
+			data=new byte[count];
+			for(int i=0;i<count;i++)
+			{
+				data[i]=((Number)list.get(i)).byteValue();
+			}
+		}
+		else if(type=='n')
+		{
+			data=new byte[count*2];
+			final ByteBuffer bb=ByteBuffer.wrap(data);
+			for(int i=0;i<count;i++)
+			{
+				bb.putShort(((Number)list.get(i)).shortValue());
+			}
+		}
+		else if(type=='q')
+		{
+			final float[] items=new float[count];
+			for(int i=0;i<count;i++)
+			{
+				items[i]=((Number)list.get(i)).floatValue();
+			}
+			data=createQuantizedByteArray(items);
+		}
+		else if(type=='i')
 		{
 			data=new byte[count*4];
 			List<Integer> int_list=(List<Integer>)(Object)list;
@@ -154,6 +456,71 @@ public class OSCTypedBlob
 		}
 	}//end createByteArray()
 
+	//bulk copy through a big-endian view
+	private void createByteArrayFromArray()
+	{
+		switch (type)
+		{
+			case 'y':
+				data=((byte[])array).clone();
+				break;
+			case 'n':
+				data=new byte[count*2];
+				ByteBuffer.wrap(data).asShortBuffer().put((short[])array);
+				break;
+			case 'q':
+				data=createQuantizedByteArray((float[])array);
+				break;
+			case 'i':
+				data=new byte[count*4];
+				ByteBuffer.wrap(data).asIntBuffer().put((int[])array);
+				break;
+			case 'h':
+				data=new byte[count*8];
+				ByteBuffer.wrap(data).asLongBuffer().put((long[])array);
+				break;
+			case 'f':
+				data=new byte[count*4];
+				ByteBuffer.wrap(data).asFloatBuffer().put((float[])array);
+				break;
+			case 'd':
+				data=new byte[count*8];
+				ByteBuffer.wrap(data).asDoubleBuffer().put((double[])array);
+				break;
+			default:
+				throw new IllegalArgumentException("unknown type for typed blob: "+type);
+		}
+	}
+
+	//scale and offset, then the items quantized to 16 bit
+	private byte[] createQuantizedByteArray(float[] items)
+	{
+		if(!fixedRange)
+		{
+			float min=Float.POSITIVE_INFINITY;
+			float max=Float.NEGATIVE_INFINITY;
+			for(int i=0;i<items.length;i++)
+			{
+				min=Math.min(min,items[i]);
+				max=Math.max(max,items[i]);
+			}
+			if(min>max)
+			{
+				min=max=0.0f;
+			}
+			setRange(min,max);
+		}
+		final byte[] bytes=new byte[QUANTIZED_HEADER+items.length*2];
+		final ByteBuffer bb=ByteBuffer.wrap(bytes);
+		bb.putFloat(scale);
+		bb.putFloat(offset);
+		for(int i=0;i<items.length;i++)
+		{
+			bb.putShort(quantize(items[i]));
+		}
+		return bytes;
+	}
+
 	//from OSCJavaToByteArrayConverter
 
 	/**
@@ -44,6 +44,9 @@ public abstract class AbstractByteArrayToJavaConverter implements ByteArrayToJav
 	/** Used to decode message addresses and string parameters. */
 	protected Charset charset;
 
+	/** Counts unknown argument types, may be <code>null</code>. */
+	protected OSCMetrics metrics;
+
 	/**
 	 * Creates a helper object for converting from a byte array
 	 * to an {@link OSCPacket} object.
@@ -71,6 +74,48 @@ public abstract class AbstractByteArrayToJavaConverter implements ByteArrayToJav
 		this.charset = charset;
 	}
 
+	/**
+	 * Sets where to count arguments of an unknown type,
+	 * which are skipped (decoded as <code>null</code>).
+	 * @param metrics to be updated, or <code>null</code> to not count
+	 */
+	public void setMetrics(OSCMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	//null if nothing is counted
+	public OSCMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Called when an argument of an unknown type is read.
+	 * @param type the unknown type tag
+	 */
+	protected void unknownTypeTag(char type) {
+		if (metrics != null) {
+			metrics.unknownTypeTag();
+		}
+	}
+
+	/**
+	 * Reads an argument of a type that is not built in,
+	 * through the {@link TypeCodec} registered for it in the {@link TypeRegistry}.
+	 * Arguments of unknown types are counted and decoded as <code>null</code>,
+	 * without reading anything.
+	 * @param type the type tag of the argument
+	 * @param input where the codec reads the argument from
+	 * @return the argument, or <code>null</code> if the type is unknown
+	 */
+	protected Object readCustomArgument(char type, ArgumentInput input) {
+		final TypeCodec<?> codec = TypeRegistry.forTag(type);
+		if (codec == null) {
+			unknownTypeTag(type);
+			return null;
+		}
+		return codec.read(input);
+	}
+
 	/**
 	 * Converts a byte array into an {@link OSCPacket}
 	 * (either an {@link OSCMessage} or a {@link OSCBundle}).
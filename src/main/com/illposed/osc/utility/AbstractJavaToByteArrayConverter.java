@@ -47,13 +47,13 @@ public abstract class AbstractJavaToByteArrayConverter implements JavaToByteArra
 	 */
 	protected static final long MSB_1_BASE_TIME = -2208988800000L;
 
-	protected final ByteArrayOutputStream stream;
+	protected final PatchableOutputStream stream;
 	/** Used to encode message addresses and string parameters. */
 	protected Charset charset;
 
 	public AbstractJavaToByteArrayConverter() {
 
-		this.stream = new ByteArrayOutputStream();
+		this.stream = new PatchableOutputStream();
 		this.charset = Charset.defaultCharset();
 	}
 
@@ -88,39 +88,19 @@ public abstract class AbstractJavaToByteArrayConverter implements JavaToByteArra
 
 	/**
 	 * Write an object into the byte stream.
+	 * Everything except arrays is written by its {@link TypeCodec},
+	 * found in the {@link TypeRegistry}.
 	 * @param anObject (usually) one of Float, Double, String, Character, Integer, Long,
-	 *   or array of these.
+	 *   array of these, or a registered custom type.
 	 */
 	public void write(Object anObject) {
-		// Can't do switch on class
 		if (anObject instanceof Collection) {
 			final Collection<Object> theArray = (Collection<Object>) anObject;
 			for (final Object entry : theArray) {
 				write(entry);
 			}
-		} else if (anObject instanceof Float) {
-			write((Float) anObject);
-		} else if (anObject instanceof Double) {
-			write((Double) anObject);
-		} else if (anObject instanceof String) {
-			write((String) anObject);
-		} else if (anObject instanceof byte[]) {
-			write((byte[]) anObject);
-		} else if (anObject instanceof Character) {
-			write((Character) anObject);
-		} else if (anObject instanceof Integer) {
-			write((Integer) anObject);
-		} else if (anObject instanceof Long) {
-			write((Long) anObject);
-		} else if (anObject instanceof Date) {
-			write((Date) anObject);
-		} else if (anObject instanceof ShortMessage) {
-			write((ShortMessage) anObject);
-		} else if (anObject instanceof OSCTypedBlob) {
-			write((OSCTypedBlob) anObject);
-		} else if (!isNoDataObject(anObject)) {
-			throw new UnsupportedOperationException("Do not know how to write an object of class: "
-					+ anObject.getClass());
+		} else if (anObject != null) {
+			TypeRegistry.write(anObject, this);
 		}
 	}
 
@@ -130,18 +110,59 @@ public abstract class AbstractJavaToByteArrayConverter implements JavaToByteArra
 	 */
 	public abstract byte[] toByteArray();
 
+	/**
+	 * Starts writing a packet as an element of a bundle.
+	 * Reserves room for the size of the element,
+	 * and writes what every packet of this byte stream format starts with.
+	 * @return where the element starts, to be passed to {@link #endBundleElement(int)}
+	 */
+	public abstract int beginBundleElement();
+
+	/**
+	 * Finishes writing a packet as an element of a bundle,
+	 * by filling in its size.
+	 * @param mark as returned by {@link #beginBundleElement()}
+	 */
+	public abstract void endBundleElement(int mark);
+
 	/**
 	 * Write bytes into the byte stream.
 	 * @param bytes bytes to be written
 	 */
 	public abstract void write(byte[] bytes);
 
+	/**
+	 * Write bytes into the byte stream, as they are,
+	 * without a length prefix and without padding.
+	 * Used to copy an already encoded packet.
+	 * @param bytes bytes to be written
+	 */
+	public abstract void writeRaw(byte[] bytes);
+
 	/**
 	 * Write an integer into the byte stream.
 	 * @param anInt the integer to be written
 	 */
 	public abstract void write(int anInt);
 
+	/**
+	 * Write a long into the byte stream (8 bytes).
+	 * @param aLong the double precision integer to be written
+	 */
+	public abstract void write(long aLong);
+
+	/**
+	 * Write a float into the byte stream.
+	 * @param aFloat floating point number to be written
+	 */
+	public abstract void write(float aFloat);
+
+	/**
+	 * Write a double into the byte stream (8 bytes).
+	 * @param aDouble double precision floating point number to be written
+	 */
+	public abstract void write(double aDouble);
+
 	/**
 	 * Write a float into the byte stream.
 	 * @param aFloat floating point number to be written
@@ -206,5 +227,27 @@ public abstract class AbstractJavaToByteArrayConverter implements JavaToByteArra
 	 * @param arguments the arguments to an OSCMessage
 	 */
 	public abstract void writeTypes(Collection<Object> arguments);
+
+	/**
+	 * A byte array stream of which already written bytes can be overwritten,
+	 * to fill in sizes once they are known.
+	 */
+	protected static class PatchableOutputStream extends ByteArrayOutputStream {
+
+		/**
+		 * Overwrites 4 already written bytes with a big-endian integer.
+		 * @param position of the first byte
+		 * @param value the integer to be written
+		 */
+		public synchronized void patchInt(int position, int value) {
+			if (position < 0 || position + 4 > count) {
+				throw new IndexOutOfBoundsException("can not patch 4 bytes at " + position + " of " + count);
+			}
+			buf[position] = (byte) (value >>> 24);
+			buf[position + 1] = (byte) (value >>> 16);
+			buf[position + 2] = (byte) (value >>> 8);
+			buf[position + 3] = (byte) value;
+		}
+	}
 }//end class AbstractJavaToByteArrayConverter
 //EOF
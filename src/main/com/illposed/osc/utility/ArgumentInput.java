@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc.utility;
+
+/**
+ * Where a {@link TypeCodec} reads the parts of an argument from.
+ *
+ * Each converter provides its own, so a codec that reads
+ * the same parts that it wrote through a {@link JavaToByteArrayConverter}
+ * works with plain OSC as well as with OSCPack.
+ * Reading past the end of the packet throws a <code>RuntimeException</code>.
+ *
+ * @author Thomas Brand
+ */
+public interface ArgumentInput {
+
+	//as written by JavaToByteArrayConverter#write(int)
+	public int readInt();
+
+	//as written by JavaToByteArrayConverter#write(long)
+	public long readLong();
+
+	//as written by JavaToByteArrayConverter#write(float)
+	public float readFloat();
+
+	//as written by JavaToByteArrayConverter#write(double)
+	public double readDouble();
+
+	//as written by JavaToByteArrayConverter#write(String)
+	public String readString();
+
+	//as written by JavaToByteArrayConverter#write(byte[])
+	public byte[] readBlob();
+}
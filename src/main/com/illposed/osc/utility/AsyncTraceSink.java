@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc.utility;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Puts trace events into a ring buffer, and hands them to another sink
+ * on a background thread.
+ *
+ * Emitting threads never block and never take a lock:
+ * if the ring buffer is full, the event is dropped and counted
+ * (see {@link #getDroppedCount()}).
+ * The ring buffer is a bounded multi-producer queue,
+ * where each slot carries a sequence number telling whether it is free.
+ *
+ * @author Thomas Brand
+ */
+public class AsyncTraceSink implements TraceSink {
+
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	/** How long the writer thread sleeps, when there is nothing to write. */
+	private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private final TraceSink target;
+	private final int mask;
+	private final AtomicReferenceArray<TraceEvent> events;
+	private final AtomicLongArray sequences;
+	/** next slot to be claimed by an emitting thread */
+	private final AtomicLong tail;
+	/** next slot to be taken by the writer thread, only changed by it */
+	private long head;
+	/** number of events handed to the target, only changed by the writer thread */
+	private volatile long written;
+	private final AtomicLong droppedCount;
+	private volatile boolean running;
+	private final Thread writer;
+
+	/**
+	 * @param target receives the events on the writer thread
+	 */
+	public AsyncTraceSink(TraceSink target) {
+		this(target, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param target receives the events on the writer thread
+	 * @param capacity how many events may be waiting, rounded up to a power of two
+	 */
+	public AsyncTraceSink(TraceSink target, int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be at least 1");
+		}
+		int size = 1;
+		while (size < capacity) {
+			size <<= 1;
+		}
+		this.target = target;
+		this.mask = size - 1;
+		this.events = new AtomicReferenceArray<TraceEvent>(size);
+		this.sequences = new AtomicLongArray(size);
+		for (int si = 0; si < size; si++) {
+			sequences.set(si, si);
+		}
+		this.tail = new AtomicLong();
+		this.head = 0;
+		this.written = 0;
+		this.droppedCount = new AtomicLong();
+
+		this.running = true;
+		this.writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				write();
+			}
+		}, "AsyncTraceSink");
+		// The JVM exits when the only threads running are all daemon threads.
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	@Override
+	public void accept(TraceEvent event) {
+		long position = tail.get();
+		while (true) {
+			final int index = (int) position & mask;
+			final long difference = sequences.get(index) - position;
+			if (difference == 0) {
+				if (tail.compareAndSet(position, position + 1)) {
+					events.set(index, event);
+					sequences.set(index, position + 1);
+					return;
+				}
+			} else if (difference < 0) {
+				// the writer has not freed this slot yet, the buffer is full
+				droppedCount.incrementAndGet();
+				return;
+			}
+			position = tail.get();
+		}
+	}
+
+	/**
+	 * Takes the next event out of the ring buffer.
+	 * Only called by the writer thread.
+	 * @return the event, or <code>null</code> if there is none
+	 */
+	private TraceEvent poll() {
+		final long position = head;
+		final int index = (int) position & mask;
+		if (sequences.get(index) != position + 1) {
+			return null;
+		}
+		final TraceEvent event = events.get(index);
+		events.set(index, null);
+		sequences.set(index, position + mask + 1);
+		head = position + 1;
+		return event;
+	}
+
+	private void write() {
+		while (running) {
+			final TraceEvent event = poll();
+			if (event == null) {
+				LockSupport.parkNanos(IDLE_NANOS);
+				continue;
+			}
+			try {
+				target.accept(event);
+			} catch (Exception ex) {
+				ex.printStackTrace();
+			}
+			written = head;
+		}
+	}
+
+	/**
+	 * Waits until all events emitted so far have been handed to the target.
+	 * @param timeoutMillis how long to wait at most
+	 * @return true if all events were written
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public boolean flush(long timeoutMillis) throws InterruptedException {
+		final long until = System.currentTimeMillis() + timeoutMillis;
+		final long emitted = tail.get();
+		while (written < emitted) {
+			if (System.currentTimeMillis() > until) {
+				return false;
+			}
+			Thread.sleep(1);
+		}
+		return true;
+	}
+
+	/**
+	 * Stops the writer thread; events still waiting are discarded.
+	 */
+	public void close() {
+		running = false;
+		LockSupport.unpark(writer);
+	}
+
+	/**
+	 * Number of events that were dropped, because the ring buffer was full.
+	 * @return the number of dropped events
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	/**
+	 * Returns how many events the ring buffer can hold.
+	 * @return the capacity, a power of two
+	 */
+	public int getCapacity() {
+		return mask + 1;
+	}
+}//end class AsyncTraceSink
+//EOF
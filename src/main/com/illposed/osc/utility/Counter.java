@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc.utility;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe counter that stays fast when many threads update it.
+ *
+ * Like <code>java.util.concurrent.atomic.LongAdder</code> (Java 8),
+ * the count is spread over several cells, each thread updating
+ * the cell picked by its id, so threads rarely compete for the same one.
+ * Cells are kept a cache-line apart.
+ * Reading sums up all cells, so it is slower than updating.
+ *
+ * @author Thomas Brand
+ */
+public class Counter {
+
+	/** longs per cell, so two cells never share a cache-line */
+	private static final int PADDING = 8;
+	private static final int CELLS = cellCount();
+
+	private final AtomicLongArray cells;
+
+	public Counter() {
+		this.cells = new AtomicLongArray(CELLS * PADDING);
+	}
+
+	//a power of two, about twice the number of processors
+	private static int cellCount() {
+		final int wanted = Math.min(64, 2 * Runtime.getRuntime().availableProcessors());
+		int count = 1;
+		while (count < wanted) {
+			count <<= 1;
+		}
+		return count;
+	}
+
+	private static int cell() {
+		return ((int) Thread.currentThread().getId() & (CELLS - 1)) * PADDING;
+	}
+
+	//
+	public void increment() {
+		cells.incrementAndGet(cell());
+	}
+
+	//
+	public void add(long value) {
+		cells.addAndGet(cell(), value);
+	}
+
+	/**
+	 * Returns the current sum.
+	 * Updates happening at the same time may or may not be included.
+	 * @return the sum of all updates
+	 */
+	public long get() {
+		long sum = 0;
+		for (int ci = 0; ci < CELLS; ci++) {
+			sum += cells.get(ci * PADDING);
+		}
+		return sum;
+	}
+
+	@Override
+	public String toString() {
+		return Long.toString(get());
+	}
+}//end class Counter
+//EOF
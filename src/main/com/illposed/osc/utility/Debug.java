@@ -8,14 +8,22 @@
 
 package com.illposed.osc.utility;
 
+import java.io.PrintStream;
+
 public class Debug {
-	//helper method to dump binary contents of OSCMessage and OSCPackMessage payloads to stdout
+	//helper method to dump binary contents of OSCMessage and OSCPackMessage payloads to stderr
 	public static void hexdump(byte[] bytes)
 	{
 		hexdump(bytes,0);
 	}
 
 	public static void hexdump(byte[] bytes, int count)
+	{
+		hexdump(System.err,bytes,count);
+	}
+
+	//count 0: dump all bytes
+	public static void hexdump(PrintStream out, byte[] bytes, int count)
 	{
 		int bytesPerLine = 16;
 		int i;
@@ -32,60 +40,65 @@ public class Debug {
 			{
 				if(i!=0)
 				{
-					System.err.print(" |");
+					out.print(" |");
 					for(int k=i-bytesPerLine;k<i;k++)
 					{
-						dumpbyte(bytes[k]);
+						dumpbyte(out,bytes[k]);
 					}
-					System.err.printf("|\n");
+					out.printf("|\n");
 				}
-				System.err.printf("%08x  ",i);
+				out.printf("%08x  ",i);
 			}
-			else if (i % (bytesPerLine/2) == 0 && i!=0) {System.err.print(" ");}
-			System.err.printf("%02x ", bytes[i]);// & 0xff);
+			else if (i % (bytesPerLine/2) == 0 && i!=0) {out.print(" ");}
+			out.printf("%02x ", bytes[i]);// & 0xff);
 		}
 
 		//handle remainder on last line
 		int byte_position_on_last_line=length % bytesPerLine;
 		if(byte_position_on_last_line==0)
 		{
-			System.err.print(" |");
+			out.print(" |");
 			for(int j=  length - bytesPerLine; j < length; j++)
 			{
-				dumpbyte(bytes[j]);
+				dumpbyte(out,bytes[j]);
 			}
 
-			System.err.printf("|\n\n");
+			out.printf("|\n\n");
 		}
 		else
 		{
 			for( int k=byte_position_on_last_line; k < bytesPerLine; k++ )
 			{
-				if (k % (bytesPerLine/2) == 0 && k!=0) {System.err.print(" ");}
-				System.err.printf("   ");
+				if (k % (bytesPerLine/2) == 0 && k!=0) {out.print(" ");}
+				out.printf("   ");
 			}
 
-			System.err.print(" |");
+			out.print(" |");
 			for(int j=  length - byte_position_on_last_line; j < length; j++)
 			{
-				dumpbyte(bytes[j]);
+				dumpbyte(out,bytes[j]);
 			}
-			System.err.printf("|\n\n");
+			out.printf("|\n\n");
 		}
 	}
 
 	public static void dumpbyte(byte b)
+	{
+		dumpbyte(System.err,b);
+	}
+
+	public static void dumpbyte(PrintStream out, byte b)
 	{
 		if(b<32) //if non-printable (first is space)
 		{
-			System.err.print(".");
+			out.print(".");
 		}
 		else
 		{
 			try
 			{
-				System.err.printf("%c",(byte)b);
-			}catch(Exception e){System.err.print(".");}
+				out.printf("%c",(byte)b);
+			}catch(Exception e){out.print(".");}
 		}
 	}
 }//end class Debug
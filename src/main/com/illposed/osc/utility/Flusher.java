@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc.utility;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The one daemon thread that sends delayed packets for all ports,
+ * like the batches of {@link com.illposed.osc.OSCBatchingPortOut}
+ * and the waiting messages of {@link com.illposed.osc.OSCCoalescingPortOut}.
+ * It is only started when first used.
+ * Tasks run on it must be short, as they delay all the others.
+ *
+ * @author Thomas Brand
+ */
+public final class Flusher {
+
+	private static ScheduledExecutorService flusher = null;
+
+	private Flusher() {
+	}
+
+	/**
+	 * Returns the shared flusher, starting it if needed.
+	 * @return runs the given tasks after their delay, one at a time
+	 */
+	public static synchronized ScheduledExecutorService get() {
+		if (flusher == null) {
+			flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					final Thread thread = new Thread(runnable, "OSC flusher");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return flusher;
+	}
+}//end class Flusher
+//EOF
@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc.utility;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe, lock-free histogram of non-negative long values,
+ * like latencies in nano-seconds.
+ *
+ * Like an HdrHistogram, it uses a fixed set of buckets, whose width grows
+ * with the value: values below 32 get a bucket each, above that,
+ * every power of two is split into 16 buckets.
+ * So any value is recorded with a precision of about 6%,
+ * in constant time and memory (960 buckets cover all long values).
+ *
+ * @author Thomas Brand
+ */
+public class Histogram {
+
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	/** values below this get a bucket of their own */
+	private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+	/** the highest bit of LINEAR_LIMIT */
+	private static final int FIRST_EXPONENT = 5;
+	private static final int BUCKETS = LINEAR_LIMIT + (63 - FIRST_EXPONENT) * SUB_BUCKETS;
+
+	/** An immutable view of a histogram at one point in time. */
+	public static class Snapshot {
+
+		private final long count;
+		private final long sum;
+		private final long max;
+		private final long p50;
+		private final long p90;
+		private final long p99;
+		private final long p999;
+
+		Snapshot(long count, long sum, long max, long p50, long p90, long p99, long p999) {
+			this.count = count;
+			this.sum = sum;
+			this.max = max;
+			this.p50 = p50;
+			this.p90 = p90;
+			this.p99 = p99;
+			this.p999 = p999;
+		}
+
+		//number of recorded values
+		public long getCount() {
+			return count;
+		}
+
+		//
+		public double getMean() {
+			return (count == 0) ? 0.0 : ((double) sum / count);
+		}
+
+		//
+		public long getMax() {
+			return max;
+		}
+
+		//median
+		public long get50thPercentile() {
+			return p50;
+		}
+
+		//
+		public long get90thPercentile() {
+			return p90;
+		}
+
+		//
+		public long get99thPercentile() {
+			return p99;
+		}
+
+		//
+		public long get999thPercentile() {
+			return p999;
+		}
+
+		@Override
+		public String toString() {
+			return "count=" + count + " mean=" + Math.round(getMean()) + " p50=" + p50 + " p90=" + p90
+					+ " p99=" + p99 + " p99.9=" + p999 + " max=" + max;
+		}
+	}
+
+	private final AtomicLongArray buckets;
+	private final AtomicLong count;
+	private final AtomicLong sum;
+	private final AtomicLong max;
+
+	public Histogram() {
+		this.buckets = new AtomicLongArray(BUCKETS);
+		this.count = new AtomicLong();
+		this.sum = new AtomicLong();
+		this.max = new AtomicLong();
+	}
+
+	/**
+	 * Returns the bucket a value is counted in.
+	 * @param value non-negative
+	 * @return index into the buckets
+	 */
+	static int bucketOf(long value) {
+		if (value < LINEAR_LIMIT) {
+			return (int) value;
+		}
+		final int exponent = 63 - Long.numberOfLeadingZeros(value);
+		final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKETS;
+		return LINEAR_LIMIT + (exponent - FIRST_EXPONENT) * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * Returns the highest value that is counted in a bucket.
+	 * @param bucket index into the buckets
+	 * @return the highest value of the bucket
+	 */
+	static long highestValueOf(int bucket) {
+		if (bucket < LINEAR_LIMIT) {
+			return bucket;
+		}
+		final int exponent = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + FIRST_EXPONENT;
+		final long subBucket = (bucket - LINEAR_LIMIT) % SUB_BUCKETS;
+		final int shift = exponent - SUB_BUCKET_BITS;
+		final long lowest = (SUB_BUCKETS + subBucket) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+
+	/**
+	 * Records one value.
+	 * @param value to be recorded, negative values are recorded as 0
+	 */
+	public void record(long value) {
+		final long positive = Math.max(0, value);
+		buckets.incrementAndGet(bucketOf(positive));
+		count.incrementAndGet();
+		sum.addAndGet(positive);
+		long currentMax = max.get();
+		while (positive > currentMax && !max.compareAndSet(currentMax, positive)) {
+			currentMax = max.get();
+		}
+	}
+
+	//
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * Returns the value below which the given fraction of the recorded values lie.
+	 * @param percentile between 0 and 100
+	 * @return the highest value of the bucket containing the percentile,
+	 *   but never more than the maximum recorded value; 0 if nothing was recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+		final long total = count.get();
+		if (total == 0) {
+			return 0;
+		}
+		final long wanted = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+		long seen = 0;
+		for (int bi = 0; bi < BUCKETS; bi++) {
+			seen += buckets.get(bi);
+			if (seen >= wanted) {
+				return Math.min(highestValueOf(bi), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	/**
+	 * Takes a snapshot of this histogram.
+	 * Values recorded at the same time may or may not be included.
+	 * @return count, mean, maximum and some percentiles
+	 */
+	public Snapshot snapshot() {
+		return new Snapshot(count.get(), sum.get(), max.get(),
+				getValueAtPercentile(50), getValueAtPercentile(90),
+				getValueAtPercentile(99), getValueAtPercentile(99.9));
+	}
+
+	@Override
+	public String toString() {
+		return snapshot().toString();
+	}
+}//end class Histogram
+//EOF
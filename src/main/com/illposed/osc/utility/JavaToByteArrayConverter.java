@@ -21,7 +21,11 @@ public interface JavaToByteArrayConverter {
 
 	public byte[] toByteArray();
 	public void write(byte[] bytes);
+	public void writeRaw(byte[] bytes);
 	public void write(int anInt);
+	public void write(long aLong);
+	public void write(float aFloat);
+	public void write(double aDouble);
 	public void write(Float aFloat);
 	public void write(Double aDouble);
 	public void write(Integer anInt);
@@ -35,4 +39,6 @@ public interface JavaToByteArrayConverter {
         public void write(OSCTypedBlob typedBlob);
 //	public void writeType(Class typeClass);
 	public void writeTypes(Collection<Object> arguments);
+	public int beginBundleElement();
+	public void endBundleElement(int mark);
 }
@@ -32,11 +32,14 @@ public class NTPTime
 		buffer.putLong(ntpTime);
 		Debug.hexdump(buffer.array());
 */
-		System.err.println("readTimeTag(): "+ntpTime+" "+getSeconds(ntpTime)+" "+getFraction(ntpTime)+" "+toString(ntpTime));
+		if(Trace.isEnabled(Trace.TIMETAG))
+		{
+			Trace.trace(Trace.TIMETAG, "NTPTime", "readTimeTag(): "+ntpTime+" "+getSeconds(ntpTime)+" "
+				+getFraction(ntpTime)+" "+toString(ntpTime)+((ntpTime==1) ? " IMMEDIATE" : ""));
+		}
 
 		if(ntpTime==1) //too simple?
 		{
-			System.err.println("readTimeTag(): IMMEDIATE");
 			return OSCBundle.TIMESTAMP_IMMEDIATE;
 		}
 		return new Date(getTime(ntpTime));
@@ -316,7 +316,41 @@ public class OSCByteArrayToJavaConverter extends AbstractByteArrayToJavaConverte
 				//   just ignore (return null), or throw an exception?
 //				throw new UnsupportedOperationException(
 //						"Invalid or not yet supported OSC type: '" + type + "'");
-				return null;
+				return readCustomArgument(type, new RawInput(rawInput));
+		}
+	}
+
+	/** Lets custom codecs read from the byte array. */
+	private final class RawInput implements ArgumentInput {
+
+		private final Input rawInput;
+
+		RawInput(Input rawInput) {
+			this.rawInput = rawInput;
+		}
+
+		public int readInt() {
+			return readInteger(rawInput);
+		}
+
+		public long readLong() {
+			return OSCByteArrayToJavaConverter.this.readLong(rawInput);
+		}
+
+		public float readFloat() {
+			return OSCByteArrayToJavaConverter.this.readFloat(rawInput);
+		}
+
+		public double readDouble() {
+			return (Double) OSCByteArrayToJavaConverter.this.readDouble(rawInput);
+		}
+
+		public String readString() {
+			return OSCByteArrayToJavaConverter.this.readString(rawInput);
+		}
+
+		public byte[] readBlob() {
+			return OSCByteArrayToJavaConverter.this.readBlob(rawInput);
 		}
 	}
 
@@ -0,0 +1,540 @@
+/*
+ * Copyright (C) 2004-2014, C. Ramakrishnan / Illposed Software.
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc.utility;
+
+import com.illposed.osc.OSCBundle;
+import com.illposed.osc.OSCImpulse;
+import com.illposed.osc.OSCTypedBlob;
+import com.illposed.osc.OSCMessage;
+import com.illposed.osc.OSCPacket;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import javax.sound.midi.ShortMessage;
+
+/**
+ * Utility class to convert a byte array or a {@link ByteBuffer},
+ * conforming to the OSC byte stream format,
+ * into Java objects.
+ *
+ * In contrast to {@link OSCByteArrayToJavaConverter}, numbers are read
+ * directly from the underlying storage with big-endian primitive reads,
+ * and packets contained in a bundle are decoded in place,
+ * without copying them into separate byte arrays first.
+ *
+ * Instances keep state while converting (remote host and port,
+ * a scratch buffer for strings in direct buffers),
+ * they must not be shared between threads.
+ *
+ * A {@link #setLazy(boolean) lazy} converter copies each packet once,
+ * and creates {@link OSCLazyMessage}s, that decode their arguments
+ * only when they are accessed.
+ *
+ * @author Chandrasekhar Ramakrishnan
+ * @author Thomas Brand
+ */
+public class OSCByteBufferToJavaConverter extends AbstractByteArrayToJavaConverter {
+
+	/** Used to decode strings if the buffer is not backed by an array. */
+	private byte[] scratch;
+
+	/** Decodes OSCPack packets contained in bundles. */
+	private OSCPackByteArrayToJavaConverter packConverter;
+
+	/** Whether to create messages that decode their arguments on access. */
+	private boolean lazy;
+
+	public OSCByteBufferToJavaConverter() {
+		super();
+
+		this.scratch = new byte[64];
+		this.lazy = false;
+	}
+
+	/**
+	 * Sets whether messages decode their arguments right away,
+	 * or only when they are accessed.
+	 * Lazy decoding copies each packet once,
+	 * so the messages do not depend on the buffer passed in,
+	 * which may be re-used right after the conversion.
+	 * Messages with arrays in their arguments are always decoded right away.
+	 * @param lazy true to create {@link OSCLazyMessage}s
+	 */
+	public void setLazy(boolean lazy) {
+		this.lazy = lazy;
+	}
+
+	//
+	public boolean isLazy() {
+		return lazy;
+	}
+
+	/**
+	 * Converts a byte array into an {@link OSCPacket}
+	 * (either an {@link OSCMessage} or {@link OSCBundle}).
+	 * @param bytes the storage containing the raw OSC packet
+	 * @param bytesLength indicates how many bytes the package consists of (<code>&lt;= bytes.length</code>)
+	 * @return the successfully parsed OSC packet; in case of a problem,
+	 *   a <code>RuntimeException</code> is thrown
+	 */
+	public OSCPacket convert(byte[] bytes, int bytesLength) {
+		return convert(ByteBuffer.wrap(bytes, 0, bytesLength));
+	}
+
+	//
+	public OSCPacket convert(byte[] bytes, int bytesLength, String remoteHost, int remotePort) {
+		this.remoteHost=remoteHost;
+		this.remotePort=remotePort;
+		return convert(bytes, bytesLength);
+	}
+
+	/**
+	 * Converts the bytes between the buffers position and its limit
+	 * into an {@link OSCPacket}.
+	 * The byte order of the buffer is set to big-endian,
+	 * after the call, the buffers position is at its limit.
+	 * @param buffer the storage containing the raw OSC packet
+	 * @return the successfully parsed OSC packet; in case of a problem,
+	 *   a <code>RuntimeException</code> is thrown
+	 */
+	public OSCPacket convert(ByteBuffer buffer) {
+		if (lazy) {
+			// lazy messages keep on reading from the packet, so it may not change
+			final byte[] copy = new byte[buffer.remaining()];
+			buffer.get(copy);
+			return convertPacket(ByteBuffer.wrap(copy), 0);
+		}
+		buffer.order(ByteOrder.BIG_ENDIAN);
+		return convertPacket(buffer, buffer.position());
+	}
+
+	//have a way to know where the packet came from
+	public OSCPacket convert(ByteBuffer buffer, String remoteHost, int remotePort) {
+		this.remoteHost=remoteHost;
+		this.remotePort=remotePort;
+		return convert(buffer);
+	}
+
+	//wrapper
+	public List<Object> convertArguments(final byte[] bytes, final String types)
+	{
+		return convertArguments(ByteBuffer.wrap(bytes), types);
+	}
+
+	/**
+	 * Reads arguments of the given types from the buffer,
+	 * starting at its current position.
+	 * @param buffer the storage containing the raw arguments
+	 * @param types the OSC type tags of the arguments, without leading ','
+	 * @return the arguments read
+	 */
+	public List<Object> convertArguments(final ByteBuffer buffer, final CharSequence types)
+	{
+		buffer.order(ByteOrder.BIG_ENDIAN);
+		return readArguments(buffer, buffer.position(), types);
+	}
+
+	/**
+	 * Converts the packet between the current position and the limit.
+	 * @param start where the packet starts, all alignment is relative to it
+	 */
+	private OSCPacket convertPacket(final ByteBuffer in, final int start) {
+		// The shortest valid packet may be no shorter then 4 bytes,
+		// thus we may assume to always have a byte at the start.
+		if (in.get(start) == BUNDLE_IDENTIFIER) {
+			return convertBundle(in, start);
+		} else {
+			return convertMessage(in, start);
+		}
+	}
+
+	/**
+	 * Converts the buffer to a bundle.
+	 * Assumes that the buffer holds a bundle.
+	 * @return a bundle containing the data specified in the byte stream
+	 */
+	private OSCBundle convertBundle(final ByteBuffer in, final int start) {
+		// skip the "#bundle " stuff
+		in.position(start + BUNDLE_START.length() + 1);
+
+		final Date timestamp = NTPTime.readTimeTag(in.getLong());
+		final OSCBundle bundle = new OSCBundle(timestamp);
+
+		bundle.setRemoteHost(remoteHost);
+		bundle.setRemotePort(remotePort);
+
+		final int limit = in.limit();
+		while (in.position() < limit) {
+			//align to 4 bytes boundary. bundle did align (packed) blobs
+			final int mod = (in.position() - start) % 4;
+			if(mod!=0)
+			{
+				in.position(Math.min(limit, in.position() + 4 - mod));
+				//re-evaluate pos < length
+				continue;
+			}
+
+			final int packetLength = in.getInt(); //byte count of (that) one message item inside blob
+			if (packetLength == 0) {
+				break;
+			}
+
+			final int packetStart = in.position();
+			final int packetEnd = packetStart + packetLength;
+			final OSCPacket packet;
+
+			//decide which converter to use. messages inside blobs can be packed.
+			if (in.get(packetStart) == '!') {
+				final byte[] packetBytes = new byte[packetLength];
+				in.get(packetBytes);
+				packet = getPackConverter().convert(packetBytes, packetLength, remoteHost, remotePort);
+			} else {
+				// decode in place, restricted to the element
+				in.limit(packetEnd);
+				packet = convertPacket(in, packetStart);
+				in.limit(limit);
+			}
+			in.position(packetEnd);
+			bundle.addPacket(packet);
+		}
+		return bundle;
+	}//end convertBundle()
+
+	/**
+	 * Converts the buffer to a simple message.
+	 * Assumes that the buffer holds a message.
+	 * @return a message containing the data specified in the byte stream
+	 */
+	private OSCMessage convertMessage(final ByteBuffer in, final int start) {
+		final String address = readString(in, start);
+		final String types = readTypes(in, start);
+		final OSCMessage message;
+		if (lazy && types.indexOf('[') < 0) {
+			message = new OSCLazyMessage(address, types, in.array(), start, in.position(), in.limit(), this);
+			in.position(in.limit());
+		} else {
+			message = new OSCMessage(address);
+			message.setTypetagString(types);
+			readArguments(in, start, types, message);
+		}
+		message.setRemoteHost(remoteHost);
+		message.setRemotePort(remotePort);
+		return message;
+	}
+
+	//
+	private List<Object> readArguments(final ByteBuffer in, final int start, final CharSequence types)
+	{
+		final List<Object> args=new ArrayList<Object>(types.length());
+
+		for (int ti = 0; ti < types.length(); ++ti) {
+			if ('[' == types.charAt(ti)) {
+				// we're looking at an array -- read it in
+				args.add(readArray(in, start, types, ++ti));
+				// then increment i to the end of the array
+				while (types.charAt(ti) != ']') {
+					ti++;
+				}
+			} else {
+				args.add(readArgument(in, start, types.charAt(ti)));
+			}
+		}
+		return args;
+	}
+
+	//same as above, but adds numbers to the message without boxing them
+	private void readArguments(final ByteBuffer in, final int start, final String types,
+			final OSCMessage message)
+	{
+		for (int ti = 0; ti < types.length(); ++ti) {
+			switch (types.charAt(ti)) {
+				case '[' :
+					message.addArgument(readArray(in, start, types, ++ti));
+					while (types.charAt(ti) != ']') {
+						ti++;
+					}
+					break;
+				case 'i' :
+					message.addInt(in.getInt());
+					break;
+				case 'h' :
+					message.addLong(in.getLong());
+					break;
+				case 'f' :
+					message.addFloat(in.getFloat());
+					break;
+				case 'd' :
+					message.addDouble(in.getDouble());
+					break;
+				default:
+					message.addArgument(readArgument(in, start, types.charAt(ti)));
+			}
+		}
+	}
+
+	/**
+	 * Reads the types of the arguments from the byte stream.
+	 * @return a string with the types of the arguments,
+	 *   or an empty string, in case of no arguments
+	 */
+	private String readTypes(final ByteBuffer in, final int start) {
+		// The next byte should be a ',', but some legacy code may omit it
+		// in case of no arguments, refering to "OSC Messages" in:
+		// http://opensoundcontrol.org/spec-1_0
+		if (!in.hasRemaining() || in.get(in.position()) != ',') {
+			return NO_ARGUMENT_TYPES;
+		}
+		in.get();
+		return readString(in, start);
+	}
+
+	/**
+	 * Reads an object of the type specified by the type char.
+	 * @param type type of the argument to read
+	 * @return a Java representation of the argument
+	 */
+	Object readArgument(final ByteBuffer in, final int start, final char type) {
+		switch (type) {
+			case 'u' :
+				return in.getInt() & 0xFFFFFFFFL;
+			case 'i' :
+				return in.getInt();
+			case 'h' :
+				return in.getLong();
+			case 'f' :
+				return in.getFloat();
+			case 'd' :
+				return in.getDouble();
+			case 's' :
+				return readString(in, start);
+			case 'b' :
+				return readBlob(in, start);
+			case 'c' :
+				return readChar(in);
+			case 'N' :
+				return null;
+			case 'T' :
+				return Boolean.TRUE;
+			case 'F' :
+				return Boolean.FALSE;
+			case 'I' :
+				return OSCImpulse.INSTANCE;
+			case 'm' :
+				return readMidi(in);
+			case 't' :
+				return NTPTime.readTimeTag(in.getLong());
+			case 'B':
+				return readTypedBlob(in, start);
+			default:
+				// same as OSCByteArrayToJavaConverter: ignore unknown types
+				return readCustomArgument(type, new BufferInput(in, start));
+		}
+	}
+
+	/**
+	 * Moves over an argument of the type specified by the type char,
+	 * exactly as far as {@link #readArgument} would read.
+	 * @param type type of the argument to skip
+	 */
+	void skipArgument(final ByteBuffer in, final int start, final char type) {
+		switch (type) {
+			case 'u' :
+			case 'i' :
+			case 'f' :
+			case 'c' :
+			case 'm' :
+				in.position(in.position() + 4);
+				break;
+			case 'h' :
+			case 'd' :
+			case 't' :
+				in.position(in.position() + 8);
+				break;
+			case 's' :
+				int end = in.position();
+				while (end < in.limit() && in.get(end) != 0) {
+					end++;
+				}
+				in.position(Math.min(in.limit(), end + 1));
+				moveToFourByteBoundry(in, start);
+				break;
+			case 'b' :
+				skipBlob(in, start);
+				break;
+			case 'B' :
+				// type and count, then the blob
+				in.position(in.position() + 8);
+				skipBlob(in, start);
+				break;
+			default:
+				if (TypeRegistry.forTag(type) != null) {
+					// only the codec knows how far to read
+					readCustomArgument(type, new BufferInput(in, start));
+				}
+				// nothing is read for the others
+				break;
+		}
+	}
+
+	/** Lets custom codecs read from the buffer. */
+	private final class BufferInput implements ArgumentInput {
+
+		private final ByteBuffer in;
+		private final int start;
+
+		BufferInput(ByteBuffer in, int start) {
+			this.in = in;
+			this.start = start;
+		}
+
+		public int readInt() {
+			return in.getInt();
+		}
+
+		public long readLong() {
+			return in.getLong();
+		}
+
+		public float readFloat() {
+			return in.getFloat();
+		}
+
+		public double readDouble() {
+			return in.getDouble();
+		}
+
+		public String readString() {
+			return OSCByteBufferToJavaConverter.this.readString(in, start);
+		}
+
+		public byte[] readBlob() {
+			return OSCByteBufferToJavaConverter.this.readBlob(in, start);
+		}
+	}
+
+	//
+	private void skipBlob(final ByteBuffer in, final int start) {
+		final int blobLen = in.getInt();
+		in.position(in.position() + blobLen);
+		moveToFourByteBoundry(in, start);
+	}
+
+	/**
+	 * Reads a zero terminated string from the byte stream.
+	 * @return the next string in the byte stream
+	 */
+	private String readString(final ByteBuffer in, final int start) {
+		final int pos = in.position();
+		final int limit = in.limit();
+		int end = pos;
+		while (end < limit && in.get(end) != 0) {
+			end++;
+		}
+		final int strLen = end - pos;
+		final String res;
+		if (in.hasArray()) {
+			res = new String(in.array(), in.arrayOffset() + pos, strLen, charset);
+		} else {
+			if (scratch.length < strLen) {
+				scratch = new byte[strLen];
+			}
+			in.get(scratch, 0, strLen);
+			res = new String(scratch, 0, strLen, charset);
+		}
+		//skip zero termination
+		in.position(Math.min(limit, end + 1));
+		moveToFourByteBoundry(in, start);
+		return res;
+	}
+
+	/**
+	 * Reads a binary blob from the byte stream.
+	 * @return the next blob in the byte stream
+	 */
+	private byte[] readBlob(final ByteBuffer in, final int start) {
+		final int blobLen = in.getInt();
+		final byte[] res = new byte[blobLen];
+		in.get(res);
+		moveToFourByteBoundry(in, start);
+		return res;
+	}
+
+	/**
+	 * Reads a char (enclosed in 32 bits) from the byte stream.
+	 * @return a {@link Character}
+	 */
+	private Character readChar(final ByteBuffer in) {
+		//'a' is sent as 00 00 00 61, see OSCByteArrayToJavaConverter
+		return (char) (in.getInt() & 0xFF);
+	}
+
+	//
+	private ShortMessage readMidi(final ByteBuffer in) {
+		//first byte of OSC type 'm' message is midi port.
+		//skip it for now
+		final int midi = in.getInt();
+		final int status = (midi >>> 16) & 0xFF;
+		final int data1 = (midi >>> 8) & 0xFF;
+		final int data2 = midi & 0xFF;
+		try {
+			return new ShortMessage(status,data1,data2);
+		}catch(Exception e){throw new IllegalArgumentException("could not create MIDI message.",e);}
+	}
+
+	//
+	private OSCTypedBlob readTypedBlob(final ByteBuffer in, final int start) {
+		//these two make the blob typed
+		final char type = readChar(in);
+		final int count = in.getInt();
+		final byte[] res = readBlob(in, start);
+		return new OSCTypedBlob(type,count,res);
+	}
+
+	/**
+	 * Reads an array from the byte stream.
+	 * @param types
+	 * @param pos at which position to start reading
+	 * @return the array that was read
+	 */
+	private List<Object> readArray(final ByteBuffer in, final int start, final CharSequence types, int pos) {
+		int arrayLen = 0;
+		while (types.charAt(pos + arrayLen) != ']') {
+			arrayLen++;
+		}
+		final List<Object> array = new ArrayList<Object>(arrayLen);
+		for (int ai = 0; ai < arrayLen; ai++) {
+			array.add(readArgument(in, start, types.charAt(pos + ai)));
+		}
+		return array;
+	}
+
+	/**
+	 * Move to the next position which is dividable by four,
+	 * relative to the start of the packet.
+	 */
+	private void moveToFourByteBoundry(final ByteBuffer in, final int start) {
+		final int mod = (in.position() - start) % 4;
+		//don't move if already on 4-byte boundary
+		in.position(Math.min(in.limit(), in.position() + (4 - mod) % 4));
+	}
+
+	//created on first use, only needed for mixed bundles
+	private OSCPackByteArrayToJavaConverter getPackConverter() {
+		if (packConverter == null) {
+			packConverter = new OSCPackByteArrayToJavaConverter();
+		}
+		packConverter.setCharset(charset);
+		return packConverter;
+	}
+}//end class OSCByteBufferToJavaConverter
+//EOF
@@ -77,6 +77,15 @@ public class OSCJavaToByteArrayConverter extends AbstractJavaToByteArrayConverte
 		alignStream();
 	}
 
+	/**
+	 * Write bytes into the byte stream, as they are,
+	 * without a length prefix and without padding.
+	 * @param bytes bytes to be written
+	 */
+	public void writeRaw(byte[] bytes) {
+		writeUnderHandler(bytes);
+	}
+
 	/**
 	 * Write an integer into the byte stream.
 	 * @param anInt the integer to be written
@@ -85,11 +94,19 @@ public class OSCJavaToByteArrayConverter extends AbstractJavaToByteArrayConverte
 		writeInteger32ToByteArray(anInt);
 	}
 
+	/**
+	 * Write a long into the byte stream (8 bytes).
+	 * @param aLong the double precision integer to be written
+	 */
+	public void write(long aLong) {
+		writeInteger64ToByteArray(aLong);
+	}
+
 	/**
 	 * Write a float into the byte stream.
 	 * @param aFloat floating point number to be written
 	 */
-	public void write(Float aFloat) {
+	public void write(float aFloat) {
 		writeInteger32ToByteArray(Float.floatToIntBits(aFloat));
 	}
 
@@ -97,22 +114,38 @@ public class OSCJavaToByteArrayConverter extends AbstractJavaToByteArrayConverte
 	 * Write a double into the byte stream (8 bytes).
 	 * @param aDouble double precision floating point number to be written
 	 */
-	public void write(Double aDouble) {
+	public void write(double aDouble) {
 		writeInteger64ToByteArray(Double.doubleToRawLongBits(aDouble));
 	}
 
+	/**
+	 * Write a float into the byte stream.
+	 * @param aFloat floating point number to be written
+	 */
+	public void write(Float aFloat) {
+		write(aFloat.floatValue());
+	}
+
+	/**
+	 * Write a double into the byte stream (8 bytes).
+	 * @param aDouble double precision floating point number to be written
+	 */
+	public void write(Double aDouble) {
+		write(aDouble.doubleValue());
+	}
+
 	/**
 	 * @param anInt the integer to be written
 	 */
 	public void write(Integer anInt) {
-		writeInteger32ToByteArray(anInt);
+		write(anInt.intValue());
 	}
 
 	/**
 	 * @param aLong the double precision integer to be written
 	 */
 	public void write(Long aLong) {
-		writeInteger64ToByteArray(aLong);
+		write(aLong.longValue());
 	}
 
 	/**
@@ -193,22 +226,32 @@ public class OSCJavaToByteArrayConverter extends AbstractJavaToByteArrayConverte
 	 */
 	public void writeTypes(Collection<Object> arguments) {
 
-		///writeTypesArray(arguments);
-		String tags=Tagger.getTypesArray(arguments);
-
-		//iterate string as bytes, write to stream
-		final byte[] stringBytes = tags.getBytes(charset);
-		for(int i=0;i<stringBytes.length;i++)
-		{
-			stream.write(stringBytes[i]);
-		}
-		// we always need to terminate with a zero,
-		// even if (especially when) the stream is already aligned.
-		stream.write(0);
-		// align the stream with padded bytes
+		// the tags, the terminating zero and the padding, in one copy
+		final byte[] typeTags = TypeSignature.of(arguments).getPaddedBytes();
+		stream.write(typeTags, 0, typeTags.length);
+		// only needed if there was no ',' in front
 		alignStream();
 	}
 
+	/**
+	 * Reserves the 4 bytes of the size of a bundle element.
+	 * @return where the size goes
+	 */
+	public int beginBundleElement() {
+		final int mark = stream.size();
+		writeInteger32ToByteArray(0);
+		return mark;
+	}
+
+	/**
+	 * Fills in the size of a bundle element,
+	 * which is the number of bytes written after it.
+	 * @param mark as returned by {@link #beginBundleElement()}
+	 */
+	public void endBundleElement(int mark) {
+		stream.patchInt(mark, stream.size() - mark - 4);
+	}
+
 	/**
 	 * Write bytes to the stream, catching IOExceptions and converting them to
 	 * RuntimeExceptions.
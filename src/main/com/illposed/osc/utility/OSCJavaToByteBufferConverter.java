@@ -0,0 +1,348 @@
+/*
+ * Copyright (C) 2003-2014, C. Ramakrishnan / Illposed Software.
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc.utility;
+
+import com.illposed.osc.OSCTypedBlob;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Date;
+import javax.sound.midi.ShortMessage;
+
+/**
+ * OSCJavaToByteBufferConverter translates from Java types to their
+ * OSC byte stream representations, like {@link OSCJavaToByteArrayConverter},
+ * but writes into a reusable {@link ByteBuffer} instead of a
+ * ByteArrayOutputStream.
+ *
+ * A converter is meant to be reused for many packets:
+ * call {@link #clear()} before writing a packet, and {@link #toByteBuffer()}
+ * to get the encoded bytes without copying them.
+ * The buffer grows on demand and keeps its size afterwards,
+ * so once it is big enough, encoding does not allocate.
+ * Instances must not be shared between threads.
+ *
+ * @author Chandrasekhar Ramakrishnan
+ * @author Thomas Brand
+ */
+public class OSCJavaToByteBufferConverter extends AbstractJavaToByteArrayConverter {
+
+	/** Initial buffer size, a common MTU. */
+	public static final int DEFAULT_CAPACITY = 1536;
+
+	private final boolean direct;
+	private ByteBuffer buffer;
+
+	/** true if all chars &lt; 0x80 are encoded as a single byte with the current charset */
+	private boolean asciiCompatible;
+
+	public OSCJavaToByteBufferConverter() {
+		this(DEFAULT_CAPACITY, false);
+	}
+
+	/**
+	 * @param capacity initial size of the buffer in bytes
+	 * @param direct whether to use a direct buffer,
+	 *   which can be handed to a channel without further copying
+	 */
+	public OSCJavaToByteBufferConverter(int capacity, boolean direct) {
+		super();
+
+		this.direct = direct;
+		this.buffer = allocate(capacity);
+		setCharset(charset);
+	}
+
+	private ByteBuffer allocate(int capacity) {
+		final ByteBuffer bb = direct
+				? ByteBuffer.allocateDirect(capacity)
+				: ByteBuffer.allocate(capacity);
+		bb.order(ByteOrder.BIG_ENDIAN);
+		return bb;
+	}
+
+	/**
+	 * Make sure that the given number of bytes can be put into the buffer.
+	 */
+	private void ensureCapacity(int needed) {
+		if (buffer.remaining() >= needed) {
+			return;
+		}
+		final ByteBuffer grown = allocate(Math.max(buffer.capacity() * 2, buffer.position() + needed));
+		buffer.flip();
+		grown.put(buffer);
+		buffer = grown;
+	}
+
+	@Override
+	public void setCharset(Charset charset) {
+		super.setCharset(charset);
+		final String name = charset.name();
+		asciiCompatible = name.equals("UTF-8")
+				|| name.equals("US-ASCII")
+				|| name.equals("ISO-8859-1");
+	}
+
+	/**
+	 * Discards everything written so far, to start with a new packet.
+	 */
+	public void clear() {
+		buffer.clear();
+	}
+
+	/**
+	 * Number of bytes written since the last {@link #clear()}.
+	 * @return the current size of the byte stream
+	 */
+	public int size() {
+		return buffer.position();
+	}
+
+	/**
+	 * Prepares the buffer for reading and returns it, no bytes are copied.
+	 * The returned buffer is owned by this converter and only valid until
+	 * the next call to {@link #clear()}.
+	 * @return the buffer containing the byte stream, from position 0 to its limit
+	 */
+	public ByteBuffer toByteBuffer() {
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Align the stream by padding it with '0's so it has a size divisible by 4.
+	 */
+	private void alignStream() {
+		final int padLen = (4 - (buffer.position() % 4)) % 4;
+		ensureCapacity(padLen);
+		for (int pci = 0; pci < padLen; pci++) {
+			buffer.put((byte) 0);
+		}
+	}
+
+	/**
+	 * Convert the contents of the buffer to a byte array.
+	 * This copies the bytes written so far, without changing the buffer.
+	 * @return the byte array containing the byte stream
+	 */
+	public byte[] toByteArray() {
+		final byte[] bytes = new byte[buffer.position()];
+		final ByteBuffer view = buffer.duplicate();
+		view.flip();
+		view.get(bytes);
+		return bytes;
+	}
+
+	/**
+	 * Write bytes into the byte stream, as they are,
+	 * without a length prefix and without padding.
+	 * Used to copy an already encoded packet.
+	 * @param bytes bytes to be written
+	 */
+	public void writeRaw(byte[] bytes) {
+		ensureCapacity(bytes.length);
+		buffer.put(bytes);
+	}
+
+	/**
+	 * Reserves the 4 bytes of the size of a bundle element.
+	 * @return where the size goes
+	 */
+	public int beginBundleElement() {
+		ensureCapacity(4);
+		final int mark = buffer.position();
+		buffer.putInt(0);
+		return mark;
+	}
+
+	/**
+	 * Fills in the size of a bundle element,
+	 * which is the number of bytes written after it.
+	 * @param mark as returned by {@link #beginBundleElement()}
+	 */
+	public void endBundleElement(int mark) {
+		buffer.putInt(mark, buffer.position() - mark - 4);
+	}
+
+	/**
+	 * Write bytes into the byte stream.
+	 * @param bytes bytes to be written
+	 */
+	public void write(byte[] bytes) {
+		ensureCapacity(4 + bytes.length + 3);
+		buffer.putInt(bytes.length);
+		buffer.put(bytes);
+		alignStream();
+	}
+
+	/**
+	 * Write an integer into the byte stream.
+	 * @param anInt the integer to be written
+	 */
+	public void write(int anInt) {
+		ensureCapacity(4);
+		buffer.putInt(anInt);
+	}
+
+	/**
+	 * Write a long into the byte stream (8 bytes).
+	 * @param aLong the double precision integer to be written
+	 */
+	public void write(long aLong) {
+		ensureCapacity(8);
+		buffer.putLong(aLong);
+	}
+
+	/**
+	 * Write a float into the byte stream.
+	 * @param aFloat floating point number to be written
+	 */
+	public void write(float aFloat) {
+		ensureCapacity(4);
+		buffer.putInt(Float.floatToIntBits(aFloat));
+	}
+
+	/**
+	 * Write a double into the byte stream (8 bytes).
+	 * @param aDouble double precision floating point number to be written
+	 */
+	public void write(double aDouble) {
+		ensureCapacity(8);
+		buffer.putLong(Double.doubleToRawLongBits(aDouble));
+	}
+
+	/**
+	 * Write a float into the byte stream.
+	 * @param aFloat floating point number to be written
+	 */
+	public void write(Float aFloat) {
+		write(aFloat.floatValue());
+	}
+
+	/**
+	 * Write a double into the byte stream (8 bytes).
+	 * @param aDouble double precision floating point number to be written
+	 */
+	public void write(Double aDouble) {
+		write(aDouble.doubleValue());
+	}
+
+	/**
+	 * @param anInt the integer to be written
+	 */
+	public void write(Integer anInt) {
+		write(anInt.intValue());
+	}
+
+	/**
+	 * @param aLong the double precision integer to be written
+	 */
+	public void write(Long aLong) {
+		write(aLong.longValue());
+	}
+
+	/**
+	 * @param timestamp the timestamp to be written
+	 */
+	public void write(Date timestamp) {
+		ensureCapacity(8);
+		buffer.putLong(NTPTime.javaToNtpTimeStamp(timestamp.getTime()));
+	}
+
+	//
+	public void write(ShortMessage midievent) {
+		//first byte of OSC type 'm' is midi port.
+		//for now this is implicitely always 0x00 (~ default midi port)
+		ensureCapacity(4);
+		buffer.put((byte) 0x00);
+		//write bytes (>0, <=3)
+		final byte[] b=midievent.getMessage();
+		for(int i=0;i<midievent.getLength();i++)
+		{
+			buffer.put(b[i]);
+		}
+		//pad to 4 bytes
+		alignStream();
+	}
+
+	/**
+	 * Write a string into the byte stream.
+	 * Plain ASCII strings are put into the buffer char by char,
+	 * without creating an intermediate byte array.
+	 * @param aString the string to be written
+	 */
+	public void write(String aString) {
+		final int len = aString.length();
+		if (asciiCompatible && isAscii(aString)) {
+			ensureCapacity(len + 4);
+			for (int ci = 0; ci < len; ci++) {
+				buffer.put((byte) aString.charAt(ci));
+			}
+		} else {
+			final byte[] stringBytes = aString.getBytes(charset);
+			ensureCapacity(stringBytes.length + 4);
+			buffer.put(stringBytes);
+		}
+		buffer.put((byte) 0);
+		alignStream();
+	}
+
+	private static boolean isAscii(String aString) {
+		for (int ci = 0; ci < aString.length(); ci++) {
+			if (aString.charAt(ci) >= 0x80) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Write a char into the byte stream, and ensure it is 4 byte aligned again.
+	 * @param aChar the character to be written
+	 */
+	public void write(Character aChar) {
+		//'a' is sent as 00 00 00 61, see OSCJavaToByteArrayConverter
+		write(aChar.charValue() & 0xFF);
+	}
+
+	/**
+	 * Write a char into the byte stream.
+	 * CAUTION, this does not ensure 4 byte alignment (it actually breaks it)!
+	 * @param aChar the character to be written
+	 */
+	public void write(char aChar) {
+		ensureCapacity(1);
+		buffer.put((byte) aChar);
+	}
+
+	//
+	public void write(OSCTypedBlob typedBlob)
+	{
+		write((Character)typedBlob.getType());
+		write(typedBlob.getCount());
+		write(typedBlob.write());
+	}
+
+	/**
+	 * Write types for the arguments.
+	 * The cached, padded type tags are put into the buffer with one copy.
+	 * @param arguments the arguments to an OSCMessage
+	 */
+	public void writeTypes(Collection<Object> arguments) {
+		final byte[] typeTags = TypeSignature.of(arguments).getPaddedBytes();
+		ensureCapacity(typeTags.length);
+		buffer.put(typeTags);
+		// only needed if there was no ',' in front
+		alignStream();
+	}
+}//end class OSCJavaToByteBufferConverter
+//EOF
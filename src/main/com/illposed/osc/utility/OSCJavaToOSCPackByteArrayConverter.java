@@ -40,6 +40,9 @@ a parser should understand the msgpack format and then:
 */
 public class OSCJavaToOSCPackByteArrayConverter extends AbstractJavaToByteArrayConverter {
 
+	/** MessagePack bin 32 format, the size is filled in afterwards */
+	private static final byte[] BIN32_PLACEHOLDER = {(byte) 0xc6, 0, 0, 0, 0};
+
 	private MessagePacker packer;
 
 	public OSCJavaToOSCPackByteArrayConverter() {
@@ -62,6 +65,34 @@ public class OSCJavaToOSCPackByteArrayConverter extends AbstractJavaToByteArrayC
 		return null;
 	}
 
+	/**
+	 * Writes a placeholder for the binary header of a bundle element,
+	 * always in the 32 bit size format, followed by the OSCPack indicator.
+	 * @return where the binary header starts
+	 */
+	public int beginBundleElement() {
+		try {
+			// after flushing, the packer holds nothing, so we can write to the stream ourselves
+			packer.flush();
+			final int mark = stream.size();
+			stream.write(BIN32_PLACEHOLDER, 0, BIN32_PLACEHOLDER.length);
+			packer.packByte((byte)'!');
+			return mark;
+		} catch (IOException e) {throwEx("",e);}
+		return -1;
+	}
+
+	/**
+	 * Fills in the size of the binary header of a bundle element.
+	 * @param mark as returned by {@link #beginBundleElement()}
+	 */
+	public void endBundleElement(int mark) {
+		try {
+			packer.flush();
+			stream.patchInt(mark + 1, stream.size() - mark - BIN32_PLACEHOLDER.length);
+		} catch (IOException e) {throwEx("",e);}
+	}
+
 	public void write(byte[] bytes) {
 		try {
 			packer.packBinaryHeader(bytes.length);
@@ -69,34 +100,50 @@ public class OSCJavaToOSCPackByteArrayConverter extends AbstractJavaToByteArrayC
 		} catch (IOException e) {throwEx("",e);}
 	}
 
+	public void writeRaw(byte[] bytes) {
+		try {
+			packer.writePayload(bytes);
+		} catch (IOException e) {throwEx("",e);}
+	}
+
 	public void write(int anInt) {
 		try {
 			packer.packInt(anInt);
 		} catch (IOException e) {throwEx("",e);}
 	}
 
-	public void write(Float aFloat) {
+	public void write(long aLong) {
+		try {
+			packer.packLong(aLong);
+		} catch (IOException e) {throwEx("",e);}
+	}
+
+	public void write(float aFloat) {
 		try {
 			packer.packFloat(aFloat);
 		} catch (IOException e) {throwEx("",e);}
 	}
 
-	public void write(Double aDouble) {
+	public void write(double aDouble) {
 		try {
 			packer.packDouble(aDouble);
 		} catch (IOException e) {throwEx("",e);}
 	}
 
+	public void write(Float aFloat) {
+		write(aFloat.floatValue());
+	}
+
+	public void write(Double aDouble) {
+		write(aDouble.doubleValue());
+	}
+
 	public void write(Integer anInt) {
-		try {
-			packer.packInt((int)anInt);
-		} catch (IOException e) {throwEx("",e);}
+		write(anInt.intValue());
 	}
 
 	public void write(Long aLong) {
-		try {
-			packer.packLong(aLong);
-		} catch (IOException e) {throwEx("",e);}
+		write(aLong.longValue());
 	}
 
 	public void write(Date timestamp) {
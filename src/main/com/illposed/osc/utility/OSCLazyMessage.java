@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc.utility;
+
+import com.illposed.osc.OSCMessage;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A received message, that decodes its arguments only when they are
+ * first accessed.
+ *
+ * The address and the type tags are decoded right away,
+ * so selectors and listeners that only look at those
+ * never pay for decoding (and boxing) the arguments.
+ * The message keeps a reference to the received bytes
+ * (shared by all messages of a bundle),
+ * and remembers where each argument starts, once it was found.
+ *
+ * The message is read-only: changing its address or arguments throws an
+ * {@link UnsupportedOperationException}.
+ * Its byte array is a copy of the received bytes.
+ *
+ * Created by {@link OSCByteBufferToJavaConverter#setLazy(boolean) lazy}
+ * converters.
+ *
+ * @author Thomas Brand
+ */
+public class OSCLazyMessage extends OSCMessage {
+
+	private final OSCByteBufferToJavaConverter decoder;
+	private final byte[] bytes;
+	/** where the packet starts, alignment is relative to it */
+	private final int start;
+	/** where the packet ends */
+	private final int end;
+	/** where each argument starts, known for the first <code>scanned + 1</code> ones */
+	private final int[] offsets;
+	private int scanned;
+	private final Object[] values;
+	private final boolean[] decoded;
+	private final List<Object> argumentsView;
+
+	/**
+	 * @param address the address, already decoded
+	 * @param types the type tags, without ',' and without arrays
+	 * @param bytes holds the packet, must not be changed afterwards
+	 * @param start where the packet starts
+	 * @param argumentsStart where the first argument starts
+	 * @param end where the packet ends
+	 * @param decoder decodes single arguments
+	 */
+	OSCLazyMessage(String address, String types, byte[] bytes, int start, int argumentsStart, int end,
+			OSCByteBufferToJavaConverter decoder)
+	{
+		super(address);
+		super.setTypetagString(types);
+		this.decoder = decoder;
+		this.bytes = bytes;
+		this.start = start;
+		this.end = end;
+		this.offsets = new int[types.length() + 1];
+		this.offsets[0] = argumentsStart;
+		this.scanned = 0;
+		this.values = new Object[types.length()];
+		this.decoded = new boolean[types.length()];
+		this.argumentsView = new AbstractList<Object>() {
+			@Override
+			public Object get(int index) {
+				return getArgument(index);
+			}
+
+			@Override
+			public int size() {
+				return getArgumentCount();
+			}
+		};
+	}
+
+	@Override
+	public int getArgumentCount() {
+		return values.length;
+	}
+
+	/**
+	 * Returns one argument, decoding it on first access.
+	 * @param index of the argument
+	 * @return the argument, as it would be in {@link #getArguments()}
+	 */
+	@Override
+	public synchronized Object getArgument(int index) {
+		if (index < 0 || index >= values.length) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + values.length);
+		}
+		if (!decoded[index]) {
+			final ByteBuffer in = ByteBuffer.wrap(bytes, 0, end);
+			in.position(offsetOf(index, in));
+			values[index] = decoder.readArgument(in, start, typetags.charAt(index));
+			decoded[index] = true;
+		}
+		return values[index];
+	}
+
+	//decodes straight from the received bytes
+	@Override
+	public synchronized int getInt(int index) {
+		return positionAt(index, 'i').getInt();
+	}
+
+	//
+	@Override
+	public synchronized long getLong(int index) {
+		return positionAt(index, 'h').getLong();
+	}
+
+	//
+	@Override
+	public synchronized float getFloat(int index) {
+		return positionAt(index, 'f').getFloat();
+	}
+
+	//
+	@Override
+	public synchronized double getDouble(int index) {
+		return positionAt(index, 'd').getDouble();
+	}
+
+	/**
+	 * Wraps the received bytes, positioned at a number argument.
+	 * @param type the type the argument is expected to have
+	 */
+	private ByteBuffer positionAt(int index, char type) {
+		if (index < 0 || index >= values.length) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + values.length);
+		}
+		if (typetags.charAt(index) != type) {
+			throw new ClassCastException("argument " + index + " is not of type '" + type
+					+ "' but of type '" + typetags.charAt(index) + "'");
+		}
+		final ByteBuffer in = ByteBuffer.wrap(bytes, 0, end);
+		in.position(offsetOf(index, in));
+		return in;
+	}
+
+	/**
+	 * Finds where an argument starts,
+	 * skipping the arguments in front of it without decoding them.
+	 */
+	private int offsetOf(int index, ByteBuffer in) {
+		while (scanned < index) {
+			in.position(offsets[scanned]);
+			decoder.skipArgument(in, start, typetags.charAt(scanned));
+			scanned++;
+			offsets[scanned] = in.position();
+		}
+		return offsets[index];
+	}
+
+	/**
+	 * The arguments of this message, decoded as they are accessed.
+	 * @return an unmodifiable list view of the arguments
+	 */
+	@Override
+	public List<Object> getArguments() {
+		return argumentsView;
+	}
+
+	@Override
+	public OSCMessage setAddress(String address) {
+		throw new UnsupportedOperationException("received messages are read-only");
+	}
+
+	@Override
+	public OSCMessage addArgument(Object argument) {
+		throw new UnsupportedOperationException("received messages are read-only");
+	}
+
+	@Override
+	public OSCMessage addInt(int value) {
+		throw new UnsupportedOperationException("received messages are read-only");
+	}
+
+	@Override
+	public OSCMessage addLong(long value) {
+		throw new UnsupportedOperationException("received messages are read-only");
+	}
+
+	@Override
+	public OSCMessage addFloat(float value) {
+		throw new UnsupportedOperationException("received messages are read-only");
+	}
+
+	@Override
+	public OSCMessage addDouble(double value) {
+		throw new UnsupportedOperationException("received messages are read-only");
+	}
+
+	@Override
+	public OSCMessage addArguments(Collection<Object> arguments) {
+		throw new UnsupportedOperationException("received messages are read-only");
+	}
+
+	@Override
+	public OSCMessage clearArguments() {
+		throw new UnsupportedOperationException("received messages are read-only");
+	}
+
+	@Override
+	public void setTypetagString(String typetags) {
+		throw new UnsupportedOperationException("received messages are read-only");
+	}
+
+	//the size of the received bytes
+	@Override
+	public int computeSize() {
+		return end - start;
+	}
+
+	//the received bytes, no need to encode the arguments again
+	@Override
+	protected byte[] computeByteArray() {
+		return Arrays.copyOfRange(bytes, start, end);
+	}
+
+	//same as OSCMessage, but with the decoded arguments
+	@Override
+	protected void writeContent(JavaToByteArrayConverter stream) {
+		computeAddressByteArray(stream);
+		stream.write(',');
+		stream.writeTypes(argumentsView);
+		for (final Object argument : argumentsView) {
+			stream.write(argument);
+		}
+	}
+
+	//copy the received bytes
+	@Override
+	protected void writeElement(JavaToByteArrayConverter stream, boolean packed) {
+		stream.write(getByteArray());
+	}
+
+	//copy the received bytes
+	@Override
+	public void writeTo(OSCJavaToByteBufferConverter stream) {
+		stream.writeRaw(getByteArray());
+	}
+}//end class OSCLazyMessage
+//EOF
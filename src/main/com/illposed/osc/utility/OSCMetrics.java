@@ -0,0 +1,341 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc.utility;
+
+import com.illposed.osc.OSCListener;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counts what goes through an OSC port: packets and bytes,
+ * decode failures, unknown type tags, dropped packets,
+ * how long listeners take, how late bundles are dispatched,
+ * how many messages are sent together in a batch,
+ * how long packets wait to be sent
+ * and how many packets are waiting.
+ *
+ * All updates are thread-safe and lock-free,
+ * so they may be done from the receive and worker threads directly.
+ * Read the values one by one, all at once with {@link #snapshot()},
+ * or through JMX, after {@link #registerMBean(String)}.
+ *
+ * Times are measured in nano-seconds.
+ *
+ * @author Thomas Brand
+ */
+public class OSCMetrics implements OSCMetricsMXBean {
+
+	/** The JMX domain metrics are registered under. */
+	public static final String JMX_DOMAIN = "com.illposed.osc";
+
+	/** Reports a value that is not counted, but looked up when asked for. */
+	public interface Gauge {
+
+		long getValue();
+	}
+
+	private final Counter packetsIn;
+	private final Counter bytesIn;
+	private final Counter packetsOut;
+	private final Counter bytesOut;
+	private final Counter decodeFailures;
+	private final Counter unknownTypeTags;
+	private final Counter packetsDropped;
+	private final Counter bufferOverflows;
+	private final Histogram dispatchLatency;
+	private final ConcurrentMap<OSCListener, Histogram> listenerLatency;
+	private final Histogram bundleLateness;
+	private final Histogram batchSize;
+	private final Histogram sendLatency;
+	private volatile Gauge queueDepth;
+	private ObjectName registeredName;
+
+	public OSCMetrics() {
+		this.packetsIn = new Counter();
+		this.bytesIn = new Counter();
+		this.packetsOut = new Counter();
+		this.bytesOut = new Counter();
+		this.decodeFailures = new Counter();
+		this.unknownTypeTags = new Counter();
+		this.packetsDropped = new Counter();
+		this.bufferOverflows = new Counter();
+		this.dispatchLatency = new Histogram();
+		this.listenerLatency = new ConcurrentHashMap<OSCListener, Histogram>();
+		this.bundleLateness = new Histogram();
+		this.batchSize = new Histogram();
+		this.sendLatency = new Histogram();
+		this.queueDepth = null;
+	}
+
+	/**
+	 * Counts a packet that was received and decoded.
+	 * @param bytes size of the packet
+	 */
+	public void packetReceived(int bytes) {
+		packetsIn.increment();
+		bytesIn.add(bytes);
+	}
+
+	/**
+	 * Counts a packet that was sent.
+	 * @param bytes size of the packet
+	 */
+	public void packetSent(int bytes) {
+		packetsOut.increment();
+		bytesOut.add(bytes);
+	}
+
+	//a received packet could not be decoded
+	public void decodeFailed() {
+		decodeFailures.increment();
+	}
+
+	//an argument with an unknown type tag was skipped
+	public void unknownTypeTag() {
+		unknownTypeTags.increment();
+	}
+
+	//a packet was dropped, e.g. because a queue was full
+	public void packetDropped() {
+		packetsDropped.increment();
+	}
+
+	//several packets were dropped at once, e.g. a batch that could not be sent
+	public void packetsDropped(int count) {
+		packetsDropped.add(count);
+	}
+
+	//a received packet was dropped, because all receive buffers were in use
+	public void bufferOverflow() {
+		bufferOverflows.increment();
+	}
+
+	/**
+	 * Records how long a listener took to handle a message.
+	 * @param listener the listener that was called
+	 * @param nanos how long the call took
+	 */
+	public void listenerCalled(OSCListener listener, long nanos) {
+		dispatchLatency.record(nanos);
+		Histogram histogram = listenerLatency.get(listener);
+		if (histogram == null) {
+			final Histogram created = new Histogram();
+			histogram = listenerLatency.putIfAbsent(listener, created);
+			if (histogram == null) {
+				histogram = created;
+			}
+		}
+		histogram.record(nanos);
+	}
+
+	/**
+	 * Forgets the latencies recorded for a listener,
+	 * so a listener that is no longer registered is not kept alive.
+	 * @param listener the listener that was removed
+	 */
+	public void listenerRemoved(OSCListener listener) {
+		listenerLatency.remove(listener);
+	}
+
+	/**
+	 * Records how late a bundle was dispatched, after its time-tag.
+	 * @param nanos the delay, 0 if it was on time
+	 */
+	public void bundleDispatched(long nanos) {
+		bundleLateness.record(nanos);
+	}
+
+	/**
+	 * Records how many packets were sent together, in one bundle.
+	 * @param packets the number of packets in the batch
+	 */
+	public void batchSent(int packets) {
+		batchSize.record(packets);
+	}
+
+	/**
+	 * Records how long it took to send a packet that was queued,
+	 * from queuing it until it was sent.
+	 * @param nanos the time in the queue, plus encoding and sending
+	 */
+	public void queuedPacketSent(long nanos) {
+		sendLatency.record(nanos);
+	}
+
+	/**
+	 * Sets where to look up the number of packets waiting to be dispatched or sent.
+	 * @param queueDepth reports the queue depth, or <code>null</code>
+	 */
+	public void setQueueDepth(Gauge queueDepth) {
+		this.queueDepth = queueDepth;
+	}
+
+	@Override
+	public long getPacketsIn() {
+		return packetsIn.get();
+	}
+
+	@Override
+	public long getBytesIn() {
+		return bytesIn.get();
+	}
+
+	@Override
+	public long getPacketsOut() {
+		return packetsOut.get();
+	}
+
+	@Override
+	public long getBytesOut() {
+		return bytesOut.get();
+	}
+
+	@Override
+	public long getDecodeFailures() {
+		return decodeFailures.get();
+	}
+
+	@Override
+	public long getUnknownTypeTags() {
+		return unknownTypeTags.get();
+	}
+
+	@Override
+	public long getPacketsDropped() {
+		return packetsDropped.get();
+	}
+
+	@Override
+	public long getBufferOverflows() {
+		return bufferOverflows.get();
+	}
+
+	@Override
+	public long getQueueDepth() {
+		final Gauge gauge = queueDepth;
+		return (gauge == null) ? 0 : gauge.getValue();
+	}
+
+	@Override
+	public long getDispatchCount() {
+		return dispatchLatency.getCount();
+	}
+
+	@Override
+	public long getDispatchLatency50thPercentile() {
+		return dispatchLatency.getValueAtPercentile(50);
+	}
+
+	@Override
+	public long getDispatchLatency99thPercentile() {
+		return dispatchLatency.getValueAtPercentile(99);
+	}
+
+	@Override
+	public long getBundleLateness50thPercentile() {
+		return bundleLateness.getValueAtPercentile(50);
+	}
+
+	@Override
+	public long getBundleLateness99thPercentile() {
+		return bundleLateness.getValueAtPercentile(99);
+	}
+
+	@Override
+	public long getBatchCount() {
+		return batchSize.getCount();
+	}
+
+	@Override
+	public long getBatchSize50thPercentile() {
+		return batchSize.getValueAtPercentile(50);
+	}
+
+	@Override
+	public long getBatchSize99thPercentile() {
+		return batchSize.getValueAtPercentile(99);
+	}
+
+	@Override
+	public long getSendLatency50thPercentile() {
+		return sendLatency.getValueAtPercentile(50);
+	}
+
+	@Override
+	public long getSendLatency99thPercentile() {
+		return sendLatency.getValueAtPercentile(99);
+	}
+
+	//all listener calls
+	public Histogram getDispatchLatency() {
+		return dispatchLatency;
+	}
+
+	//calls of one listener, null if it was never called or was removed
+	public Histogram getDispatchLatency(OSCListener listener) {
+		return listenerLatency.get(listener);
+	}
+
+	//
+	public Histogram getBundleLateness() {
+		return bundleLateness;
+	}
+
+	//packets per batch
+	public Histogram getBatchSize() {
+		return batchSize;
+	}
+
+	//queued packets, from queuing until sent
+	public Histogram getSendLatency() {
+		return sendLatency;
+	}
+
+	/**
+	 * Reads all values at once.
+	 * Updates happening at the same time may or may not be included.
+	 * @return an immutable copy of the current values
+	 */
+	public OSCMetricsSnapshot snapshot() {
+		return new OSCMetricsSnapshot(this, listenerLatency);
+	}
+
+	/**
+	 * Makes these metrics available through JMX,
+	 * under <code>com.illposed.osc:type=OSCMetrics,name=&lt;name&gt;</code>.
+	 * @param name tells these metrics apart from others, e.g. "in-57110"
+	 * @return the name these metrics were registered under
+	 * @throws JMException if the name is invalid or already in use
+	 */
+	public synchronized ObjectName registerMBean(String name) throws JMException {
+		unregisterMBean();
+		final ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=OSCMetrics,name="
+				+ ObjectName.quote(name));
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		server.registerMBean(this, objectName);
+		registeredName = objectName;
+		return objectName;
+	}
+
+	/**
+	 * Removes these metrics from JMX, if they were registered.
+	 * @throws JMException if they could not be removed
+	 */
+	public synchronized void unregisterMBean() throws JMException {
+		if (registeredName != null) {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+			registeredName = null;
+		}
+	}
+}//end class OSCMetrics
+//EOF
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc.utility;
+
+/**
+ * The attributes of {@link OSCMetrics}, as seen through JMX,
+ * e.g. in JConsole or VisualVM.
+ * Times are in nano-seconds.
+ *
+ * @author Thomas Brand
+ */
+public interface OSCMetricsMXBean {
+
+	long getPacketsIn();
+
+	long getBytesIn();
+
+	long getPacketsOut();
+
+	long getBytesOut();
+
+	long getDecodeFailures();
+
+	long getUnknownTypeTags();
+
+	long getPacketsDropped();
+
+	long getBufferOverflows();
+
+	long getQueueDepth();
+
+	long getDispatchCount();
+
+	long getDispatchLatency50thPercentile();
+
+	long getDispatchLatency99thPercentile();
+
+	long getBundleLateness50thPercentile();
+
+	long getBundleLateness99thPercentile();
+
+	long getBatchCount();
+
+	long getBatchSize50thPercentile();
+
+	long getBatchSize99thPercentile();
+
+	long getSendLatency50thPercentile();
+
+	long getSendLatency99thPercentile();
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc.utility;
+
+import com.illposed.osc.OSCListener;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The values of {@link OSCMetrics} at one point in time.
+ * Snapshots taken one after another may be subtracted,
+ * to get rates.
+ *
+ * @author Thomas Brand
+ */
+public class OSCMetricsSnapshot {
+
+	private final long timeNanos;
+	private final long packetsIn;
+	private final long bytesIn;
+	private final long packetsOut;
+	private final long bytesOut;
+	private final long decodeFailures;
+	private final long unknownTypeTags;
+	private final long packetsDropped;
+	private final long bufferOverflows;
+	private final long queueDepth;
+	private final Histogram.Snapshot dispatchLatency;
+	private final Map<String, Histogram.Snapshot> listenerLatency;
+	private final Histogram.Snapshot bundleLateness;
+	private final Histogram.Snapshot batchSize;
+	private final Histogram.Snapshot sendLatency;
+
+	OSCMetricsSnapshot(OSCMetrics metrics, Map<OSCListener, Histogram> listeners) {
+		this.timeNanos = System.nanoTime();
+		this.packetsIn = metrics.getPacketsIn();
+		this.bytesIn = metrics.getBytesIn();
+		this.packetsOut = metrics.getPacketsOut();
+		this.bytesOut = metrics.getBytesOut();
+		this.decodeFailures = metrics.getDecodeFailures();
+		this.unknownTypeTags = metrics.getUnknownTypeTags();
+		this.packetsDropped = metrics.getPacketsDropped();
+		this.bufferOverflows = metrics.getBufferOverflows();
+		this.queueDepth = metrics.getQueueDepth();
+		this.dispatchLatency = metrics.getDispatchLatency().snapshot();
+		final Map<String, Histogram.Snapshot> perListener = new LinkedHashMap<String, Histogram.Snapshot>();
+		for (final Map.Entry<OSCListener, Histogram> listener : listeners.entrySet()) {
+			perListener.put(listener.getKey().toString(), listener.getValue().snapshot());
+		}
+		this.listenerLatency = Collections.unmodifiableMap(perListener);
+		this.bundleLateness = metrics.getBundleLateness().snapshot();
+		this.batchSize = metrics.getBatchSize().snapshot();
+		this.sendLatency = metrics.getSendLatency().snapshot();
+	}
+
+	//System.nanoTime() when this snapshot was taken
+	public long getTimeNanos() {
+		return timeNanos;
+	}
+
+	//
+	public long getPacketsIn() {
+		return packetsIn;
+	}
+
+	//
+	public long getBytesIn() {
+		return bytesIn;
+	}
+
+	//
+	public long getPacketsOut() {
+		return packetsOut;
+	}
+
+	//
+	public long getBytesOut() {
+		return bytesOut;
+	}
+
+	//
+	public long getDecodeFailures() {
+		return decodeFailures;
+	}
+
+	//
+	public long getUnknownTypeTags() {
+		return unknownTypeTags;
+	}
+
+	//
+	public long getPacketsDropped() {
+		return packetsDropped;
+	}
+
+	//
+	public long getBufferOverflows() {
+		return bufferOverflows;
+	}
+
+	//
+	public long getQueueDepth() {
+		return queueDepth;
+	}
+
+	//all listener calls, in nano-seconds
+	public Histogram.Snapshot getDispatchLatency() {
+		return dispatchLatency;
+	}
+
+	/**
+	 * Returns the dispatch latency of each listener,
+	 * keyed by <code>listener.toString()</code>.
+	 * @return an unmodifiable map, in no particular order
+	 */
+	public Map<String, Histogram.Snapshot> getListenerLatency() {
+		return listenerLatency;
+	}
+
+	//in nano-seconds
+	public Histogram.Snapshot getBundleLateness() {
+		return bundleLateness;
+	}
+
+	//in packets per batch
+	public Histogram.Snapshot getBatchSize() {
+		return batchSize;
+	}
+
+	//in nano-seconds
+	public Histogram.Snapshot getSendLatency() {
+		return sendLatency;
+	}
+
+	/**
+	 * Returns how many packets per second were received,
+	 * between an earlier snapshot and this one.
+	 * @param earlier a snapshot of the same metrics, taken before this one
+	 * @return received packets per second
+	 */
+	public double getPacketsInPerSecond(OSCMetricsSnapshot earlier) {
+		return perSecond(packetsIn - earlier.packetsIn, earlier);
+	}
+
+	/**
+	 * Returns how many packets per second were sent,
+	 * between an earlier snapshot and this one.
+	 * @param earlier a snapshot of the same metrics, taken before this one
+	 * @return sent packets per second
+	 */
+	public double getPacketsOutPerSecond(OSCMetricsSnapshot earlier) {
+		return perSecond(packetsOut - earlier.packetsOut, earlier);
+	}
+
+	private double perSecond(long difference, OSCMetricsSnapshot earlier) {
+		final long nanos = timeNanos - earlier.timeNanos;
+		return (nanos <= 0) ? 0.0 : (difference * 1e9 / nanos);
+	}
+
+	@Override
+	public String toString() {
+		return "in=" + packetsIn + " (" + bytesIn + " bytes) out=" + packetsOut + " (" + bytesOut
+				+ " bytes) decodeFailures=" + decodeFailures + " unknownTypeTags=" + unknownTypeTags
+				+ " dropped=" + packetsDropped + " overflows=" + bufferOverflows + " queueDepth=" + queueDepth
+				+ " dispatch[" + dispatchLatency + "] lateness[" + bundleLateness + "] batch[" + batchSize + "] send[" + sendLatency + "]";
+	}
+}//end class OSCMetricsSnapshot
+//EOF
@@ -19,6 +19,7 @@ import com.illposed.osc.OSCPackMessage;
 import org.msgpack.core.MessagePack;
 import org.msgpack.core.MessageUnpacker;
 
+import java.io.IOException;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Date;
@@ -262,13 +263,61 @@ public class OSCPackByteArrayToJavaConverter extends AbstractByteArrayToJavaConv
 					//   just ignore (return null), or throw an exception?
 //					throw new UnsupportedOperationException(
 //							"Invalid or not yet supported OSC type: '" + type + "'");
-					return null;
+					return readCustomArgument(type, new PackInput(up));
 			}//end switch cae
 		} catch(Exception e)
 		{e.printStackTrace();} ///ev. throw runtime exception
 		return null;
 	}//end readArgument()
 
+	//lets custom codecs read from the unpacker
+	private static final class PackInput implements ArgumentInput {
+
+		private final MessageUnpacker up;
+
+		PackInput(MessageUnpacker up) {
+			this.up = up;
+		}
+
+		public int readInt() {
+			try {
+				return up.unpackInt();
+			} catch (IOException e) {throw new RuntimeException(e);}
+		}
+
+		public long readLong() {
+			try {
+				return up.unpackLong();
+			} catch (IOException e) {throw new RuntimeException(e);}
+		}
+
+		public float readFloat() {
+			try {
+				return up.unpackFloat();
+			} catch (IOException e) {throw new RuntimeException(e);}
+		}
+
+		public double readDouble() {
+			try {
+				return up.unpackDouble();
+			} catch (IOException e) {throw new RuntimeException(e);}
+		}
+
+		public String readString() {
+			try {
+				return up.unpackString();
+			} catch (IOException e) {throw new RuntimeException(e);}
+		}
+
+		public byte[] readBlob() {
+			try {
+				final byte[] blob = new byte[up.unpackBinaryHeader()];
+				up.readPayload(blob);
+				return blob;
+			} catch (IOException e) {throw new RuntimeException(e);}
+		}
+	}
+
 	/**
 	 * Reads an array from the byte stream.
 	 * @param types
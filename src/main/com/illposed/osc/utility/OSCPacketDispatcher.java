@@ -13,6 +13,7 @@ import com.illposed.osc.OSCBundle;
 import com.illposed.osc.OSCListener;
 import com.illposed.osc.OSCMessage;
 import com.illposed.osc.OSCPacket;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -27,9 +28,25 @@ import java.util.Map.Entry;
 public class OSCPacketDispatcher {
 
 	protected final Map<AddressSelector, OSCListener> selectorToListener;
+	private volatile OSCMetrics metrics;
 
 	public OSCPacketDispatcher() {
 		this.selectorToListener = new HashMap<AddressSelector, OSCListener>();
+		this.metrics = null;
+	}
+
+	/**
+	 * Sets where to record how long each listener takes.
+	 * @param metrics to be updated on every listener call,
+	 *   or <code>null</code> to not measure
+	 */
+	public void setMetrics(OSCMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	//null if listener calls are not measured
+	public OSCMetrics getMetrics() {
+		return metrics;
 	}
 
 	/**
@@ -40,7 +57,55 @@ public class OSCPacketDispatcher {
 	 * @param listener receives messages accepted by the selector
 	 */
 	public void addListener(AddressSelector addressSelector, OSCListener listener) {
-		selectorToListener.put(addressSelector, listener);
+		final OSCListener replaced = selectorToListener.put(addressSelector, listener);
+		if (replaced != null) {
+			forgetListener(replaced);
+		}
+	}
+
+	/**
+	 * Removes a listener, that was added with {@link #addListener}.
+	 * @param addressSelector the selector the listener was added with
+	 */
+	public void removeListener(AddressSelector addressSelector) {
+		final OSCListener removed = selectorToListener.remove(addressSelector);
+		if (removed != null) {
+			forgetListener(removed);
+		}
+	}
+
+	/**
+	 * Drops the metrics of a listener that is no longer registered
+	 * under any selector.
+	 * @param listener the listener that was removed or replaced
+	 */
+	private void forgetListener(OSCListener listener) {
+
+		final OSCMetrics current = metrics;
+		if ((current != null) && !selectorToListener.containsValue(listener)) {
+			current.listenerRemoved(listener);
+		}
+	}
+
+	/**
+	 * Removes all listeners that were added with an
+	 * {@link OSCPatternAddressSelector} for the given pattern,
+	 * as done when adding a listener for a plain address string.
+	 * @param addressPattern the pattern the listeners were added with
+	 */
+	public void removeListener(String addressPattern) {
+
+		final List<AddressSelector> toRemove = new ArrayList<AddressSelector>();
+		for (final AddressSelector addressSelector : selectorToListener.keySet()) {
+			if ((addressSelector instanceof OSCPatternAddressSelector)
+					&& ((OSCPatternAddressSelector) addressSelector).getPattern().equals(addressPattern))
+			{
+				toRemove.add(addressSelector);
+			}
+		}
+		for (final AddressSelector addressSelector : toRemove) {
+			removeListener(addressSelector);
+		}
 	}
 
 	public void dispatchPacket(OSCPacket packet) {
@@ -64,10 +129,42 @@ public class OSCPacketDispatcher {
 	}
 
 	protected void dispatchMessage(OSCMessage message, Date time) {
+		notifyListeners(message, time);
+	}
+
+	/**
+	 * Hands the message to all listeners whose selector matches its address.
+	 * Subclasses may override this to find the matching listeners in a
+	 * different way.
+	 * @param message to be handed to the listeners
+	 * @param time the time the message is to be executed, <code>null</code> for immediately
+	 */
+	protected void notifyListeners(OSCMessage message, Date time) {
 		for (final Entry<AddressSelector, OSCListener> addrList : selectorToListener.entrySet()) {
 			if (addrList.getKey().matches(message.getAddress())) {
-				addrList.getValue().acceptMessage(time, message);
+				deliver(addrList.getValue(), time, message);
 			}
 		}
 	}
+
+	/**
+	 * Hands a message to one listener,
+	 * measuring how long it takes, if metrics are set.
+	 * @param listener to be notified
+	 * @param time the time the message is to be executed, <code>null</code> for immediately
+	 * @param message to be handed to the listener
+	 */
+	protected final void deliver(OSCListener listener, Date time, OSCMessage message) {
+		final OSCMetrics current = metrics;
+		if (current == null) {
+			listener.acceptMessage(time, message);
+			return;
+		}
+		final long start = System.nanoTime();
+		try {
+			listener.acceptMessage(time, message);
+		} finally {
+			current.listenerCalled(listener, System.nanoTime() - start);
+		}
+	}
 }
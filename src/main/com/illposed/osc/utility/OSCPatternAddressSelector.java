@@ -57,26 +57,94 @@ import java.util.List;
  */
 public class OSCPatternAddressSelector implements AddressSelector {
 
+	private final String pattern;
 	private final List<String> patternParts;
+	/** the only address matched, or null if the selector contains wildcards */
+	private final String fixedAddress;
 
 	public OSCPatternAddressSelector(String selector) {
+		this.pattern = selector;
 		this.patternParts = splitIntoParts(selector);
+		this.fixedAddress = toFixedAddress(patternParts);
 	}
 
 	@Override
 	public boolean matches(String messageAddress) {
 
+		if (messageAddress.equals(fixedAddress)) {
+			return true;
+		}
 		final List<String> messageAddressParts = splitIntoParts(messageAddress);
 		return matches(patternParts, 0, messageAddressParts, 0);
 	}
 
+	/**
+	 * Returns the pattern this selector was created with.
+	 * @return the pattern, e.g. "/??/mixer/*"
+	 */
+	public String getPattern() {
+		return pattern;
+	}
+
+	/**
+	 * Returns the parts of the pattern, as used during matching;
+	 * an empty part stands for a path-traversal wildcard "//".
+	 * @return the pattern split into parts, unmodifiable
+	 */
+	List<String> getPatternParts() {
+		return patternParts;
+	}
+
+	/**
+	 * Returns the one address this selector matches,
+	 * if it contains no wildcards at all.
+	 * @return the address in the form "/hello/world",
+	 *   or <code>null</code> if this selector is a pattern
+	 */
+	public String getFixedAddress() {
+		return fixedAddress;
+	}
+
+	private static String toFixedAddress(List<String> patternParts) {
+
+		final StringBuilder address = new StringBuilder();
+		for (final String part : patternParts) {
+			if (part.isEmpty() || !isLiteral(part)) {
+				return null;
+			}
+			address.append('/').append(part);
+		}
+		return (address.length() == 0) ? "/" : address.toString();
+	}
+
+	/**
+	 * Checks whether an address or pattern part contains no wildcard characters.
+	 * @param part address or pattern part
+	 * @return true if the part only matches itself
+	 */
+	static boolean isLiteral(String part) {
+
+		for (int ci = 0; ci < part.length(); ci++) {
+			switch (part.charAt(ci)) {
+				case '*':
+				case '?':
+				case '[':
+				case '{':
+					return false;
+				default:
+					break;
+			}
+		}
+		return true;
+	}
+
 	/**
 	 * Splits an OSC message address or address selector pattern into parts that are convenient
 	 * during the matching process.
 	 * @param addressOrPattern to be split into parts, e.g.: "/hello/", "/hello//world//"
 	 * @return the given address or pattern split into parts: {"hello"}, {"hello, "", "world", ""}
 	 */
-	private static List<String> splitIntoParts(String addressOrPattern) {
+	static List<String> splitIntoParts(String addressOrPattern) {
 
 		final List<String> parts = new ArrayList<String>(Arrays.asList(addressOrPattern.split("/", -1)));
 		if (addressOrPattern.startsWith("/")) {
@@ -157,7 +225,7 @@ public class OSCPatternAddressSelector implements AddressSelector {
 	 * @param p pattern part
 	 * @return true if the address part matches, false otherwise
 	 */
-	private static boolean matches(String str, String p) {
+	static boolean matches(String str, String p) {
 
 		boolean negate;
 		boolean match;
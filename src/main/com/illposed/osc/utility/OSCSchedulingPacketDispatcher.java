@@ -0,0 +1,400 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc.utility;
+
+import com.illposed.osc.AddressSelector;
+import com.illposed.osc.OSCBundle;
+import com.illposed.osc.OSCListener;
+import com.illposed.osc.OSCPacket;
+
+import java.util.Date;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Dispatches bundles at the time given by their time-tag,
+ * instead of immediately.
+ *
+ * Messages and bundles with the time-tag "immediately"
+ * are handed to the target dispatcher right away,
+ * on the thread that calls {@link #dispatchPacket(OSCPacket, Date)}.
+ * Bundles dated in the future are queued, and released by a scheduler
+ * thread at their time, so listeners of those are called from that thread.
+ * The scheduler waits until shortly before a bundle is due,
+ * and then spins for the rest, so bundles are usually released
+ * well within a millisecond of their time-tag
+ * (which itself only has a precision of a millisecond, see {@link NTPTime}).
+ *
+ * Nested bundles are scheduled at their own time-tag,
+ * but never before the time-tag of the bundle containing them.
+ * What happens to bundles that arrive after their time-tag
+ * is decided by the {@link LatePolicy}.
+ *
+ * Usage:
+ * <blockquote><pre>{@code
+ * dispatcher = new OSCSchedulingPacketDispatcher(new OSCTriePacketDispatcher(), LatePolicy.COUNT);
+ * receiver = new OSCPortIn(new DatagramSocket(port), dispatcher);
+ * }</pre></blockquote>
+ *
+ * @author Thomas Brand
+ */
+public class OSCSchedulingPacketDispatcher extends OSCPacketDispatcher {
+
+	/**
+	 * What to do with bundles whose time-tag has already passed
+	 * when they arrive (or when their enclosing bundle is released).
+	 */
+	public enum LatePolicy {
+		/** Discard the bundle, see {@link #getDroppedCount()}. */
+		DROP,
+		/** Dispatch the bundle immediately. */
+		DELIVER,
+		/** Dispatch the bundle immediately, and count it, see {@link #getLateCount()}. */
+		COUNT
+	}
+
+	/** How long before a bundle is due the scheduler stops sleeping and starts spinning. */
+	private static final long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+	/** How far the wall-clock may move away from the measured offset, before it is measured again. */
+	private static final long MAX_DRIFT_NANOS = TimeUnit.MICROSECONDS.toNanos(250);
+	/** How long to wait at least, before measuring the offset again. */
+	private static final long RECALIBRATE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	/** A bundle waiting for its time. */
+	private static final class Scheduled implements Delayed {
+
+		private static final AtomicLong SEQUENCE = new AtomicLong();
+
+		private final OSCBundle bundle;
+		private final Date timestamp;
+		private final long dueNanos;
+		/** keeps bundles with the same time-tag in arrival order */
+		private final long sequence;
+
+		Scheduled(OSCBundle bundle, Date timestamp, long dueNanos) {
+			this.bundle = bundle;
+			this.timestamp = timestamp;
+			this.dueNanos = dueNanos;
+			this.sequence = SEQUENCE.getAndIncrement();
+		}
+
+		// released a bit early, the rest is spent spinning
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(dueNanos - SPIN_NANOS - System.nanoTime(), TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public int compareTo(Delayed other) {
+			final Scheduled that = (Scheduled) other;
+			if (dueNanos != that.dueNanos) {
+				return (dueNanos - that.dueNanos < 0) ? -1 : 1;
+			}
+			return (sequence < that.sequence) ? -1 : ((sequence == that.sequence) ? 0 : 1);
+		}
+	}
+
+	private final OSCPacketDispatcher target;
+	private final LatePolicy latePolicy;
+	/** converts wall-clock time to {@link System#nanoTime()} */
+	private volatile long clockOffsetNanos;
+	/** when the offset was measured, in {@link System#nanoTime()} */
+	private volatile long calibratedNanos;
+	private final DelayQueue<Scheduled> queue;
+	private final AtomicLong lateCount;
+	private final AtomicLong droppedCount;
+	private volatile Thread scheduler;
+	private volatile boolean running;
+
+	/**
+	 * Schedules bundles for a {@link OSCTriePacketDispatcher},
+	 * delivering late bundles immediately.
+	 */
+	public OSCSchedulingPacketDispatcher() {
+		this(new OSCTriePacketDispatcher(), LatePolicy.DELIVER);
+	}
+
+	/**
+	 * @param target dispatches the messages when they are due
+	 * @param latePolicy what to do with bundles that arrive too late
+	 */
+	public OSCSchedulingPacketDispatcher(OSCPacketDispatcher target, LatePolicy latePolicy) {
+		this.target = target;
+		this.latePolicy = latePolicy;
+		this.clockOffsetNanos = clockOffsetNanos();
+		this.calibratedNanos = System.nanoTime();
+		this.queue = new DelayQueue<Scheduled>();
+		this.lateCount = new AtomicLong();
+		this.droppedCount = new AtomicLong();
+	}
+
+	/**
+	 * Also measures the listener calls of the target,
+	 * records how late bundles are dispatched,
+	 * and reports the number of waiting bundles as queue depth.
+	 * @param metrics to be updated, or <code>null</code> to not measure
+	 */
+	@Override
+	public void setMetrics(OSCMetrics metrics) {
+		super.setMetrics(metrics);
+		target.setMetrics(metrics);
+		if (metrics != null) {
+			metrics.setQueueDepth(new OSCMetrics.Gauge() {
+				@Override
+				public long getValue() {
+					return getScheduledCount();
+				}
+			});
+		}
+	}
+
+	@Override
+	public void addListener(AddressSelector addressSelector, OSCListener listener) {
+		target.addListener(addressSelector, listener);
+	}
+
+	@Override
+	public void removeListener(AddressSelector addressSelector) {
+		target.removeListener(addressSelector);
+	}
+
+	@Override
+	public void removeListener(String addressPattern) {
+		target.removeListener(addressPattern);
+	}
+
+	@Override
+	public void dispatchPacket(OSCPacket packet, Date timestamp) {
+		if (packet instanceof OSCBundle) {
+			final OSCBundle bundle = (OSCBundle) packet;
+			schedule(bundle, bundle.getTimestamp(), System.currentTimeMillis());
+		} else {
+			target.dispatchPacket(packet, timestamp);
+		}
+	}
+
+	/**
+	 * Dispatches the bundle now, or queues it, depending on its time-tag.
+	 * @param bundle to be dispatched
+	 * @param timestamp when to dispatch it
+	 * @param nowMillis the current wall-clock time
+	 */
+	private void schedule(OSCBundle bundle, Date timestamp, long nowMillis) {
+		if (isImmediate(timestamp)) {
+			dispatchBundle(bundle, timestamp);
+			return;
+		}
+
+		final long delayMillis = timestamp.getTime() - nowMillis;
+		if (delayMillis > 0) {
+			if (!running) {
+				startScheduler();
+			}
+			queue.offer(new Scheduled(bundle, timestamp, toNanoTime(timestamp.getTime())));
+		} else if (delayMillis == 0) {
+			// due within the current millisecond
+			recordLateness(0);
+			dispatchBundle(bundle, timestamp);
+		} else {
+			recordLateness(TimeUnit.MILLISECONDS.toNanos(-delayMillis));
+			switch (latePolicy) {
+				case DROP:
+					droppedCount.incrementAndGet();
+					break;
+				case COUNT:
+					lateCount.incrementAndGet();
+					dispatchBundle(bundle, timestamp);
+					break;
+				default:
+					dispatchBundle(bundle, timestamp);
+					break;
+			}
+		}
+	}
+
+	/**
+	 * Hands the messages of a due bundle to the target,
+	 * and schedules the bundles nested in it.
+	 */
+	private void dispatchBundle(OSCBundle bundle, Date timestamp) {
+		final long nowMillis = System.currentTimeMillis();
+		for (final OSCPacket packet : bundle.getPackets()) {
+			if (packet instanceof OSCBundle) {
+				final OSCBundle nested = (OSCBundle) packet;
+				final Date nestedTimestamp = nested.getTimestamp();
+				if (isImmediate(nestedTimestamp)
+						|| (!isImmediate(timestamp) && !nestedTimestamp.after(timestamp)))
+				{
+					// a nested bundle may not be executed before its parent,
+					// and is not late if it is due together with it
+					dispatchBundle(nested, timestamp);
+				} else {
+					schedule(nested, nestedTimestamp, nowMillis);
+				}
+			} else {
+				target.dispatchPacket(packet, timestamp);
+			}
+		}
+	}
+
+	/**
+	 * Converts a wall-clock time to {@link System#nanoTime()}.
+	 * If the wall-clock was adjusted since the offset between the two clocks
+	 * was measured (e.g. by NTP), it is measured again,
+	 * so bundles scheduled from then on are released at the right time.
+	 * @param millis the wall-clock time
+	 * @return when this is, in nano-time
+	 */
+	private long toNanoTime(long millis) {
+		final long nanoTime = System.nanoTime();
+		// with the right offset, nano-time is within the current wall-clock millisecond
+		final long sinceTick = nanoTime - clockOffsetNanos
+				- TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+		if ((sinceTick < -MAX_DRIFT_NANOS
+				|| sinceTick > TimeUnit.MILLISECONDS.toNanos(1) + MAX_DRIFT_NANOS)
+				&& (nanoTime - calibratedNanos > RECALIBRATE_NANOS))
+		{
+			// some ticks are just read late, so this is done once a second at most
+			calibratedNanos = nanoTime;
+			clockOffsetNanos = clockOffsetNanos();
+		}
+		return TimeUnit.MILLISECONDS.toNanos(millis) + clockOffsetNanos;
+	}
+
+	/**
+	 * Returns the difference between {@link System#nanoTime()}
+	 * and the wall-clock time in nano-seconds.
+	 * As the wall-clock only has a precision of a millisecond,
+	 * this waits for it to tick, to be precise.
+	 * @return nanoTime - currentTimeMillis * 1000000
+	 */
+	static long clockOffsetNanos() {
+		final long start = System.currentTimeMillis();
+		long now;
+		do {
+			now = System.currentTimeMillis();
+		} while (now == start);
+		return System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(now);
+	}
+
+	private void recordLateness(long nanos) {
+		final OSCMetrics metrics = getMetrics();
+		if (metrics != null) {
+			metrics.bundleDispatched(nanos);
+		}
+	}
+
+	private static boolean isImmediate(Date timestamp) {
+		return (timestamp == null) || (timestamp.getTime() == OSCBundle.TIMESTAMP_IMMEDIATE.getTime());
+	}
+
+	private synchronized void startScheduler() {
+		if (running) {
+			return;
+		}
+		running = true;
+		scheduler = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				release();
+			}
+		}, "OSCSchedulingPacketDispatcher");
+		// The JVM exits when the only threads running are all daemon threads.
+		scheduler.setDaemon(true);
+		scheduler.start();
+	}
+
+	/**
+	 * Releases queued bundles when they are due,
+	 * until {@link #shutdown()} is called.
+	 */
+	private void release() {
+		final Thread self = Thread.currentThread();
+		while (scheduler == self) {
+			final Scheduled scheduled;
+			try {
+				scheduled = queue.take();
+			} catch (InterruptedException ex) {
+				break;
+			}
+			if (scheduled.bundle == null) {
+				// woken up by shutdown()
+				continue;
+			}
+			long lateNanos;
+			while ((lateNanos = System.nanoTime() - scheduled.dueNanos) < 0) {
+				// spin for the last few micro-seconds
+				Thread.yield();
+			}
+			if (scheduler != self) {
+				// shut down meanwhile; leave the bundle to the next scheduler, if there is one
+				if (running) {
+					queue.offer(scheduled);
+				}
+				break;
+			}
+			recordLateness(lateNanos);
+			try {
+				dispatchBundle(scheduled.bundle, scheduled.timestamp);
+			} catch (Exception ex) {
+				ex.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Stops the scheduler thread, and discards all bundles still waiting.
+	 * A bundle being dispatched right now is dispatched to its end;
+	 * the thread is not interrupted, as that would close channels used by listeners.
+	 */
+	public synchronized void shutdown() {
+		running = false;
+		final boolean started = (scheduler != null);
+		scheduler = null;
+		queue.clear();
+		if (started) {
+			// wake the scheduler, so it notices
+			queue.offer(new Scheduled(null, null, System.nanoTime()));
+		}
+	}
+
+	/**
+	 * Number of bundles waiting for their time.
+	 * @return how many bundles are queued
+	 */
+	public int getScheduledCount() {
+		return queue.size();
+	}
+
+	/**
+	 * Number of bundles that arrived after their time-tag,
+	 * and were dispatched anyway, with {@link LatePolicy#COUNT}.
+	 * @return the number of late bundles
+	 */
+	public long getLateCount() {
+		return lateCount.get();
+	}
+
+	/**
+	 * Number of bundles that arrived after their time-tag,
+	 * and were discarded, with {@link LatePolicy#DROP}.
+	 * @return the number of dropped bundles
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	//
+	public LatePolicy getLatePolicy() {
+		return latePolicy;
+	}
+}//end class OSCSchedulingPacketDispatcher
+//EOF
@@ -13,13 +13,10 @@ import com.illposed.osc.OSCShortcut;
 import com.illposed.osc.OSCMessage;
 import com.illposed.osc.OSCPackMessage;
 import com.illposed.osc.OSCShortcutMessage;
-import com.illposed.osc.AddressSelector;
-import com.illposed.osc.OSCListener;
 
 import java.util.Date;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map.Entry;
 
 public class OSCShortcutPacketDispatcher extends OSCPacketDispatcher {
 
@@ -74,11 +71,7 @@ public class OSCShortcutPacketDispatcher extends OSCPacketDispatcher {
 			System.err.println(e);
 			m=message;
 		}
-		for (final Entry<AddressSelector, OSCListener> addrList : selectorToListener.entrySet()) {
-			if (addrList.getKey().matches(m.getAddress())) {
-				addrList.getValue().acceptMessage(time, m);
-			}
-		}
+		notifyListeners(m, time);
 	}
 }//end class OSCShortcutPacketDispatcher
 //EOF
@@ -0,0 +1,342 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc.utility;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Splits the bytes read from a stream into frames, one per OSC packet,
+ * see {@link OSCStreamFraming}.
+ *
+ * The bytes are fed in as they arrive, in chunks of any size;
+ * frames may span several chunks, and a chunk may hold several frames.
+ * Frames that are complete within one chunk are handed on
+ * without copying them: with SLIP, they are unescaped in place.
+ * Only the start of a frame that continues in the next chunk
+ * is copied into a buffer, which is taken from a pool, if there is one,
+ * and given back once the frame is complete.
+ * That buffer grows with the bytes received, not with the size a frame claims.
+ * So a receiver with many idle connections
+ * only needs a few buffers.
+ *
+ * Each decoder keeps the state of one stream,
+ * and must only be used by one thread at a time.
+ *
+ * @author Thomas Brand
+ */
+public class OSCStreamDecoder {
+
+	public static final int DEFAULT_MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
+	/** The smallest buffer allocated for a partial frame, if the pool has none. */
+	private static final int MIN_BUFFER_SIZE = 256;
+
+	/**
+	 * Receives the decoded frames.
+	 */
+	public interface FrameListener {
+
+		/**
+		 * Called for each complete frame.
+		 * @param frame the packet, between position and limit,
+		 *   only valid during this call
+		 */
+		void frameDecoded(ByteBuffer frame);
+	}
+
+	private final OSCStreamFraming framing;
+	private final int maxFrameSize;
+	/** buffers of <code>poolBufferSize</code> bytes, may be <code>null</code> */
+	private final BlockingQueue<ByteBuffer> pool;
+	private final int poolBufferSize;
+	/** the start of a frame that continues in the next chunk, or <code>null</code> */
+	private ByteBuffer partial;
+	/** with {@link OSCStreamFraming#LENGTH_PREFIX}, the size of the current frame, or -1 */
+	private int length;
+	/** the size of the current frame, while still reading it */
+	private final ByteBuffer lengthBytes;
+	/** with {@link OSCStreamFraming#SLIP}, whether the last byte was ESC */
+	private boolean escaped;
+
+	/**
+	 * Creates a decoder for one stream.
+	 * @param framing how packets are delimited
+	 * @param maxFrameSize the biggest packet that is accepted, in bytes
+	 * @param pool where to take buffers from for partial frames,
+	 *   and give them back to; may be <code>null</code>
+	 * @param poolBufferSize the capacity of the buffers in the pool
+	 */
+	public OSCStreamDecoder(OSCStreamFraming framing, int maxFrameSize,
+			BlockingQueue<ByteBuffer> pool, int poolBufferSize)
+	{
+		this.framing = framing;
+		this.maxFrameSize = maxFrameSize;
+		this.pool = pool;
+		this.poolBufferSize = poolBufferSize;
+		this.partial = null;
+		this.length = -1;
+		this.lengthBytes = ByteBuffer.allocate(OSCStreamFraming.LENGTH_PREFIX_SIZE);
+		this.escaped = false;
+	}
+
+	/**
+	 * Creates a decoder for one stream, without a buffer pool.
+	 * @param framing how packets are delimited
+	 */
+	public OSCStreamDecoder(OSCStreamFraming framing) {
+		this(framing, DEFAULT_MAX_FRAME_SIZE, null, 0);
+	}
+
+	/**
+	 * Decodes the next chunk of the stream.
+	 * With SLIP, the content of the chunk is changed, as frames are unescaped in place.
+	 * @param chunk the bytes read, between position and limit;
+	 *   afterwards, its position is at its limit
+	 * @param listener receives each frame completed by this chunk
+	 * @throws IOException if the stream is not properly framed,
+	 *   or a frame is bigger than the maximum size;
+	 *   the stream can not be decoded any further then
+	 */
+	public void decode(ByteBuffer chunk, FrameListener listener) throws IOException {
+		switch (framing) {
+			case LENGTH_PREFIX:
+				decodeLengthPrefixed(chunk, listener);
+				break;
+			case SLIP:
+				decodeSlip(chunk, listener);
+				break;
+			default:
+				throw new IllegalStateException("Unknown framing: " + framing);
+		}
+	}
+
+	/**
+	 * Whether a frame was started, but not completed yet.
+	 * @return <code>false</code> if the stream may end here
+	 */
+	public boolean isInFrame() {
+		return (partial != null) || (length >= 0) || (lengthBytes.position() > 0) || escaped;
+	}
+
+	/**
+	 * Drops a partial frame, and gives its buffer back to the pool.
+	 * Call this when the stream is closed.
+	 */
+	public void reset() {
+		releasePartial();
+		length = -1;
+		lengthBytes.clear();
+		escaped = false;
+	}
+
+	private void decodeLengthPrefixed(ByteBuffer chunk, FrameListener listener) throws IOException {
+		while (chunk.hasRemaining()) {
+			if (length < 0) {
+				if (lengthBytes.position() == 0 && chunk.remaining() >= OSCStreamFraming.LENGTH_PREFIX_SIZE) {
+					length = chunk.getInt();
+				} else {
+					while (lengthBytes.hasRemaining() && chunk.hasRemaining()) {
+						lengthBytes.put(chunk.get());
+					}
+					if (lengthBytes.hasRemaining()) {
+						return;
+					}
+					lengthBytes.flip();
+					length = lengthBytes.getInt();
+					lengthBytes.clear();
+				}
+				if (length < 0 || length > maxFrameSize) {
+					throw new IOException("Invalid frame size: " + (length & 0xFFFFFFFFL));
+				}
+				if (length == 0) {
+					// nothing to decode
+					length = -1;
+					continue;
+				}
+			}
+
+			if (partial == null && chunk.remaining() >= length) {
+				// the whole frame is in this chunk
+				final int end = chunk.position() + length;
+				final int limit = chunk.limit();
+				length = -1;
+				emit(chunk, end, limit, listener);
+				continue;
+			}
+
+			// the buffer only grows with the bytes that arrive,
+			// so a peer can not reserve memory by just sending a big size
+			final int missing = length - ((partial == null) ? 0 : partial.position());
+			final int taken = Math.min(missing, chunk.remaining());
+			if (partial == null) {
+				partial = acquire(taken);
+			} else {
+				partial = ensurePartialCapacity(taken);
+			}
+			final int limit = chunk.limit();
+			chunk.limit(chunk.position() + taken);
+			partial.put(chunk);
+			chunk.limit(limit);
+			if (taken == missing) {
+				length = -1;
+				emitPartial(listener);
+			}
+		}
+	}
+
+	private void decodeSlip(ByteBuffer chunk, FrameListener listener) throws IOException {
+		while (chunk.hasRemaining()) {
+			if (partial != null) {
+				// continue the frame started in an earlier chunk
+				while (chunk.hasRemaining()) {
+					final byte value = chunk.get();
+					if (value == OSCStreamFraming.SLIP_END && !escaped) {
+						emitPartial(listener);
+						break;
+					}
+					final int unescaped = unescape(value);
+					if (unescaped >= 0) {
+						if (partial.position() >= maxFrameSize) {
+							throw new IOException("Frame is bigger than " + maxFrameSize + " bytes");
+						}
+						partial = ensurePartialCapacity(1);
+						partial.put((byte) unescaped);
+					}
+				}
+				continue;
+			}
+
+			// unescape in place, up to the end of the frame, if it is in this chunk
+			final int start = chunk.position();
+			final int limit = chunk.limit();
+			int write = start;
+			int read = start;
+			boolean ended = false;
+			while (read < limit) {
+				final byte value = chunk.get(read++);
+				if (value == OSCStreamFraming.SLIP_END && !escaped) {
+					ended = true;
+					break;
+				}
+				final int unescaped = unescape(value);
+				if (unescaped >= 0) {
+					chunk.put(write++, (byte) unescaped);
+					if (write - start > maxFrameSize) {
+						throw new IOException("Frame is bigger than " + maxFrameSize + " bytes");
+					}
+				}
+			}
+			if (ended) {
+				// a frame between two END bytes, or the END starting the first frame
+				if (write > start) {
+					emit(chunk, write, limit, listener);
+				}
+				chunk.position(read);
+			} else if (write > start || escaped) {
+				partial = acquire(write - start);
+				chunk.limit(write);
+				partial.put(chunk);
+				chunk.limit(limit);
+				chunk.position(limit);
+			} else {
+				chunk.position(limit);
+			}
+		}
+	}
+
+	/**
+	 * Handles an escaped byte or the escape byte itself.
+	 * @return the unescaped byte, or -1 if it was the escape byte
+	 */
+	private int unescape(byte value) throws IOException {
+		if (escaped) {
+			escaped = false;
+			if (value == OSCStreamFraming.SLIP_ESC_END) {
+				return OSCStreamFraming.SLIP_END & 0xFF;
+			} else if (value == OSCStreamFraming.SLIP_ESC_ESC) {
+				return OSCStreamFraming.SLIP_ESC & 0xFF;
+			}
+			throw new IOException("Invalid SLIP escape sequence: " + (value & 0xFF));
+		}
+		if (value == OSCStreamFraming.SLIP_ESC) {
+			escaped = true;
+			return -1;
+		}
+		return value & 0xFF;
+	}
+
+	/**
+	 * Hands the bytes of the chunk from its position to <code>end</code> on,
+	 * and continues after them.
+	 */
+	private static void emit(ByteBuffer chunk, int end, int limit, FrameListener listener) {
+		chunk.limit(end);
+		try {
+			listener.frameDecoded(chunk);
+		} finally {
+			chunk.limit(limit);
+			chunk.position(end);
+		}
+	}
+
+	private void emitPartial(FrameListener listener) {
+		final ByteBuffer frame = partial;
+		frame.flip();
+		try {
+			if (frame.hasRemaining()) {
+				listener.frameDecoded(frame);
+			}
+		} finally {
+			releasePartial();
+		}
+	}
+
+	private ByteBuffer acquire(int size) throws IOException {
+		ByteBuffer buffer = null;
+		if (pool != null && size <= poolBufferSize) {
+			buffer = pool.poll();
+		}
+		if (buffer == null) {
+			buffer = ByteBuffer.allocate(Math.max(size, Math.max(poolBufferSize, MIN_BUFFER_SIZE)));
+		}
+		buffer.clear();
+		return buffer;
+	}
+
+	private void releasePartial() {
+		final ByteBuffer buffer = partial;
+		partial = null;
+		if (buffer != null && pool != null && buffer.capacity() == poolBufferSize) {
+			buffer.clear();
+			pool.offer(buffer);
+		}
+	}
+
+	/**
+	 * The buffer of a partial frame grows as its bytes arrive:
+	 * SLIP frames do not tell their size up-front,
+	 * and the size told by a length prefix is not trusted.
+	 */
+	private ByteBuffer ensurePartialCapacity(int needed) {
+		if (partial.remaining() >= needed) {
+			return partial;
+		}
+		final int maxSize = (length >= 0) ? length : maxFrameSize;
+		final int capacity = Math.min(maxSize,
+				Math.max(partial.capacity() * 2, partial.position() + needed));
+		final ByteBuffer grown = ByteBuffer.allocate(capacity);
+		partial.flip();
+		grown.put(partial);
+		releasePartial();
+		return grown;
+	}
+}//end class OSCStreamDecoder
+//EOF
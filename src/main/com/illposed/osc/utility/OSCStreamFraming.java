@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc.utility;
+
+import java.nio.ByteBuffer;
+
+/**
+ * How OSC packets are delimited on a stream transport, like TCP.
+ * A stream has no packet boundaries of its own,
+ * so each packet is sent as a frame that tells where it ends.
+ *
+ * @see OSCStreamDecoder
+ * @author Thomas Brand
+ */
+public enum OSCStreamFraming {
+
+	/**
+	 * OSC 1.0: each packet is preceded by its size, as int32.
+	 */
+	LENGTH_PREFIX,
+
+	/**
+	 * OSC 1.1: each packet is enclosed in SLIP (RFC 1055) END bytes,
+	 * with END and ESC bytes inside the packet escaped.
+	 */
+	SLIP;
+
+	/** SLIP frame delimiter */
+	public static final byte SLIP_END = (byte) 0xC0;
+	/** SLIP escape byte */
+	public static final byte SLIP_ESC = (byte) 0xDB;
+	/** SLIP escaped END */
+	public static final byte SLIP_ESC_END = (byte) 0xDC;
+	/** SLIP escaped ESC */
+	public static final byte SLIP_ESC_ESC = (byte) 0xDD;
+
+	/** Bytes in front of a packet with {@link #LENGTH_PREFIX}. */
+	public static final int LENGTH_PREFIX_SIZE = 4;
+
+	/**
+	 * Writes a packet as one frame.
+	 * @param packet the bytes of the packet, between position and limit;
+	 *   afterwards, its position is at its limit
+	 * @param frame where to write the frame to, cleared before writing;
+	 *   may be <code>null</code>
+	 * @return the frame ready for reading, from position 0 to its limit;
+	 *   <code>frame</code>, or a bigger new buffer if it was too small
+	 */
+	public ByteBuffer frame(ByteBuffer packet, ByteBuffer frame) {
+		final int length = packet.remaining();
+		// worst case: every byte of a SLIP packet needs escaping
+		final int maxSize = (this == LENGTH_PREFIX)
+				? (LENGTH_PREFIX_SIZE + length)
+				: (2 + 2 * length);
+		ByteBuffer target = frame;
+		if (target == null || target.capacity() < maxSize) {
+			target = (frame != null && frame.isDirect())
+					? ByteBuffer.allocateDirect(maxSize)
+					: ByteBuffer.allocate(maxSize);
+		}
+		target.clear();
+
+		switch (this) {
+			case LENGTH_PREFIX:
+				target.putInt(length);
+				target.put(packet);
+				break;
+			case SLIP:
+				target.put(SLIP_END);
+				while (packet.hasRemaining()) {
+					final byte value = packet.get();
+					if (value == SLIP_END) {
+						target.put(SLIP_ESC).put(SLIP_ESC_END);
+					} else if (value == SLIP_ESC) {
+						target.put(SLIP_ESC).put(SLIP_ESC_ESC);
+					} else {
+						target.put(value);
+					}
+				}
+				target.put(SLIP_END);
+				break;
+			default:
+				throw new IllegalStateException("Unknown framing: " + this);
+		}
+		target.flip();
+		return target;
+	}
+}//end enum OSCStreamFraming
+//EOF
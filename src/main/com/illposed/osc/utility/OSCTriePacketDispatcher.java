@@ -0,0 +1,643 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc.utility;
+
+import com.illposed.osc.AddressSelector;
+import com.illposed.osc.OSCListener;
+import com.illposed.osc.OSCMessage;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dispatches packets like {@link OSCShortcutPacketDispatcher},
+ * but finds the matching listeners in a trie,
+ * instead of asking every registered selector.
+ *
+ * All {@link OSCPatternAddressSelector}s are compiled into a tree
+ * with one level per address part.
+ * Each node has
+ * <ul>
+ * <li>a hash of literal parts, e.g. "mixer" in "/mixer/ch/1";
+ *   parts with character classes or {a,b} alternations, like "[0-3]" or "{left,right}",
+ *   are expanded into literals too, as long as that yields only a few of them</li>
+ * <li>a wildcard child for parts consisting of '*' only</li>
+ * <li>a list of other pattern parts, like "ch?" or "[!a]*",
+ *   which are matched part by part</li>
+ * <li>an any-depth child for the path-traversal wildcard "//"</li>
+ * </ul>
+ * so looking up an address costs about one hash lookup per address part,
+ * no matter how many listeners are registered.
+ *
+ * Selectors without any wildcards, like "/mixer/ch/12/gain",
+ * are not put into the trie, but into a hash of whole addresses.
+ * The listeners found in the trie are remembered for recently
+ * dispatched addresses (see {@link #OSCTriePacketDispatcher(int)}),
+ * so repeated addresses are not matched against any pattern again.
+ * Looking them up takes no lock, so receivers with several threads
+ * can dispatch in parallel.
+ *
+ * Other {@link AddressSelector}s are asked one by one, as before.
+ * All this is (re-)built on the first dispatch
+ * after a listener was added or removed.
+ *
+ * @author Thomas Brand
+ */
+public class OSCTriePacketDispatcher extends OSCShortcutPacketDispatcher {
+
+	/** An address part may be expanded to at most this many literals. */
+	private static final int MAX_PART_EXPANSION = 64;
+	/** A selector may be inserted at most this many times, through expansion. */
+	private static final int MAX_SELECTOR_EXPANSION = 256;
+
+	/** A registered selector and its listener. */
+	private static final class Registration {
+
+		private final AddressSelector selector;
+		private final OSCListener listener;
+
+		Registration(AddressSelector selector, OSCListener listener) {
+			this.selector = selector;
+			this.listener = listener;
+		}
+	}
+
+	/** One level of the trie. */
+	private static final class Node {
+
+		private Map<String, Node> literals;
+		private Map<String, Node> patterns;
+		private Node anyPart;
+		private Node anyDepth;
+		private List<Registration> registrations;
+
+		Node literal(String part) {
+			if (literals == null) {
+				literals = new HashMap<String, Node>();
+			}
+			Node child = literals.get(part);
+			if (child == null) {
+				child = new Node();
+				literals.put(part, child);
+			}
+			return child;
+		}
+
+		Node pattern(String part) {
+			if (patterns == null) {
+				patterns = new LinkedHashMap<String, Node>();
+			}
+			Node child = patterns.get(part);
+			if (child == null) {
+				child = new Node();
+				patterns.put(part, child);
+			}
+			return child;
+		}
+
+		Node anyPart() {
+			if (anyPart == null) {
+				anyPart = new Node();
+			}
+			return anyPart;
+		}
+
+		Node anyDepth() {
+			if (anyDepth == null) {
+				anyDepth = new Node();
+			}
+			return anyDepth;
+		}
+
+		void register(Registration registration) {
+			if (registrations == null) {
+				registrations = new ArrayList<Registration>(1);
+			}
+			if (!registrations.contains(registration)) {
+				registrations.add(registration);
+			}
+		}
+	}
+
+	/**
+	 * The trie lookup results of recently dispatched addresses.
+	 * Looking up takes no lock, so the threads of a multi-threaded receiver
+	 * do not wait for each other.
+	 * When full, an address that was not looked up again since eviction
+	 * last passed over it is dropped (second chance),
+	 * so it is only about least-recently-used.
+	 */
+	private static final class Cache {
+
+		/** A lookup result, and whether it was used lately. */
+		private static final class Slot {
+
+			private final Registration[] matching;
+			private volatile boolean used;
+
+			Slot(Registration[] matching) {
+				this.matching = matching;
+				this.used = true;
+			}
+		}
+
+		private final ConcurrentMap<String, Slot> slots;
+		private final AtomicInteger size;
+		private final int maxSize;
+
+		Cache(int maxSize) {
+			this.slots = new ConcurrentHashMap<String, Slot>();
+			this.size = new AtomicInteger(0);
+			this.maxSize = maxSize;
+		}
+
+		Registration[] get(String address) {
+			final Slot slot = slots.get(address);
+			if (slot == null) {
+				return null;
+			}
+			// only write if needed, so hot addresses are not written all the time
+			if (!slot.used) {
+				slot.used = true;
+			}
+			return slot.matching;
+		}
+
+		void put(String address, Registration[] matching) {
+			if ((slots.putIfAbsent(address, new Slot(matching)) == null)
+					&& (size.incrementAndGet() > maxSize))
+			{
+				evict();
+			}
+		}
+
+		private void evict() {
+			// the first round may only clear the used marks
+			for (int round = 0; round < 2; round++) {
+				for (final Entry<String, Slot> entry : slots.entrySet()) {
+					final Slot slot = entry.getValue();
+					if (slot.used) {
+						slot.used = false;
+					} else if (slots.remove(entry.getKey(), slot)) {
+						size.decrementAndGet();
+						return;
+					}
+				}
+			}
+		}
+	}
+
+	/** Everything needed for dispatching, compiled from the registered listeners. */
+	private static final class Compiled {
+
+		/** selectors without wildcards, by address */
+		private final Map<String, Registration[]> fixed;
+		/** all other pattern selectors, null if there are none */
+		private final Node trie;
+		/** listeners with selectors that can not be put into the trie */
+		private final Registration[] others;
+		/** recent trie lookup results, by address; null if disabled */
+		private final Cache cache;
+
+		Compiled(Map<String, Registration[]> fixed, Node trie, Registration[] others,
+				int cacheSize)
+		{
+			this.fixed = fixed;
+			this.trie = trie;
+			this.others = others;
+			this.cache = (cacheSize > 0) ? new Cache(cacheSize) : null;
+		}
+	}
+
+	public static final int DEFAULT_CACHE_SIZE = 1024;
+
+	private static final Registration[] NONE = new Registration[0];
+
+	private final int cacheSize;
+	/** null if it has to be (re-)built */
+	private volatile Compiled compiled;
+
+	public OSCTriePacketDispatcher() {
+		this(DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * @param cacheSize how many addresses to remember the matching pattern selectors for,
+	 *   0 to look up every address in the trie
+	 */
+	public OSCTriePacketDispatcher(int cacheSize) {
+		this.cacheSize = cacheSize;
+	}
+
+	@Override
+	public synchronized void addListener(AddressSelector addressSelector, OSCListener listener) {
+		super.addListener(addressSelector, listener);
+		compiled = null;
+	}
+
+	@Override
+	public synchronized void removeListener(AddressSelector addressSelector) {
+		super.removeListener(addressSelector);
+		compiled = null;
+	}
+
+	@Override
+	public synchronized void removeListener(String addressPattern) {
+		super.removeListener(addressPattern);
+	}
+
+	@Override
+	protected void notifyListeners(OSCMessage message, Date time) {
+		Compiled current = compiled;
+		if (current == null) {
+			current = compile();
+		}
+
+		final String address = message.getAddress();
+		String[] addressParts = null;
+
+		String fixedAddress = address;
+		if (!isFixedAddress(address)) {
+			addressParts = splitIntoParts(address);
+			fixedAddress = toFixedAddress(addressParts);
+		}
+		if (fixedAddress != null) {
+			final Registration[] fixed = current.fixed.get(fixedAddress);
+			if (fixed != null) {
+				for (final Registration registration : fixed) {
+					deliver(registration.listener, time, message);
+				}
+			}
+		}
+
+		Registration[] matching = null;
+		if (current.trie == null) {
+			matching = NONE;
+		} else if (current.cache != null) {
+			matching = current.cache.get(address);
+		}
+		if (matching == null) {
+			if (addressParts == null) {
+				addressParts = splitIntoParts(address);
+			}
+			final List<Registration> collected = new ArrayList<Registration>();
+			collect(current.trie, addressParts, 0, collected);
+			matching = collected.isEmpty() ? NONE : collected.toArray(new Registration[collected.size()]);
+			if (current.cache != null) {
+				current.cache.put(address, matching);
+			}
+		}
+		for (final Registration registration : matching) {
+			deliver(registration.listener, time, message);
+		}
+
+		for (final Registration registration : current.others) {
+			if (registration.selector.matches(address)) {
+				deliver(registration.listener, time, message);
+			}
+		}
+	}
+
+	private synchronized Compiled compile() {
+		if (compiled != null) {
+			return compiled;
+		}
+		final Map<String, List<Registration>> fixed = new HashMap<String, List<Registration>>();
+		Node trie = null;
+		final List<Registration> unsupported = new ArrayList<Registration>();
+		for (final Entry<AddressSelector, OSCListener> entry : selectorToListener.entrySet()) {
+			final Registration registration = new Registration(entry.getKey(), entry.getValue());
+			if (registration.selector instanceof OSCPatternAddressSelector) {
+				final OSCPatternAddressSelector selector = (OSCPatternAddressSelector) registration.selector;
+				final String fixedAddress = selector.getFixedAddress();
+				if (fixedAddress != null) {
+					List<Registration> registrations = fixed.get(fixedAddress);
+					if (registrations == null) {
+						registrations = new ArrayList<Registration>(1);
+						fixed.put(fixedAddress, registrations);
+					}
+					registrations.add(registration);
+				} else {
+					if (trie == null) {
+						trie = new Node();
+					}
+					insert(trie, selector.getPatternParts(), 0, 1, registration);
+				}
+			} else {
+				unsupported.add(registration);
+			}
+		}
+
+		final Map<String, Registration[]> fixedArrays = new HashMap<String, Registration[]>();
+		for (final Entry<String, List<Registration>> entry : fixed.entrySet()) {
+			final List<Registration> registrations = entry.getValue();
+			fixedArrays.put(entry.getKey(), registrations.toArray(new Registration[registrations.size()]));
+		}
+		compiled = new Compiled(fixedArrays, trie,
+				unsupported.toArray(new Registration[unsupported.size()]), cacheSize);
+		return compiled;
+	}
+
+	/**
+	 * Checks whether an address is already in the form "/hello/world",
+	 * as used for the fixed addresses of selectors.
+	 */
+	private static boolean isFixedAddress(String address) {
+		if (!address.startsWith("/")) {
+			return false;
+		}
+		if (address.length() == 1) {
+			return true;
+		}
+		return !address.endsWith("/") && !address.contains("//");
+	}
+
+	//same as OSCPatternAddressSelector.getFixedAddress(), for an address
+	private static String toFixedAddress(String[] addressParts) {
+		final StringBuilder fixedAddress = new StringBuilder();
+		for (final String part : addressParts) {
+			if (part.isEmpty()) {
+				return null;
+			}
+			fixedAddress.append('/').append(part);
+		}
+		return (fixedAddress.length() == 0) ? "/" : fixedAddress.toString();
+	}
+
+	/**
+	 * Adds a selector below the given node.
+	 * @param node where to add the remaining pattern parts
+	 * @param patternParts all the parts of the selectors pattern
+	 * @param ppi index of the first part still to be added
+	 * @param expansion how many times this selector is inserted already
+	 * @param registration what to register at the end of the path
+	 */
+	private static void insert(Node node, List<String> patternParts, int ppi, int expansion,
+			Registration registration)
+	{
+		if (ppi == patternParts.size()) {
+			node.register(registration);
+			return;
+		}
+
+		final String part = patternParts.get(ppi);
+		if (part.isEmpty()) {
+			// consecutive "//"s mean the same as a single one
+			int next = ppi + 1;
+			while (next < patternParts.size() && patternParts.get(next).isEmpty()) {
+				next++;
+			}
+			insert(node.anyDepth(), patternParts, next, expansion, registration);
+		} else if (OSCPatternAddressSelector.isLiteral(part)) {
+			insert(node.literal(part), patternParts, ppi + 1, expansion, registration);
+		} else if (isAnyPart(part)) {
+			insert(node.anyPart(), patternParts, ppi + 1, expansion, registration);
+		} else {
+			final Set<String> literals = expand(part);
+			if (literals != null && expansion * literals.size() <= MAX_SELECTOR_EXPANSION) {
+				for (final String literal : literals) {
+					insert(node.literal(literal), patternParts, ppi + 1,
+							expansion * literals.size(), registration);
+				}
+			} else {
+				insert(node.pattern(part), patternParts, ppi + 1, expansion, registration);
+			}
+		}
+	}
+
+	/**
+	 * Finds all registrations below the given node, that match the rest of the address.
+	 */
+	private static void collect(Node node, String[] addressParts, int api, List<Registration> matching) {
+		if (api == addressParts.length) {
+			add(node.registrations, matching);
+		} else {
+			collectChildren(node, addressParts, api, matching);
+		}
+
+		final Node anyDepth = node.anyDepth;
+		if (anyDepth != null) {
+			// a trailing "//" matches the whole rest of the address
+			add(anyDepth.registrations, matching);
+			// otherwise, the part after "//" may match at any depth below
+			for (int ai = api; ai < addressParts.length; ai++) {
+				collectChildren(anyDepth, addressParts, ai, matching);
+			}
+		}
+	}
+
+	/**
+	 * Follows all children of the node which match the address part at <code>api</code>.
+	 */
+	private static void collectChildren(Node node, String[] addressParts, int api,
+			List<Registration> matching)
+	{
+		final String addressPart = addressParts[api];
+		if (node.literals != null) {
+			final Node child = node.literals.get(addressPart);
+			if (child != null) {
+				collect(child, addressParts, api + 1, matching);
+			}
+		}
+		if (node.anyPart != null) {
+			collect(node.anyPart, addressParts, api + 1, matching);
+		}
+		if (node.patterns != null) {
+			for (final Entry<String, Node> pattern : node.patterns.entrySet()) {
+				if (OSCPatternAddressSelector.matches(addressPart, pattern.getKey())) {
+					collect(pattern.getValue(), addressParts, api + 1, matching);
+				}
+			}
+		}
+	}
+
+	//with "//", the same registration may be reached on different paths
+	private static void add(List<Registration> registrations, List<Registration> matching) {
+		if (registrations == null) {
+			return;
+		}
+		for (final Registration registration : registrations) {
+			if (!matching.contains(registration)) {
+				matching.add(registration);
+			}
+		}
+	}
+
+	/**
+	 * Splits an address into parts, the same way as
+	 * {@link OSCPatternAddressSelector#splitIntoParts(String)} does.
+	 */
+	static String[] splitIntoParts(String address) {
+		int count = 1;
+		for (int ci = 0; ci < address.length(); ci++) {
+			if (address.charAt(ci) == '/') {
+				count++;
+			}
+		}
+		final int skipFirst = address.startsWith("/") ? 1 : 0;
+		final int skipLast = address.endsWith("/") ? 1 : 0;
+		final String[] parts = new String[Math.max(0, count - skipFirst - skipLast)];
+
+		int start = 0;
+		int index = -skipFirst;
+		for (int ci = 0; ci <= address.length(); ci++) {
+			if (ci == address.length() || address.charAt(ci) == '/') {
+				if (index >= 0 && index < parts.length) {
+					parts[index] = address.substring(start, ci);
+				}
+				index++;
+				start = ci + 1;
+			}
+		}
+		return parts;
+	}
+
+	private static boolean isAnyPart(String part) {
+		for (int ci = 0; ci < part.length(); ci++) {
+			if (part.charAt(ci) != '*') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Expands a pattern part made of literal characters,
+	 * character classes like "[a-c]" and alternations like "{left,right}"
+	 * into all the literals it matches.
+	 * @param part to be expanded
+	 * @return the matching literals, or null if the part can not be expanded
+	 *   (e.g. because it contains '*', '?' or a negated class),
+	 *   or would expand to too many literals
+	 */
+	static Set<String> expand(String part) {
+		List<String> results = new ArrayList<String>();
+		results.add("");
+
+		int ci = 0;
+		while (ci < part.length()) {
+			final List<String> options = new ArrayList<String>();
+			final char c = part.charAt(ci);
+			if (c == '*' || c == '?') {
+				return null;
+			} else if (c == '[') {
+				final int end = part.indexOf(']', ci + 1);
+				if (end < 0 || !expandClass(part.substring(ci + 1, end), options)) {
+					return null;
+				}
+				ci = end + 1;
+			} else if (c == '{') {
+				final int end = part.indexOf('}', ci + 1);
+				if (end < 0) {
+					return null;
+				}
+				for (final String option : part.substring(ci + 1, end).split(",", -1)) {
+					if (option.isEmpty() || !isPlain(option)) {
+						return null;
+					}
+					options.add(option);
+				}
+				ci = end + 1;
+			} else {
+				options.add(String.valueOf(c));
+				ci++;
+			}
+
+			if (results.size() * options.size() > MAX_PART_EXPANSION) {
+				return null;
+			}
+			final List<String> combined = new ArrayList<String>(results.size() * options.size());
+			for (final String prefix : results) {
+				for (final String option : options) {
+					combined.add(prefix + option);
+				}
+			}
+			results = combined;
+		}
+
+		// only use the expansion if the matcher agrees with all of it
+		final Set<String> literals = new LinkedHashSet<String>(results);
+		try {
+			for (final String literal : literals) {
+				if (!OSCPatternAddressSelector.matches(literal, part)) {
+					return null;
+				}
+			}
+		} catch (RuntimeException ex) {
+			// malformed pattern, leave it to the matcher at dispatch time
+			return null;
+		}
+		return literals;
+	}
+
+	/**
+	 * Expands the content of a character class, like "a-cx" (from "[a-cx]").
+	 * Only plain letters and digits, and ranges of them, are supported.
+	 */
+	private static boolean expandClass(String content, List<String> options) {
+		if (content.isEmpty()) {
+			return false;
+		}
+		int ci = 0;
+		while (ci < content.length()) {
+			final char first = content.charAt(ci);
+			if (!Character.isLetterOrDigit(first)) {
+				return false;
+			}
+			if (ci + 1 < content.length() && content.charAt(ci + 1) == '-') {
+				if (ci + 2 == content.length()) {
+					// "[c-]" means: c or anything above it
+					return false;
+				}
+				final char last = content.charAt(ci + 2);
+				if (!Character.isLetterOrDigit(last)) {
+					return false;
+				}
+				if (first <= last) {
+					for (char rc = first; rc <= last; rc++) {
+						options.add(String.valueOf(rc));
+					}
+				} else {
+					// "[z-a]" contains z, a and nothing in between
+					options.add(String.valueOf(first));
+					options.add(String.valueOf(last));
+				}
+				ci += 3;
+			} else {
+				options.add(String.valueOf(first));
+				ci++;
+			}
+			if (options.size() > MAX_PART_EXPANSION) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isPlain(String option) {
+		for (int ci = 0; ci < option.length(); ci++) {
+			final char c = option.charAt(ci);
+			if (c == '*' || c == '?' || c == '[' || c == ']' || c == '{' || c == '}') {
+				return false;
+			}
+		}
+		return true;
+	}
+}//end class OSCTriePacketDispatcher
+//EOF
@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc.utility;
+
+import java.io.PrintStream;
+
+/**
+ * Writes trace events as text, raw bytes as a hex-dump
+ * (see {@link Debug#hexdump(PrintStream, byte[], int)}).
+ * Writing is synchronous, so this is usually wrapped into an {@link AsyncTraceSink}.
+ */
+public class PrintStreamTraceSink implements TraceSink {
+
+	private final PrintStream out;
+
+	public PrintStreamTraceSink(PrintStream out) {
+		this.out = out;
+	}
+
+	@Override
+	public void accept(TraceEvent event) {
+		synchronized (out) {
+			out.println(event);
+			final byte[] data = event.getData();
+			if (data != null && data.length > 0) {
+				Debug.hexdump(out, data, data.length);
+			}
+		}
+	}
+}//end class PrintStreamTraceSink
+//EOF
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc.utility;
+
+/**
+ * Central switch for the diagnostic output of the library,
+ * like packet hex-dumps and time-tag conversions.
+ *
+ * Tracing is off by default.
+ * Code emitting events checks {@link #isEnabled(int)} first,
+ * so a disabled category costs no more than reading a field:
+ * <blockquote><pre>{@code
+ * if (Trace.isEnabled(Trace.TIMETAG)) {
+ *     Trace.trace(Trace.TIMETAG, "NTPTime", "readTimeTag(): " + ntpTime);
+ * }
+ * }</pre></blockquote>
+ *
+ * Events are handed to one global {@link TraceSink}.
+ * To keep the emitting threads (e.g. the receive thread of a port) fast,
+ * use an {@link AsyncTraceSink}, which is what {@link #enableDefault(int)} installs.
+ *
+ * @author Thomas Brand
+ */
+public final class Trace {
+
+	/** Received packets, see {@link com.illposed.osc.OSCPort#setDebug(boolean)}. */
+	public static final int PACKET_IN = 1;
+	/** Sent packets, see {@link com.illposed.osc.OSCPort#setDebug(boolean)}. */
+	public static final int PACKET_OUT = 2;
+	/** Time-tags decoded by {@link NTPTime#readTimeTag(long)}. */
+	public static final int TIMETAG = 4;
+	/** All of the above. */
+	public static final int ALL = PACKET_IN | PACKET_OUT | TIMETAG;
+
+	private static volatile int enabled = 0;
+	private static volatile TraceSink sink = null;
+
+	private Trace() {
+	}
+
+	/**
+	 * Checks whether events of a category are recorded.
+	 * @param category e.g. {@link #PACKET_IN}
+	 * @return true if the category is enabled, and there is a sink
+	 */
+	public static boolean isEnabled(int category) {
+		return (enabled & category) != 0;
+	}
+
+	/**
+	 * Sets the sink all events are handed to, and which categories are enabled.
+	 * @param traceSink receives the events, <code>null</code> to turn tracing off
+	 * @param categories bit-mask of the enabled categories, e.g. {@link #ALL}
+	 */
+	public static synchronized void setSink(TraceSink traceSink, int categories) {
+		sink = traceSink;
+		enabled = (traceSink == null) ? 0 : categories;
+	}
+
+	//
+	public static TraceSink getSink() {
+		return sink;
+	}
+
+	/**
+	 * Enables some categories.
+	 * If there is no sink yet, an {@link AsyncTraceSink} writing to
+	 * <code>System.err</code> is installed.
+	 * @param categories bit-mask of categories to enable in addition
+	 */
+	public static synchronized void enableDefault(int categories) {
+		if (sink == null) {
+			sink = new AsyncTraceSink(new PrintStreamTraceSink(System.err));
+		}
+		enabled |= categories;
+	}
+
+	/**
+	 * Disables some categories, while keeping the sink.
+	 * @param categories bit-mask of categories to disable
+	 */
+	public static synchronized void disable(int categories) {
+		enabled &= ~categories;
+	}
+
+	/**
+	 * Emits an event, if its category is enabled.
+	 * @param category e.g. {@link #TIMETAG}
+	 * @param source the class or component emitting the event
+	 * @param text what happened
+	 */
+	public static void trace(int category, String source, String text) {
+		final TraceSink traceSink = sink;
+		if (isEnabled(category) && traceSink != null) {
+			traceSink.accept(new TraceEvent(category, source, text, null));
+		}
+	}
+
+	/**
+	 * Emits an event with raw bytes, e.g. a packet, if its category is enabled.
+	 * The bytes are copied, so the caller may reuse its buffer.
+	 * @param category e.g. {@link #PACKET_IN}
+	 * @param source the class or component emitting the event
+	 * @param text what happened
+	 * @param data the bytes belonging to the event
+	 * @param length how many of the bytes to record
+	 */
+	public static void trace(int category, String source, String text, byte[] data, int length) {
+		final TraceSink traceSink = sink;
+		if (isEnabled(category) && traceSink != null) {
+			final byte[] copy = new byte[length];
+			System.arraycopy(data, 0, copy, 0, length);
+			traceSink.accept(new TraceEvent(category, source, text, copy));
+		}
+	}
+}//end class Trace
+//EOF
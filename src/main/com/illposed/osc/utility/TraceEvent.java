@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc.utility;
+
+/**
+ * One diagnostic event, as emitted through {@link Trace}.
+ */
+public class TraceEvent {
+
+	private final long time;
+	private final String thread;
+	private final int category;
+	private final String source;
+	private final String text;
+	private final byte[] data;
+
+	/**
+	 * @param category one of the {@link Trace} categories, e.g. {@link Trace#PACKET_IN}
+	 * @param source the class or component emitting the event, e.g. "OSCPortIn"
+	 * @param text what happened
+	 * @param data raw bytes belonging to the event, or <code>null</code>;
+	 *   not copied
+	 */
+	public TraceEvent(int category, String source, String text, byte[] data) {
+		this.time = System.currentTimeMillis();
+		this.thread = Thread.currentThread().getName();
+		this.category = category;
+		this.source = source;
+		this.text = text;
+		this.data = data;
+	}
+
+	/**
+	 * Returns when the event was emitted.
+	 * @return milliseconds since January 1, 1970, 00:00:00 GMT
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/**
+	 * Returns the name of the thread that emitted the event.
+	 * @return thread name
+	 */
+	public String getThread() {
+		return thread;
+	}
+
+	//
+	public int getCategory() {
+		return category;
+	}
+
+	//
+	public String getSource() {
+		return source;
+	}
+
+	//
+	public String getText() {
+		return text;
+	}
+
+	/**
+	 * Returns the raw bytes belonging to the event, e.g. a packet.
+	 * @return the bytes, or <code>null</code> if there are none
+	 */
+	public byte[] getData() {
+		return data;
+	}
+
+	@Override
+	public String toString() {
+		return "[" + thread + "] " + source + ": " + text;
+	}
+}//end class TraceEvent
+//EOF
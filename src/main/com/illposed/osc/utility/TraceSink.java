@@ -0,0 +1,24 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc.utility;
+
+/**
+ * Receives the diagnostic events emitted through {@link Trace}.
+ * Implementations are called from the threads producing the events,
+ * possibly concurrently, so they should return quickly;
+ * wrap slow ones into an {@link AsyncTraceSink}.
+ */
+public interface TraceSink {
+
+	/**
+	 * Handles one diagnostic event.
+	 * @param event to be recorded, written out or forwarded
+	 */
+	void accept(TraceEvent event);
+}
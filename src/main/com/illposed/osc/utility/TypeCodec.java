@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc.utility;
+
+import java.nio.charset.Charset;
+
+/**
+ * Encodes and decodes the arguments of one Java type, with one type tag.
+ *
+ * Codecs are registered with {@link TypeRegistry}.
+ * A custom codec writes its values as a sequence of the basic parts
+ * (numbers, strings, blobs) through the converter,
+ * and reads the same sequence back from an {@link ArgumentInput},
+ * for example a color as four floats:
+ * <pre>
+ * TypeRegistry.register(new TypeCodec&lt;Color&gt;('r', Color.class) {
+ *     public void write(Color color, JavaToByteArrayConverter stream) {
+ *         stream.write(color.getRed()); ...
+ *     }
+ *     public Color read(ArgumentInput input) {
+ *         return new Color(input.readFloat(), ...);
+ *     }
+ * });
+ * </pre>
+ *
+ * @param <T> the Java type of the arguments
+ * @author Thomas Brand
+ */
+public abstract class TypeCodec<T> {
+
+	private final char tag;
+	private final Class<T> javaClass;
+
+	/**
+	 * @param tag the OSC type tag, an ASCII character
+	 * @param javaClass the class (or super class or interface) of the arguments
+	 */
+	protected TypeCodec(char tag, Class<T> javaClass) {
+		this.tag = tag;
+		this.javaClass = javaClass;
+	}
+
+	//
+	public char getTag() {
+		return tag;
+	}
+
+	//
+	public Class<T> getJavaClass() {
+		return javaClass;
+	}
+
+	/**
+	 * The type tag of one argument.
+	 * Only needs to be overridden if the tag depends on the value,
+	 * like 'T' and 'F' for booleans.
+	 * @param value the argument
+	 * @return the type tag of the argument
+	 */
+	public char getTag(T value) {
+		return tag;
+	}
+
+	/**
+	 * Writes the data of an argument, without its type tag.
+	 * @param value the argument
+	 * @param stream where to write the argument to
+	 */
+	public abstract void write(T value, JavaToByteArrayConverter stream);
+
+	/**
+	 * The number of bytes {@link #write} writes for an argument, in plain OSC.
+	 * By default, the argument is written to a scratch buffer to find out;
+	 * codecs that know their size without encoding should override this.
+	 * @param value the argument
+	 * @param charset used to encode strings
+	 * @return the encoded size in bytes, a multiple of 4
+	 */
+	public int getSize(T value, Charset charset) {
+		final OSCJavaToByteBufferConverter scratch = new OSCJavaToByteBufferConverter(64, false);
+		scratch.setCharset(charset);
+		write(value, scratch);
+		return scratch.size();
+	}
+
+	/**
+	 * Reads the data of an argument, as written by {@link #write}.
+	 * @param input where to read the argument from
+	 * @return the argument
+	 */
+	public abstract T read(ArgumentInput input);
+}//end class TypeCodec
+//EOF
@@ -0,0 +1,407 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc.utility;
+
+import com.illposed.osc.OSCImpulse;
+import com.illposed.osc.OSCTypedBlob;
+
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.sound.midi.ShortMessage;
+
+/**
+ * Knows how to encode each Java type, and how to decode custom type tags.
+ *
+ * Encoders find the {@link TypeCodec} of an argument by its class,
+ * through a {@link ClassValue}, so after the first argument of a class,
+ * dispatch costs one lookup instead of a chain of <code>instanceof</code> checks.
+ * Sub-classes and implementations use the codec of their closest super type.
+ *
+ * Decoders read the built-in type tags themselves,
+ * and look up all other tags in a table of 128 entries, one per ASCII character.
+ *
+ * Custom types are added with {@link #register(TypeCodec)},
+ * and work with all OSC and OSCPack converters.
+ * Registration is meant to happen at start-up; lookups never block.
+ *
+ * @author Thomas Brand
+ */
+public final class TypeRegistry {
+
+	/** Type tags the converters read themselves; custom codecs can not use them. */
+	private static final String BUILT_IN_TAGS = "ihfdsbcNTFImtBu[]";
+
+	/** All registered codecs, by the class they were registered for. */
+	private static final Map<Class<?>, TypeCodec<?>> BY_REGISTERED_CLASS
+			= new ConcurrentHashMap<Class<?>, TypeCodec<?>>();
+
+	/** Custom codecs, indexed by type tag; replaced as a whole on changes. */
+	private static volatile TypeCodec<?>[] byTag = new TypeCodec<?>[128];
+
+	/** Codecs by argument class, including super types; replaced as a whole on changes. */
+	private static volatile ClassValue<TypeCodec<?>> byClass = createClassIndex();
+
+	static {
+		registerBuiltIn(new BuiltInCodec<Integer>('i', Integer.class) {
+			@Override
+			public int getSize(Integer value, Charset charset) {
+				return 4;
+			}
+
+			@Override
+			public void write(Integer value, JavaToByteArrayConverter stream) {
+				stream.write(value.intValue());
+			}
+		});
+		registerBuiltIn(new BuiltInCodec<Long>('h', Long.class) {
+			@Override
+			public int getSize(Long value, Charset charset) {
+				return 8;
+			}
+
+			@Override
+			public void write(Long value, JavaToByteArrayConverter stream) {
+				stream.write(value.longValue());
+			}
+		});
+		registerBuiltIn(new BuiltInCodec<Float>('f', Float.class) {
+			@Override
+			public int getSize(Float value, Charset charset) {
+				return 4;
+			}
+
+			@Override
+			public void write(Float value, JavaToByteArrayConverter stream) {
+				stream.write(value.floatValue());
+			}
+		});
+		registerBuiltIn(new BuiltInCodec<Double>('d', Double.class) {
+			@Override
+			public int getSize(Double value, Charset charset) {
+				return 8;
+			}
+
+			@Override
+			public void write(Double value, JavaToByteArrayConverter stream) {
+				stream.write(value.doubleValue());
+			}
+		});
+		registerBuiltIn(new BuiltInCodec<String>('s', String.class) {
+			@Override
+			public int getSize(String value, Charset charset) {
+				return getStringSize(value, charset);
+			}
+
+			@Override
+			public void write(String value, JavaToByteArrayConverter stream) {
+				stream.write(value);
+			}
+		});
+		registerBuiltIn(new BuiltInCodec<byte[]>('b', byte[].class) {
+			@Override
+			public int getSize(byte[] value, Charset charset) {
+				return getBlobSize(value.length);
+			}
+
+			@Override
+			public void write(byte[] value, JavaToByteArrayConverter stream) {
+				stream.write(value);
+			}
+		});
+		registerBuiltIn(new BuiltInCodec<Character>('c', Character.class) {
+			@Override
+			public int getSize(Character value, Charset charset) {
+				return 4;
+			}
+
+			@Override
+			public void write(Character value, JavaToByteArrayConverter stream) {
+				stream.write(value);
+			}
+		});
+		registerBuiltIn(new BuiltInCodec<Date>('t', Date.class) {
+			@Override
+			public int getSize(Date value, Charset charset) {
+				return 8;
+			}
+
+			@Override
+			public void write(Date value, JavaToByteArrayConverter stream) {
+				stream.write(value);
+			}
+		});
+		registerBuiltIn(new BuiltInCodec<ShortMessage>('m', ShortMessage.class) {
+			@Override
+			public int getSize(ShortMessage value, Charset charset) {
+				return 4;
+			}
+
+			@Override
+			public void write(ShortMessage value, JavaToByteArrayConverter stream) {
+				stream.write(value);
+			}
+		});
+		registerBuiltIn(new BuiltInCodec<OSCTypedBlob>('B', OSCTypedBlob.class) {
+			@Override
+			public int getSize(OSCTypedBlob value, Charset charset) {
+				// type, count and the items as blob
+				return 4 + 4 + getBlobSize(value.getDataSize());
+			}
+
+			@Override
+			public void write(OSCTypedBlob value, JavaToByteArrayConverter stream) {
+				stream.write(value);
+			}
+		});
+		registerBuiltIn(new BuiltInCodec<OSCImpulse>('I', OSCImpulse.class) {
+			@Override
+			public int getSize(OSCImpulse value, Charset charset) {
+				return 0;
+			}
+
+			@Override
+			public void write(OSCImpulse value, JavaToByteArrayConverter stream) {
+				// no data
+			}
+		});
+		registerBuiltIn(new BuiltInCodec<Boolean>('T', Boolean.class) {
+			@Override
+			public int getSize(Boolean value, Charset charset) {
+				return 0;
+			}
+
+			@Override
+			public char getTag(Boolean value) {
+				return value.booleanValue() ? 'T' : 'F';
+			}
+
+			@Override
+			public void write(Boolean value, JavaToByteArrayConverter stream) {
+				// no data
+			}
+		});
+	}
+
+	private TypeRegistry() {
+	}
+
+	private static ClassValue<TypeCodec<?>> createClassIndex() {
+		return new ClassValue<TypeCodec<?>>() {
+			@Override
+			protected TypeCodec<?> computeValue(Class<?> type) {
+				for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+					final TypeCodec<?> codec = BY_REGISTERED_CLASS.get(current);
+					if (codec != null) {
+						return codec;
+					}
+				}
+				// registered for an interface
+				for (final Map.Entry<Class<?>, TypeCodec<?>> registered : BY_REGISTERED_CLASS.entrySet()) {
+					if (registered.getKey().isAssignableFrom(type)) {
+						return registered.getValue();
+					}
+				}
+				return null;
+			}
+		};
+	}
+
+	private static void registerBuiltIn(TypeCodec<?> codec) {
+		BY_REGISTERED_CLASS.put(codec.getJavaClass(), codec);
+	}
+
+	/**
+	 * Adds a custom type.
+	 * @param codec reads and writes the arguments of the type
+	 * @throws IllegalArgumentException if the tag is not ASCII, is a built-in tag,
+	 *   or if the tag or class is already registered
+	 */
+	public static synchronized void register(TypeCodec<?> codec) {
+		final char tag = codec.getTag();
+		if (tag <= ' ' || tag >= 128 || tag == ',' || BUILT_IN_TAGS.indexOf(tag) >= 0) {
+			throw new IllegalArgumentException("type tag can not be used for a custom type: '" + tag + "'");
+		}
+		if (byTag[tag] != null) {
+			throw new IllegalArgumentException("type tag is already registered: '" + tag + "'");
+		}
+		if (BY_REGISTERED_CLASS.containsKey(codec.getJavaClass())) {
+			throw new IllegalArgumentException("class is already registered: " + codec.getJavaClass());
+		}
+		final TypeCodec<?>[] changedByTag = byTag.clone();
+		changedByTag[tag] = codec;
+		BY_REGISTERED_CLASS.put(codec.getJavaClass(), codec);
+		byTag = changedByTag;
+		byClass = createClassIndex();
+	}
+
+	/**
+	 * Removes a custom type.
+	 * @param codec as it was registered
+	 * @return whether the codec was registered
+	 */
+	public static synchronized boolean unregister(TypeCodec<?> codec) {
+		final char tag = codec.getTag();
+		if (tag >= 128 || byTag[tag] != codec) {
+			return false;
+		}
+		final TypeCodec<?>[] changedByTag = byTag.clone();
+		changedByTag[tag] = null;
+		BY_REGISTERED_CLASS.remove(codec.getJavaClass());
+		byTag = changedByTag;
+		byClass = createClassIndex();
+		return true;
+	}
+
+	/**
+	 * Whether the converters read a type tag themselves.
+	 * @param tag the type tag
+	 * @return true for the OSC and OSCPack standard types
+	 */
+	public static boolean isBuiltIn(char tag) {
+		return BUILT_IN_TAGS.indexOf(tag) >= 0;
+	}
+
+	/**
+	 * The codec for the arguments of a class.
+	 * @param type class of an argument
+	 * @return the codec of the class or its closest super type,
+	 *   or <code>null</code> if there is none
+	 */
+	public static TypeCodec<?> forClass(Class<?> type) {
+		return byClass.get(type);
+	}
+
+	/**
+	 * The codec of a custom type tag.
+	 * @param tag the type tag
+	 * @return the registered codec, or <code>null</code> for built-in and unknown tags
+	 */
+	public static TypeCodec<?> forTag(char tag) {
+		return (tag < 128) ? byTag[tag] : null;
+	}
+
+	/**
+	 * The type tag of an argument, which is not <code>null</code> and not an array.
+	 * @param argument an argument of a message
+	 * @return the type tag of the argument
+	 * @throws UnsupportedOperationException if the class of the argument is unknown
+	 */
+	public static char getTag(Object argument) {
+		return codecOf(argument.getClass()).getTag(argument);
+	}
+
+	/**
+	 * The type tag of the arguments of a class.
+	 * @param type class of an argument
+	 * @return the type tag of the class
+	 * @throws UnsupportedOperationException if the class is unknown
+	 */
+	public static char getTag(Class<?> type) {
+		return codecOf(type).getTag();
+	}
+
+	/**
+	 * Writes the data of an argument, which is not <code>null</code> and not an array.
+	 * @param argument an argument of a message
+	 * @param stream where to write the argument to
+	 * @throws UnsupportedOperationException if the class of the argument is unknown
+	 */
+	public static void write(Object argument, JavaToByteArrayConverter stream) {
+		codecOf(argument.getClass()).write(argument, stream);
+	}
+
+	/**
+	 * The number of bytes an argument takes in a plain OSC message,
+	 * without its type tag.
+	 * @param argument an argument of a message, may be <code>null</code> or an array
+	 * @param charset used to encode strings
+	 * @return the encoded size in bytes, a multiple of 4
+	 * @throws UnsupportedOperationException if the class of the argument is unknown
+	 */
+	public static int getSize(Object argument, Charset charset) {
+		if (argument == null) {
+			return 0;
+		} else if (argument instanceof Collection) {
+			int size = 0;
+			for (final Object entry : (Collection<?>) argument) {
+				size += getSize(entry, charset);
+			}
+			return size;
+		}
+		return codecOf(argument.getClass()).getSize(argument, charset);
+	}
+
+	/**
+	 * The number of bytes of an OSC string: the characters,
+	 * a terminating zero and the padding to a multiple of 4.
+	 * @param string to be encoded
+	 * @param charset used to encode the string
+	 * @return the encoded size in bytes
+	 */
+	public static int getStringSize(String string, Charset charset) {
+		return align(byteCount(string, charset) + 1);
+	}
+
+	/**
+	 * The number of bytes of an OSC blob: its size, the data
+	 * and the padding to a multiple of 4.
+	 * @param length of the data in bytes
+	 * @return the encoded size in bytes
+	 */
+	public static int getBlobSize(int length) {
+		return 4 + align(length);
+	}
+
+	private static int align(int size) {
+		return (size + 3) & ~3;
+	}
+
+	//like OSCJavaToByteBufferConverter, count plain ASCII without encoding it
+	private static int byteCount(String string, Charset charset) {
+		final String name = charset.name();
+		if (name.equals("UTF-8") || name.equals("US-ASCII") || name.equals("ISO-8859-1")) {
+			final int length = string.length();
+			int ci = 0;
+			while (ci < length && string.charAt(ci) < 0x80) {
+				ci++;
+			}
+			if (ci == length) {
+				return length;
+			}
+		}
+		return string.getBytes(charset).length;
+	}
+
+	//codecs are registered by the class they handle, so they accept its instances
+	@SuppressWarnings("unchecked")
+	private static TypeCodec<Object> codecOf(Class<?> type) {
+		final TypeCodec<Object> codec = (TypeCodec<Object>) byClass.get(type);
+		if (codec == null) {
+			throw new UnsupportedOperationException("Do not know the OSC type for the java class: " + type);
+		}
+		return codec;
+	}
+
+	/** The converters read built-in types themselves, faster than through {@link ArgumentInput}. */
+	private abstract static class BuiltInCodec<T> extends TypeCodec<T> {
+
+		BuiltInCodec(char tag, Class<T> javaClass) {
+			super(tag, javaClass);
+		}
+
+		@Override
+		public T read(ArgumentInput input) {
+			throw new UnsupportedOperationException("built-in type '" + getTag() + "' is read by the converter");
+		}
+	}
+}//end class TypeRegistry
+//EOF
@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc.utility;
+
+import com.illposed.osc.OSCArguments;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The type tags of a sequence of arguments, encoded once and shared.
+ *
+ * Signatures are kept in a small, lock-free cache, keyed by the type tags.
+ * Messages with the same kinds of arguments (like all the
+ * <code>/mixer/ch/N/gain ,f</code> messages of a mixer) share one signature,
+ * and encoders write its {@link #getPaddedBytes() padded bytes}
+ * with a single copy, instead of building and encoding a tag string
+ * for every message.
+ * {@link OSCArguments} remember their signature until they are changed.
+ *
+ * @author Thomas Brand
+ */
+public final class TypeSignature {
+
+	/** Number of signatures the cache holds, a power of two. */
+	private static final int CACHE_SIZE = 1024;
+	/** Longer signatures are built every time, and not cached. */
+	private static final int MAX_CACHED_LENGTH = 64;
+	private static final Charset ASCII = Charset.forName("US-ASCII");
+
+	private static final AtomicReferenceArray<TypeSignature> CACHE
+			= new AtomicReferenceArray<TypeSignature>(CACHE_SIZE);
+
+	/** Collects the type tags of the arguments to look up. */
+	private static final ThreadLocal<TagBuilder> BUILDER = new ThreadLocal<TagBuilder>() {
+		@Override
+		protected TagBuilder initialValue() {
+			return new TagBuilder();
+		}
+	};
+
+	private final String typeTags;
+	private final byte[] paddedBytes;
+	private final int length;
+	private final int hash;
+	private final boolean nested;
+
+	private TypeSignature(byte[] tags, int length, int hash, boolean nested) {
+		this.typeTags = new String(tags, 0, length, ASCII);
+		// ',' is written in front of the tags, then the tags are zero terminated
+		// and padded, so that all of it ends on a 4 byte boundary
+		final int padded = ((1 + length + 1 + 3) & ~3) - 1;
+		this.paddedBytes = Arrays.copyOf(tags, padded);
+		Arrays.fill(this.paddedBytes, length, padded, (byte) 0);
+		this.length = length;
+		this.hash = hash;
+		this.nested = nested;
+	}
+
+	/**
+	 * Returns the signature of some arguments,
+	 * from the cache if it was seen before.
+	 * @param arguments of a message
+	 * @return the signature of the arguments
+	 */
+	public static TypeSignature of(Collection<Object> arguments) {
+		if (arguments instanceof OSCArguments) {
+			return ((OSCArguments) arguments).getTypeSignature();
+		}
+		return lookup(arguments);
+	}
+
+	/**
+	 * Finds or creates the signature of some arguments,
+	 * without looking at the signature remembered by {@link OSCArguments}.
+	 * @param arguments of a message
+	 * @return the signature of the arguments
+	 */
+	public static TypeSignature lookup(Collection<Object> arguments) {
+		final TagBuilder builder = BUILDER.get();
+		builder.reset();
+		builder.appendAll(arguments);
+
+		if (builder.length > MAX_CACHED_LENGTH) {
+			return new TypeSignature(builder.tags, builder.length, builder.hash(), builder.nested);
+		}
+		final int hash = builder.hash();
+		final int slot = (hash ^ (hash >>> 16)) & (CACHE_SIZE - 1);
+		final TypeSignature cached = CACHE.get(slot);
+		if (cached != null && cached.matches(builder.tags, builder.length, hash)) {
+			return cached;
+		}
+		final TypeSignature created = new TypeSignature(builder.tags, builder.length, hash, builder.nested);
+		CACHE.set(slot, created);
+		return created;
+	}
+
+	private boolean matches(byte[] tags, int tagsLength, int tagsHash) {
+		if (hash != tagsHash || length != tagsLength) {
+			return false;
+		}
+		for (int ti = 0; ti < length; ti++) {
+			if (paddedBytes[ti] != tags[ti]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The type tags, without the leading ','.
+	 * @return e.g. "ifs"
+	 */
+	public String getTypeTags() {
+		return typeTags;
+	}
+
+	/**
+	 * The type tags as they follow the ',' in an OSC message:
+	 * zero terminated and padded, so that ',' and these end on a 4 byte boundary.
+	 * Must not be changed.
+	 * @return the shared, encoded type tags
+	 */
+	public byte[] getPaddedBytes() {
+		return paddedBytes;
+	}
+
+	/**
+	 * The number of type tags, including the ones of arrays.
+	 * @return the length of {@link #getTypeTags()}
+	 */
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * Whether the arguments contain arrays.
+	 * Their contents may change without the outer arguments knowing.
+	 * @return true if there are '[' in the type tags
+	 */
+	public boolean isNested() {
+		return nested;
+	}
+
+	@Override
+	public String toString() {
+		return typeTags;
+	}
+
+	/** A reusable, growing buffer of type tags. */
+	private static final class TagBuilder {
+
+		private byte[] tags = new byte[MAX_CACHED_LENGTH];
+		private int length;
+		private boolean nested;
+
+		void reset() {
+			length = 0;
+			nested = false;
+		}
+
+		void append(char tag) {
+			if (length == tags.length) {
+				tags = Arrays.copyOf(tags, tags.length * 2);
+			}
+			tags[length++] = (byte) tag;
+		}
+
+		void appendAll(Collection<?> arguments) {
+			if (arguments instanceof OSCArguments) {
+				// numbers, booleans and nil already know their type tag
+				final OSCArguments stored = (OSCArguments) arguments;
+				for (int ai = 0; ai < stored.size(); ai++) {
+					final byte type = stored.getTypeTag(ai);
+					if (type == OSCArguments.REFERENCE) {
+						appendArgument(stored.get(ai));
+					} else {
+						append((char) type);
+					}
+				}
+			} else {
+				for (final Object argument : arguments) {
+					appendArgument(argument);
+				}
+			}
+		}
+
+		//nil and arrays by value, everything else by its codec
+		void appendArgument(Object argument) {
+			if (null == argument) {
+				append('N');
+			} else if (argument instanceof Collection) {
+				nested = true;
+				append('[');
+				appendAll((Collection<?>) argument);
+				append(']');
+			} else {
+				append(TypeRegistry.getTag(argument));
+			}
+		}
+
+		int hash() {
+			int hash = 1;
+			for (int ti = 0; ti < length; ti++) {
+				hash = 31 * hash + tags[ti];
+			}
+			return hash;
+		}
+	}
+}//end class TypeSignature
+//EOF
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc;
+
+import java.net.InetAddress;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Floods a {@link OSCPortInGroup} on localhost from several sender threads
+ * (each with its own source port), and reports how many messages per second
+ * were received, for a growing number of sockets in the group.
+ */
+public class BenchmarkOSCPortInGroup {
+
+	private static volatile boolean flooding;
+
+	public static void main(String[] args) throws Exception {
+
+		final int numSenders = 8;
+		final int maxSockets = Math.max(1, Runtime.getRuntime().availableProcessors());
+		final long durationMillis = 3000;
+
+		for (int numSockets = 1; numSockets <= maxSockets; numSockets *= 2) {
+			runBenchmark(numSockets, numSenders, durationMillis);
+		}
+	}
+
+	public static void runBenchmark(final int numSockets, final int numSenders, final long durationMillis)
+			throws Exception
+	{
+		final OSCPortInGroup group = new OSCPortInGroup(0, numSockets);
+		final AtomicLong received = new AtomicLong();
+		group.addListener("/mixer/ch/*/gain", new OSCListener() {
+			@Override
+			public void acceptMessage(Date time, OSCMessage message) {
+				received.incrementAndGet();
+			}
+		});
+		group.startListening();
+
+		flooding = true;
+		final AtomicLong sent = new AtomicLong();
+		final Thread[] senders = new Thread[numSenders];
+		for (int si = 0; si < numSenders; si++) {
+			final int channel = si;
+			senders[si] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						final OSCPortOut out = new OSCPortOut(InetAddress.getByName("localhost"), group.getPort());
+						final OSCMessage message = new OSCMessage("/mixer/ch/" + channel + "/gain");
+						message.addArgument(0.5f);
+						message.addArgument(channel);
+						while (flooding) {
+							out.send(message);
+							sent.incrementAndGet();
+						}
+						out.close();
+					} catch (Exception ex) {
+						ex.printStackTrace();
+					}
+				}
+			});
+			senders[si].start();
+		}
+
+		Thread.sleep(durationMillis);
+		flooding = false;
+		for (final Thread sender : senders) {
+			sender.join();
+		}
+		Thread.sleep(100); // let the receivers drain
+		group.stopListening();
+		group.close();
+
+		System.err.printf("sockets: %2d  sent: %9d msg/s  received: %9d msg/s  (%.1f%%)\n",
+				numSockets,
+				sent.get() * 1000 / durationMillis,
+				received.get() * 1000 / durationMillis,
+				100.0 * received.get() / Math.max(1, sent.get()));
+	}
+}
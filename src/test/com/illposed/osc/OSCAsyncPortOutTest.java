@@ -0,0 +1,256 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc;
+
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @see OSCAsyncPortOut
+ */
+public class OSCAsyncPortOutTest {
+
+	private static final long WAIT_FOR_SOCKET_CLOSE = 30;
+
+	private OSCAsyncPortOut sender;
+	private OSCPortIn receiver;
+	private List<String> received;
+	/** holds the receiver back, so the queue of the sender fills up */
+	private CountDownLatch receiving;
+
+	@Before
+	public void setUp() throws Exception {
+		receiver = new OSCPortIn(OSCPort.defaultSCOSCPort());
+		received = Collections.synchronizedList(new ArrayList<String>());
+		receiver.addListener("/async/*", new OSCListener() {
+			@Override
+			public void acceptMessage(Date time, OSCMessage message) {
+				received.add(message.getAddress() + " " + message.getInt(0));
+			}
+		});
+		receiver.startListening();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		receiver.stopListening();
+		receiver.close();
+		if (sender != null) {
+			sender.close();
+		}
+		// wait a bit after closing the receiver,
+		// because (some) operating systems need some time
+		// to actually close the underlying socket
+		Thread.sleep(WAIT_FOR_SOCKET_CLOSE);
+	}
+
+	private void createSender(int capacity, OSCAsyncPortOut.OverflowPolicy overflowPolicy)
+			throws Exception
+	{
+		receiving = new CountDownLatch(1);
+		sender = new OSCAsyncPortOut(InetAddress.getLocalHost(), OSCPort.defaultSCOSCPort(),
+				new DatagramSocket(), capacity, overflowPolicy);
+	}
+
+	/**
+	 * Makes the I/O thread wait in sending the returned message,
+	 * until {@link #receiving} is counted down.
+	 */
+	private OSCPacket createStopper() {
+		return new OSCMessage("/async/stop", Collections.<Object>singletonList(-1)) {
+			@Override
+			public byte[] getByteArray() {
+				try {
+					receiving.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+				return super.getByteArray();
+			}
+		};
+	}
+
+	private List<Future<Void>> sendAll(String address, int count) {
+		final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		for (int mi = 0; mi < count; mi++) {
+			futures.add(sender.sendAsync(new OSCMessage(address).addInt(mi)));
+		}
+		return futures;
+	}
+
+	private void waitUntilSent() throws Exception {
+		for (int wi = 0; wi < 100 && sender.getQueueDepth() > 0; wi++) {
+			Thread.sleep(10);
+		}
+		Thread.sleep(100); // wait a bit for the receiver
+	}
+
+	@Test
+	public void testSentInOrder() throws Exception {
+		createSender(64, OSCAsyncPortOut.OverflowPolicy.BLOCK);
+		final List<Future<Void>> futures = sendAll("/async/order", 200);
+		for (final Future<Void> future : futures) {
+			future.get(10, TimeUnit.SECONDS);
+		}
+		waitUntilSent();
+		Assert.assertEquals(200, sender.getMetrics().getPacketsOut());
+		Assert.assertEquals(200, received.size());
+		for (int mi = 0; mi < 200; mi++) {
+			Assert.assertEquals("/async/order " + mi, received.get(mi));
+		}
+		Assert.assertEquals(0, sender.getMetrics().getPacketsDropped());
+		Assert.assertTrue(sender.getMetrics().getSendLatency().getCount() == 200);
+	}
+
+	@Test
+	public void testCapacityIsPowerOfTwo() throws Exception {
+		createSender(5, OSCAsyncPortOut.OverflowPolicy.BLOCK);
+		Assert.assertEquals(8, sender.getCapacity());
+	}
+
+	@Test
+	public void testDropNewest() throws Exception {
+		createSender(4, OSCAsyncPortOut.OverflowPolicy.DROP_NEWEST);
+		sender.send(createStopper());
+		Thread.sleep(50); // wait for the I/O thread to take it
+		final List<Future<Void>> futures = sendAll("/async/newest", 6);
+		Assert.assertEquals(4, sender.getQueueDepth());
+		Assert.assertEquals(4, sender.getMetrics().getQueueDepth());
+		Assert.assertTrue(futures.get(4).isCancelled());
+		Assert.assertTrue(futures.get(5).isCancelled());
+		receiving.countDown();
+		futures.get(3).get(10, TimeUnit.SECONDS);
+		waitUntilSent();
+		Assert.assertEquals(2, sender.getMetrics().getPacketsDropped());
+		Assert.assertEquals("/async/newest 3", received.get(received.size() - 1));
+		Assert.assertEquals(5, received.size());
+	}
+
+	@Test
+	public void testDropOldest() throws Exception {
+		createSender(4, OSCAsyncPortOut.OverflowPolicy.DROP_OLDEST);
+		sender.send(createStopper());
+		Thread.sleep(50); // wait for the I/O thread to take it
+		final List<Future<Void>> futures = sendAll("/async/oldest", 6);
+		Assert.assertTrue(futures.get(0).isCancelled());
+		Assert.assertTrue(futures.get(1).isCancelled());
+		receiving.countDown();
+		futures.get(5).get(10, TimeUnit.SECONDS);
+		waitUntilSent();
+		Assert.assertEquals(2, sender.getMetrics().getPacketsDropped());
+		Assert.assertEquals(5, received.size());
+		Assert.assertEquals("/async/oldest 2", received.get(1));
+		Assert.assertEquals("/async/oldest 5", received.get(4));
+	}
+
+	@Test
+	public void testReplace() throws Exception {
+		createSender(4, OSCAsyncPortOut.OverflowPolicy.REPLACE);
+		sender.send(createStopper());
+		Thread.sleep(50); // wait for the I/O thread to take it
+		final List<Future<Void>> first = sendAll("/async/first", 10);
+		final List<Future<Void>> second = sendAll("/async/second", 10);
+		Assert.assertEquals(2, sender.getQueueDepth());
+		Assert.assertTrue(first.get(8).isCancelled());
+		receiving.countDown();
+		second.get(9).get(10, TimeUnit.SECONDS);
+		first.get(9).get(10, TimeUnit.SECONDS);
+		waitUntilSent();
+		Assert.assertEquals(18, sender.getMetrics().getPacketsDropped());
+		Assert.assertEquals(3, received.size());
+		Assert.assertEquals("/async/first 9", received.get(1));
+		Assert.assertEquals("/async/second 9", received.get(2));
+	}
+
+	@Test
+	public void testBlockWaitsForRoom() throws Exception {
+		createSender(2, OSCAsyncPortOut.OverflowPolicy.BLOCK);
+		sender.send(createStopper());
+		Thread.sleep(50); // wait for the I/O thread to take it
+		sendAll("/async/block", 2);
+		final Thread blocked = new Thread() {
+			@Override
+			public void run() {
+				sendAll("/async/block", 1);
+			}
+		};
+		blocked.start();
+		blocked.join(100);
+		Assert.assertTrue(blocked.isAlive());
+		receiving.countDown();
+		blocked.join(10000);
+		Assert.assertFalse(blocked.isAlive());
+		waitUntilSent();
+		Assert.assertEquals(4, received.size());
+		Assert.assertEquals(0, sender.getMetrics().getPacketsDropped());
+	}
+
+	@Test
+	public void testCloseSendsQueued() throws Exception {
+		createSender(16, OSCAsyncPortOut.OverflowPolicy.BLOCK);
+		final List<Future<Void>> futures = sendAll("/async/close", 10);
+		sender.close();
+		for (final Future<Void> future : futures) {
+			Assert.assertTrue(future.isDone());
+			Assert.assertFalse(future.isCancelled());
+		}
+		Thread.sleep(100); // wait a bit for the receiver
+		Assert.assertEquals(10, received.size());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testSendAfterClose() throws Exception {
+		createSender(16, OSCAsyncPortOut.OverflowPolicy.BLOCK);
+		sender.close();
+		sender.send(new OSCMessage("/async/closed"));
+	}
+
+	@Test
+	public void testCloseWhileSending() throws Exception {
+		createSender(16, OSCAsyncPortOut.OverflowPolicy.REPLACE);
+		final List<Future<Void>> futures = Collections.synchronizedList(new ArrayList<Future<Void>>());
+		final List<Thread> threads = new ArrayList<Thread>();
+		for (int ti = 0; ti < 4; ti++) {
+			final String address = "/async/racing" + (ti % 2);
+			final Thread thread = new Thread() {
+				@Override
+				public void run() {
+					try {
+						while (true) {
+							futures.add(sender.sendAsync(new OSCMessage(address).addInt(0)));
+						}
+					} catch (IllegalStateException ex) {
+						// closed
+					}
+				}
+			};
+			threads.add(thread);
+			thread.start();
+		}
+		Thread.sleep(50); // let them send
+		sender.close();
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+		for (final Future<Void> future : new ArrayList<Future<Void>>(futures)) {
+			Assert.assertTrue(future.isDone());
+		}
+	}
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @see OSCBatchingPortOut
+ */
+public class OSCBatchingPortOutTest {
+
+	private static final long WAIT_FOR_SOCKET_CLOSE = 30;
+
+	private OSCBatchingPortOut sender;
+	private OSCPortIn receiver;
+	private List<String> received;
+
+	@Before
+	public void setUp() throws Exception {
+		sender = new OSCBatchingPortOut(InetAddress.getLocalHost(), OSCPort.defaultSCOSCPort());
+		receiver = new OSCPortIn(OSCPort.defaultSCOSCPort());
+		received = Collections.synchronizedList(new ArrayList<String>());
+		receiver.addListener("/batch/*", new OSCListener() {
+			@Override
+			public void acceptMessage(Date time, OSCMessage message) {
+				received.add(message.getAddress() + " " + message.getInt(0));
+			}
+		});
+		receiver.startListening();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		receiver.stopListening();
+		receiver.close();
+		sender.close();
+		// wait a bit after closing the receiver,
+		// because (some) operating systems need some time
+		// to actually close the underlying socket
+		Thread.sleep(WAIT_FOR_SOCKET_CLOSE);
+	}
+
+	private void sendAll(String address, int count) throws Exception {
+		for (int mi = 0; mi < count; mi++) {
+			sender.send(new OSCMessage(address).addInt(mi));
+		}
+	}
+
+	@Test
+	public void testBurstIsOneBatch() throws Exception {
+		sender.setBatchWindow(50, TimeUnit.MILLISECONDS);
+		sendAll("/batch/burst", 20);
+		Assert.assertEquals(0, sender.getMetrics().getPacketsOut());
+		Thread.sleep(200); // wait for the window to end
+		Assert.assertEquals(1, sender.getMetrics().getPacketsOut());
+		Assert.assertEquals(1, sender.getMetrics().getBatchCount());
+		Assert.assertEquals(20, sender.getMetrics().getBatchSize50thPercentile());
+		Assert.assertEquals(20, received.size());
+		Assert.assertEquals("/batch/burst 19", received.get(19));
+	}
+
+	@Test
+	public void testFailedBatchCountsAllPacketsDropped() throws Exception {
+		final DatagramSocket socket = new DatagramSocket();
+		final OSCBatchingPortOut failing = new OSCBatchingPortOut(
+				InetAddress.getLocalHost(), OSCPort.defaultSCOSCPort(), socket);
+		failing.setBatchWindow(1, TimeUnit.SECONDS);
+		for (int mi = 0; mi < 3; mi++) {
+			failing.send(new OSCMessage("/batch/failing").addInt(mi));
+		}
+		socket.close();
+		try {
+			failing.flush();
+			Assert.fail("Sending on a closed socket should fail");
+		} catch (IOException ex) {
+			// expected
+		}
+		Assert.assertEquals(3, failing.getMetrics().getPacketsDropped());
+		failing.close();
+	}
+
+	@Test
+	public void testSingleMessageIsNotBundled() throws Exception {
+		sender.setBatchWindow(0, TimeUnit.MILLISECONDS);
+		final OSCMessage message = new OSCMessage("/batch/single").addInt(1);
+		sender.send(message);
+		Thread.sleep(100); // wait a bit
+		Assert.assertEquals(message.getByteArray().length, sender.getMetrics().getBytesOut());
+		Assert.assertEquals(1, received.size());
+	}
+
+	@Test
+	public void testFullBatchIsSent() throws Exception {
+		sender.setBatchWindow(10, TimeUnit.SECONDS);
+		sender.setMaxBatchSize(256);
+		sendAll("/batch/full", 40);
+		Assert.assertTrue(sender.getMetrics().getPacketsOut() > 1);
+		Assert.assertTrue(sender.getMetrics().getBytesOut() <= 256 * sender.getMetrics().getPacketsOut());
+		sender.flush();
+		Thread.sleep(100); // wait a bit
+		Assert.assertEquals(40, received.size());
+		for (int mi = 0; mi < 40; mi++) {
+			Assert.assertEquals("/batch/full " + mi, received.get(mi));
+		}
+	}
+
+	@Test
+	public void testUrgentBypassesBatch() throws Exception {
+		sender.setBatchWindow(10, TimeUnit.SECONDS);
+		sender.addUrgentAddress("/batch/urgent");
+		sendAll("/batch/later", 3);
+		sender.send(new OSCMessage("/batch/urgent").addInt(0));
+		Thread.sleep(100); // wait a bit
+		Assert.assertEquals(Collections.singletonList("/batch/urgent 0"), new ArrayList<String>(received));
+		sender.flush();
+		Thread.sleep(100); // wait a bit
+		Assert.assertEquals(4, received.size());
+		// the urgent message is not a batch
+		Assert.assertEquals(1, sender.getMetrics().getBatchCount());
+	}
+}
@@ -8,8 +8,13 @@
 
 package com.illposed.osc;
 
+import com.illposed.osc.utility.JavaToByteArrayConverter;
 import com.illposed.osc.utility.OSCByteArrayToJavaConverter;
+import com.illposed.osc.utility.OSCJavaToByteBufferConverter;
+import com.illposed.osc.utility.OSCPackByteArrayToJavaConverter;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.List;
@@ -74,4 +79,162 @@ public class OSCBundleTest {
 		bundle.setTimestamp(null);
 		sendBundleTimestampTestHelper(bundle, OSCBundle.TIMESTAMP_IMMEDIATE);
 	}
+
+	private static OSCBundle createNested(boolean pack) {
+		final OSCBundle inner = pack ? new OSCPackBundle(new Date(1000L)) : new OSCBundle(new Date(1000L));
+		for (int mi = 0; mi < 3; mi++) {
+			final OSCMessage message = pack ? new OSCPackMessage("/inner/" + mi) : new OSCMessage("/inner/" + mi);
+			inner.addPacket(message.add(mi).add("text " + mi).add(0.5f * mi));
+		}
+		final OSCBundle middle = pack ? new OSCPackBundle() : new OSCBundle();
+		middle.addPacket(inner);
+		middle.addPacket(new OSCMessage("/plain").add(new byte[] {1, 2, 3}));
+		final OSCBundle outer = pack ? new OSCPackBundle() : new OSCBundle();
+		outer.addPacket(pack ? new OSCPackMessage("/first") : new OSCMessage("/first"));
+		outer.addPacket(middle);
+		return outer;
+	}
+
+	/** Computes the byte arrays of all contained packets, like before single-pass encoding. */
+	private static void encodeContained(OSCBundle bundle) {
+		for (final OSCPacket packet : bundle.getPackets()) {
+			if (packet instanceof OSCBundle) {
+				encodeContained((OSCBundle) packet);
+			}
+			packet.getByteArray();
+		}
+	}
+
+	@Test
+	public void testNestedInOnePass() {
+		final OSCBundle copied = createNested(false);
+		encodeContained(copied);
+		final byte[] expected = copied.getByteArray();
+
+		final OSCBundle singlePass = createNested(false);
+		OSCMessageTest.checkResultEqualsAnswer(singlePass.getByteArray(), expected);
+
+		final OSCJavaToByteBufferConverter encoder = new OSCJavaToByteBufferConverter(16, false);
+		createNested(false).writeTo(encoder);
+		OSCMessageTest.checkResultEqualsAnswer(encoder.toByteArray(), expected);
+	}
+
+	@Test
+	public void testNestedPackInOnePass() {
+		final byte[] bytes = createNested(true).getByteArray();
+		final OSCBundle outer = (OSCBundle) new OSCPackByteArrayToJavaConverter().convert(bytes, bytes.length);
+		Assert.assertEquals(2, outer.getPackets().size());
+		Assert.assertEquals("/first", ((OSCMessage) outer.getPackets().get(0)).getAddress());
+		final OSCBundle middle = (OSCBundle) outer.getPackets().get(1);
+		Assert.assertEquals(2, middle.getPackets().size());
+		final OSCMessage plain = (OSCMessage) middle.getPackets().get(1);
+		Assert.assertEquals("/plain", plain.getAddress());
+		Assert.assertTrue(Arrays.equals(new byte[] {1, 2, 3}, (byte[]) plain.getArgument(0)));
+		final OSCBundle inner = (OSCBundle) middle.getPackets().get(0);
+		Assert.assertEquals(new Date(1000L), inner.getTimestamp());
+		Assert.assertEquals(3, inner.getPackets().size());
+		for (int mi = 0; mi < 3; mi++) {
+			final OSCMessage message = (OSCMessage) inner.getPackets().get(mi);
+			Assert.assertEquals("/inner/" + mi, message.getAddress());
+			Assert.assertEquals(Arrays.<Object>asList(mi, "text " + mi, 0.5f * mi), message.getArguments());
+		}
+	}
+
+	@Test
+	public void testComputeSize() {
+		Assert.assertEquals(createNested(false).getByteArray().length, createNested(false).computeSize());
+		Assert.assertEquals(createNested(true).getByteArray().length, createNested(true).computeSize());
+	}
+
+	@Test
+	public void testComputeSizeWithOtherPacket() {
+		final OSCMessage message = new OSCMessage("/other", Arrays.<Object>asList(1, "text"));
+		// an OSCPacket implemented outside of this library
+		final OSCPacket other = new OSCPacket() {
+			@Override
+			public Charset getCharset() {
+				return message.getCharset();
+			}
+
+			@Override
+			public void setCharset(Charset charset) {
+				message.setCharset(charset);
+			}
+
+			@Override
+			public byte[] getByteArray() {
+				return message.getByteArray();
+			}
+
+			@Override
+			public JavaToByteArrayConverter getConverter() {
+				return message.getConverter();
+			}
+		};
+		final OSCBundle bundle = new OSCBundle(Arrays.asList(other, (OSCPacket) new OSCMessage("/plain")));
+		Assert.assertEquals(bundle.getByteArray().length, bundle.computeSize());
+		Assert.assertEquals(2, bundle.split(bundle.computeSize() - 1).size());
+	}
+
+	private static List<Integer> receiveAll(List<OSCBundle> parts, int maxSize, Date timestamp) {
+		final List<Integer> values = new ArrayList<Integer>();
+		for (final OSCBundle part : parts) {
+			final byte[] bytes = part.getByteArray();
+			Assert.assertTrue(bytes.length + " > " + maxSize, bytes.length <= maxSize);
+			final OSCBundle received = (OSCBundle) (part instanceof OSCPackBundle
+					? new OSCPackByteArrayToJavaConverter().convert(bytes, bytes.length)
+					: new OSCByteArrayToJavaConverter().convert(bytes, bytes.length));
+			Assert.assertEquals(timestamp, received.getTimestamp());
+			collectValues(received, values);
+		}
+		return values;
+	}
+
+	private static void collectValues(OSCBundle bundle, List<Integer> values) {
+		for (final OSCPacket packet : bundle.getPackets()) {
+			if (packet instanceof OSCBundle) {
+				collectValues((OSCBundle) packet, values);
+			} else {
+				values.add(((OSCMessage) packet).getInt(0));
+			}
+		}
+	}
+
+	private static void checkSplit(boolean pack) {
+		final Date timestamp = new Date(5000L);
+		final OSCBundle outer = pack ? new OSCPackBundle(timestamp) : new OSCBundle(timestamp);
+		final OSCBundle inner = pack ? new OSCPackBundle(timestamp) : new OSCBundle(timestamp);
+		final List<Integer> expected = new ArrayList<Integer>();
+		for (int mi = 0; mi < 60; mi++) {
+			final OSCMessage message = pack ? new OSCPackMessage("/split/" + mi) : new OSCMessage("/split/" + mi);
+			message.addInt(mi).add("text to make the message bigger");
+			// messages 20 to 39 are in a nested bundle
+			if (mi == 20) {
+				outer.addPacket(inner);
+			}
+			((mi >= 20 && mi < 40) ? inner : outer).addPacket(message);
+			expected.add(mi);
+		}
+		final int maxSize = 512;
+		final List<OSCBundle> parts = outer.split(maxSize);
+		Assert.assertTrue(parts.size() > 1);
+		Assert.assertEquals(expected, receiveAll(parts, maxSize, timestamp));
+	}
+
+	@Test
+	public void testSplit() {
+		checkSplit(false);
+	}
+
+	@Test
+	public void testSplitPack() {
+		checkSplit(true);
+	}
+
+	@Test
+	public void testSplitNotNeeded() {
+		final OSCBundle bundle = createNested(false);
+		Assert.assertSame(bundle, bundle.split(bundle.computeSize()).get(0));
+		Assert.assertEquals(2, bundle.split(bundle.computeSize() - 1).size());
+	}
 }
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @see OSCChannelPortIn
+ */
+public class OSCChannelPortInTest {
+
+	private static final int NUM_MESSAGES = 200;
+
+	private OSCChannelPortIn receiver;
+	private OSCPortOut sender1;
+	private OSCPortOut sender2;
+
+	/** Collects the first argument of each message, per source port. */
+	private static class SequenceListener implements OSCListener {
+
+		private final List<Integer> fromSender1 = Collections.synchronizedList(new ArrayList<Integer>());
+		private final List<Integer> fromSender2 = Collections.synchronizedList(new ArrayList<Integer>());
+		private final int sender1Port;
+
+		SequenceListener(int sender1Port) {
+			this.sender1Port = sender1Port;
+		}
+
+		@Override
+		public void acceptMessage(Date time, OSCMessage message) {
+			final Integer sequence = (Integer) message.getArguments().get(0);
+			if (message.getRemotePort() == sender1Port) {
+				fromSender1.add(sequence);
+			} else {
+				fromSender2.add(sequence);
+			}
+		}
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		final DatagramChannel channel = DatagramChannel.open();
+		channel.socket().bind(new InetSocketAddress(InetAddress.getByName("localhost"), 0));
+		receiver = new OSCChannelPortIn(channel, 3, 512);
+		sender1 = new OSCPortOut(InetAddress.getByName("localhost"), receiver.getPort());
+		sender2 = new OSCPortOut(InetAddress.getByName("localhost"), receiver.getPort());
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		receiver.close();
+		sender1.close();
+		sender2.close();
+	}
+
+	private static void checkInOrder(final List<Integer> received) {
+		Assert.assertEquals(NUM_MESSAGES, received.size());
+		for (int mi = 0; mi < NUM_MESSAGES; mi++) {
+			Assert.assertEquals(Integer.valueOf(mi), received.get(mi));
+		}
+	}
+
+	@Test
+	public void testPerSourceOrder() throws Exception {
+		final SequenceListener listener = new SequenceListener(sender1.getSocket().getLocalPort());
+		receiver.addListener("/sequence", listener);
+		receiver.startListening();
+
+		for (int mi = 0; mi < NUM_MESSAGES; mi++) {
+			sender1.send(new OSCMessage("/sequence").add(mi));
+			sender2.send(new OSCMessage("/sequence").add(mi));
+			if (mi % 50 == 0) {
+				Thread.sleep(5);
+			}
+		}
+		Thread.sleep(300); // wait a bit
+		receiver.stopListening();
+
+		checkInOrder(listener.fromSender1);
+		checkInOrder(listener.fromSender2);
+		Assert.assertEquals(0, receiver.getOverflowCount());
+		Assert.assertEquals(0, receiver.getQueueDepth());
+		Assert.assertEquals(2 * NUM_MESSAGES, receiver.getSuccessfullyProcessedCount());
+	}
+
+	private static int countThreads(String namePrefix) {
+		int count = 0;
+		for (final Thread thread : Thread.getAllStackTraces().keySet()) {
+			if (thread.isAlive() && thread.getName().startsWith(namePrefix)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Test
+	public void testRestart() throws Exception {
+		Thread.sleep(50); // wait for the threads of closed ports to end
+		final int receiversBefore = countThreads("OSCChannelPortIn-receiver");
+		final int workersBefore = countThreads("OSCChannelPortIn-worker-");
+		final SequenceListener listener = new SequenceListener(sender1.getSocket().getLocalPort());
+		receiver.addListener("/sequence", listener);
+		for (int ri = 0; ri < 5; ri++) {
+			receiver.startListening();
+			receiver.stopListening();
+		}
+		receiver.startListening();
+		Assert.assertEquals(receiversBefore + 1, countThreads("OSCChannelPortIn-receiver"));
+		Assert.assertEquals(workersBefore + 3, countThreads("OSCChannelPortIn-worker-"));
+
+		for (int mi = 0; mi < NUM_MESSAGES; mi++) {
+			sender1.send(new OSCMessage("/sequence").add(mi));
+			sender2.send(new OSCMessage("/sequence").add(mi));
+			if (mi % 50 == 0) {
+				Thread.sleep(5);
+			}
+		}
+		Thread.sleep(300); // wait a bit
+		receiver.stopListening();
+
+		checkInOrder(listener.fromSender1);
+		checkInOrder(listener.fromSender2);
+		Assert.assertEquals(0, receiver.getOverflowCount());
+	}
+
+	@Test
+	public void testStopDoesNotInterruptListener() throws Exception {
+		final DatagramChannel forwardChannel = DatagramChannel.open();
+		final OSCPortOut forward = new OSCPortOut(InetAddress.getByName("localhost"), sender1.getSocket().getLocalPort(), forwardChannel);
+		final List<Exception> failures = Collections.synchronizedList(new ArrayList<Exception>());
+		receiver.addListener("/forward", new OSCListener() {
+			@Override
+			public void acceptMessage(Date time, OSCMessage message) {
+				try {
+					Thread.sleep(200); // still busy when listening stops
+					forward.send(message);
+				} catch (Exception ex) {
+					failures.add(ex);
+				}
+			}
+		});
+		receiver.startListening();
+		sender1.send(new OSCMessage("/forward"));
+		Thread.sleep(50); // wait for the listener to be called
+		receiver.stopListening();
+
+		Assert.assertTrue(failures.isEmpty());
+		Assert.assertTrue(forwardChannel.isOpen());
+		forward.close();
+	}
+}
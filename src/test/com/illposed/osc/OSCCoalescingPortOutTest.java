@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @see OSCCoalescingPortOut
+ */
+public class OSCCoalescingPortOutTest {
+
+	private static final long WAIT_FOR_SOCKET_CLOSE = 30;
+
+	private OSCCoalescingPortOut sender;
+	private OSCPortIn receiver;
+	private List<String> received;
+
+	@Before
+	public void setUp() throws Exception {
+		sender = new OSCCoalescingPortOut(InetAddress.getLocalHost(), OSCPort.defaultSCOSCPort());
+		receiver = new OSCPortIn(OSCPort.defaultSCOSCPort());
+		received = Collections.synchronizedList(new ArrayList<String>());
+		receiver.addListener("/coalesce/*", new OSCListener() {
+			@Override
+			public void acceptMessage(Date time, OSCMessage message) {
+				received.add(message.getAddress() + " " + message.getArgument(0));
+			}
+		});
+		receiver.startListening();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		receiver.stopListening();
+		receiver.close();
+		sender.close();
+		// wait a bit after closing the receiver,
+		// because (some) operating systems need some time
+		// to actually close the underlying socket
+		Thread.sleep(WAIT_FOR_SOCKET_CLOSE);
+	}
+
+	@Test
+	public void testNewestValueWins() throws Exception {
+		sender.setMaxRate(5);
+		for (int vi = 0; vi < 100; vi++) {
+			sender.send(new OSCMessage("/coalesce/fader").addInt(vi));
+		}
+		Thread.sleep(100); // wait a bit
+		Assert.assertEquals(Collections.singletonList("/coalesce/fader 0"), new ArrayList<String>(received));
+		Thread.sleep(300); // wait for the next turn
+		Assert.assertEquals(Arrays.asList("/coalesce/fader 0", "/coalesce/fader 99"),
+				new ArrayList<String>(received));
+		Assert.assertEquals(98, sender.getCoalescedCount());
+		Assert.assertEquals(2, sender.getMetrics().getPacketsOut());
+	}
+
+	@Test
+	public void testTypeTagsAreKeptApart() throws Exception {
+		sender.setMaxRate(1);
+		sender.send(new OSCMessage("/coalesce/mixed").addInt(1));
+		sender.send(new OSCMessage("/coalesce/mixed").addFloat(2.0f));
+		sender.send(new OSCMessage("/coalesce/other").addInt(3));
+		Thread.sleep(100); // wait a bit
+		Assert.assertEquals(3, received.size());
+		Assert.assertEquals(0, sender.getCoalescedCount());
+	}
+
+	@Test
+	public void testDeadBand() throws Exception {
+		sender.setDeadBand(0.1);
+		sender.send(new OSCMessage("/coalesce/sensor").addFloat(0.5f));
+		sender.send(new OSCMessage("/coalesce/sensor").addFloat(0.55f));
+		sender.send(new OSCMessage("/coalesce/sensor").addFloat(0.45f));
+		sender.send(new OSCMessage("/coalesce/sensor").addFloat(0.7f));
+		sender.send(new OSCMessage("/coalesce/sensor").addFloat(0.75f));
+		Thread.sleep(100); // wait a bit
+		Assert.assertEquals(Arrays.asList("/coalesce/sensor 0.5", "/coalesce/sensor 0.7"),
+				new ArrayList<String>(received));
+		Assert.assertEquals(3, sender.getCoalescedCount());
+	}
+
+	@Test
+	public void testDeadBandComparesOtherArguments() throws Exception {
+		sender.setDeadBand(0.1);
+		sender.send(new OSCMessage("/coalesce/named").addFloat(0.5f).add("a"));
+		sender.send(new OSCMessage("/coalesce/named").addFloat(0.5f).add("b"));
+		Thread.sleep(100); // wait a bit
+		Assert.assertEquals(2, received.size());
+	}
+
+	@Test
+	public void testFlush() throws Exception {
+		sender.setMaxRate(0.1);
+		sender.send(new OSCMessage("/coalesce/flush").addInt(1));
+		sender.send(new OSCMessage("/coalesce/flush").addInt(2));
+		sender.send(new OSCMessage("/coalesce/flush").addInt(3));
+		sender.flush();
+		Thread.sleep(100); // wait a bit
+		Assert.assertEquals(Arrays.asList("/coalesce/flush 1", "/coalesce/flush 3"),
+				new ArrayList<String>(received));
+	}
+}
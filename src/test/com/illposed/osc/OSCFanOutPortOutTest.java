@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @see OSCFanOutPortOut
+ */
+public class OSCFanOutPortOutTest {
+
+	private static final long WAIT_FOR_SOCKET_CLOSE = 30;
+
+	private OSCFanOutPortOut sender;
+	private OSCPortIn receiver1;
+	private OSCPortIn receiver2;
+	private SimpleOSCListener listener1;
+	private SimpleOSCListener listener2;
+	private InetSocketAddress target1;
+	private InetSocketAddress target2;
+
+	@Before
+	public void setUp() throws Exception {
+		sender = new OSCFanOutPortOut();
+		receiver1 = new OSCPortIn(OSCPort.defaultSCOSCPort());
+		receiver2 = new OSCPortIn(OSCPort.defaultSCLangOSCPort());
+		listener1 = new SimpleOSCListener();
+		listener2 = new SimpleOSCListener();
+		receiver1.addListener("/fan/out", listener1);
+		receiver2.addListener("/fan/out", listener2);
+		receiver1.startListening();
+		receiver2.startListening();
+		target1 = new InetSocketAddress(InetAddress.getLocalHost(), OSCPort.defaultSCOSCPort());
+		target2 = new InetSocketAddress(InetAddress.getLocalHost(), OSCPort.defaultSCLangOSCPort());
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		receiver1.stopListening();
+		receiver2.stopListening();
+		receiver1.close();
+		receiver2.close();
+		sender.close();
+		// wait a bit after closing the receiver,
+		// because (some) operating systems need some time
+		// to actually close the underlying socket
+		Thread.sleep(WAIT_FOR_SOCKET_CLOSE);
+	}
+
+	@Test
+	public void testSendToAll() throws Exception {
+		Assert.assertTrue(sender.addTarget(target1));
+		Assert.assertTrue(sender.addTarget(target2));
+		Assert.assertFalse(sender.addTarget(target1));
+		Assert.assertEquals(Arrays.asList(target1, target2), sender.getTargets());
+
+		final OSCMessage message = new OSCMessage("/fan/out").addInt(7);
+		sender.send(message);
+		Thread.sleep(100); // wait a bit
+		Assert.assertTrue(listener1.isMessageReceived());
+		Assert.assertTrue(listener2.isMessageReceived());
+		Assert.assertEquals(2, sender.getMetrics().getPacketsOut());
+		Assert.assertEquals(2 * message.getByteArray().length, sender.getMetrics().getBytesOut());
+	}
+
+	@Test
+	public void testRemoveTarget() throws Exception {
+		sender.addTarget(target1);
+		sender.addTarget(target2);
+		Assert.assertTrue(sender.removeTarget(target1));
+		Assert.assertFalse(sender.removeTarget(target1));
+		Assert.assertEquals(Collections.singletonList(target2), sender.getTargets());
+
+		sender.send(new OSCMessage("/fan/out"));
+		Thread.sleep(100); // wait a bit
+		Assert.assertFalse(listener1.isMessageReceived());
+		Assert.assertTrue(listener2.isMessageReceived());
+	}
+
+	@Test
+	public void testNoTargets() throws Exception {
+		sender.send(new OSCMessage("/fan/out"));
+		Assert.assertEquals(0, sender.getMetrics().getPacketsOut());
+	}
+
+	@Test
+	public void testBundle() throws Exception {
+		sender.addTarget(target1);
+		sender.addTarget(target2);
+		final OSCBundle bundle = new OSCBundle(
+				Collections.<OSCPacket>singletonList(new OSCMessage("/fan/out")), new Date(0));
+		sender.send(bundle);
+		Thread.sleep(100); // wait a bit
+		Assert.assertTrue(listener1.isMessageReceived());
+		Assert.assertTrue(listener2.isMessageReceived());
+	}
+
+	@Test
+	public void testChangeTargetsWhileSending() throws Exception {
+		final Thread changer = new Thread() {
+			@Override
+			public void run() {
+				for (int ci = 0; ci < 1000; ci++) {
+					sender.addTarget(target2);
+					sender.removeTarget(target2);
+				}
+			}
+		};
+		sender.addTarget(target1);
+		changer.start();
+		for (int si = 0; si < 100; si++) {
+			sender.send(new OSCMessage("/fan/out"));
+		}
+		changer.join();
+		Assert.assertEquals(Collections.singletonList(target1), sender.getTargets());
+		Assert.assertTrue(sender.getMetrics().getPacketsOut() >= 100);
+	}
+}
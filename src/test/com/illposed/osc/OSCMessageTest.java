@@ -585,4 +585,88 @@ public class OSCMessageTest {
 		Assert.assertTrue( OSCMessage.isValidAddress("/'hello/world"));
 		Assert.assertTrue( OSCMessage.isValidAddress("/\"hello/world"));
 	}
+
+	@Test
+	public void testPrimitiveArgumentsEncodeLikeBoxed() {
+		final OSCMessage boxed = new OSCMessage("/dummy");
+		boxed.addArgument(1);
+		boxed.addArgument(2L);
+		boxed.addArgument(0.5f);
+		boxed.addArgument(0.25d);
+		boxed.addArgument("str");
+		boxed.addArgument(Boolean.TRUE);
+		final OSCMessage primitive = new OSCMessage("/dummy");
+		primitive.addInt(1).addLong(2L).addFloat(0.5f).addDouble(0.25d);
+		primitive.addArgument("str");
+		primitive.addArgument(Boolean.TRUE);
+		checkResultEqualsAnswer(primitive.getByteArray(), boxed.getByteArray());
+		Assert.assertEquals(boxed.getArguments(), primitive.getArguments());
+	}
+
+	@Test
+	public void testPrimitiveArgumentAccessors() {
+		final OSCMessage message = new OSCMessage("/dummy");
+		message.addArgument(3);
+		message.addFloat(1.5f);
+		message.addArgument("str");
+		message.addLong(Long.MAX_VALUE);
+		message.addDouble(-2.5d);
+		Assert.assertEquals(5, message.getArgumentCount());
+		Assert.assertEquals(3, message.getInt(0));
+		Assert.assertEquals(1.5f, message.getFloat(1), 0.0f);
+		Assert.assertEquals("str", message.getArgument(2));
+		Assert.assertEquals(Long.MAX_VALUE, message.getLong(3));
+		Assert.assertEquals(-2.5d, message.getDouble(4), 0.0d);
+		Assert.assertEquals(Integer.valueOf(3), message.getArguments().get(0));
+		Assert.assertEquals(Float.valueOf(1.5f), message.getArguments().get(1));
+	}
+
+	@Test
+	public void testPrimitiveArgumentTypeMismatch() {
+		final OSCMessage message = new OSCMessage("/dummy");
+		message.addFloat(1.5f);
+		expectedException.expect(ClassCastException.class);
+		message.getInt(0);
+	}
+
+	@Test
+	public void testPrimitiveArgumentsDecoded() {
+		final OSCMessage message = new OSCMessage("/dummy");
+		message.addInt(-7).addFloat(0.75f);
+		message.addArgument(null);
+		final OSCByteArrayToJavaConverter converter = new OSCByteArrayToJavaConverter();
+		final byte[] bytes = message.getByteArray();
+		final OSCMessage packet = (OSCMessage) converter.convert(bytes, bytes.length);
+		Assert.assertEquals(3, packet.getArguments().size());
+		Assert.assertEquals(Integer.valueOf(-7), packet.getArguments().get(0));
+		Assert.assertEquals(Float.valueOf(0.75f), packet.getArguments().get(1));
+		Assert.assertNull(packet.getArguments().get(2));
+	}
+
+	@Test
+	public void testComputeSize() {
+		final List<Object> arguments = new ArrayList<Object>();
+		arguments.add(1);
+		arguments.add(2L);
+		arguments.add(3.0f);
+		arguments.add(4.0);
+		arguments.add("five");
+		arguments.add("s\u00e9chs");
+		arguments.add(new byte[] {7, 7, 7});
+		arguments.add('8');
+		arguments.add(new Date(9L));
+		arguments.add(Boolean.TRUE);
+		arguments.add(null);
+		arguments.add(OSCImpulse.INSTANCE);
+		arguments.add(new OSCTypedBlob(new short[] {11, 11, 11}));
+		final List<Object> array = new ArrayList<Object>();
+		array.add(12);
+		array.add("twelve");
+		arguments.add(array);
+		for (int ai = 0; ai <= arguments.size(); ai++) {
+			final OSCMessage message = new OSCMessage("/size", arguments.subList(0, ai));
+			Assert.assertEquals(new OSCMessage("/size", arguments.subList(0, ai)).getByteArray().length,
+					message.computeSize());
+		}
+	}
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc;
+
+import java.net.InetAddress;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @see OSCPortInGroup
+ */
+public class OSCPortInGroupTest {
+
+	private static final int NUM_SENDERS = 6;
+	private static final int NUM_MESSAGES = 50;
+
+	private OSCPortInGroup group;
+
+	@Before
+	public void setUp() throws Exception {
+		group = new OSCPortInGroup(0, 3);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		group.close();
+	}
+
+	@Test
+	public void testAllSocketsShareThePort() throws Exception {
+		Assert.assertEquals(3, group.size());
+		Assert.assertTrue(group.getPort() > 0);
+	}
+
+	@Test
+	public void testCloseWhileListening() throws Exception {
+		group.startListening();
+		group.close();
+		Assert.assertFalse(group.isListening());
+	}
+
+	@Test
+	public void testReceiveFromManySenders() throws Exception {
+		final AtomicInteger received = new AtomicInteger();
+		group.addListener("/group/*", new OSCListener() {
+			@Override
+			public void acceptMessage(Date time, OSCMessage message) {
+				received.incrementAndGet();
+			}
+		});
+		group.startListening();
+
+		for (int si = 0; si < NUM_SENDERS; si++) {
+			final OSCPortOut sender = new OSCPortOut(InetAddress.getByName("localhost"), group.getPort());
+			for (int mi = 0; mi < NUM_MESSAGES; mi++) {
+				sender.send(new OSCMessage("/group/" + si).add(mi));
+			}
+			sender.close();
+		}
+		Thread.sleep(200); // wait a bit
+		group.stopListening();
+
+		Assert.assertEquals(NUM_SENDERS * NUM_MESSAGES, received.get());
+		Assert.assertEquals(NUM_SENDERS * NUM_MESSAGES, group.getSuccessfullyProcessedCount());
+	}
+}
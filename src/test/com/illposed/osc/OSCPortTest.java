@@ -9,7 +9,14 @@
 package com.illposed.osc;
 
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.channels.DatagramChannel;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 import org.junit.After;
 import org.junit.Assert;
@@ -160,6 +167,27 @@ public class OSCPortTest {
 		}
 	}
 
+	@Test
+	public void testReceivingThroughChannel() throws Exception {
+		sender.close();
+		sender = new OSCPortOut(InetAddress.getLocalHost(),
+				OSCPort.defaultSCOSCPort(), DatagramChannel.open());
+		OSCMessage mesg = new OSCMessage("/message/channel");
+		mesg.addArgument(3);
+		mesg.addArgument("hello");
+		SimpleOSCListener listener = new SimpleOSCListener();
+		receiver.addListener("/message/channel", listener);
+		receiver.startListening();
+		sender.send(mesg);
+		Thread.sleep(100); // wait a bit
+		receiver.stopListening();
+		if (!listener.isMessageReceived()) {
+			Assert.fail("Message was not received");
+		}
+		Assert.assertEquals(1, sender.getSuccessfullyProcessedCount());
+		Assert.assertEquals(mesg.getByteArray().length, sender.getSuccessfullyProcessedBytes());
+	}
+
 	@Test
 	public void testBundleReceiving() throws Exception {
 		OSCBundle bundle = new OSCBundle();
@@ -178,4 +206,121 @@ public class OSCPortTest {
 					+ " but has " + listener.getReceivedTimestamp());
 		}
 	}
+
+	@Test
+	public void testSplitBundleReceiving() throws Exception {
+		final OSCBundle bundle = new OSCBundle(new Date(0));
+		for (int mi = 0; mi < 100; mi++) {
+			bundle.addPacket(new OSCMessage("/bundle/split").addInt(mi).add("some text to fill the datagram"));
+		}
+		final List<Integer> received = Collections.synchronizedList(new ArrayList<Integer>());
+		receiver.addListener("/bundle/split", new OSCListener() {
+			@Override
+			public void acceptMessage(Date time, OSCMessage message) {
+				received.add(message.getInt(0));
+			}
+		});
+		receiver.startListening();
+		sender.setMaxPacketSize(OSCPortOut.ETHERNET_MAX_PACKET_SIZE);
+		sender.send(bundle);
+		Thread.sleep(100); // wait a bit
+		receiver.stopListening();
+		Assert.assertTrue(bundle.computeSize() > OSCPortOut.ETHERNET_MAX_PACKET_SIZE);
+		Assert.assertEquals(bundle.split(OSCPortOut.ETHERNET_MAX_PACKET_SIZE).size(),
+				sender.getSuccessfullyProcessedCount());
+		Assert.assertEquals(100, received.size());
+	}
+
+	@Test
+	public void testMulticastLoopbackOption() throws Exception {
+		final OSCPortOut multicastSender = new OSCPortOut(
+				InetAddress.getByName("239.255.12.1"), OSCPort.defaultSCLangOSCPort(), new MulticastSocket());
+		try {
+			multicastSender.setMulticastLoopback(false);
+			Assert.assertFalse(multicastSender.isMulticastLoopback());
+			multicastSender.setMulticastLoopback(true);
+			Assert.assertTrue(multicastSender.isMulticastLoopback());
+		} finally {
+			multicastSender.close();
+		}
+	}
+
+	@Test
+	public void testMulticastReceiving() throws Exception {
+		final InetAddress group1 = InetAddress.getByName("239.255.12.1");
+		final InetAddress group2 = InetAddress.getByName("239.255.12.2");
+		final OSCPortIn multicastReceiver
+				= new OSCPortIn(new MulticastSocket(OSCPort.defaultSCLangOSCPort()));
+		final OSCPortOut multicastSender1
+				= new OSCPortOut(group1, OSCPort.defaultSCLangOSCPort(), new MulticastSocket());
+		final OSCPortOut multicastSender2
+				= new OSCPortOut(group2, OSCPort.defaultSCLangOSCPort(), new MulticastSocket());
+		try {
+			multicastReceiver.joinGroup(group1);
+			multicastReceiver.joinGroup(group2);
+			final List<Integer> received = Collections.synchronizedList(new ArrayList<Integer>());
+			multicastReceiver.addListener("/multicast", new OSCListener() {
+				@Override
+				public void acceptMessage(Date time, OSCMessage message) {
+					received.add(message.getInt(0));
+				}
+			});
+			multicastReceiver.startListening();
+			multicastSender1.setMulticastTimeToLive(2);
+			Assert.assertEquals(2, multicastSender1.getMulticastTimeToLive());
+			multicastSender1.setMulticastLoopback(true);
+			multicastSender2.setMulticastLoopback(true);
+			Assert.assertTrue(multicastSender1.isMulticastLoopback());
+
+			multicastSender1.send(new OSCMessage("/multicast").addInt(1));
+			multicastSender2.send(new OSCMessage("/multicast").addInt(2));
+			Thread.sleep(100); // wait a bit
+			Assert.assertEquals(2, received.size());
+
+			multicastReceiver.leaveGroup(group2);
+			multicastSender2.send(new OSCMessage("/multicast").addInt(3));
+			Thread.sleep(100); // wait a bit
+			Assert.assertEquals(2, received.size());
+			multicastReceiver.stopListening();
+		} finally {
+			multicastReceiver.close();
+			multicastSender1.close();
+			multicastSender2.close();
+		}
+	}
+
+	@Test
+	public void testMulticastChannelReceiving() throws Exception {
+		final InetAddress group = InetAddress.getByName("239.255.12.3");
+		final DatagramChannel channel = DatagramChannel.open(StandardProtocolFamily.INET);
+		channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+		channel.bind(new InetSocketAddress(OSCPort.defaultSCLangOSCPort()));
+		final OSCChannelPortIn multicastReceiver = new OSCChannelPortIn(channel,
+				OSCChannelPortIn.DEFAULT_WORKERS, OSCChannelPortIn.DEFAULT_POOL_SIZE);
+		final OSCPortOut multicastSender = new OSCPortOut(group, OSCPort.defaultSCLangOSCPort(),
+				DatagramChannel.open(StandardProtocolFamily.INET));
+		try {
+			multicastReceiver.joinGroup(group);
+			final SimpleOSCListener listener = new SimpleOSCListener();
+			multicastReceiver.addListener("/multicast/channel", listener);
+			multicastReceiver.startListening();
+			multicastSender.setMulticastTimeToLive(1);
+			Assert.assertEquals(1, multicastSender.getMulticastTimeToLive());
+			multicastSender.setMulticastLoopback(true);
+			multicastSender.send(new OSCMessage("/multicast/channel"));
+			Thread.sleep(100); // wait a bit
+			multicastReceiver.stopListening();
+			Assert.assertTrue(listener.isMessageReceived());
+			multicastReceiver.leaveGroup(group);
+		} finally {
+			multicastReceiver.close();
+			multicastSender.close();
+		}
+	}
+
+	@Test
+	public void testMulticastNeedsMulticastSocket() throws Exception {
+		expectedException.expect(UnsupportedOperationException.class);
+		receiver.joinGroup(InetAddress.getByName("239.255.12.4"));
+	}
 }
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc;
+
+import com.illposed.osc.utility.OSCByteArrayToJavaConverter;
+import com.illposed.osc.utility.OSCJavaToByteArrayConverter;
+import com.illposed.osc.utility.OSCJavaToByteBufferConverter;
+import java.util.Arrays;
+import java.util.Date;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @see OSCPreparedMessage
+ */
+public class OSCPreparedMessageTest {
+
+	private static OSCMessage createMessage(int id, String name, long time, float x, double y) {
+		return new OSCMessage("/prepared",
+				Arrays.<Object>asList(id, name, Boolean.TRUE, time, x, null, y));
+	}
+
+	@Test
+	public void testSameBytesAsMessage() {
+		final OSCMessage message = createMessage(1, "name", 2L, 3.0f, 4.0);
+		final OSCPreparedMessage prepared = new OSCPreparedMessage(message);
+		OSCMessageTest.checkResultEqualsAnswer(prepared.getByteArray(), message.getByteArray());
+		Assert.assertEquals(7, prepared.getArgumentCount());
+		Assert.assertEquals("/prepared", prepared.getAddress());
+	}
+
+	@Test
+	public void testPatchedInPlace() {
+		final OSCPreparedMessage prepared = new OSCPreparedMessage(createMessage(1, "name", 2L, 3.0f, 4.0));
+		final byte[] bytes = prepared.getByteArray();
+		prepared.setInt(0, -5).setLong(3, Long.MAX_VALUE).setFloat(4, 0.25f).setDouble(6, -1.5);
+		Assert.assertSame(bytes, prepared.getByteArray());
+		OSCMessageTest.checkResultEqualsAnswer(prepared.getByteArray(),
+				createMessage(-5, "name", Long.MAX_VALUE, 0.25f, -1.5).getByteArray());
+
+		Assert.assertEquals(-5, prepared.getInt(0));
+		Assert.assertEquals(Long.MAX_VALUE, prepared.getLong(3));
+		Assert.assertEquals(0.25f, prepared.getFloat(4), 0.0f);
+		Assert.assertEquals(-1.5, prepared.getDouble(6), 0.0);
+
+		final OSCMessage received = (OSCMessage) new OSCByteArrayToJavaConverter().convert(bytes, bytes.length);
+		Assert.assertEquals(Arrays.<Object>asList(-5, "name", Boolean.TRUE, Long.MAX_VALUE, 0.25f, null, -1.5),
+				received.getArguments());
+	}
+
+	@Test
+	public void testTemplateIsCopied() {
+		final OSCMessage template = new OSCMessage("/template");
+		template.addInt(1);
+		final OSCPreparedMessage prepared = new OSCPreparedMessage(template);
+		template.addInt(2);
+		Assert.assertEquals(1, prepared.getArgumentCount());
+		// "/template", ",i", 1
+		Assert.assertEquals(12 + 4 + 4, prepared.getByteArray().length);
+	}
+
+	@Test(expected = ClassCastException.class)
+	public void testWrongType() {
+		new OSCPreparedMessage(createMessage(1, "name", 2L, 3.0f, 4.0)).setFloat(0, 1.0f);
+	}
+
+	@Test(expected = ClassCastException.class)
+	public void testNotPatchable() {
+		new OSCPreparedMessage(createMessage(1, "name", 2L, 3.0f, 4.0)).setInt(1, 1);
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testIndexOutOfBounds() {
+		new OSCPreparedMessage(createMessage(1, "name", 2L, 3.0f, 4.0)).setInt(7, 1);
+	}
+
+	@Test
+	public void testInBundleAndBuffer() {
+		final OSCPreparedMessage prepared = new OSCPreparedMessage("/in/bundle", Arrays.<Object>asList(0));
+		prepared.setInt(0, 42);
+		final OSCBundle bundle = new OSCBundle(Arrays.<OSCPacket>asList(prepared), new Date(0));
+		final OSCBundle received = (OSCBundle) new OSCByteArrayToJavaConverter()
+				.convert(bundle.getByteArray(), bundle.getByteArray().length);
+		Assert.assertEquals(42, ((OSCMessage) received.getPackets().get(0)).getInt(0));
+
+		final OSCJavaToByteBufferConverter encoder = new OSCJavaToByteBufferConverter();
+		prepared.writeTo(encoder);
+		Assert.assertEquals(prepared.getByteArray().length, encoder.size());
+	}
+
+	@Test
+	public void testWriteContent() {
+		final OSCPreparedMessage prepared = new OSCPreparedMessage(createMessage(1, "name", 2L, 3.0f, 4.0));
+		prepared.setInt(0, 42);
+		final OSCJavaToByteArrayConverter stream = new OSCJavaToByteArrayConverter();
+		prepared.writeContent(stream);
+		OSCMessageTest.checkResultEqualsAnswer(stream.toByteArray(), prepared.getByteArray());
+	}
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc;
+
+import com.illposed.osc.utility.OSCStreamFraming;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @see OSCTcpPortIn
+ * @see OSCTcpPortOut
+ */
+public class OSCTcpPortTest {
+
+	private static final long WAIT_FOR_SOCKET_CLOSE = 30;
+
+	private OSCTcpPortIn receiver;
+	private final List<OSCTcpPortOut> senders = new ArrayList<OSCTcpPortOut>();
+	private final List<OSCMessage> received = Collections.synchronizedList(new ArrayList<OSCMessage>());
+
+	private void startReceiver(OSCStreamFraming framing) throws Exception {
+		receiver = new OSCTcpPortIn(OSCPort.defaultSCOSCPort(), framing);
+		receiver.addListener("/tcp/*", new OSCListener() {
+			@Override
+			public void acceptMessage(Date time, OSCMessage message) {
+				received.add(message);
+			}
+		});
+		receiver.startListening();
+	}
+
+	private OSCTcpPortOut connect(OSCStreamFraming framing) throws Exception {
+		final OSCTcpPortOut sender
+				= new OSCTcpPortOut(InetAddress.getLocalHost(), OSCPort.defaultSCOSCPort(), framing);
+		senders.add(sender);
+		return sender;
+	}
+
+	private void waitForReceived(int count) throws Exception {
+		for (int wi = 0; wi < 200 && received.size() < count; wi++) {
+			Thread.sleep(10);
+		}
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		for (final OSCTcpPortOut sender : senders) {
+			sender.close();
+		}
+		if (receiver != null) {
+			receiver.close();
+		}
+		// wait a bit after closing the receiver,
+		// because (some) operating systems need some time
+		// to actually close the underlying socket
+		Thread.sleep(WAIT_FOR_SOCKET_CLOSE);
+	}
+
+	@Test
+	public void testSlipReceiving() throws Exception {
+		startReceiver(OSCStreamFraming.SLIP);
+		final OSCTcpPortOut sender = connect(OSCStreamFraming.SLIP);
+		// the blob holds the bytes SLIP has to escape
+		final byte[] blob = {(byte) 0xC0, (byte) 0xDB, 1, 2};
+		sender.send(new OSCMessage("/tcp/slip").addInt(1).add(blob));
+		sender.send(new OSCMessage("/tcp/slip").addInt(2));
+		waitForReceived(2);
+		Assert.assertEquals(2, received.size());
+		Assert.assertArrayEquals(blob, (byte[]) received.get(0).getArgument(1));
+		Assert.assertEquals(2, received.get(1).getInt(0));
+		Assert.assertEquals(2, receiver.getMetrics().getPacketsIn());
+		Assert.assertEquals(2, sender.getMetrics().getPacketsOut());
+	}
+
+	@Test
+	public void testLengthPrefixReceiving() throws Exception {
+		startReceiver(OSCStreamFraming.LENGTH_PREFIX);
+		final OSCTcpPortOut sender = connect(OSCStreamFraming.LENGTH_PREFIX);
+		final OSCBundle bundle = new OSCBundle(Arrays.<OSCPacket>asList(
+				new OSCMessage("/tcp/bundled").addInt(1),
+				new OSCMessage("/tcp/bundled").addInt(2)), new Date(0));
+		sender.send(bundle);
+		waitForReceived(2);
+		Assert.assertEquals(2, received.size());
+		Assert.assertEquals(2, received.get(1).getInt(0));
+	}
+
+	@Test
+	public void testBiggerThanDatagram() throws Exception {
+		for (final OSCStreamFraming framing : OSCStreamFraming.values()) {
+			startReceiver(framing);
+			final OSCTcpPortOut sender = connect(framing);
+			final byte[] preset = new byte[300000];
+			for (int bi = 0; bi < preset.length; bi++) {
+				preset[bi] = (byte) bi;
+			}
+			sender.send(new OSCMessage("/tcp/preset").add(preset));
+			sender.send(new OSCMessage("/tcp/preset").addInt(2));
+			waitForReceived(2);
+			Assert.assertEquals(2, received.size());
+			Assert.assertArrayEquals(preset, (byte[]) received.get(0).getArgument(0));
+			receiver.close();
+			receiver = null;
+			received.clear();
+			Thread.sleep(WAIT_FOR_SOCKET_CLOSE);
+		}
+	}
+
+	@Test
+	public void testManyConnections() throws Exception {
+		startReceiver(OSCStreamFraming.SLIP);
+		final int numConnections = 50;
+		for (int ci = 0; ci < numConnections; ci++) {
+			connect(OSCStreamFraming.SLIP).send(new OSCMessage("/tcp/many").addInt(ci));
+		}
+		waitForReceived(numConnections);
+		Assert.assertEquals(numConnections, received.size());
+		Assert.assertEquals(numConnections, receiver.getConnectionCount());
+
+		senders.get(0).close();
+		for (int wi = 0; wi < 100 && receiver.getConnectionCount() == numConnections; wi++) {
+			Thread.sleep(10);
+		}
+		Assert.assertEquals(numConnections - 1, receiver.getConnectionCount());
+	}
+
+	@Test
+	public void testBadFramingClosesConnection() throws Exception {
+		startReceiver(OSCStreamFraming.LENGTH_PREFIX);
+		receiver.setMaxFrameSize(1024);
+		final SocketChannel client = SocketChannel.open(
+				new InetSocketAddress(InetAddress.getLocalHost(), OSCPort.defaultSCOSCPort()));
+		try {
+			final ByteBuffer tooBig = ByteBuffer.allocate(8);
+			tooBig.putInt(4096).putInt(0).flip();
+			client.write(tooBig);
+			client.socket().setSoTimeout(2000);
+			Assert.assertEquals(-1, client.socket().getInputStream().read());
+			Assert.assertEquals(1, receiver.getMetrics().getDecodeFailures());
+		} finally {
+			client.close();
+		}
+	}
+
+	@Test
+	public void testRestart() throws Exception {
+		startReceiver(OSCStreamFraming.SLIP);
+		final OSCTcpPortOut sender = connect(OSCStreamFraming.SLIP);
+		sender.send(new OSCMessage("/tcp/restart").addInt(1));
+		waitForReceived(1);
+		receiver.stopListening();
+		Assert.assertEquals(0, receiver.getConnectionCount());
+		receiver.startListening();
+		connect(OSCStreamFraming.SLIP).send(new OSCMessage("/tcp/restart").addInt(2));
+		waitForReceived(2);
+		Assert.assertEquals(2, received.size());
+		Assert.assertEquals(1, receiver.getConnectionCount());
+	}
+
+	@Test
+	public void testCloseWithSlowListener() throws Exception {
+		startReceiver(OSCStreamFraming.SLIP);
+		receiver.addListener("/slow", new OSCListener() {
+			@Override
+			public void acceptMessage(Date time, OSCMessage message) {
+				try {
+					Thread.sleep(500);
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		final SocketChannel idle = SocketChannel.open(
+				new InetSocketAddress(InetAddress.getLocalHost(), OSCPort.defaultSCOSCPort()));
+		try {
+			connect(OSCStreamFraming.SLIP).send(new OSCMessage("/slow"));
+			for (int wi = 0; wi < 100 && receiver.getConnectionCount() < 2; wi++) {
+				Thread.sleep(10);
+			}
+			Thread.sleep(50); // wait for the listener to be called
+			receiver.close();
+			Assert.assertEquals(0, receiver.getConnectionCount());
+			idle.socket().setSoTimeout(2000);
+			Assert.assertEquals(-1, idle.socket().getInputStream().read());
+		} finally {
+			idle.close();
+			receiver = null;
+		}
+	}
+}
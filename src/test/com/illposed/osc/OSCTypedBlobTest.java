@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc;
+
+import com.illposed.osc.utility.OSCByteBufferToJavaConverter;
+import com.illposed.osc.utility.OSCPackByteArrayToJavaConverter;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @see OSCTypedBlob
+ */
+public class OSCTypedBlobTest {
+
+	@Test
+	public void testArrayEncodesLikeList() {
+		Assert.assertTrue(Arrays.equals(
+				new OSCTypedBlob('i', Arrays.<Object>asList(1, -2, Integer.MAX_VALUE)).write(),
+				new OSCTypedBlob(new int[] {1, -2, Integer.MAX_VALUE}).write()));
+		Assert.assertTrue(Arrays.equals(
+				new OSCTypedBlob('h', Arrays.<Object>asList(1L, Long.MIN_VALUE)).write(),
+				new OSCTypedBlob(new long[] {1L, Long.MIN_VALUE}).write()));
+		Assert.assertTrue(Arrays.equals(
+				new OSCTypedBlob('f', Arrays.<Object>asList(0.5f, -1.25f)).write(),
+				new OSCTypedBlob(new float[] {0.5f, -1.25f}).write()));
+		Assert.assertTrue(Arrays.equals(
+				new OSCTypedBlob('d', Arrays.<Object>asList(0.5d, Double.NaN)).write(),
+				new OSCTypedBlob(new double[] {0.5d, Double.NaN}).write()));
+	}
+
+	@Test
+	public void testArrayRoundTrip() {
+		final float[] frame = new float[10000];
+		for (int fi = 0; fi < frame.length; fi++) {
+			frame[fi] = fi * 0.25f;
+		}
+		final byte[] bytes = new OSCMessage("/sensor/frame").add(new OSCTypedBlob(frame)).getByteArray();
+		final OSCMessage received = (OSCMessage) new OSCByteBufferToJavaConverter().convert(bytes, bytes.length);
+		final OSCTypedBlob typedBlob = (OSCTypedBlob) received.getArgument(0);
+		Assert.assertEquals('f', typedBlob.getType());
+		Assert.assertTrue(Arrays.equals(frame, typedBlob.toFloatArray()));
+
+		final FloatBuffer view = typedBlob.asFloatBuffer();
+		Assert.assertEquals(frame.length, view.remaining());
+		Assert.assertEquals(frame[1234], view.get(1234), 0.0f);
+		Assert.assertTrue(view.isReadOnly());
+	}
+
+	@Test
+	public void testArraysFromList() {
+		final OSCTypedBlob typedBlob = new OSCTypedBlob('h', Arrays.<Object>asList(3L, 4L));
+		Assert.assertTrue(Arrays.equals(new long[] {3L, 4L}, typedBlob.toLongArray()));
+		Assert.assertEquals(Arrays.<Object>asList(1, 2), new OSCTypedBlob(new int[] {1, 2}).parseItems());
+	}
+
+	@Test(expected = ClassCastException.class)
+	public void testArrayTypeMismatch() {
+		new OSCTypedBlob(new int[] {1, 2}).toFloatArray();
+	}
+
+	@Test
+	public void testSmallIntegerTypes() {
+		final byte[] bytes = new byte[] {-128, -1, 0, 1, 127};
+		final OSCTypedBlob int8 = new OSCTypedBlob(bytes);
+		Assert.assertEquals(5, int8.write().length);
+		Assert.assertTrue(Arrays.equals(bytes, new OSCTypedBlob('y', 5, int8.write()).toByteArray()));
+		Assert.assertEquals(Arrays.<Object>asList((byte) -128, (byte) -1, (byte) 0, (byte) 1, (byte) 127),
+				new OSCTypedBlob('y', 5, int8.write()).parseItems());
+
+		final short[] shorts = new short[] {Short.MIN_VALUE, -1, 0, 1, Short.MAX_VALUE};
+		final OSCTypedBlob int16 = new OSCTypedBlob(shorts);
+		Assert.assertEquals(10, int16.write().length);
+		Assert.assertTrue(Arrays.equals(int16.write(),
+				new OSCTypedBlob('n', Arrays.<Object>asList(Short.MIN_VALUE, -1, 0, 1, Short.MAX_VALUE)).write()));
+		Assert.assertTrue(Arrays.equals(shorts, new OSCTypedBlob('n', 5, int16.write()).toShortArray()));
+	}
+
+	@Test
+	public void testQuantizedFloats() {
+		final float[] frame = new float[1000];
+		for (int fi = 0; fi < frame.length; fi++) {
+			frame[fi] = (float) Math.sin(fi * 0.01) * 5.0f;
+		}
+		final OSCTypedBlob quantized = new OSCTypedBlob(frame, -5.0f, 5.0f);
+		final byte[] bytes = quantized.write();
+		// half the size of 'f', plus scale and offset
+		Assert.assertEquals(8 + frame.length * 2, bytes.length);
+
+		final OSCTypedBlob received = new OSCTypedBlob('q', frame.length, bytes);
+		final float[] decoded = received.toFloatArray();
+		final float tolerance = 10.0f / 65534 / 2 * 1.001f;
+		for (int fi = 0; fi < frame.length; fi++) {
+			Assert.assertEquals(frame[fi], decoded[fi], tolerance);
+		}
+		Assert.assertEquals(0.0f, received.getOffset(), 0.0f);
+		Assert.assertEquals(decoded[10], (Float) received.parseItems().get(10), 0.0f);
+
+		// the range is derived from the items, if not given
+		final OSCTypedBlob derived = new OSCTypedBlob('q', Arrays.<Object>asList(10.0f, 20.0f, 15.0f));
+		final float[] derivedItems = new OSCTypedBlob('q', 3, derived.write()).toFloatArray();
+		Assert.assertEquals(10.0f, derivedItems[0], 0.001f);
+		Assert.assertEquals(20.0f, derivedItems[1], 0.001f);
+		Assert.assertEquals(15.0f, derivedItems[2], 0.001f);
+	}
+
+	@Test
+	public void testQuantizedClampsToRange() {
+		final float[] decoded = new OSCTypedBlob('q', 2,
+				new OSCTypedBlob(new float[] {-3.0f, 3.0f}, -1.0f, 1.0f).write()).toFloatArray();
+		Assert.assertEquals(-1.0f, decoded[0], 0.0001f);
+		Assert.assertEquals(1.0f, decoded[1], 0.0001f);
+	}
+
+	@Test
+	public void testReducedTypesThroughConverters() {
+		final short[] shorts = new short[] {1, -2, 3};
+		final float[] floats = new float[] {0.25f, -0.5f, 0.75f};
+		for (final OSCMessage message : new OSCMessage[] {new OSCMessage("/frame"), new OSCPackMessage("/frame")}) {
+			message.add(new OSCTypedBlob(new byte[] {7, 8, 9}));
+			message.add(new OSCTypedBlob(shorts));
+			message.add(new OSCTypedBlob(floats, -1.0f, 1.0f));
+			final byte[] bytes = message.getByteArray();
+			final OSCMessage received = (message instanceof OSCPackMessage)
+					? (OSCMessage) new OSCPackByteArrayToJavaConverter().convert(bytes, bytes.length)
+					: (OSCMessage) new OSCByteBufferToJavaConverter().convert(bytes, bytes.length);
+			Assert.assertTrue(Arrays.equals(new byte[] {7, 8, 9}, ((OSCTypedBlob) received.getArgument(0)).toByteArray()));
+			Assert.assertTrue(Arrays.equals(shorts, ((OSCTypedBlob) received.getArgument(1)).toShortArray()));
+			final float[] decoded = ((OSCTypedBlob) received.getArgument(2)).toFloatArray();
+			for (int fi = 0; fi < floats.length; fi++) {
+				Assert.assertEquals(floats[fi], decoded[fi], 0.0001f);
+			}
+		}
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc.utility;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @see AsyncTraceSink
+ */
+public class AsyncTraceSinkTest {
+
+	/** Collects events, optionally waiting for a latch first. */
+	private static class CollectingSink implements TraceSink {
+
+		private final List<TraceEvent> events = new ArrayList<TraceEvent>();
+		private final CountDownLatch gate;
+
+		CollectingSink(CountDownLatch gate) {
+			this.gate = gate;
+		}
+
+		@Override
+		public void accept(TraceEvent event) {
+			try {
+				gate.await();
+			} catch (InterruptedException ex) {
+				throw new RuntimeException(ex);
+			}
+			synchronized (events) {
+				events.add(event);
+			}
+		}
+	}
+
+	@Test
+	public void testCapacityIsPowerOfTwo() {
+		final AsyncTraceSink sink = new AsyncTraceSink(new CollectingSink(new CountDownLatch(0)), 100);
+		Assert.assertEquals(128, sink.getCapacity());
+		sink.close();
+	}
+
+	@Test
+	public void testAllEventsInOrderFromManyThreads() throws Exception {
+		final int numThreads = 4;
+		final int numEvents = 1000;
+		final CollectingSink target = new CollectingSink(new CountDownLatch(0));
+		final AsyncTraceSink sink = new AsyncTraceSink(target, numThreads * numEvents);
+
+		final Thread[] threads = new Thread[numThreads];
+		for (int ti = 0; ti < numThreads; ti++) {
+			final String source = "thread" + ti;
+			threads[ti] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int ei = 0; ei < numEvents; ei++) {
+						sink.accept(new TraceEvent(Trace.PACKET_IN, source, String.valueOf(ei), null));
+					}
+				}
+			});
+			threads[ti].start();
+		}
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+		Assert.assertTrue(sink.flush(5000));
+		sink.close();
+
+		Assert.assertEquals(0, sink.getDroppedCount());
+		Assert.assertEquals(numThreads * numEvents, target.events.size());
+		// events of each thread arrive in the order they were emitted
+		final int[] next = new int[numThreads];
+		for (final TraceEvent event : target.events) {
+			final int thread = Integer.parseInt(event.getSource().substring("thread".length()));
+			Assert.assertEquals(String.valueOf(next[thread]), event.getText());
+			next[thread]++;
+		}
+	}
+
+	@Test
+	public void testDropsWhenFull() throws Exception {
+		final CountDownLatch gate = new CountDownLatch(1);
+		final CollectingSink target = new CollectingSink(gate);
+		final AsyncTraceSink sink = new AsyncTraceSink(target, 8);
+
+		// the writer takes one event, and then waits at the gate
+		for (int ei = 0; ei < 20; ei++) {
+			sink.accept(new TraceEvent(Trace.PACKET_OUT, "test", String.valueOf(ei), null));
+		}
+		gate.countDown();
+		Assert.assertTrue(sink.flush(5000));
+		sink.close();
+
+		Assert.assertEquals(20, target.events.size() + sink.getDroppedCount());
+		Assert.assertTrue(sink.getDroppedCount() >= 20 - 8 - 1);
+		Assert.assertEquals("0", target.events.get(0).getText());
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc.utility;
+
+import com.illposed.osc.OSCBundle;
+import com.illposed.osc.OSCMessage;
+import java.nio.ByteBuffer;
+
+/**
+ * Runs a very basic benchmark test to compare the decoding speed of
+ * {@link OSCByteArrayToJavaConverter} (BigInteger based number reads)
+ * and {@link OSCByteBufferToJavaConverter} (primitive big-endian reads).
+ */
+public class BenchmarkByteBufferVsByteArrayConverter {
+
+	/** Keeps the JIT from removing the conversions. */
+	private static int sink;
+
+	public static void main(String[] args) {
+
+		final int numPackets = 1000000;
+		final int numTestRuns = 10;
+
+		runBenchmark(numPackets, numTestRuns);
+	}
+
+	private static byte[] createMessage() {
+		final OSCMessage message = new OSCMessage("/mixer/ch/12/gain");
+		message.addArgument(12);
+		message.addArgument(0.75f);
+		message.addArgument(0.5f);
+		message.addArgument(123456789L);
+		message.addArgument(0.125d);
+		return message.getByteArray();
+	}
+
+	private static byte[] createBundle() {
+		final OSCBundle bundle = new OSCBundle();
+		for (int mi = 0; mi < 8; mi++) {
+			final OSCMessage message = new OSCMessage("/mixer/ch/" + mi + "/gain");
+			message.addArgument(mi);
+			message.addArgument(mi * 0.1f);
+			bundle.addPacket(message);
+		}
+		return bundle.getByteArray();
+	}
+
+	public static void runBenchmark(final int numPackets, final int numTestRuns) {
+
+		final byte[] message = createMessage();
+		final byte[] bundle = createBundle();
+
+		final OSCByteArrayToJavaConverter arrayConverter = new OSCByteArrayToJavaConverter();
+		final OSCByteBufferToJavaConverter bufferConverter = new OSCByteBufferToJavaConverter();
+		final ByteBuffer view = ByteBuffer.allocateDirect(bundle.length);
+
+		System.err.printf("Running 'byte array' benchmark %d times (%d packets) ...\n", numTestRuns, numPackets);
+		long start = System.currentTimeMillis();
+		for (int tri = 0; tri < numTestRuns; tri++) {
+			for (int pi = 0; pi < numPackets; pi++) {
+				final byte[] bytes = ((pi & 7) == 0) ? bundle : message;
+				sink += arrayConverter.convert(bytes, bytes.length).hashCode();
+			}
+		}
+		final long timeArray = (System.currentTimeMillis() - start) / numTestRuns;
+		System.err.printf("Average time 'byte array':           %d ms\n", timeArray);
+
+		System.err.printf("Running 'byte buffer' benchmark %d times (%d packets) ...\n", numTestRuns, numPackets);
+		start = System.currentTimeMillis();
+		for (int tri = 0; tri < numTestRuns; tri++) {
+			for (int pi = 0; pi < numPackets; pi++) {
+				final byte[] bytes = ((pi & 7) == 0) ? bundle : message;
+				sink += bufferConverter.convert(bytes, bytes.length).hashCode();
+			}
+		}
+		final long timeBuffer = (System.currentTimeMillis() - start) / numTestRuns;
+		System.err.printf("Average time 'byte buffer':          %d ms\n", timeBuffer);
+
+		System.err.printf("Running 'direct byte buffer' benchmark %d times (%d packets) ...\n", numTestRuns, numPackets);
+		start = System.currentTimeMillis();
+		for (int tri = 0; tri < numTestRuns; tri++) {
+			for (int pi = 0; pi < numPackets; pi++) {
+				final byte[] bytes = ((pi & 7) == 0) ? bundle : message;
+				view.clear();
+				view.put(bytes);
+				view.flip();
+				sink += bufferConverter.convert(view).hashCode();
+			}
+		}
+		final long timeDirect = (System.currentTimeMillis() - start) / numTestRuns;
+		System.err.printf("Average time 'direct byte buffer':   %d ms\n", timeDirect);
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc.utility;
+
+import com.illposed.osc.OSCBundle;
+import com.illposed.osc.OSCListener;
+import com.illposed.osc.OSCMessage;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Schedules many future dated bundles with {@link OSCSchedulingPacketDispatcher},
+ * and reports how far from their time-tag they were released.
+ */
+public class BenchmarkSchedulerJitter {
+
+	public static void main(String[] args) throws Exception {
+
+		final int numBundles = 2000;
+		final int maxDelayMillis = 2000;
+
+		runBenchmark(numBundles, maxDelayMillis);
+	}
+
+	public static void runBenchmark(final int numBundles, final int maxDelayMillis) throws Exception {
+
+		final long[] expectedNanos = new long[numBundles];
+		final long[] releasedNanos = new long[numBundles];
+		final CountDownLatch done = new CountDownLatch(numBundles);
+
+		final OSCSchedulingPacketDispatcher dispatcher = new OSCSchedulingPacketDispatcher();
+		dispatcher.addListener(new OSCPatternAddressSelector("/jitter"), new OSCListener() {
+			@Override
+			public void acceptMessage(Date time, OSCMessage message) {
+				final int index = (Integer) message.getArguments().get(0);
+				releasedNanos[index] = System.nanoTime();
+				done.countDown();
+			}
+		});
+
+		System.err.printf("Scheduling %d bundles over %d ms ...\n", numBundles, maxDelayMillis);
+		final long clockOffsetNanos = OSCSchedulingPacketDispatcher.clockOffsetNanos();
+		final Random random = new Random(0);
+		for (int bi = 0; bi < numBundles; bi++) {
+			final long dueMillis = System.currentTimeMillis() + 10 + random.nextInt(maxDelayMillis);
+			expectedNanos[bi] = dueMillis * 1000000L + clockOffsetNanos;
+			final OSCBundle bundle = new OSCBundle(new Date(dueMillis));
+			bundle.addPacket(new OSCMessage("/jitter").add(bi));
+			dispatcher.dispatchPacket(bundle);
+		}
+		done.await();
+		dispatcher.shutdown();
+
+		final long[] jitterMicros = new long[numBundles];
+		for (int bi = 0; bi < numBundles; bi++) {
+			jitterMicros[bi] = (releasedNanos[bi] - expectedNanos[bi]) / 1000;
+		}
+		Arrays.sort(jitterMicros);
+		System.err.printf("Release time relative to time-tag (micro-seconds):\n");
+		System.err.printf("min: %d  median: %d  99%%: %d  max: %d\n",
+				jitterMicros[0],
+				jitterMicros[numBundles / 2],
+				jitterMicros[numBundles * 99 / 100],
+				jitterMicros[numBundles - 1]);
+	}
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc.utility;
+
+import com.illposed.osc.OSCListener;
+import com.illposed.osc.OSCMessage;
+import java.util.Date;
+
+/**
+ * Runs a very basic benchmark test to compare the dispatch speed of
+ * {@link OSCShortcutPacketDispatcher} (asks every selector)
+ * and {@link OSCTriePacketDispatcher} (looks the address up in a trie),
+ * with many registered listeners.
+ */
+public class BenchmarkTrieVsLinearDispatcher {
+
+	/** Keeps the JIT from removing the dispatching. */
+	private static int sink;
+
+	public static void main(String[] args) {
+
+		final int numChannels = 1000;
+		final int numMessages = 100000;
+		final int numTestRuns = 5;
+
+		runBenchmark(numChannels, numMessages, numTestRuns);
+	}
+
+	private static void addListeners(final OSCPacketDispatcher dispatcher, final int numChannels) {
+		final OSCListener listener = new OSCListener() {
+			@Override
+			public void acceptMessage(Date time, OSCMessage message) {
+				sink++;
+			}
+		};
+		for (int ci = 0; ci < numChannels; ci++) {
+			dispatcher.addListener(new OSCPatternAddressSelector("/mixer/ch/" + ci + "/gain"), listener);
+			dispatcher.addListener(new OSCPatternAddressSelector("/mixer/ch/" + ci + "/pan"), listener);
+		}
+		dispatcher.addListener(new OSCPatternAddressSelector("/mixer/ch/*/mute"), listener);
+		dispatcher.addListener(new OSCPatternAddressSelector("//meter"), listener);
+	}
+
+	private static long timeDispatch(final OSCPacketDispatcher dispatcher, final OSCMessage[] messages,
+			final int numMessages, final int numTestRuns)
+	{
+		final long start = System.currentTimeMillis();
+		for (int tri = 0; tri < numTestRuns; tri++) {
+			for (int mi = 0; mi < numMessages; mi++) {
+				dispatcher.dispatchPacket(messages[mi % messages.length]);
+			}
+		}
+		return (System.currentTimeMillis() - start) / numTestRuns;
+	}
+
+	public static void runBenchmark(final int numChannels, final int numMessages, final int numTestRuns) {
+
+		final OSCMessage[] messages = new OSCMessage[numChannels];
+		for (int ci = 0; ci < numChannels; ci++) {
+			final String suffix = ((ci & 3) == 0) ? "/mute" : "/gain";
+			messages[ci] = new OSCMessage("/mixer/ch/" + ci + suffix);
+		}
+
+		final OSCPacketDispatcher linear = new OSCShortcutPacketDispatcher();
+		addListeners(linear, numChannels);
+		final OSCPacketDispatcher trie = new OSCTriePacketDispatcher();
+		addListeners(trie, numChannels);
+
+		System.err.printf("Running 'linear' benchmark %d times (%d messages, %d listeners) ...\n",
+				numTestRuns, numMessages / 100, 2 * numChannels + 2);
+		final long timeLinear = timeDispatch(linear, messages, numMessages / 100, numTestRuns);
+		System.err.printf("Average time 'linear' (x100):  %d ms\n", timeLinear * 100);
+
+		System.err.printf("Running 'trie' benchmark %d times (%d messages, %d listeners) ...\n",
+				numTestRuns, numMessages, 2 * numChannels + 2);
+		final long timeTrie = timeDispatch(trie, messages, numMessages, numTestRuns);
+		System.err.printf("Average time 'trie':           %d ms\n", timeTrie);
+
+		System.err.println(sink == 0 ? "" : "done");
+	}
+}
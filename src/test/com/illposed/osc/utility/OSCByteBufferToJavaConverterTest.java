@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc.utility;
+
+import com.illposed.osc.OSCBundle;
+import com.illposed.osc.OSCMessage;
+import com.illposed.osc.OSCPacket;
+import com.illposed.osc.OSCTypedBlob;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @see OSCByteBufferToJavaConverter
+ */
+public class OSCByteBufferToJavaConverterTest {
+
+	private OSCByteBufferToJavaConverter converter;
+
+	@Before
+	public void setUp() {
+		converter = new OSCByteBufferToJavaConverter();
+	}
+
+	private static OSCMessage createMessage() {
+		final OSCMessage message = new OSCMessage("/s_new");
+		message.addArgument(1001);
+		message.addArgument("freq");
+		message.addArgument(440.0f);
+		message.addArgument(-3L);
+		message.addArgument(0.25d);
+		message.addArgument('x');
+		message.addArgument(new byte[] {1, 2, 3});
+		message.addArgument(Boolean.TRUE);
+		return message;
+	}
+
+	private static void checkArguments(final List<Object> expected, final List<Object> observed) {
+		Assert.assertEquals(expected.size(), observed.size());
+		for (int ai = 0; ai < expected.size(); ai++) {
+			final Object exp = expected.get(ai);
+			final Object obs = observed.get(ai);
+			if (exp instanceof byte[]) {
+				Assert.assertArrayEquals((byte[]) exp, (byte[]) obs);
+			} else {
+				Assert.assertEquals(exp, obs);
+			}
+		}
+	}
+
+	@Test
+	public void testReadShortestPacketWithoutArgumentsSeparator() {
+		final byte[] bytes = {47, 0, 0, 0};
+		final OSCMessage packet = (OSCMessage) converter.convert(bytes, bytes.length);
+		Assert.assertEquals("/", packet.getAddress());
+	}
+
+	@Test
+	public void testReadComplexPacket() {
+		final byte[] bytes = {0x2F, 0x73, 0x5F, 0x6E, 0x65, 0x77, 0, 0, 0x2C, 0x69, 0x73, 0x66, 0, 0, 0, 0, 0, 0, 0x3, (byte) 0xE9, 0x66, 0x72, 0x65, 0x71, 0, 0, 0, 0, 0x43, (byte) 0xDC, 0, 0};
+
+		final OSCMessage packet = (OSCMessage) converter.convert(bytes, bytes.length);
+		Assert.assertEquals("/s_new", packet.getAddress());
+		final List<Object> arguments = packet.getArguments();
+		Assert.assertEquals(3, arguments.size());
+		Assert.assertEquals(Integer.valueOf(1001), arguments.get(0));
+		Assert.assertEquals("freq", arguments.get(1));
+		Assert.assertEquals(Float.valueOf(440.0f), arguments.get(2));
+	}
+
+	@Test
+	public void testSameResultAsByteArrayConverter() {
+		final OSCMessage message = createMessage();
+		final byte[] bytes = message.getByteArray();
+
+		final OSCMessage expected = (OSCMessage) new OSCByteArrayToJavaConverter().convert(bytes, bytes.length);
+		final OSCMessage observed = (OSCMessage) converter.convert(bytes, bytes.length);
+
+		Assert.assertEquals(expected.getAddress(), observed.getAddress());
+		Assert.assertEquals(expected.getTypetagString(), observed.getTypetagString());
+		checkArguments(expected.getArguments(), observed.getArguments());
+	}
+
+	@Test
+	public void testReadFromDirectBufferWithOffset() {
+		final OSCMessage message = createMessage();
+		final byte[] bytes = message.getByteArray();
+
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length + 12);
+		buffer.position(6);
+		buffer.put(bytes);
+		buffer.flip();
+		buffer.position(6);
+
+		final OSCMessage observed = (OSCMessage) converter.convert(buffer);
+		Assert.assertEquals(message.getAddress(), observed.getAddress());
+		checkArguments(message.getArguments(), observed.getArguments());
+		Assert.assertFalse(buffer.hasRemaining());
+	}
+
+	@Test
+	public void testReadBundle() {
+		final byte[] bytes = {0x23, 0x62, 0x75, 0x6E, 0x64, 0x6C, 0x65, 0, 0, 0, 0, 0, 0, 0, 0, 1, 0, 0, 0, 0x0C, 0X2F, 0x74, 0x65, 0x73, 0x74, 0, 0, 0, 0x2C, 0, 0, 0};
+
+		final OSCBundle bundle = (OSCBundle) converter.convert(bytes, bytes.length);
+		Assert.assertEquals(new Date(0), bundle.getTimestamp());
+		final List<OSCPacket> packets = bundle.getPackets();
+		Assert.assertEquals(1, packets.size());
+		Assert.assertEquals("/test", ((OSCMessage) packets.get(0)).getAddress());
+	}
+
+	@Test
+	public void testReadNestedBundle() {
+		final OSCBundle inner = new OSCBundle();
+		inner.addPacket(createMessage());
+		inner.addPacket(new OSCMessage("/inner/second"));
+		final OSCBundle outer = new OSCBundle();
+		outer.addPacket(new OSCMessage("/outer/first"));
+		outer.addPacket(inner);
+		outer.addPacket(new OSCMessage("/outer/last"));
+		final byte[] bytes = outer.getByteArray();
+
+		final OSCBundle observed = (OSCBundle) converter.convert(bytes, bytes.length);
+		final List<OSCPacket> packets = observed.getPackets();
+		Assert.assertEquals(3, packets.size());
+		Assert.assertEquals("/outer/first", ((OSCMessage) packets.get(0)).getAddress());
+		Assert.assertEquals("/outer/last", ((OSCMessage) packets.get(2)).getAddress());
+		final List<OSCPacket> innerPackets = ((OSCBundle) packets.get(1)).getPackets();
+		Assert.assertEquals(2, innerPackets.size());
+		checkArguments(createMessage().getArguments(), ((OSCMessage) innerPackets.get(0)).getArguments());
+		Assert.assertEquals("/inner/second", ((OSCMessage) innerPackets.get(1)).getAddress());
+	}
+
+	@Test
+	public void testLazyMessageDecodesOnAccess() {
+		final OSCMessage message = createMessage();
+		message.addArgument(new OSCTypedBlob('i', Arrays.<Object>asList(1, 2, 3)));
+		message.addArgument("last");
+		final byte[] bytes = message.getByteArray();
+
+		converter.setLazy(true);
+		final byte[] received = bytes.clone();
+		final OSCMessage lazy = (OSCMessage) converter.convert(received, received.length);
+		// the receive buffer may be re-used right away
+		Arrays.fill(received, (byte) 0);
+
+		Assert.assertTrue(lazy instanceof OSCLazyMessage);
+		Assert.assertEquals(message.getAddress(), lazy.getAddress());
+		Assert.assertEquals("isfhdcbTBs", lazy.getTypetagString());
+		// access backwards, so the offsets are found on the way
+		final List<Object> arguments = lazy.getArguments();
+		Assert.assertEquals(10, arguments.size());
+		Assert.assertEquals("last", arguments.get(9));
+		final OSCTypedBlob typedBlob = (OSCTypedBlob) arguments.get(8);
+		Assert.assertEquals(Arrays.<Object>asList(1, 2, 3), typedBlob.parseItems());
+		checkArguments(createMessage().getArguments(), arguments.subList(0, 8));
+		Assert.assertArrayEquals(bytes, lazy.getByteArray());
+	}
+
+	@Test
+	public void testLazyMessagesInBundle() {
+		final OSCBundle bundle = new OSCBundle();
+		bundle.addPacket(new OSCMessage("/first").add(1).add("one"));
+		bundle.addPacket(new OSCMessage("/second").add(2.0f).add("two"));
+		final byte[] bytes = bundle.getByteArray();
+
+		converter.setLazy(true);
+		final OSCBundle observed = (OSCBundle) converter.convert(bytes, bytes.length);
+		final OSCMessage second = (OSCMessage) observed.getPackets().get(1);
+		final OSCMessage first = (OSCMessage) observed.getPackets().get(0);
+		Assert.assertEquals("two", second.getArguments().get(1));
+		Assert.assertEquals(Float.valueOf(2.0f), second.getArguments().get(0));
+		Assert.assertEquals("one", first.getArguments().get(1));
+		Assert.assertEquals(Integer.valueOf(1), first.getArguments().get(0));
+		Assert.assertArrayEquals(new OSCMessage("/first").add(1).add("one").getByteArray(), first.getByteArray());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testLazyMessageIsReadOnly() {
+		final byte[] bytes = new OSCMessage("/a").add(1).getByteArray();
+		converter.setLazy(true);
+		final OSCMessage lazy = (OSCMessage) converter.convert(bytes, bytes.length);
+		lazy.addArgument(2);
+	}
+
+	@Test
+	public void testPrimitiveAccessors() {
+		final byte[] bytes = new OSCMessage("/a").add("skip").addInt(1).addLong(2L)
+				.addFloat(3.0f).addDouble(4.0d).getByteArray();
+		for (final boolean lazy : new boolean[] {false, true}) {
+			converter.setLazy(lazy);
+			final OSCMessage message = (OSCMessage) converter.convert(bytes, bytes.length);
+			Assert.assertEquals(5, message.getArgumentCount());
+			Assert.assertEquals(4.0d, message.getDouble(4), 0.0d);
+			Assert.assertEquals(1, message.getInt(1));
+			Assert.assertEquals(2L, message.getLong(2));
+			Assert.assertEquals(3.0f, message.getFloat(3), 0.0f);
+			Assert.assertEquals("skip", message.getArgument(0));
+		}
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc.utility;
+
+import com.illposed.osc.AbstractOSCPacket;
+import com.illposed.osc.OSCBundle;
+import com.illposed.osc.OSCImpulse;
+import com.illposed.osc.OSCMessage;
+import com.illposed.osc.OSCMessageTest;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @see OSCJavaToByteBufferConverter
+ */
+public class OSCJavaToByteBufferConverterTest {
+
+	private static byte[] encode(final AbstractOSCPacket packet, final OSCJavaToByteBufferConverter stream) {
+		stream.clear();
+		packet.writeTo(stream);
+		final ByteBuffer buffer = stream.toByteBuffer();
+		final byte[] result = new byte[buffer.remaining()];
+		buffer.get(result);
+		return result;
+	}
+
+	private static OSCMessage createMessage() {
+		final List<Object> array = new ArrayList<Object>();
+		array.add(1);
+		array.add("two");
+
+		final OSCMessage message = new OSCMessage("/mixer/ch/12/gain");
+		message.addArgument(1001);
+		message.addArgument(0.75f);
+		message.addArgument(123456789L);
+		message.addArgument(0.125d);
+		message.addArgument("hello");
+		message.addArgument('a');
+		message.addArgument(new byte[] {1, 2, 3, 4, 5});
+		message.addArgument(Boolean.FALSE);
+		message.addArgument(null);
+		message.addArgument(OSCImpulse.INSTANCE);
+		message.addArgument(new Date(1000000000L));
+		message.addArgument(array);
+		return message;
+	}
+
+	@Test
+	public void testMessageSameAsByteArrayConverter() {
+		final OSCMessage message = createMessage();
+		final byte[] result = encode(message, new OSCJavaToByteBufferConverter());
+		OSCMessageTest.checkResultEqualsAnswer(result, createMessage().getByteArray());
+	}
+
+	@Test
+	public void testNonAsciiString() {
+		final OSCMessage message = new OSCMessage("/text");
+		message.addArgument("grüße");
+		message.setCharset(Charset.forName("UTF-8"));
+		final byte[] result = encode(message, new OSCJavaToByteBufferConverter());
+
+		final OSCMessage answer = new OSCMessage("/text");
+		answer.addArgument("grüße");
+		answer.setCharset(Charset.forName("UTF-8"));
+		OSCMessageTest.checkResultEqualsAnswer(result, answer.getByteArray());
+	}
+
+	@Test
+	public void testBundleSameAsByteArrayConverter() {
+		final OSCBundle bundle = new OSCBundle(new Date(1000000000L));
+		bundle.addPacket(createMessage());
+		bundle.addPacket(new OSCMessage("/second"));
+		final byte[] result = encode(bundle, new OSCJavaToByteBufferConverter(16, true));
+
+		final OSCBundle answer = new OSCBundle(new Date(1000000000L));
+		answer.addPacket(createMessage());
+		answer.addPacket(new OSCMessage("/second"));
+		OSCMessageTest.checkResultEqualsAnswer(result, answer.getByteArray());
+	}
+
+	@Test
+	public void testGrowAndReuse() {
+		final OSCJavaToByteBufferConverter stream = new OSCJavaToByteBufferConverter(8, false);
+		final OSCMessage large = new OSCMessage("/large");
+		large.addArgument(new byte[5000]);
+		Assert.assertEquals(large.getByteArray().length, encode(large, stream).length);
+
+		final OSCMessage small = new OSCMessage("/small");
+		small.addArgument(1);
+		OSCMessageTest.checkResultEqualsAnswer(encode(small, stream), small.getByteArray());
+	}
+}
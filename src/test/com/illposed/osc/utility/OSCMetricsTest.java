@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc.utility;
+
+import com.illposed.osc.OSCMessage;
+import com.illposed.osc.SimpleOSCListener;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @see OSCMetrics
+ * @see Counter
+ * @see Histogram
+ */
+public class OSCMetricsTest {
+
+	@Test
+	public void testCounterFromManyThreads() throws Exception {
+		final Counter counter = new Counter();
+		final int numThreads = 4;
+		final int numIncrements = 10000;
+		final Thread[] threads = new Thread[numThreads];
+		for (int ti = 0; ti < numThreads; ti++) {
+			threads[ti] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int ii = 0; ii < numIncrements; ii++) {
+						counter.increment();
+					}
+				}
+			});
+			threads[ti].start();
+		}
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+		counter.add(5);
+		Assert.assertEquals(numThreads * numIncrements + 5, counter.get());
+	}
+
+	@Test
+	public void testHistogramBuckets() {
+		long previous = -1;
+		for (int bi = 0; bi < 960; bi++) {
+			final long highest = Histogram.highestValueOf(bi);
+			Assert.assertEquals(bi, Histogram.bucketOf(previous + 1));
+			Assert.assertEquals(bi, Histogram.bucketOf(highest));
+			previous = highest;
+		}
+		Assert.assertEquals(Long.MAX_VALUE, previous);
+	}
+
+	@Test
+	public void testHistogramPercentiles() {
+		final Histogram histogram = new Histogram();
+		Assert.assertEquals(0, histogram.getValueAtPercentile(99));
+		for (long value = 1; value <= 1000; value++) {
+			histogram.record(value * 1000);
+		}
+		final Histogram.Snapshot snapshot = histogram.snapshot();
+		Assert.assertEquals(1000, snapshot.getCount());
+		Assert.assertEquals(1000000, snapshot.getMax());
+		Assert.assertEquals(500500.0, snapshot.getMean(), 0.001);
+		// buckets are at most 1/16 wide
+		Assert.assertEquals(500000, snapshot.get50thPercentile(), 500000 / 16);
+		Assert.assertEquals(990000, snapshot.get99thPercentile(), 990000 / 16);
+		Assert.assertTrue(snapshot.get50thPercentile() >= 500000);
+		Assert.assertTrue(snapshot.get999thPercentile() <= 1000000);
+	}
+
+	@Test
+	public void testListenerLatency() {
+		final OSCMetrics metrics = new OSCMetrics();
+		final OSCPacketDispatcher dispatcher = new OSCTriePacketDispatcher();
+		dispatcher.setMetrics(metrics);
+		final SimpleOSCListener listener1 = new SimpleOSCListener();
+		final SimpleOSCListener listener2 = new SimpleOSCListener();
+		dispatcher.addListener(new OSCPatternAddressSelector("/a"), listener1);
+		dispatcher.addListener(new OSCPatternAddressSelector("/*"), listener2);
+
+		dispatcher.dispatchPacket(new OSCMessage("/a"));
+		dispatcher.dispatchPacket(new OSCMessage("/b"));
+
+		Assert.assertEquals(3, metrics.getDispatchCount());
+		Assert.assertEquals(1, metrics.getDispatchLatency(listener1).getCount());
+		Assert.assertEquals(2, metrics.getDispatchLatency(listener2).getCount());
+		Assert.assertEquals(2, metrics.snapshot().getListenerLatency().size());
+	}
+
+	@Test
+	public void testRemovedListenerForgotten() {
+		final OSCMetrics metrics = new OSCMetrics();
+		final OSCPacketDispatcher dispatcher = new OSCTriePacketDispatcher();
+		dispatcher.setMetrics(metrics);
+		final SimpleOSCListener listener = new SimpleOSCListener();
+		final OSCPatternAddressSelector selectorA = new OSCPatternAddressSelector("/a");
+		final OSCPatternAddressSelector selectorB = new OSCPatternAddressSelector("/b");
+		dispatcher.addListener(selectorA, listener);
+		dispatcher.addListener(selectorB, listener);
+		dispatcher.dispatchPacket(new OSCMessage("/a"));
+
+		dispatcher.removeListener(selectorA);
+		Assert.assertNotNull(metrics.getDispatchLatency(listener));
+
+		dispatcher.removeListener(selectorB);
+		Assert.assertNull(metrics.getDispatchLatency(listener));
+		Assert.assertTrue(metrics.snapshot().getListenerLatency().isEmpty());
+		Assert.assertEquals(1, metrics.getDispatchCount());
+	}
+
+	@Test
+	public void testUnknownTypeTag() {
+		final OSCMetrics metrics = new OSCMetrics();
+		final OSCByteBufferToJavaConverter converter = new OSCByteBufferToJavaConverter();
+		converter.setMetrics(metrics);
+		final byte[] bytes = {'/', 'a', 0, 0, ',', 'x', 'N', 0};
+
+		final OSCMessage message = (OSCMessage) converter.convert(ByteBuffer.wrap(bytes), "", 0);
+
+		Assert.assertEquals("/a", message.getAddress());
+		Assert.assertEquals(1, metrics.getUnknownTypeTags());
+	}
+
+	@Test
+	public void testSnapshotAndGauge() throws Exception {
+		final OSCMetrics metrics = new OSCMetrics();
+		metrics.setQueueDepth(new OSCMetrics.Gauge() {
+			@Override
+			public long getValue() {
+				return 7;
+			}
+		});
+		final OSCMetricsSnapshot before = metrics.snapshot();
+		Thread.sleep(10);
+		metrics.packetReceived(100);
+		metrics.packetReceived(20);
+		metrics.packetDropped();
+		metrics.decodeFailed();
+		final OSCMetricsSnapshot after = metrics.snapshot();
+
+		Assert.assertEquals(0, before.getPacketsIn());
+		Assert.assertEquals(2, after.getPacketsIn());
+		Assert.assertEquals(120, after.getBytesIn());
+		Assert.assertEquals(1, after.getPacketsDropped());
+		Assert.assertEquals(1, after.getDecodeFailures());
+		Assert.assertEquals(7, after.getQueueDepth());
+		Assert.assertTrue(after.getPacketsInPerSecond(before) > 0);
+	}
+
+	@Test
+	public void testRegisterMBean() throws Exception {
+		final OSCMetrics metrics = new OSCMetrics();
+		metrics.packetSent(42);
+		final ObjectName name = metrics.registerMBean("test");
+		try {
+			final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			Assert.assertEquals(1L, server.getAttribute(name, "PacketsOut"));
+			Assert.assertEquals(42L, server.getAttribute(name, "BytesOut"));
+		} finally {
+			metrics.unregisterMBean();
+		}
+		Assert.assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+	}
+}
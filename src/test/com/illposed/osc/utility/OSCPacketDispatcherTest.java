@@ -86,4 +86,19 @@ public class OSCPacketDispatcherTest {
 			Assert.fail("Bundle didn't dispatch message to listener 2");
 		}
 	}
+
+	@Test
+	public void testRemoveListenerByPattern() {
+		final SimpleOSCListener listener3 = new SimpleOSCListener();
+		dispatcher.addListener(new OSCPatternAddressSelector("/listener1"), listener3);
+		dispatcher.removeListener("/listener1");
+		dispatcher.dispatchPacket(new OSCMessage("/listener1"));
+		dispatcher.dispatchPacket(new OSCMessage("/listener2"));
+		if (listener1.isMessageReceived() || listener3.isMessageReceived()) {
+			Assert.fail("Message got dispatched to a removed listener");
+		}
+		if (!listener2.isMessageReceived()) {
+			Assert.fail("Removing by pattern removed an unrelated listener");
+		}
+	}
 }
@@ -429,4 +429,15 @@ public class OSCPatternAddressSelectorTest {
 		Assert.assertTrue( matcher.matches("/my/few/cents/hello/thats/two/or/three/no/two/cents/too"));
 		Assert.assertFalse(matcher.matches("/my/few/cents/hello/thats/two/or/three/no/two/bad/cents/too"));
 	}
+
+	@Test
+	public void testFixedAddress() {
+
+		Assert.assertEquals("/hello/world", new OSCPatternAddressSelector("/hello/world").getFixedAddress());
+		Assert.assertEquals("/hello/world", new OSCPatternAddressSelector("/hello/world/").getFixedAddress());
+		Assert.assertEquals("/", new OSCPatternAddressSelector("/").getFixedAddress());
+		Assert.assertNull(new OSCPatternAddressSelector("/hello/*").getFixedAddress());
+		Assert.assertNull(new OSCPatternAddressSelector("/hello/{a,b}").getFixedAddress());
+		Assert.assertNull(new OSCPatternAddressSelector("/hello//world").getFixedAddress());
+	}
 }
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc.utility;
+
+import com.illposed.osc.OSCBundle;
+import com.illposed.osc.OSCListener;
+import com.illposed.osc.OSCMessage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @see OSCSchedulingPacketDispatcher
+ */
+public class OSCSchedulingPacketDispatcherTest {
+
+	private OSCSchedulingPacketDispatcher dispatcher;
+
+	/** Records the addresses and delivery times of all messages. */
+	private static class RecordingListener implements OSCListener {
+
+		private final List<String> addresses = Collections.synchronizedList(new ArrayList<String>());
+		private final List<Long> deliveryTimes = Collections.synchronizedList(new ArrayList<Long>());
+
+		@Override
+		public void acceptMessage(Date time, OSCMessage message) {
+			deliveryTimes.add(System.currentTimeMillis());
+			addresses.add(message.getAddress());
+		}
+	}
+
+	private RecordingListener createDispatcher(OSCSchedulingPacketDispatcher.LatePolicy latePolicy) {
+		dispatcher = new OSCSchedulingPacketDispatcher(new OSCTriePacketDispatcher(), latePolicy);
+		final RecordingListener listener = new RecordingListener();
+		dispatcher.addListener(new OSCPatternAddressSelector("//*"), listener);
+		return listener;
+	}
+
+	private static OSCBundle bundle(Date timestamp, String address) {
+		final OSCBundle bundle = new OSCBundle(timestamp);
+		bundle.addPacket(new OSCMessage(address));
+		return bundle;
+	}
+
+	@After
+	public void tearDown() {
+		dispatcher.shutdown();
+	}
+
+	@Test
+	public void testImmediate() {
+		final RecordingListener listener = createDispatcher(OSCSchedulingPacketDispatcher.LatePolicy.DELIVER);
+
+		dispatcher.dispatchPacket(new OSCMessage("/message"));
+		dispatcher.dispatchPacket(bundle(OSCBundle.TIMESTAMP_IMMEDIATE, "/bundle"));
+
+		Assert.assertEquals(Arrays.asList("/message", "/bundle"), listener.addresses);
+		Assert.assertEquals(0, dispatcher.getScheduledCount());
+	}
+
+	@Test
+	public void testFutureBundle() throws Exception {
+		final RecordingListener listener = createDispatcher(OSCSchedulingPacketDispatcher.LatePolicy.DELIVER);
+
+		final long due = System.currentTimeMillis() + 100;
+		dispatcher.dispatchPacket(bundle(new Date(due), "/later"));
+		Assert.assertTrue(listener.addresses.isEmpty());
+		Assert.assertEquals(1, dispatcher.getScheduledCount());
+
+		Thread.sleep(300); // wait a bit
+		Assert.assertEquals(Arrays.asList("/later"), listener.addresses);
+		Assert.assertTrue(listener.deliveryTimes.get(0) >= due);
+		Assert.assertEquals(0, dispatcher.getScheduledCount());
+	}
+
+	@Test
+	public void testReleasedInTimeOrder() throws Exception {
+		final RecordingListener listener = createDispatcher(OSCSchedulingPacketDispatcher.LatePolicy.DELIVER);
+
+		final long now = System.currentTimeMillis();
+		dispatcher.dispatchPacket(bundle(new Date(now + 150), "/third"));
+		dispatcher.dispatchPacket(bundle(new Date(now + 50), "/first"));
+		dispatcher.dispatchPacket(bundle(new Date(now + 100), "/second"));
+		dispatcher.dispatchPacket(bundle(new Date(now + 100), "/second/too"));
+
+		Thread.sleep(350); // wait a bit
+		Assert.assertEquals(Arrays.asList("/first", "/second", "/second/too", "/third"), listener.addresses);
+	}
+
+	@Test
+	public void testNestedBundles() throws Exception {
+		final RecordingListener listener = createDispatcher(OSCSchedulingPacketDispatcher.LatePolicy.DROP);
+
+		final long now = System.currentTimeMillis();
+		final OSCBundle outer = bundle(new Date(now + 50), "/outer");
+		// may not be executed before the outer bundle
+		outer.addPacket(bundle(new Date(now - 1000), "/inner/early"));
+		outer.addPacket(bundle(new Date(now + 150), "/inner/late"));
+		dispatcher.dispatchPacket(outer);
+
+		Thread.sleep(100); // wait a bit
+		Assert.assertEquals(Arrays.asList("/outer", "/inner/early"), listener.addresses);
+		Assert.assertEquals(1, dispatcher.getScheduledCount());
+
+		Thread.sleep(200); // wait a bit more
+		Assert.assertEquals(Arrays.asList("/outer", "/inner/early", "/inner/late"), listener.addresses);
+		Assert.assertTrue(listener.deliveryTimes.get(2) >= now + 150);
+		Assert.assertEquals(0, dispatcher.getDroppedCount());
+	}
+
+	@Test
+	public void testLateDrop() {
+		final RecordingListener listener = createDispatcher(OSCSchedulingPacketDispatcher.LatePolicy.DROP);
+
+		dispatcher.dispatchPacket(bundle(new Date(System.currentTimeMillis() - 10), "/late"));
+
+		Assert.assertTrue(listener.addresses.isEmpty());
+		Assert.assertEquals(1, dispatcher.getDroppedCount());
+		Assert.assertEquals(0, dispatcher.getLateCount());
+	}
+
+	@Test
+	public void testLateCount() {
+		final RecordingListener listener = createDispatcher(OSCSchedulingPacketDispatcher.LatePolicy.COUNT);
+
+		dispatcher.dispatchPacket(bundle(new Date(System.currentTimeMillis() - 10), "/late"));
+
+		Assert.assertEquals(Arrays.asList("/late"), listener.addresses);
+		Assert.assertEquals(0, dispatcher.getDroppedCount());
+		Assert.assertEquals(1, dispatcher.getLateCount());
+	}
+
+	@Test
+	public void testLateDeliver() {
+		final RecordingListener listener = createDispatcher(OSCSchedulingPacketDispatcher.LatePolicy.DELIVER);
+
+		dispatcher.dispatchPacket(bundle(new Date(System.currentTimeMillis() - 10), "/late"));
+
+		Assert.assertEquals(Arrays.asList("/late"), listener.addresses);
+		Assert.assertEquals(0, dispatcher.getDroppedCount());
+		Assert.assertEquals(0, dispatcher.getLateCount());
+	}
+
+	@Test
+	public void testShutdownDoesNotInterruptListener() throws Exception {
+		createDispatcher(OSCSchedulingPacketDispatcher.LatePolicy.DELIVER);
+		final List<String> finished = Collections.synchronizedList(new ArrayList<String>());
+		dispatcher.addListener(new OSCPatternAddressSelector("/slow"), new OSCListener() {
+			@Override
+			public void acceptMessage(Date time, OSCMessage message) {
+				try {
+					Thread.sleep(200); // still busy when shut down
+					finished.add("done");
+				} catch (InterruptedException ex) {
+					finished.add("interrupted");
+				}
+			}
+		});
+
+		dispatcher.dispatchPacket(bundle(new Date(System.currentTimeMillis() + 20), "/slow"));
+		Thread.sleep(100); // wait for the listener to be called
+		dispatcher.shutdown();
+		Thread.sleep(250); // wait for the listener to finish
+		Assert.assertEquals(Arrays.asList("done"), finished);
+	}
+
+	@Test
+	public void testScheduleAfterShutdown() throws Exception {
+		final RecordingListener listener = createDispatcher(OSCSchedulingPacketDispatcher.LatePolicy.DELIVER);
+
+		dispatcher.dispatchPacket(bundle(new Date(System.currentTimeMillis() + 1000), "/discarded"));
+		dispatcher.shutdown();
+		dispatcher.dispatchPacket(bundle(new Date(System.currentTimeMillis() + 50), "/later"));
+
+		Thread.sleep(250); // wait a bit
+		Assert.assertEquals(Arrays.asList("/later"), listener.addresses);
+		Assert.assertEquals(0, dispatcher.getScheduledCount());
+	}
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc.utility;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @see OSCStreamDecoder
+ * @see OSCStreamFraming
+ */
+public class OSCStreamDecoderTest {
+
+	private static class Frames implements OSCStreamDecoder.FrameListener {
+
+		private final List<byte[]> frames = new ArrayList<byte[]>();
+
+		@Override
+		public void frameDecoded(ByteBuffer frame) {
+			final byte[] content = new byte[frame.remaining()];
+			frame.get(content);
+			frames.add(content);
+		}
+	}
+
+	private static final byte[] PLAIN = {'/', 'a', 0, 0, ',', 0, 0, 0};
+	/** contains the bytes SLIP has to escape */
+	private static final byte[] SPECIAL = {'/', 'b', 0, 0, ',', 'b', 0, 0,
+			0, 0, 0, 4, OSCStreamFraming.SLIP_END, OSCStreamFraming.SLIP_ESC,
+			OSCStreamFraming.SLIP_ESC_END, OSCStreamFraming.SLIP_END};
+
+	private static byte[] stream(OSCStreamFraming framing, byte[]... packets) {
+		final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		for (final byte[] packet : packets) {
+			final ByteBuffer frame = framing.frame(ByteBuffer.wrap(packet), null);
+			final byte[] bytes = new byte[frame.remaining()];
+			frame.get(bytes);
+			stream.write(bytes, 0, bytes.length);
+		}
+		return stream.toByteArray();
+	}
+
+	/** Feeds the stream in chunks of the given size. */
+	private static List<byte[]> decode(OSCStreamDecoder decoder, byte[] stream, int chunkSize)
+			throws IOException
+	{
+		final Frames frames = new Frames();
+		for (int ci = 0; ci < stream.length; ci += chunkSize) {
+			final int length = Math.min(chunkSize, stream.length - ci);
+			final byte[] chunk = new byte[length];
+			System.arraycopy(stream, ci, chunk, 0, length);
+			decoder.decode(ByteBuffer.wrap(chunk), frames);
+		}
+		return frames.frames;
+	}
+
+	private static void checkFrames(List<byte[]> frames, byte[]... expected) {
+		Assert.assertEquals(expected.length, frames.size());
+		for (int fi = 0; fi < expected.length; fi++) {
+			Assert.assertArrayEquals(expected[fi], frames.get(fi));
+		}
+	}
+
+	@Test
+	public void testLengthPrefixFraming() {
+		final ByteBuffer frame = OSCStreamFraming.LENGTH_PREFIX.frame(ByteBuffer.wrap(PLAIN), null);
+		Assert.assertEquals(4 + PLAIN.length, frame.remaining());
+		Assert.assertEquals(PLAIN.length, frame.getInt(0));
+	}
+
+	@Test
+	public void testSlipFraming() {
+		final ByteBuffer frame = OSCStreamFraming.SLIP.frame(ByteBuffer.wrap(SPECIAL), null);
+		// three escaped bytes, and two END bytes
+		Assert.assertEquals(SPECIAL.length + 3 + 2, frame.remaining());
+		Assert.assertEquals(OSCStreamFraming.SLIP_END, frame.get(0));
+		Assert.assertEquals(OSCStreamFraming.SLIP_END, frame.get(frame.limit() - 1));
+	}
+
+	@Test
+	public void testFramesInAnyChunks() throws IOException {
+		for (final OSCStreamFraming framing : OSCStreamFraming.values()) {
+			final byte[] stream = stream(framing, PLAIN, SPECIAL, PLAIN);
+			for (final int chunkSize : new int[] {1, 2, 3, 5, 7, 13, stream.length}) {
+				final OSCStreamDecoder decoder = new OSCStreamDecoder(framing);
+				checkFrames(decode(decoder, stream, chunkSize), PLAIN, SPECIAL, PLAIN);
+				Assert.assertFalse(decoder.isInFrame());
+			}
+		}
+	}
+
+	@Test
+	public void testPartialFrame() throws IOException {
+		for (final OSCStreamFraming framing : OSCStreamFraming.values()) {
+			final byte[] stream = stream(framing, SPECIAL);
+			final OSCStreamDecoder decoder = new OSCStreamDecoder(framing);
+			final Frames frames = new Frames();
+			decoder.decode(ByteBuffer.wrap(stream, 0, stream.length - 1), frames);
+			Assert.assertTrue(frames.frames.isEmpty());
+			Assert.assertTrue(decoder.isInFrame());
+			decoder.decode(ByteBuffer.wrap(stream, stream.length - 1, 1), frames);
+			checkFrames(frames.frames, SPECIAL);
+		}
+	}
+
+	@Test
+	public void testSlipEmptyFramesAreSkipped() throws IOException {
+		final byte[] frame = stream(OSCStreamFraming.SLIP, PLAIN);
+		final byte[] stream = new byte[frame.length + 3];
+		stream[0] = OSCStreamFraming.SLIP_END;
+		stream[1] = OSCStreamFraming.SLIP_END;
+		System.arraycopy(frame, 0, stream, 2, frame.length);
+		stream[stream.length - 1] = OSCStreamFraming.SLIP_END;
+		checkFrames(decode(new OSCStreamDecoder(OSCStreamFraming.SLIP), stream, 4), PLAIN);
+	}
+
+	@Test
+	public void testSlipWithoutLeadingEnd() throws IOException {
+		// OSC 1.1 senders may omit the END in front of the first frame
+		final byte[] frame = stream(OSCStreamFraming.SLIP, PLAIN);
+		final byte[] stream = new byte[frame.length - 1];
+		System.arraycopy(frame, 1, stream, 0, stream.length);
+		checkFrames(decode(new OSCStreamDecoder(OSCStreamFraming.SLIP), stream, 3), PLAIN);
+	}
+
+	@Test(expected = IOException.class)
+	public void testInvalidSlipEscape() throws IOException {
+		final byte[] stream = {'/', OSCStreamFraming.SLIP_ESC, 'x', OSCStreamFraming.SLIP_END};
+		decode(new OSCStreamDecoder(OSCStreamFraming.SLIP), stream, stream.length);
+	}
+
+	@Test(expected = IOException.class)
+	public void testFrameTooBig() throws IOException {
+		final OSCStreamDecoder decoder = new OSCStreamDecoder(OSCStreamFraming.LENGTH_PREFIX, 8, null, 0);
+		decode(decoder, stream(OSCStreamFraming.LENGTH_PREFIX, SPECIAL), 3);
+	}
+
+	@Test(expected = IOException.class)
+	public void testSlipFrameTooBig() throws IOException {
+		final OSCStreamDecoder decoder = new OSCStreamDecoder(OSCStreamFraming.SLIP, 8, null, 0);
+		decode(decoder, stream(OSCStreamFraming.SLIP, SPECIAL), 5);
+	}
+
+	@Test
+	public void testPooledBuffers() throws IOException {
+		final BlockingQueue<ByteBuffer> pool = new ArrayBlockingQueue<ByteBuffer>(2);
+		pool.offer(ByteBuffer.allocate(64));
+		for (final OSCStreamFraming framing : OSCStreamFraming.values()) {
+			final OSCStreamDecoder decoder = new OSCStreamDecoder(framing, 1024, pool, 64);
+			final byte[] stream = stream(framing, SPECIAL, PLAIN);
+			final Frames frames = new Frames();
+			decoder.decode(ByteBuffer.wrap(stream, 0, 10), frames);
+			Assert.assertTrue(pool.isEmpty());
+			decoder.decode(ByteBuffer.wrap(stream, 10, stream.length - 10), frames);
+			checkFrames(frames.frames, SPECIAL, PLAIN);
+			Assert.assertEquals(1, pool.size());
+		}
+	}
+
+	@Test
+	public void testAnnouncedSizeIsNotReserved() throws IOException {
+		final BlockingQueue<ByteBuffer> pool = new ArrayBlockingQueue<ByteBuffer>(1);
+		pool.offer(ByteBuffer.allocate(64));
+		final OSCStreamDecoder decoder = new OSCStreamDecoder(
+				OSCStreamFraming.LENGTH_PREFIX, OSCStreamDecoder.DEFAULT_MAX_FRAME_SIZE, pool, 64);
+		final byte[] packet = new byte[1000];
+		for (int bi = 0; bi < packet.length; bi++) {
+			packet[bi] = (byte) bi;
+		}
+		final byte[] stream = stream(OSCStreamFraming.LENGTH_PREFIX, packet);
+		final Frames frames = new Frames();
+		// only the size, and a few bytes of the frame, take a small pooled buffer
+		decoder.decode(ByteBuffer.wrap(stream, 0, 14), frames);
+		Assert.assertTrue(pool.isEmpty());
+		Assert.assertTrue(decoder.isInFrame());
+		for (int ci = 14; ci < stream.length; ci += 100) {
+			decoder.decode(ByteBuffer.wrap(stream, ci, Math.min(100, stream.length - ci)), frames);
+		}
+		checkFrames(frames.frames, packet);
+		Assert.assertFalse(decoder.isInFrame());
+		Assert.assertEquals(1, pool.size());
+	}
+}
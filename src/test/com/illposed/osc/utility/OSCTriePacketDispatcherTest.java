@@ -0,0 +1,280 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc.utility;
+
+import com.illposed.osc.AddressSelector;
+import com.illposed.osc.OSCListener;
+import com.illposed.osc.OSCMessage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @see OSCTriePacketDispatcher
+ */
+public class OSCTriePacketDispatcherTest {
+
+	private static final String[] PATTERNS = {
+		"/",
+		"/mixer",
+		"/mixer/ch/1/gain",
+		"/mixer/ch/*/gain",
+		"/mixer/ch/[0-3]/gain",
+		"/mixer/ch/[!0-3]/gain",
+		"/mixer/ch/[z-a]/gain",
+		"/mixer/ch/[a-]/gain",
+		"/mixer/ch/{1,2,10}/gain",
+		"/mixer/ch/{ab,a}b/gain",
+		"/mixer/c?/1/*",
+		"/mixer/*/*/pan",
+		"/mixer//gain",
+		"//gain",
+		"//ch//gain",
+		"/mixer//",
+		"/mixer///1/gain",
+		"/*",
+		"/**/ch",
+		"/mixer/ch/1*/gain",
+		"/mixer/ch/x[0-9][0-9]/gain",
+		"/mixer/ch/{left,right}[12]/gain"
+	};
+
+	private static final String[] ADDRESSES = {
+		"/",
+		"/mixer",
+		"/mixer/",
+		"/mixer/ch",
+		"/mixer/ch/1/gain",
+		"/mixer/ch/2/gain",
+		"/mixer/ch/10/gain",
+		"/mixer/ch/a/gain",
+		"/mixer/ch/b/gain",
+		"/mixer/ch/z/gain",
+		"/mixer/ch/ab/gain",
+		"/mixer/ch/abb/gain",
+		"/mixer/ch/x42/gain",
+		"/mixer/ch/left2/gain",
+		"/mixer/ch/1/pan",
+		"/mixer/cx/1/pan",
+		"/mixer/bus/ch/gain",
+		"/gain",
+		"/fx/reverb/gain",
+		"/nothing/here"
+	};
+
+	/** Records which patterns were notified of a message. */
+	private static class RecordingListener implements OSCListener {
+
+		private final String pattern;
+		private final List<String> notified;
+
+		RecordingListener(String pattern, List<String> notified) {
+			this.pattern = pattern;
+			this.notified = notified;
+		}
+
+		@Override
+		public void acceptMessage(Date time, OSCMessage message) {
+			notified.add(pattern);
+		}
+	}
+
+	private static void checkSameMatchesAsSelector(final OSCTriePacketDispatcher dispatcher) {
+		final List<String> notified = new ArrayList<String>();
+		for (final String pattern : PATTERNS) {
+			dispatcher.addListener(new OSCPatternAddressSelector(pattern),
+					new RecordingListener(pattern, notified));
+		}
+
+		// twice, so the second round is served from the cache
+		for (final String address : concat(ADDRESSES, ADDRESSES)) {
+			final List<String> expected = new ArrayList<String>();
+			for (final String pattern : PATTERNS) {
+				if (new OSCPatternAddressSelector(pattern).matches(address)) {
+					expected.add(pattern);
+				}
+			}
+
+			notified.clear();
+			dispatcher.dispatchPacket(new OSCMessage(address));
+			final String[] expectedSorted = expected.toArray(new String[expected.size()]);
+			final String[] notifiedSorted = notified.toArray(new String[notified.size()]);
+			Arrays.sort(expectedSorted);
+			Arrays.sort(notifiedSorted);
+			Assert.assertEquals("Listeners notified for " + address,
+					Arrays.asList(expectedSorted), Arrays.asList(notifiedSorted));
+		}
+	}
+
+	private static String[] concat(String[] first, String[] second) {
+		final String[] both = Arrays.copyOf(first, first.length + second.length);
+		System.arraycopy(second, 0, both, first.length, second.length);
+		return both;
+	}
+
+	@Test
+	public void testSameMatchesAsSelector() {
+		checkSameMatchesAsSelector(new OSCTriePacketDispatcher());
+	}
+
+	@Test
+	public void testSameMatchesAsSelectorWithoutCache() {
+		checkSameMatchesAsSelector(new OSCTriePacketDispatcher(0));
+	}
+
+	@Test
+	public void testSameMatchesAsSelectorWithTinyCache() {
+		checkSameMatchesAsSelector(new OSCTriePacketDispatcher(2));
+	}
+
+	@Test
+	public void testConcurrentDispatchWithTinyCache() throws Exception {
+		final OSCTriePacketDispatcher dispatcher = new OSCTriePacketDispatcher(4);
+		final AtomicInteger notified = new AtomicInteger(0);
+		dispatcher.addListener(new OSCPatternAddressSelector("/mixer/ch/*/gain"), new OSCListener() {
+			@Override
+			public void acceptMessage(Date time, OSCMessage message) {
+				notified.incrementAndGet();
+			}
+		});
+		final int numThreads = 4;
+		final int numMessages = 2000;
+		final Thread[] threads = new Thread[numThreads];
+		for (int ti = 0; ti < numThreads; ti++) {
+			threads[ti] = new Thread() {
+				@Override
+				public void run() {
+					for (int mi = 0; mi < numMessages; mi++) {
+						// more addresses than the cache holds, so it evicts all the time
+						dispatcher.dispatchPacket(new OSCMessage("/mixer/ch/" + (mi % 20) + "/gain"));
+					}
+				}
+			};
+			threads[ti].start();
+		}
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+		Assert.assertEquals(numThreads * numMessages, notified.get());
+	}
+
+	@Test
+	public void testFixedAndPatternForSameAddress() {
+		final OSCTriePacketDispatcher dispatcher = new OSCTriePacketDispatcher();
+		final List<String> notified = new ArrayList<String>();
+		dispatcher.addListener(new OSCPatternAddressSelector("/mixer/ch/12/gain"),
+				new RecordingListener("fixed", notified));
+		dispatcher.addListener(new OSCPatternAddressSelector("/mixer/ch/12/gain/"),
+				new RecordingListener("fixed with slash", notified));
+		dispatcher.addListener(new OSCPatternAddressSelector("/mixer/ch/*/gain"),
+				new RecordingListener("pattern", notified));
+
+		dispatcher.dispatchPacket(new OSCMessage("/mixer/ch/12/gain"));
+		Assert.assertEquals(3, notified.size());
+		notified.clear();
+		dispatcher.dispatchPacket(new OSCMessage("/mixer/ch/12/gain/"));
+		Assert.assertEquals(3, notified.size());
+	}
+
+	@Test
+	public void testRemoveListenerInvalidatesCache() {
+		final OSCTriePacketDispatcher dispatcher = new OSCTriePacketDispatcher();
+		final List<String> notified = new ArrayList<String>();
+		final OSCPatternAddressSelector pattern = new OSCPatternAddressSelector("/mixer/ch/*/gain");
+		final OSCPatternAddressSelector fixed = new OSCPatternAddressSelector("/mixer/ch/1/gain");
+		dispatcher.addListener(pattern, new RecordingListener("pattern", notified));
+		dispatcher.addListener(fixed, new RecordingListener("fixed", notified));
+
+		dispatcher.dispatchPacket(new OSCMessage("/mixer/ch/1/gain"));
+		Assert.assertEquals(2, notified.size());
+
+		dispatcher.removeListener(pattern);
+		notified.clear();
+		dispatcher.dispatchPacket(new OSCMessage("/mixer/ch/1/gain"));
+		Assert.assertEquals(Arrays.asList("fixed"), notified);
+
+		dispatcher.removeListener(fixed);
+		notified.clear();
+		dispatcher.dispatchPacket(new OSCMessage("/mixer/ch/1/gain"));
+		Assert.assertTrue(notified.isEmpty());
+	}
+
+	@Test
+	public void testRemoveListenerByPatternInvalidatesCache() {
+		final OSCTriePacketDispatcher dispatcher = new OSCTriePacketDispatcher();
+		final List<String> notified = new ArrayList<String>();
+		dispatcher.addListener(new OSCPatternAddressSelector("/mixer/ch/*/gain"), new RecordingListener("pattern", notified));
+		dispatcher.addListener(new OSCPatternAddressSelector("/mixer/ch/1/gain"), new RecordingListener("fixed", notified));
+
+		dispatcher.dispatchPacket(new OSCMessage("/mixer/ch/1/gain"));
+		Assert.assertEquals(2, notified.size());
+
+		dispatcher.removeListener("/mixer/ch/*/gain");
+		notified.clear();
+		dispatcher.dispatchPacket(new OSCMessage("/mixer/ch/1/gain"));
+		Assert.assertEquals(Arrays.asList("fixed"), notified);
+	}
+
+	@Test
+	public void testNotifiedOnceWithPathTraversal() {
+		final OSCTriePacketDispatcher dispatcher = new OSCTriePacketDispatcher();
+		final List<String> notified = new ArrayList<String>();
+		dispatcher.addListener(new OSCPatternAddressSelector("//a//a"),
+				new RecordingListener("//a//a", notified));
+
+		dispatcher.dispatchPacket(new OSCMessage("/a/a/a/a"));
+		Assert.assertEquals(1, notified.size());
+	}
+
+	@Test
+	public void testOtherSelectors() {
+		final OSCTriePacketDispatcher dispatcher = new OSCTriePacketDispatcher();
+		final List<String> notified = new ArrayList<String>();
+		dispatcher.addListener(new AddressSelector() {
+			@Override
+			public boolean matches(String messageAddress) {
+				return messageAddress.endsWith("/gain");
+			}
+		}, new RecordingListener("custom", notified));
+		dispatcher.addListener(new OSCPatternAddressSelector("/mixer/*"),
+				new RecordingListener("/mixer/*", notified));
+
+		dispatcher.dispatchPacket(new OSCMessage("/mixer/gain"));
+		Assert.assertEquals(2, notified.size());
+
+		// listeners added after the first dispatch are found too
+		dispatcher.addListener(new OSCPatternAddressSelector("/mixer/gain"),
+				new RecordingListener("/mixer/gain", notified));
+		notified.clear();
+		dispatcher.dispatchPacket(new OSCMessage("/mixer/gain"));
+		Assert.assertEquals(3, notified.size());
+	}
+
+	@Test
+	public void testSplitIntoParts() {
+		for (final String address : new String[] {"", "/", "/a", "/a/", "a/b", "/a//b/", "//"}) {
+			Assert.assertEquals(address,
+					OSCPatternAddressSelector.splitIntoParts(address),
+					Arrays.asList(OSCTriePacketDispatcher.splitIntoParts(address)));
+		}
+	}
+
+	@Test
+	public void testExpand() {
+		Assert.assertEquals(Arrays.asList("a1", "a2", "b1", "b2"),
+				new ArrayList<String>(OSCTriePacketDispatcher.expand("{a,b}[12]")));
+		Assert.assertNull(OSCTriePacketDispatcher.expand("a*"));
+		Assert.assertNull(OSCTriePacketDispatcher.expand("[!a]"));
+		Assert.assertNull(OSCTriePacketDispatcher.expand("[a-]"));
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc.utility;
+
+import com.illposed.osc.OSCBundle;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @see Trace
+ */
+public class TraceTest {
+
+	/** Collects events on the calling thread. */
+	private static class CollectingSink implements TraceSink {
+
+		private final List<TraceEvent> events = new ArrayList<TraceEvent>();
+
+		@Override
+		public void accept(TraceEvent event) {
+			events.add(event);
+		}
+	}
+
+	@After
+	public void tearDown() {
+		Trace.setSink(null, 0);
+	}
+
+	@Test
+	public void testOffByDefault() {
+		Assert.assertFalse(Trace.isEnabled(Trace.ALL));
+		Assert.assertEquals(OSCBundle.TIMESTAMP_IMMEDIATE, NTPTime.readTimeTag(1));
+	}
+
+	@Test
+	public void testTimeTagEvents() {
+		final CollectingSink sink = new CollectingSink();
+		Trace.setSink(sink, Trace.TIMETAG);
+
+		NTPTime.readTimeTag(1);
+		NTPTime.readTimeTag(NTPTime.javaToNtpTimeStamp(1000L));
+
+		Assert.assertEquals(2, sink.events.size());
+		Assert.assertEquals(Trace.TIMETAG, sink.events.get(0).getCategory());
+		Assert.assertEquals("NTPTime", sink.events.get(0).getSource());
+		Assert.assertTrue(sink.events.get(0).getText().endsWith("IMMEDIATE"));
+	}
+
+	@Test
+	public void testCategories() {
+		final CollectingSink sink = new CollectingSink();
+		Trace.setSink(sink, Trace.PACKET_IN);
+
+		Trace.trace(Trace.PACKET_OUT, "test", "not recorded");
+		NTPTime.readTimeTag(1);
+		Assert.assertTrue(sink.events.isEmpty());
+
+		final byte[] packet = {'/', 'a', 0, 0};
+		Trace.trace(Trace.PACKET_IN, "test", "recorded", packet, 2);
+		packet[0] = 0;
+		Assert.assertEquals(1, sink.events.size());
+		Assert.assertArrayEquals(new byte[] {'/', 'a'}, sink.events.get(0).getData());
+
+		Trace.disable(Trace.PACKET_IN);
+		Trace.trace(Trace.PACKET_IN, "test", "not recorded either");
+		Assert.assertEquals(1, sink.events.size());
+	}
+
+	@Test
+	public void testPrintStreamSink() {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final PrintStreamTraceSink sink = new PrintStreamTraceSink(new PrintStream(bytes));
+
+		sink.accept(new TraceEvent(Trace.PACKET_IN, "OSCPortIn", "received", new byte[] {'/', 'a', 0, 0}));
+
+		final String text = bytes.toString();
+		Assert.assertTrue(text.contains("OSCPortIn: received"));
+		Assert.assertTrue(text.contains("2f 61 00 00"));
+	}
+}
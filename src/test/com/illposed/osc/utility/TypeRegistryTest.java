@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc.utility;
+
+import com.illposed.osc.OSCMessage;
+import com.illposed.osc.OSCPackMessage;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @see TypeRegistry
+ * @see TypeCodec
+ */
+public class TypeRegistryTest {
+
+	private static class Vector3 {
+
+		final float x;
+		final float y;
+		final float z;
+
+		Vector3(float x, float y, float z) {
+			this.x = x;
+			this.y = y;
+			this.z = z;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Vector3)) {
+				return false;
+			}
+			final Vector3 vector = (Vector3) other;
+			return x == vector.x && y == vector.y && z == vector.z;
+		}
+
+		@Override
+		public int hashCode() {
+			return Float.floatToIntBits(x) ^ Float.floatToIntBits(y) ^ Float.floatToIntBits(z);
+		}
+	}
+
+	private static class NamedVector3 extends Vector3 {
+
+		NamedVector3(float x, float y, float z) {
+			super(x, y, z);
+		}
+	}
+
+	private final TypeCodec<Vector3> vectorCodec = new TypeCodec<Vector3>('v', Vector3.class) {
+		@Override
+		public void write(Vector3 value, JavaToByteArrayConverter stream) {
+			stream.write(value.x);
+			stream.write(value.y);
+			stream.write(value.z);
+		}
+
+		@Override
+		public Vector3 read(ArgumentInput input) {
+			return new Vector3(input.readFloat(), input.readFloat(), input.readFloat());
+		}
+	};
+
+	@Before
+	public void setUp() {
+		TypeRegistry.register(vectorCodec);
+	}
+
+	@After
+	public void tearDown() {
+		TypeRegistry.unregister(vectorCodec);
+	}
+
+	private static void checkReceived(OSCMessage received) {
+		Assert.assertEquals("ivs", received.getTypetagString());
+		final List<Object> arguments = received.getArguments();
+		Assert.assertEquals(Arrays.<Object>asList(1, new Vector3(1.0f, 2.0f, 3.0f), "after"), arguments);
+	}
+
+	@Test
+	public void testCustomTypeThroughOSC() {
+		final byte[] bytes = new OSCMessage("/position")
+				.add(1).add(new Vector3(1.0f, 2.0f, 3.0f)).add("after").getByteArray();
+		// address, ",ivs", int, 3 floats, "after"
+		Assert.assertEquals(12 + 8 + 4 + 12 + 8, bytes.length);
+
+		checkReceived((OSCMessage) new OSCByteArrayToJavaConverter().convert(bytes, bytes.length));
+		checkReceived((OSCMessage) new OSCByteBufferToJavaConverter().convert(bytes, bytes.length));
+
+		final OSCByteBufferToJavaConverter lazyConverter = new OSCByteBufferToJavaConverter();
+		lazyConverter.setLazy(true);
+		final OSCMessage lazy = (OSCMessage) lazyConverter.convert(bytes, bytes.length);
+		// skips over the vector
+		Assert.assertEquals("after", lazy.getArgument(2));
+		checkReceived(lazy);
+	}
+
+	@Test
+	public void testCustomTypeThroughOSCPack() {
+		final byte[] bytes = new OSCPackMessage("/position")
+				.add(1).add(new Vector3(1.0f, 2.0f, 3.0f)).add("after").getByteArray();
+		checkReceived((OSCMessage) new OSCPackByteArrayToJavaConverter().convert(bytes, bytes.length));
+	}
+
+	@Test
+	public void testSubclassUsesCodecOfSuperclass() {
+		Assert.assertSame(vectorCodec, TypeRegistry.forClass(NamedVector3.class));
+		Assert.assertEquals('v', TypeRegistry.getTag(new NamedVector3(0.0f, 0.0f, 0.0f)));
+	}
+
+	@Test
+	public void testBuiltInTypes() {
+		Assert.assertEquals('i', TypeRegistry.getTag(Integer.valueOf(1)));
+		Assert.assertEquals('T', TypeRegistry.getTag(Boolean.TRUE));
+		Assert.assertEquals('F', TypeRegistry.getTag(Boolean.FALSE));
+		Assert.assertEquals('b', TypeRegistry.getTag(new byte[0]));
+		Assert.assertNull(TypeRegistry.forTag('i'));
+		Assert.assertSame(vectorCodec, TypeRegistry.forTag('v'));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBuiltInTagCanNotBeRegistered() {
+		TypeRegistry.register(new TypeCodec<Vector3>('f', Vector3.class) {
+			@Override
+			public void write(Vector3 value, JavaToByteArrayConverter stream) {
+			}
+
+			@Override
+			public Vector3 read(ArgumentInput input) {
+				return null;
+			}
+		});
+	}
+
+	@Test
+	public void testUnregisteredTypeIsUnknown() {
+		final byte[] bytes = new OSCMessage("/position").add(new Vector3(1.0f, 2.0f, 3.0f)).getByteArray();
+		TypeRegistry.unregister(vectorCodec);
+		try {
+			new OSCMessage("/position").add(new Vector3(1.0f, 2.0f, 3.0f)).getByteArray();
+			Assert.fail("writing an unknown type should fail");
+		} catch (UnsupportedOperationException ex) {
+			// expected
+		}
+		final OSCByteBufferToJavaConverter converter = new OSCByteBufferToJavaConverter();
+		final OSCMetrics metrics = new OSCMetrics();
+		converter.setMetrics(metrics);
+		final OSCMessage received = (OSCMessage) converter.convert(bytes, bytes.length);
+		Assert.assertNull(received.getArgument(0));
+		Assert.assertEquals(1, metrics.getUnknownTypeTags());
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2016, T. Brand <tom@trellis.ch>
+ * All rights reserved.
+ *
+ * This code is licensed under the BSD 3-Clause license.
+ * See file LICENSE (or LICENSE.html) for more information.
+ */
+
+package com.illposed.osc.utility;
+
+import com.illposed.osc.OSCArguments;
+import com.illposed.osc.OSCMessage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @see TypeSignature
+ */
+public class TypeSignatureTest {
+
+	@Test
+	public void testSharedBetweenMessages() {
+		final TypeSignature first = TypeSignature.of(Arrays.<Object>asList(1, 2.0f, "three"));
+		final OSCArguments stored = new OSCArguments();
+		stored.addInt(4);
+		stored.addFloat(5.0f);
+		stored.add("six");
+		Assert.assertSame(first, TypeSignature.of(stored));
+		Assert.assertEquals("ifs", first.getTypeTags());
+		Assert.assertEquals("ifs", Tagger.getTypesArray(stored));
+	}
+
+	@Test
+	public void testPaddedBytes() {
+		final String[] tags = {"", "i", "if", "ifs", "ifsT", "ifsTF"};
+		final int[] paddedLengths = {3, 3, 3, 7, 7, 7};
+		for (int ti = 0; ti < tags.length; ti++) {
+			final List<Object> arguments = new ArrayList<Object>();
+			for (final char tag : tags[ti].toCharArray()) {
+				switch (tag) {
+					case 'i': arguments.add(1); break;
+					case 'f': arguments.add(1.0f); break;
+					case 's': arguments.add("s"); break;
+					case 'T': arguments.add(Boolean.TRUE); break;
+					default: arguments.add(Boolean.FALSE); break;
+				}
+			}
+			final byte[] padded = TypeSignature.of(arguments).getPaddedBytes();
+			Assert.assertEquals(tags[ti], paddedLengths[ti], padded.length);
+			Assert.assertEquals(tags[ti], new String(padded, 0, tags[ti].length()));
+			for (int pi = tags[ti].length(); pi < padded.length; pi++) {
+				Assert.assertEquals(0, padded[pi]);
+			}
+		}
+	}
+
+	@Test
+	public void testRememberedUntilChanged() {
+		final OSCArguments stored = new OSCArguments();
+		stored.addInt(1);
+		final TypeSignature before = stored.getTypeSignature();
+		Assert.assertSame(before, stored.getTypeSignature());
+		stored.addFloat(2.0f);
+		Assert.assertEquals("if", stored.getTypeSignature().getTypeTags());
+		stored.set(0, "string");
+		Assert.assertEquals("sf", stored.getTypeSignature().getTypeTags());
+		stored.remove(1);
+		Assert.assertEquals("s", stored.getTypeSignature().getTypeTags());
+	}
+
+	@Test
+	public void testNestedArrayChanges() {
+		final List<Object> array = new ArrayList<Object>();
+		array.add(1);
+		final OSCMessage message = new OSCMessage("/nested");
+		message.addArgument(array);
+		Assert.assertEquals("[i]", Tagger.getTypesArray(message.getArguments()));
+		array.add("two");
+		final OSCArguments stored = new OSCArguments(Arrays.<Object>asList((Object) array));
+		Assert.assertTrue(stored.getTypeSignature().isNested());
+		Assert.assertEquals("[is]", stored.getTypeSignature().getTypeTags());
+	}
+
+	@Test
+	public void testLongSignature() {
+		final Collection<Object> arguments = new ArrayList<Object>();
+		final StringBuilder expected = new StringBuilder();
+		for (int ai = 0; ai < 200; ai++) {
+			arguments.add(ai);
+			expected.append('i');
+		}
+		final TypeSignature signature = TypeSignature.of(arguments);
+		Assert.assertEquals(expected.toString(), signature.getTypeTags());
+		Assert.assertEquals(203, signature.getPaddedBytes().length);
+	}
+}